@@ -0,0 +1,167 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.eclipse.jetty.http.HttpTokenScanner;
+import org.eclipse.jetty.util.SearchPattern;
+
+/**
+ * <p>A {@link HttpTokenScanner} that uses the Vector API to classify
+ * 16 or 32 bytes at a time, depending on the hardware.</p>
+ * <p>This scanner is discovered with the {@link java.util.ServiceLoader}
+ * when this module is available and the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}; otherwise, or if the hardware
+ * does not support vectors of at least 16 bytes, the scalar scanner is used.</p>
+ * <p>Patterns not longer than a vector are searched comparing the first and the last
+ * byte of the pattern at all the offsets of a vector, so that only the few candidate
+ * offsets are verified; longer patterns are searched by the scalar scanner.</p>
+ * <p>The bytes that do not fill a whole vector are scanned by the scalar scanner.</p>
+ */
+public class VectorHttpTokenScanner implements HttpTokenScanner
+{
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.vectorByteSize() >= 32
+        ? ByteVector.SPECIES_256
+        : ByteVector.SPECIES_128;
+
+    private final HttpTokenScanner.Scalar _scalar = new HttpTokenScanner.Scalar();
+
+    public VectorHttpTokenScanner()
+    {
+        if (ByteVector.SPECIES_PREFERRED.vectorByteSize() < 16)
+            throw new UnsupportedOperationException("Vectors not supported");
+    }
+
+    @Override
+    public int scanToken(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length())
+        {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            // Controls, space, obs-text (negative), DEL and the delimiters.
+            VectorMask<Byte> mask = v.compare(VectorOperators.LT, (byte)0x21)
+                .or(v.compare(VectorOperators.EQ, (byte)'"'))
+                .or(range(v, '(', ')'))
+                .or(v.compare(VectorOperators.EQ, (byte)','))
+                .or(v.compare(VectorOperators.EQ, (byte)'/'))
+                .or(range(v, ':', '@'))
+                .or(range(v, '[', ']'))
+                .or(v.compare(VectorOperators.EQ, (byte)'{'))
+                .or(v.compare(VectorOperators.EQ, (byte)'}'))
+                .or(v.compare(VectorOperators.EQ, (byte)0x7F));
+            if (mask.anyTrue())
+                return i + mask.firstTrue();
+        }
+        return _scalar.scanToken(buffer, i, to);
+    }
+
+    @Override
+    public int scanFieldValue(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length())
+        {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            // Controls other than HTAB, including CR and LF, and DEL; obs-text is negative and allowed.
+            VectorMask<Byte> mask = range(v, 0x00, 0x1F)
+                .andNot(v.compare(VectorOperators.EQ, (byte)'\t'))
+                .or(v.compare(VectorOperators.EQ, (byte)0x7F));
+            if (mask.anyTrue())
+                return i + mask.firstTrue();
+        }
+        return _scalar.scanFieldValue(buffer, i, to);
+    }
+
+    @Override
+    public int scanRequestTarget(ByteBuffer buffer, int from, int to)
+    {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length())
+        {
+            ByteVector v = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            // Signed comparison, as the scalar scanner.
+            VectorMask<Byte> mask = v.compare(VectorOperators.LE, (byte)' ');
+            if (mask.anyTrue())
+                return i + mask.firstTrue();
+        }
+        return _scalar.scanRequestTarget(buffer, i, to);
+    }
+
+    @Override
+    public int scanPattern(ByteBuffer buffer, int from, int to, SearchPattern pattern)
+    {
+        // Boyer-Moore-Horspool skips up to the pattern length for every byte
+        // it reads, so it is faster for patterns longer than a vector.
+        byte[] bytes = pattern.getPattern();
+        int length = bytes.length;
+        if (length < 2 || length > SPECIES.length())
+            return _scalar.scanPattern(buffer, from, to, pattern);
+        // Compare the first and the last byte of the pattern at all the
+        // offsets of a vector, and only verify the offsets where both match.
+        byte first = bytes[0];
+        byte last = bytes[length - 1];
+        int i = from;
+        int bound = to - length + 1 - SPECIES.length();
+        for (; i <= bound; i += SPECIES.length())
+        {
+            ByteVector head = ByteVector.fromByteBuffer(SPECIES, buffer, i, ByteOrder.nativeOrder());
+            ByteVector tail = ByteVector.fromByteBuffer(SPECIES, buffer, i + length - 1, ByteOrder.nativeOrder());
+            VectorMask<Byte> mask = head.compare(VectorOperators.EQ, first)
+                .and(tail.compare(VectorOperators.EQ, last));
+            if (mask.anyTrue())
+            {
+                long candidates = mask.toLong();
+                while (candidates != 0)
+                {
+                    int index = i + Long.numberOfTrailingZeros(candidates);
+                    if (matches(buffer, index, bytes))
+                        return index;
+                    candidates &= candidates - 1;
+                }
+            }
+        }
+        return _scalar.scanPattern(buffer, i, to, pattern);
+    }
+
+    private static boolean matches(ByteBuffer buffer, int index, byte[] pattern)
+    {
+        for (int j = pattern.length - 2; j > 0; --j)
+        {
+            if (buffer.get(index + j) != pattern[j])
+                return false;
+        }
+        return true;
+    }
+
+    private static VectorMask<Byte> range(ByteVector v, int min, int max)
+    {
+        return v.compare(VectorOperators.GE, (byte)min).and(v.compare(VectorOperators.LE, (byte)max));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[bits=%d]", getClass().getSimpleName(), SPECIES.vectorBitSize());
+    }
+}
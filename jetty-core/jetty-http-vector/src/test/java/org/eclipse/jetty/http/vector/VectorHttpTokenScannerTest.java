@@ -0,0 +1,181 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.vector;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpTokenScanner;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.SearchPattern;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class VectorHttpTokenScannerTest
+{
+    private final HttpTokenScanner scalar = new HttpTokenScanner.Scalar();
+    private final HttpTokenScanner vector = new VectorHttpTokenScanner();
+
+    @Test
+    public void testDefaultIsVector()
+    {
+        assertThat(HttpTokenScanner.getDefault(), instanceOf(VectorHttpTokenScanner.class));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testSameAsScalar(boolean direct)
+    {
+        // Every byte value, at every position of runs longer than a vector.
+        for (int b = 0; b < 256; ++b)
+        {
+            for (int position = 0; position < 70; ++position)
+            {
+                ByteBuffer buffer = BufferUtil.allocate(80, direct);
+                BufferUtil.clearToFill(buffer);
+                for (int i = 0; i < 80; ++i)
+                {
+                    buffer.put(i == position ? (byte)b : (byte)'a');
+                }
+                for (int from : new int[]{0, 3})
+                {
+                    assertThat(vector.scanToken(buffer, from, 80), is(scalar.scanToken(buffer, from, 80)));
+                    assertThat(vector.scanFieldValue(buffer, from, 80), is(scalar.scanFieldValue(buffer, from, 80)));
+                    assertThat(vector.scanRequestTarget(buffer, from, 80), is(scalar.scanRequestTarget(buffer, from, 80)));
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"boundary", "----WebKitFormBoundary7MA4YWxkTrZu0gW"})
+    public void testScanPatternSameAsScalar(String boundary)
+    {
+        testScanPatternSameAsScalar(boundary, false);
+        testScanPatternSameAsScalar(boundary, true);
+    }
+
+    private void testScanPatternSameAsScalar(String boundary, boolean direct)
+    {
+        SearchPattern pattern = SearchPattern.compile("\n--" + boundary);
+        int length = 100;
+        for (int position = 0; position <= length - pattern.getLength(); ++position)
+        {
+            ByteBuffer buffer = BufferUtil.allocate(length, direct);
+            BufferUtil.clearToFill(buffer);
+            for (int i = 0; i < length; ++i)
+            {
+                // Decoys that match the first and the last byte of the pattern.
+                buffer.put(i % 7 == 0 ? (byte)'\n' : (byte)'y');
+            }
+            buffer.put(position, pattern.getPattern());
+            for (int from : new int[]{0, 5})
+            {
+                for (int to : new int[]{length, length - 3})
+                {
+                    assertThat(vector.scanPattern(buffer, from, to, pattern), is(scalar.scanPattern(buffer, from, to, pattern)));
+                }
+            }
+            int expected = scalar.scanPattern(buffer, 0, length, pattern);
+            assertThat(expected, is(position));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testParseRequest(boolean direct)
+    {
+        String request = """
+            GET /some/rather/long/path/to/a/resource?with=query&and=more HTTP/1.1\r
+            Host: www.example.com\r
+            User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/118.0\r
+            Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8\r
+            X-Custom-Header-With-A-Long-Name:   padded value   \r
+            \r
+            """;
+        ByteBuffer buffer = BufferUtil.toBuffer(request);
+        if (direct)
+        {
+            ByteBuffer copy = BufferUtil.allocateDirect(buffer.remaining());
+            BufferUtil.append(copy, buffer);
+            buffer = copy;
+        }
+
+        List<String> fields = new ArrayList<>();
+        List<String> uris = new ArrayList<>();
+        HttpParser parser = new HttpParser(new HttpParser.RequestHandler()
+        {
+            @Override
+            public void startRequest(String method, String uri, HttpVersion version)
+            {
+                uris.add(uri);
+            }
+
+            @Override
+            public void parsedHeader(HttpField field)
+            {
+                fields.add(field.getName() + "=" + field.getValue());
+            }
+
+            @Override
+            public boolean headerComplete()
+            {
+                return false;
+            }
+
+            @Override
+            public boolean content(ByteBuffer item)
+            {
+                return false;
+            }
+
+            @Override
+            public boolean contentComplete()
+            {
+                return false;
+            }
+
+            @Override
+            public boolean messageComplete()
+            {
+                return true;
+            }
+
+            @Override
+            public void earlyEOF()
+            {
+            }
+        });
+        parser.setTokenScanner(vector);
+        parser.parseNext(buffer);
+
+        assertThat(uris, contains("/some/rather/long/path/to/a/resource?with=query&and=more"));
+        assertThat(fields, contains(
+            "Host=www.example.com",
+            "User-Agent=Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/118.0",
+            "Accept=text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8",
+            "X-Custom-Header-With-A-Long-Name=padded value"
+        ));
+    }
+}
@@ -23,6 +23,7 @@ module org.eclipse.jetty.http
     exports org.eclipse.jetty.http.content;
 
     uses org.eclipse.jetty.http.HttpFieldPreEncoder;
+    uses org.eclipse.jetty.http.HttpTokenScanner;
 
     provides org.eclipse.jetty.http.HttpFieldPreEncoder with
         org.eclipse.jetty.http.Http10FieldPreEncoder,
@@ -39,11 +39,11 @@ public record ByteRange(long first, long last)
         return new ByteRange(Math.min(first, r.first), Math.max(last, r.last));
     }
 
-    private boolean overlaps(ByteRange range)
+    private boolean overlapsOrAdjoins(ByteRange range)
     {
         return
-            // Partial right overlap: 10-20,15-30.
-            (range.first >= this.first && range.first <= this.last) ||
+            // Partial right overlap: 10-20,15-30, or adjacent: 10-20,21-30.
+            (range.first >= this.first && range.first <= this.last + 1) ||
             // Partial left overlap: 20-30,15-25.
             (range.last >= this.first && range.last <= this.last) ||
             // Full inclusion: 20-30,10-40.
@@ -74,6 +74,8 @@ public record ByteRange(long first, long last)
      * <p>Parses the {@code Range} header values such as {@code byte=10-20}
      * to obtain a list of {@code ByteRange}s.</p>
      * <p>Returns an empty list if the parsing fails.</p>
+     * <p>The returned list is sorted, and overlapping or adjacent ranges
+     * are coalesced, so that the same bytes are never sent twice.</p>
      *
      * @param headers a list of range values
      * @param length the length of the resource for which ranges are requested
@@ -171,7 +173,7 @@ public record ByteRange(long first, long last)
         for (int i = 1; i < ranges.size(); ++i)
         {
             ByteRange range2 = ranges.get(i);
-            if (range1.overlaps(range2))
+            if (range1.overlapsOrAdjoins(range2))
             {
                 range1 = range1.coalesce(range2);
             }
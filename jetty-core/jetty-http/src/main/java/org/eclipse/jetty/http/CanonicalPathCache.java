@@ -0,0 +1,233 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.UriCompliance.Violation;
+import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A bounded cache of the results of parsing request paths, shared by the connections
+ * of a server.</p>
+ * <p>Parsing a request path with {@link HttpURI.Mutable#pathQuery(String, CanonicalPathCache)}
+ * validates the path, computes its canonical and decoded forms and records its
+ * {@link UriCompliance} violations; as most traffic is for a limited number of distinct
+ * paths, this cache stores these results keyed by the raw path, that is the request target
+ * without the query and the fragment.</p>
+ * <p>Lookups are lock-free; entries are evicted with the CLOCK algorithm, which approximates
+ * LRU: a hit marks the entry as referenced, and when the cache is full the clock hand sweeps
+ * the entries, clearing the references, until it finds an entry that was not referenced
+ * since the last sweep.</p>
+ */
+@ManagedObject("A cache of parsed request paths")
+public class CanonicalPathCache
+{
+    private final AutoLock _lock = new AutoLock();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final int _capacity;
+    private final int _maxPathLength;
+    private final Entry[] _clock;
+    private int _hand;
+
+    public CanonicalPathCache()
+    {
+        this(1024);
+    }
+
+    /**
+     * @param capacity the max number of cached paths
+     */
+    public CanonicalPathCache(int capacity)
+    {
+        this(capacity, 1024);
+    }
+
+    /**
+     * @param capacity the max number of cached paths
+     * @param maxPathLength the max length of a cached path
+     */
+    public CanonicalPathCache(int capacity, int maxPathLength)
+    {
+        _capacity = Math.max(1, capacity);
+        _maxPathLength = maxPathLength;
+        _clock = new Entry[_capacity];
+    }
+
+    @ManagedAttribute("The max number of cached paths")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute("The max length of a cached path")
+    public int getMaxPathLength()
+    {
+        return _maxPathLength;
+    }
+
+    @ManagedAttribute("The number of cached paths")
+    public int getSize()
+    {
+        return _entries.size();
+    }
+
+    @ManagedAttribute("The number of parsed paths found in the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of parsed paths not found in the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The ratio of parsed paths found in the cache")
+    public double getHitRatio()
+    {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    @ManagedOperation(value = "Clears the cache and its statistics", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            _entries.clear();
+            Arrays.fill(_clock, null);
+            _hand = 0;
+            _hits.reset();
+            _misses.reset();
+        }
+    }
+
+    /**
+     * @param rawPath the raw path, without query and fragment
+     * @return the cached entry for the raw path, or null
+     */
+    Entry get(String rawPath)
+    {
+        Entry entry = _entries.get(rawPath);
+        if (entry == null)
+        {
+            _misses.increment();
+            return null;
+        }
+        // Avoid writing the shared entry if it is already referenced.
+        if (!entry._referenced)
+            entry._referenced = true;
+        _hits.increment();
+        return entry;
+    }
+
+    /**
+     * <p>Caches the results of parsing a raw path.</p>
+     *
+     * @param rawPath the raw path, without query and fragment
+     * @param param the last path parameter, or null
+     * @param canonicalPath the canonical path
+     * @param violations the violations of the path
+     */
+    void put(String rawPath, String param, String canonicalPath, Set<Violation> violations)
+    {
+        if (rawPath.length() > _maxPathLength || canonicalPath == null)
+            return;
+
+        String decodedPath;
+        try
+        {
+            decodedPath = URIUtil.decodePath(canonicalPath);
+        }
+        catch (IllegalArgumentException x)
+        {
+            // Do not cache paths that cannot be decoded, so that they fail as if not cached.
+            return;
+        }
+
+        Set<Violation> cachedViolations = violations.isEmpty()
+            ? Collections.emptySet()
+            : Collections.unmodifiableSet(EnumSet.copyOf(violations));
+        Entry entry = new Entry(rawPath, param, canonicalPath, decodedPath, cachedViolations);
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_entries.containsKey(rawPath))
+                return;
+            // Sweep the clock until a slot that is empty or not recently referenced.
+            while (true)
+            {
+                Entry victim = _clock[_hand];
+                if (victim == null)
+                    break;
+                if (!victim._referenced)
+                {
+                    _entries.remove(victim._path);
+                    break;
+                }
+                victim._referenced = false;
+                _hand = (_hand + 1) % _capacity;
+            }
+            _clock[_hand] = entry;
+            _hand = (_hand + 1) % _capacity;
+            _entries.put(rawPath, entry);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getSize(), _capacity, getHits(), getMisses());
+    }
+
+    static class Entry
+    {
+        final String _path;
+        final String _param;
+        final String _canonicalPath;
+        final String _decodedPath;
+        final Set<Violation> _violations;
+        volatile boolean _referenced;
+
+        private Entry(String path, String param, String canonicalPath, String decodedPath, Set<Violation> violations)
+        {
+            _path = path;
+            _param = param;
+            _canonicalPath = canonicalPath;
+            _decodedPath = decodedPath;
+            _violations = violations;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _path;
+        }
+    }
+}
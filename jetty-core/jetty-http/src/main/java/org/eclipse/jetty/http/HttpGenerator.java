@@ -590,6 +590,20 @@ public class HttpGenerator
             for (int f = 0; f < n; f++)
             {
                 HttpField field = fields.getField(f);
+
+                // Copy a whole pre-encoded block if it is still intact.
+                if (field instanceof PreEncodedHttpFields.Field blockField)
+                {
+                    PreEncodedHttpFields block = blockField.getBlock();
+                    if (block.isAt(fields, f))
+                    {
+                        block.putTo(header);
+                        contentType |= block.hasContentType();
+                        f += block.size() - 1;
+                        continue;
+                    }
+                }
+
                 HttpHeader h = field.getHeader();
                 if (h == null)
                     putTo(field, header);
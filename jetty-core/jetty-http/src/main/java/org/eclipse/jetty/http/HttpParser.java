@@ -21,6 +21,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.jetty.http.HttpTokens.EndOfContent;
 import org.eclipse.jetty.util.BufferUtil;
@@ -172,6 +173,22 @@ public class HttpParser
         })
         .build();
 
+    // The headers whose values are interpreted by the parser or by the server while parsing.
+    private static final EnumSet<HttpHeader> EAGER_HEADERS = EnumSet.of(
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.HOST,
+        HttpHeader.CONNECTION,
+        HttpHeader.EXPECT,
+        HttpHeader.UPGRADE,
+        HttpHeader.AUTHORIZATION,
+        HttpHeader.ACCEPT,
+        HttpHeader.ACCEPT_CHARSET,
+        HttpHeader.ACCEPT_ENCODING,
+        HttpHeader.ACCEPT_LANGUAGE,
+        HttpHeader.COOKIE,
+        HttpHeader.CACHE_CONTROL,
+        HttpHeader.USER_AGENT);
     private static final Index.Mutable<HttpField> NO_CACHE = new Index.Builder<HttpField>()
         .caseSensitive(false)
         .mutable()
@@ -261,6 +278,10 @@ public class HttpParser
     private ByteBuffer _contentChunk;
     private int _length;
     private final StringBuilder _string = new StringBuilder();
+    private HttpTokenScanner _scanner = HttpTokenScanner.getDefault();
+    private SharedFieldCache _sharedFieldCache;
+    private boolean _lazyFieldValues;
+    private int _valueStart = -1;
 
     private static HttpCompliance compliance()
     {
@@ -342,6 +363,62 @@ public class HttpParser
         _fieldCache.setCaseSensitive(headerCacheCaseSensitive);
     }
 
+    public HttpTokenScanner getTokenScanner()
+    {
+        return _scanner;
+    }
+
+    /**
+     * @param scanner the scanner of the runs of bytes of request targets, field names and field values
+     */
+    public void setTokenScanner(HttpTokenScanner scanner)
+    {
+        _scanner = Objects.requireNonNull(scanner);
+    }
+
+    public boolean isLazyFieldValues()
+    {
+        return _lazyFieldValues;
+    }
+
+    /**
+     * <p>Sets whether the values of request fields that the parser does not need to interpret
+     * are delivered as {@link LazyHttpField}s that reference the parsed buffer.</p>
+     * <p>A handler that enables lazy field values must not reuse the buffers passed to
+     * {@link #parseNext(ByteBuffer)} until it has {@link LazyHttpField#detach() detached}
+     * the lazy fields it received.</p>
+     *
+     * @param lazyFieldValues whether field values are decoded lazily
+     */
+    public void setLazyFieldValues(boolean lazyFieldValues)
+    {
+        _lazyFieldValues = lazyFieldValues;
+    }
+
+    /**
+     * @return whether the value of the current field can reference the parsed buffer
+     */
+    private boolean isLazyValue()
+    {
+        if (!_lazyFieldValues || _requestHandler == null || _state != State.HEADER || _string.length() > 0)
+            return false;
+        return _header == null || !EAGER_HEADERS.contains(_header);
+    }
+
+    public SharedFieldCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    /**
+     * @param sharedFieldCache the cache of fields shared with other parsers, looked up
+     * after the per-parser cache and the static {@link #CACHE}, or null for no shared cache
+     */
+    public void setSharedFieldCache(SharedFieldCache sharedFieldCache)
+    {
+        _sharedFieldCache = sharedFieldCache;
+    }
+
     protected void checkViolation(Violation violation) throws BadMessageException
     {
         if (violation.isAllowedBy(_complianceMode))
@@ -736,30 +813,27 @@ public class HttpParser
                                 _uri.reset();
                                 setState(State.URI);
                                 // quick scan for space or EoBuffer
+                                int p = buffer.position();
+                                int i = _scanner.scanRequestTarget(buffer, p, buffer.limit());
+                                int len = i - p;
+                                _headerBytes += len;
+
+                                if (_maxHeaderBytes > 0 && ++_headerBytes > _maxHeaderBytes)
+                                {
+                                    LOG.warn("URI is too large >{}", _maxHeaderBytes);
+                                    throw new BadMessageException(HttpStatus.URI_TOO_LONG_414);
+                                }
                                 if (buffer.hasArray())
                                 {
-                                    byte[] array = buffer.array();
-                                    int p = buffer.arrayOffset() + buffer.position();
-                                    int l = buffer.arrayOffset() + buffer.limit();
-                                    int i = p;
-                                    while (i < l && array[i] > HttpTokens.SPACE)
-                                    {
-                                        i++;
-                                    }
-
-                                    int len = i - p;
-                                    _headerBytes += len;
-
-                                    if (_maxHeaderBytes > 0 && ++_headerBytes > _maxHeaderBytes)
-                                    {
-                                        LOG.warn("URI is too large >{}", _maxHeaderBytes);
-                                        throw new BadMessageException(HttpStatus.URI_TOO_LONG_414);
-                                    }
-                                    _uri.append(array, p - 1, len + 1);
-                                    buffer.position(i - buffer.arrayOffset());
+                                    _uri.append(buffer.array(), buffer.arrayOffset() + p - 1, len + 1);
                                 }
                                 else
+                                {
                                     _uri.append(t.getByte());
+                                    if (len > 0)
+                                        _uri.append(buffer.slice(p, len));
+                                }
+                                buffer.position(i);
                             }
                             break;
 
@@ -986,6 +1060,8 @@ public class HttpParser
             // Handle known headers
             if (_header != null)
             {
+                // Whether the field was looked up from a cache rather than parsed.
+                boolean cachedField = _field != null;
                 boolean addToFieldCache = false;
                 switch (_header)
                 {
@@ -1105,6 +1181,14 @@ public class HttpParser
 
                     _fieldCache.add(_field);
                 }
+
+                // Offer the field to the shared cache, even when the per-parser cache is disabled.
+                if (!cachedField && _sharedFieldCache != null && _sharedFieldCache.isCacheable(_header) && _valueString != null)
+                {
+                    if (_field == null)
+                        _field = new HttpField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
+                    _sharedFieldCache.offer(_field);
+                }
             }
             if (LOG.isDebugEnabled())
                 LOG.debug("parsedHeader({}) header={}, headerString=[{}], valueString=[{}]", _field, _header, _headerString, _valueString);
@@ -1159,14 +1243,7 @@ public class HttpParser
             if (t == null)
                 break;
 
-            if (_maxHeaderBytes > 0 && ++_headerBytes > _maxHeaderBytes)
-            {
-                boolean header = _state == State.HEADER;
-                LOG.warn("{} is too large {}>{}", header ? "Header" : "Trailer", _headerBytes, _maxHeaderBytes);
-                throw new BadMessageException(header
-                    ? HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE_431
-                    : HttpStatus.PAYLOAD_TOO_LARGE_413);
-            }
+            countFieldBytes(1);
 
             switch (_fieldState)
             {
@@ -1179,6 +1256,12 @@ public class HttpParser
                         {
                             checkViolation(Violation.MULTILINE_FIELD_VALUE);
 
+                            if (_field instanceof LazyHttpField)
+                            {
+                                _valueString = _field.getValue();
+                                _field = null;
+                            }
+
                             // header value without name - continuation?
                             if (StringUtil.isEmpty(_valueString))
                             {
@@ -1280,6 +1363,13 @@ public class HttpParser
                                 HttpField cachedField = _fieldCache.getBest(buffer, -1, buffer.remaining() + 1);
                                 if (cachedField == null)
                                     cachedField = CACHE.getBest(buffer, -1, buffer.remaining() + 1);
+                                // The static cache may only match the header name, try the shared cache for the whole field.
+                                if (_sharedFieldCache != null && (cachedField == null || StringUtil.isEmpty(cachedField.getValue())))
+                                {
+                                    HttpField sharedField = _sharedFieldCache.getBest(buffer, -1, buffer.remaining() + 1);
+                                    if (sharedField != null)
+                                        cachedField = sharedField;
+                                }
 
                                 if (cachedField != null)
                                 {
@@ -1403,6 +1493,7 @@ public class HttpParser
                         case DIGIT:
                         case TCHAR:
                             _string.append(t.getChar());
+                            scanFieldName(buffer);
                             _length = _string.length();
                             break;
 
@@ -1457,8 +1548,16 @@ public class HttpParser
                         case VCHAR:
                         case COLON:
                         case OTEXT: // TODO review? should this be a utf8 string?
-                            _string.append(t.getChar());
-                            _length = _string.length();
+                            if (isLazyValue())
+                            {
+                                _valueStart = buffer.position() - 1;
+                                _length = 1;
+                            }
+                            else
+                            {
+                                _string.append(t.getChar());
+                                _length = _string.length();
+                            }
                             setState(FieldState.IN_VALUE);
                             break;
 
@@ -1471,7 +1570,14 @@ public class HttpParser
                     switch (t.getType())
                     {
                         case LF:
-                            if (_length > 0)
+                            if (_valueStart >= 0)
+                            {
+                                String name = _header == null ? _headerString : caseInsensitiveHeader(_headerString, _header.asString());
+                                _field = new LazyHttpField(_header, name, buffer, _valueStart, _length);
+                                _valueStart = -1;
+                                _length = -1;
+                            }
+                            else if (_length > 0)
                             {
                                 _valueString = takeString();
                                 _length = -1;
@@ -1481,7 +1587,9 @@ public class HttpParser
 
                         case SPACE:
                         case HTAB:
-                            _string.append(t.getChar());
+                            if (_valueStart < 0)
+                                _string.append(t.getChar());
+                            scanFieldValue(buffer);
                             break;
 
                         case ALPHA:
@@ -1490,8 +1598,19 @@ public class HttpParser
                         case VCHAR:
                         case COLON:
                         case OTEXT: // TODO review? should this be a utf8 string?
-                            _string.append(t.getChar());
-                            _length = _string.length();
+                            // Values of cached field names start in this state.
+                            if (_valueStart < 0 && isLazyValue())
+                                _valueStart = buffer.position() - 1;
+                            if (_valueStart >= 0)
+                            {
+                                _length = buffer.position() - _valueStart;
+                            }
+                            else
+                            {
+                                _string.append(t.getChar());
+                                _length = _string.length();
+                            }
+                            scanFieldValue(buffer);
                             break;
 
                         default:
@@ -1504,9 +1623,87 @@ public class HttpParser
             }
         }
 
+        // The next buffer may not be the same, so values cannot reference this buffer anymore.
+        if (_valueStart >= 0)
+        {
+            for (int i = _valueStart; i < buffer.position(); ++i)
+            {
+                _string.append((char)(0xFF & buffer.get(i)));
+            }
+            _valueStart = -1;
+        }
+        if (_field instanceof LazyHttpField lazyField)
+            lazyField.detach();
+
         return false;
     }
 
+    /**
+     * Appends the run of field name characters that follows the current position.
+     */
+    private void scanFieldName(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        int end = _scanner.scanToken(buffer, position, buffer.limit());
+        if (end == position)
+            return;
+        countFieldBytes(end - position);
+        for (int i = position; i < end; ++i)
+        {
+            _string.append((char)buffer.get(i));
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * Appends the run of field value characters that follows the current position,
+     * or skips it if the value references the buffer, updating the length of the
+     * value to exclude trailing white space.
+     */
+    private void scanFieldValue(ByteBuffer buffer)
+    {
+        int position = buffer.position();
+        int end = _scanner.scanFieldValue(buffer, position, buffer.limit());
+        if (end == position)
+            return;
+        countFieldBytes(end - position);
+        if (_valueStart >= 0)
+        {
+            // The value references the buffer, only track its length.
+            for (int i = end - 1; i >= position; --i)
+            {
+                byte b = buffer.get(i);
+                if (b != ' ' && b != '\t')
+                {
+                    _length = i + 1 - _valueStart;
+                    break;
+                }
+            }
+            buffer.position(end);
+            return;
+        }
+        for (int i = position; i < end; ++i)
+        {
+            char c = (char)(0xFF & buffer.get(i));
+            _string.append(c);
+            if (c != ' ' && c != '\t')
+                _length = _string.length();
+        }
+        buffer.position(end);
+    }
+
+    private void countFieldBytes(int bytes)
+    {
+        if (_maxHeaderBytes > 0 && (_headerBytes += bytes) > _maxHeaderBytes)
+        {
+            boolean header = _state == State.HEADER;
+            LOG.warn("{} is too large {}>{}", header ? "Header" : "Trailer", _headerBytes, _maxHeaderBytes);
+            throw new BadMessageException(header
+                ? HttpStatus.REQUEST_HEADER_FIELDS_TOO_LARGE_431
+                : HttpStatus.PAYLOAD_TOO_LARGE_413);
+        }
+    }
+
     /**
      * Parse until next Event.
      *
@@ -1918,6 +2115,7 @@ public class HttpParser
         _headerBytes = 0;
         _parsedHost = null;
         _headerComplete = false;
+        _valueStart = -1;
     }
 
     public void servletUpgrade()
@@ -0,0 +1,177 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ServiceLoader;
+
+import org.eclipse.jetty.util.SearchPattern;
+import org.eclipse.jetty.util.TypeUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Scans runs of bytes of HTTP/1 messages on behalf of {@link HttpParser},
+ * and searches multipart boundaries on behalf of {@link MultiPart.Parser}.</p>
+ * <p>The parser hands the bytes that follow the start of a request target, field name
+ * or field value to a scanner, which returns the index of the first byte that ends
+ * the run, so that the parser only runs its state machine at the run boundaries.</p>
+ * <p>Implementations are discovered with the {@link ServiceLoader}; the first one that
+ * can be instantiated is used, for example one that uses SIMD instructions, otherwise
+ * the {@link Scalar} implementation is used.</p>
+ * <p>Methods take absolute indexes and do not modify the buffer position or limit.</p>
+ */
+public interface HttpTokenScanner
+{
+    /**
+     * @param buffer the buffer to scan
+     * @param from the index to start scanning from
+     * @param to the index to stop scanning at, exclusive
+     * @return the index of the first byte that is not a {@code tchar}, or {@code to}
+     */
+    int scanToken(ByteBuffer buffer, int from, int to);
+
+    /**
+     * @param buffer the buffer to scan
+     * @param from the index to start scanning from
+     * @param to the index to stop scanning at, exclusive
+     * @return the index of the first byte that is not a {@code field-vchar}, {@code SP}
+     * or {@code HTAB}, such as {@code CR}, {@code LF} or other control characters, or {@code to}
+     */
+    int scanFieldValue(ByteBuffer buffer, int from, int to);
+
+    /**
+     * @param buffer the buffer to scan
+     * @param from the index to start scanning from
+     * @param to the index to stop scanning at, exclusive
+     * @return the index of the first byte that is not a visible US-ASCII character, or {@code to}
+     */
+    int scanRequestTarget(ByteBuffer buffer, int from, int to);
+
+    /**
+     * <p>Searches for a full match of the given pattern, for example a multipart boundary.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param from the index to start scanning from
+     * @param to the index to stop scanning at, exclusive
+     * @param pattern the pattern to search
+     * @return the index of the first byte of the first full match of the pattern, or -1
+     */
+    int scanPattern(ByteBuffer buffer, int from, int to, SearchPattern pattern);
+
+    /**
+     * @return the scanner discovered with the {@link ServiceLoader}, or a {@link Scalar} scanner
+     */
+    static HttpTokenScanner getDefault()
+    {
+        return Scalar.DEFAULT;
+    }
+
+    /**
+     * <p>A scanner that looks up every byte in the {@link HttpTokens} table,
+     * and searches patterns with {@link SearchPattern}.</p>
+     */
+    class Scalar implements HttpTokenScanner
+    {
+        private static final Logger LOG = LoggerFactory.getLogger(HttpTokenScanner.class);
+        private static final HttpTokenScanner DEFAULT = load();
+
+        private static HttpTokenScanner load()
+        {
+            HttpTokenScanner scanner = TypeUtil.serviceProviderStream(ServiceLoader.load(HttpTokenScanner.class))
+                .map(provider ->
+                {
+                    try
+                    {
+                        return provider.get();
+                    }
+                    catch (Throwable x)
+                    {
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("unable to load {}", HttpTokenScanner.class.getSimpleName(), x);
+                        return null;
+                    }
+                })
+                .filter(s -> s != null)
+                .findFirst()
+                .orElseGet(Scalar::new);
+            if (LOG.isDebugEnabled())
+                LOG.debug("using {}", scanner);
+            return scanner;
+        }
+
+        @Override
+        public int scanToken(ByteBuffer buffer, int from, int to)
+        {
+            for (int i = from; i < to; ++i)
+            {
+                switch (HttpTokens.getToken(buffer.get(i)).getType())
+                {
+                    case ALPHA, DIGIT, TCHAR ->
+                    {
+                    }
+                    default ->
+                    {
+                        return i;
+                    }
+                }
+            }
+            return to;
+        }
+
+        @Override
+        public int scanFieldValue(ByteBuffer buffer, int from, int to)
+        {
+            for (int i = from; i < to; ++i)
+            {
+                switch (HttpTokens.getToken(buffer.get(i)).getType())
+                {
+                    case CNTL, LF, CR ->
+                    {
+                        return i;
+                    }
+                    default ->
+                    {
+                    }
+                }
+            }
+            return to;
+        }
+
+        @Override
+        public int scanRequestTarget(ByteBuffer buffer, int from, int to)
+        {
+            for (int i = from; i < to; ++i)
+            {
+                // Signed comparison, stops at controls, space and obs-text.
+                if (buffer.get(i) <= HttpTokens.SPACE)
+                    return i;
+            }
+            return to;
+        }
+
+        @Override
+        public int scanPattern(ByteBuffer buffer, int from, int to, SearchPattern pattern)
+        {
+            int index = pattern.match(buffer.slice(from, to - from));
+            return index < 0 ? -1 : from + index;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+}
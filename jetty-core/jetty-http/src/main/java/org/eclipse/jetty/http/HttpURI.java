@@ -110,6 +110,18 @@ public interface HttpURI
     }
 
     static Mutable build(String method, String uri)
+    {
+        return build(method, uri, null);
+    }
+
+    /**
+     * @param method the request method
+     * @param uri the request target
+     * @param cache the cache of parsed paths, or null
+     * @return a new mutable URI
+     * @see Mutable#pathQuery(String, CanonicalPathCache)
+     */
+    static Mutable build(String method, String uri, CanonicalPathCache cache)
     {
         if (HttpMethod.CONNECT.is(method))
         {
@@ -117,7 +129,7 @@ public interface HttpURI
             return new Mutable(null, hostPort.getHost(), hostPort.getPort(), null);
         }
         if (uri.startsWith("/"))
-            return HttpURI.build().pathQuery(uri);
+            return HttpURI.build().pathQuery(uri, cache);
         return HttpURI.build(uri);
     }
 
@@ -283,6 +295,7 @@ public interface HttpURI
         private final String _fragment;
         private String _uri;
         private String _canonicalPath;
+        private String _decodedPath;
         private final EnumSet<Violation> _violations = EnumSet.noneOf(Violation.class);
 
         private Immutable(Mutable builder)
@@ -297,6 +310,7 @@ public interface HttpURI
             _fragment = builder._fragment;
             _uri = builder._uri;
             _canonicalPath = builder._canonicalPath;
+            _decodedPath = builder._decodedPath;
             _violations.addAll(builder._violations);
         }
 
@@ -379,7 +393,13 @@ public interface HttpURI
         @Override
         public String getDecodedPath()
         {
-            return URIUtil.decodePath(getCanonicalPath());
+            if (_decodedPath == null)
+            {
+                String canonicalPath = getCanonicalPath();
+                if (canonicalPath != null)
+                    _decodedPath = URIUtil.decodePath(canonicalPath);
+            }
+            return _decodedPath;
         }
 
         @Override
@@ -566,6 +586,7 @@ public interface HttpURI
         private String _fragment;
         private String _uri;
         private String _canonicalPath;
+        private String _decodedPath;
         private final EnumSet<Violation> _violations = EnumSet.noneOf(Violation.class);
         private boolean _emptySegment;
 
@@ -708,6 +729,7 @@ public interface HttpURI
             _fragment = null;
             _uri = null;
             _canonicalPath = null;
+            _decodedPath = null;
             _emptySegment = false;
             _violations.clear();
             return this;
@@ -718,6 +740,7 @@ public interface HttpURI
             _uri = null;
             _path = URIUtil.encodePath(path);
             _canonicalPath = URIUtil.canonicalPath(_path);
+            _decodedPath = null;
             return this;
         }
 
@@ -748,7 +771,13 @@ public interface HttpURI
         @Override
         public String getDecodedPath()
         {
-            return URIUtil.decodePath(getCanonicalPath());
+            if (_decodedPath == null)
+            {
+                String canonicalPath = getCanonicalPath();
+                if (canonicalPath != null)
+                    _decodedPath = URIUtil.decodePath(canonicalPath);
+            }
+            return _decodedPath;
         }
 
         @Override
@@ -908,6 +937,7 @@ public interface HttpURI
             _uri = null;
             _path = path;
             _canonicalPath = null;
+            _decodedPath = null;
 
             // If the passed path does not have a parameter, then keep the current parameter
             // else delete the current parameter
@@ -929,6 +959,7 @@ public interface HttpURI
             _uri = null;
             _path = null;
             _canonicalPath = null;
+            _decodedPath = null;
             _param = null;
             _query = null;
             if (pathQuery != null)
@@ -936,6 +967,66 @@ public interface HttpURI
             return this;
         }
 
+        /**
+         * <p>Parses the given path and query like {@link #pathQuery(String)}, but looks up
+         * the results of parsing the path in the given cache, and caches them if not found.</p>
+         *
+         * @param pathQuery the path and query to parse
+         * @param cache the cache of parsed paths, or null
+         * @return this mutable URI
+         */
+        public Mutable pathQuery(String pathQuery, CanonicalPathCache cache)
+        {
+            // Only cache the violations of the path being parsed.
+            if (cache == null || pathQuery == null || !_violations.isEmpty())
+                return pathQuery(pathQuery);
+            if (hasAuthority() && !isPathValidForAuthority(pathQuery))
+                throw new IllegalArgumentException("Relative path with authority");
+
+            int length = pathQuery.length();
+            int end = 0;
+            while (end < length)
+            {
+                char c = pathQuery.charAt(end);
+                if (c == '?' || c == '#')
+                    break;
+                ++end;
+            }
+            String rawPath = end == length ? pathQuery : pathQuery.substring(0, end);
+
+            CanonicalPathCache.Entry entry = cache.get(rawPath);
+            if (entry == null)
+            {
+                pathQuery(pathQuery);
+                if (rawPath.equals(_path))
+                    cache.put(_path, _param, _canonicalPath, _violations);
+                return this;
+            }
+
+            _uri = null;
+            _path = entry._path;
+            _param = entry._param;
+            _canonicalPath = entry._canonicalPath;
+            _decodedPath = entry._decodedPath;
+            _violations.addAll(entry._violations);
+            _query = null;
+            if (end < length)
+            {
+                if (pathQuery.charAt(end) == '?')
+                {
+                    int hash = pathQuery.indexOf('#', end + 1);
+                    _query = pathQuery.substring(end + 1, hash < 0 ? length : hash);
+                    if (hash >= 0)
+                        _fragment = pathQuery.substring(hash + 1);
+                }
+                else
+                {
+                    _fragment = pathQuery.substring(end + 1);
+                }
+            }
+            return this;
+        }
+
         public Mutable port(int port)
         {
             _port = port;
@@ -991,6 +1082,7 @@ public interface HttpURI
             _query = uri.getQuery();
             _uri = null;
             _canonicalPath = uri.getCanonicalPath();
+            _decodedPath = uri instanceof Mutable mutable ? mutable._decodedPath : uri instanceof Immutable immutable ? immutable._decodedPath : null;
             _violations.addAll(uri.getViolations());
             return this;
         }
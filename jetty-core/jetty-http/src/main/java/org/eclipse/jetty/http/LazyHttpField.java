@@ -0,0 +1,88 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * <p>An {@link HttpField} whose value is decoded from the parsed buffer only when it is accessed.</p>
+ * <p>Most request fields are never looked at by applications, so {@link HttpParser} may
+ * produce fields that reference the bytes of their value in the request buffer, rather
+ * than allocating a {@code String} for every value.
+ * The buffer must not be reused until the field is {@link #detach() detached},
+ * which decodes the value if it has not been already.</p>
+ *
+ * @see HttpParser#setLazyFieldValues(boolean)
+ */
+public class LazyHttpField extends HttpField
+{
+    private final int _offset;
+    private final int _length;
+    private volatile ByteBuffer _buffer;
+    private volatile String _value;
+
+    /**
+     * @param header the field header, or null
+     * @param name the field name
+     * @param buffer the buffer holding the field value
+     * @param offset the absolute index of the value in the buffer
+     * @param length the length of the value
+     */
+    public LazyHttpField(HttpHeader header, String name, ByteBuffer buffer, int offset, int length)
+    {
+        super(header, name, (String)null);
+        _buffer = buffer;
+        _offset = offset;
+        _length = length;
+    }
+
+    @Override
+    public String getValue()
+    {
+        String value = _value;
+        if (value == null)
+        {
+            ByteBuffer buffer = _buffer;
+            // Detached concurrently, the value has been decoded.
+            if (buffer == null)
+                return _value;
+            value = BufferUtil.toString(buffer, _offset, _length, StandardCharsets.ISO_8859_1);
+            _value = value;
+        }
+        return value;
+    }
+
+    /**
+     * @return whether the field no longer references the buffer
+     */
+    public boolean isDetached()
+    {
+        return _buffer == null;
+    }
+
+    /**
+     * <p>Decodes the value, if necessary, and releases the reference to the buffer.</p>
+     */
+    public void detach()
+    {
+        if (_buffer != null)
+        {
+            getValue();
+            _buffer = null;
+        }
+    }
+}
@@ -890,6 +890,7 @@ public class MultiPart
         private final String boundary;
         private final SearchPattern boundaryFinder;
         private final Listener listener;
+        private HttpTokenScanner scanner = HttpTokenScanner.getDefault();
         private int partHeadersLength;
         private int partHeadersMaxLength = -1;
         private State state;
@@ -916,6 +917,22 @@ public class MultiPart
             return boundary;
         }
 
+        /**
+         * @return the scanner used to search the boundaries
+         */
+        public HttpTokenScanner getBoundaryScanner()
+        {
+            return scanner;
+        }
+
+        /**
+         * @param scanner the scanner used to search the boundaries
+         */
+        public void setBoundaryScanner(HttpTokenScanner scanner)
+        {
+            this.scanner = Objects.requireNonNull(scanner);
+        }
+
         /**
          * @return the max length of a {@link Part} headers, in bytes, or -1 for unlimited length
          */
@@ -1151,7 +1168,7 @@ public class MultiPart
             }
 
             // Search for a full boundary.
-            int boundaryOffset = boundaryFinder.match(buffer);
+            int boundaryOffset = findBoundary(buffer);
             if (boundaryOffset >= 0)
             {
                 // Found a full boundary.
@@ -1165,6 +1182,13 @@ public class MultiPart
             return false;
         }
 
+        private int findBoundary(ByteBuffer buffer)
+        {
+            int position = buffer.position();
+            int index = scanner.scanPattern(buffer, position, buffer.limit(), boundaryFinder);
+            return index < 0 ? -1 : index - position;
+        }
+
         private State parseHeaderStart(ByteBuffer buffer)
         {
             while (buffer.hasRemaining())
@@ -1354,7 +1378,7 @@ public class MultiPart
             }
 
             // Search for a full boundary.
-            int boundaryOffset = boundaryFinder.match(buffer);
+            int boundaryOffset = findBoundary(buffer);
             if (boundaryOffset >= 0)
             {
                 int position = buffer.position();
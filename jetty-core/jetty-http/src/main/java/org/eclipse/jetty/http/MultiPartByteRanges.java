@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -135,6 +136,57 @@ public class MultiPartByteRanges
         }
     }
 
+    /**
+     * <p>A specialized {@link org.eclipse.jetty.io.content.ByteBufferContentSource}
+     * that produces the multipart/byteranges content of some byte ranges of a
+     * {@link ByteBuffer}, for example the buffer of a cached or memory mapped file.</p>
+     * <p>The content of the parts are slices of the buffer, so that its bytes are
+     * not copied, and the part headers and boundaries are encoded upfront in a
+     * single buffer, so that the length of the whole content is known.</p>
+     */
+    public static class ByteBufferContentSource extends org.eclipse.jetty.io.content.ByteBufferContentSource
+    {
+        public ByteBufferContentSource(String boundary, String contentType, ByteBuffer byteBuffer, List<ByteRange> byteRanges)
+        {
+            super(slice(boundary, contentType, byteBuffer, byteRanges));
+        }
+
+        private static List<ByteBuffer> slice(String boundary, String contentType, ByteBuffer byteBuffer, List<ByteRange> byteRanges)
+        {
+            long contentLength = byteBuffer.remaining();
+            // Same format as MultiPart.AbstractContentSource.
+            StringBuilder builder = new StringBuilder();
+            int[] offsets = new int[byteRanges.size() + 1];
+            for (int i = 0; i < byteRanges.size(); ++i)
+            {
+                offsets[i] = builder.length();
+                if (i > 0)
+                    builder.append("\r\n");
+                builder.append("--").append(boundary).append("\r\n");
+                if (contentType != null)
+                    builder.append(HttpHeader.CONTENT_TYPE.asString()).append(": ").append(contentType).append("\r\n");
+                builder.append(HttpHeader.CONTENT_RANGE.asString()).append(": ").append(byteRanges.get(i).toHeaderValue(contentLength)).append("\r\n");
+                builder.append("\r\n");
+            }
+            offsets[byteRanges.size()] = builder.length();
+            builder.append("\r\n--").append(boundary).append("--\r\n");
+
+            // The header values are US-ASCII, so the offsets in chars are also offsets in bytes.
+            ByteBuffer headers = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.US_ASCII));
+            List<ByteBuffer> byteBuffers = new ArrayList<>(2 * byteRanges.size() + 1);
+            int position = byteBuffer.position();
+            for (int i = 0; i < byteRanges.size(); ++i)
+            {
+                ByteRange byteRange = byteRanges.get(i);
+                byteBuffers.add(headers.slice(offsets[i], offsets[i + 1] - offsets[i]));
+                byteBuffers.add(byteBuffer.slice(position + (int)byteRange.first(), (int)byteRange.getLength()));
+            }
+            int last = offsets[byteRanges.size()];
+            byteBuffers.add(headers.slice(last, headers.limit() - last));
+            return byteBuffers;
+        }
+    }
+
     /**
      * <p>A specialized {@link org.eclipse.jetty.io.content.InputStreamContentSource}
      * whose content is sliced by a byte range.</p>
@@ -15,12 +15,13 @@ package org.eclipse.jetty.http;
 
 import java.io.Closeable;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.NonWritableChannelException;
-import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -386,6 +387,22 @@ public class MultiPartFormData
             parser.setMaxParts(maxParts);
         }
 
+        /**
+         * @return the scanner used to search the boundaries
+         */
+        public HttpTokenScanner getBoundaryScanner()
+        {
+            return parser.getBoundaryScanner();
+        }
+
+        /**
+         * @param scanner the scanner used to search the boundaries
+         */
+        public void setBoundaryScanner(HttpTokenScanner scanner)
+        {
+            parser.setBoundaryScanner(scanner);
+        }
+
         // Only used for testing.
         int getPartsSize()
         {
@@ -396,11 +413,11 @@ public class MultiPartFormData
         {
             private final AutoLock lock = new AutoLock();
             private final List<MultiPart.Part> parts = new ArrayList<>();
-            private final List<Content.Chunk> partChunks = new ArrayList<>();
+            private final ArrayDeque<Content.Chunk> partChunks = new ArrayDeque<>();
             private long fileSize;
             private long memoryFileSize;
             private Path filePath;
-            private SeekableByteChannel fileChannel;
+            private FileChannel fileChannel;
             private Throwable failure;
 
             @Override
@@ -429,17 +446,22 @@ public class MultiPartFormData
                                 // Must save to disk.
                                 if (ensureFileChannel())
                                 {
-                                    // Write existing memory chunks.
-                                    List<Content.Chunk> partChunks;
-                                    try (AutoLock ignored = lock.lock())
-                                    {
-                                        partChunks = List.copyOf(this.partChunks);
-                                    }
-                                    for (Content.Chunk c : partChunks)
+                                    // Write existing memory chunks, releasing
+                                    // each one as soon as it has been written.
+                                    Content.Chunk c;
+                                    while ((c = pollPartChunk()) != null)
                                     {
-                                        write(c.getByteBuffer());
+                                        try
+                                        {
+                                            write(c.getByteBuffer());
+                                        }
+                                        finally
+                                        {
+                                            c.release();
+                                        }
                                     }
                                 }
+                                // Write the chunk directly, without retaining or copying it.
                                 write(buffer);
                                 if (chunk.isLast())
                                     close();
@@ -466,12 +488,20 @@ public class MultiPartFormData
                 }
             }
 
+            private Content.Chunk pollPartChunk()
+            {
+                try (AutoLock ignored = lock.lock())
+                {
+                    return partChunks.pollFirst();
+                }
+            }
+
             private void write(ByteBuffer buffer) throws Exception
             {
                 int remaining = buffer.remaining();
                 while (remaining > 0)
                 {
-                    SeekableByteChannel channel = fileChannel();
+                    FileChannel channel = fileChannel();
                     if (channel == null)
                         throw new IllegalStateException();
                     int written = channel.write(buffer);
@@ -574,7 +604,7 @@ public class MultiPartFormData
                 delete();
             }
 
-            private SeekableByteChannel fileChannel()
+            private FileChannel fileChannel()
             {
                 try (AutoLock ignored = lock.lock())
                 {
@@ -631,7 +661,7 @@ public class MultiPartFormData
                     Files.createDirectories(directory);
                     String fileName = "MultiPart";
                     filePath = Files.createTempFile(directory, fileName, "");
-                    fileChannel = Files.newByteChannel(filePath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    fileChannel = FileChannel.open(filePath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
                 }
                 catch (Throwable x)
                 {
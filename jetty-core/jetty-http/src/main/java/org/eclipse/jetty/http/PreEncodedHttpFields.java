@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+
+/**
+ * <p>An immutable block of {@link PreEncodedHttpField}s that are sent together,
+ * for example the security, {@code Server}, {@code Cache-Control} and {@code Vary}
+ * headers that a service sends with every response.</p>
+ * <p>A block is added to a response with a single call to
+ * {@link HttpFields.Mutable#add(HttpFields)}, which copies the fields in bulk.
+ * When the fields of the block are still contiguous and in order when the response
+ * is generated, {@link HttpGenerator} writes the whole HTTP/1 encoding of the block
+ * with a single copy.
+ * The fields of the block are {@link PreEncodedHttpField}s, so they are encoded with
+ * their pre-encoded form when the block has been modified, and by the HTTP/2 and
+ * HTTP/3 encoders, where they are indexed in the dynamic table as usual.</p>
+ * <p>Fields that describe the framing of a message, such as {@code Content-Length},
+ * {@code Transfer-Encoding} or {@code Connection} cannot be part of a block.</p>
+ */
+public class PreEncodedHttpFields extends ImmutableHttpFields
+{
+    private static final EnumSet<HttpHeader> FRAMING_HEADERS = EnumSet.of(
+        HttpHeader.CONTENT_LENGTH,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.CONNECTION);
+
+    private final byte[] _http1;
+    private final boolean _contentType;
+
+    /**
+     * @param fields the fields of the block
+     * @throws IllegalArgumentException if a field describes the framing of a message
+     */
+    public PreEncodedHttpFields(HttpField... fields)
+    {
+        this(toBlockFields(fields));
+    }
+
+    /**
+     * @param fields the fields of the block
+     * @throws IllegalArgumentException if a field describes the framing of a message
+     */
+    public PreEncodedHttpFields(HttpFields fields)
+    {
+        this(fields.stream().toArray(HttpField[]::new));
+    }
+
+    private PreEncodedHttpFields(Field[] fields)
+    {
+        super(fields);
+        boolean contentType = false;
+        int length = 0;
+        for (Field field : fields)
+        {
+            field._block = this;
+            length += field.getEncodedLength(HttpVersion.HTTP_1_0);
+            contentType |= field.getHeader() == HttpHeader.CONTENT_TYPE;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Field field : fields)
+        {
+            field.putTo(buffer, HttpVersion.HTTP_1_0);
+        }
+        _http1 = buffer.array();
+        _contentType = contentType;
+    }
+
+    private static Field[] toBlockFields(HttpField[] fields)
+    {
+        Field[] result = new Field[fields.length];
+        for (int i = 0; i < fields.length; ++i)
+        {
+            HttpField field = fields[i];
+            if (field.getHeader() != null && FRAMING_HEADERS.contains(field.getHeader()))
+                throw new IllegalArgumentException("Framing field not allowed: " + field);
+            result[i] = new Field(field.getHeader(), field.getName(), field.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the block contains a {@code Content-Type} field
+     */
+    public boolean hasContentType()
+    {
+        return _contentType;
+    }
+
+    /**
+     * @return the length of the HTTP/1 encoding of the block
+     */
+    public int getEncodedLength()
+    {
+        return _http1.length;
+    }
+
+    /**
+     * <p>Writes the HTTP/1 encoding of the block.</p>
+     *
+     * @param bufferInFillMode the buffer to write to
+     */
+    public void putTo(ByteBuffer bufferInFillMode)
+    {
+        bufferInFillMode.put(_http1);
+    }
+
+    /**
+     * @param fields the fields to look into
+     * @param index the index of the field to start from
+     * @return whether all the fields of this block are at the given index of the given fields, in order
+     */
+    public boolean isAt(HttpFields fields, int index)
+    {
+        if (index < 0 || index + _size > fields.size())
+            return false;
+        for (int i = 0; i < _size; ++i)
+        {
+            if (fields.getField(index + i) != _fields[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * <p>A field of a {@link PreEncodedHttpFields} block.</p>
+     */
+    public static class Field extends PreEncodedHttpField
+    {
+        private PreEncodedHttpFields _block;
+
+        private Field(HttpHeader header, String name, String value)
+        {
+            super(header, name, value);
+        }
+
+        /**
+         * @return the block this field belongs to
+         */
+        public PreEncodedHttpFields getBlock()
+        {
+            return _block;
+        }
+    }
+}
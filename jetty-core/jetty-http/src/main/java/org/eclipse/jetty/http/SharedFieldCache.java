@@ -0,0 +1,296 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.Index;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A cache of {@link HttpField}s shared by the {@link HttpParser}s of many connections.</p>
+ * <p>The {@link HttpParser} field cache is per connection, so short-lived connections
+ * allocate the same fields over and over again, such as {@code Host}, {@code User-Agent}
+ * or {@code Accept-Language} fields with the same values.
+ * Parsers consult this cache after their own cache and the static {@link HttpParser#CACHE},
+ * and offer to this cache the cacheable fields they had to allocate.</p>
+ * <p>A field is admitted only after it has been offered a number of times, and when the
+ * cache is full it replaces the least popular cached field only if it has been offered
+ * more times than that field has been hit.
+ * Lookups are lock-free reads of an immutable {@link Index}, which is rebuilt when fields
+ * are admitted or evicted; as this only happens for fields that are popular, rebuilds are
+ * rare once the cache has learned the traffic.</p>
+ * <p>Fields that carry credentials, such as {@code Authorization} or {@code Cookie},
+ * are never shared.</p>
+ */
+@ManagedObject("A cache of HTTP fields shared by parsers")
+public class SharedFieldCache
+{
+    private final AutoLock _lock = new AutoLock();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final Map<String, AtomicInteger> _candidates = new ConcurrentHashMap<>();
+    private final int _capacity;
+    private final int _maxFieldSize;
+    private final int _admissionCount;
+    private volatile Index<Entry> _index = new Index.Builder<Entry>().caseSensitive(false).build();
+    private Map<String, Entry> _entries = Map.of();
+
+    public SharedFieldCache()
+    {
+        this(256);
+    }
+
+    /**
+     * @param capacity the max number of cached fields
+     */
+    public SharedFieldCache(int capacity)
+    {
+        this(capacity, 512, 4);
+    }
+
+    /**
+     * @param capacity the max number of cached fields
+     * @param maxFieldSize the max size of a cached field
+     * @param admissionCount the number of times a field must be offered before it is cached
+     */
+    public SharedFieldCache(int capacity, int maxFieldSize, int admissionCount)
+    {
+        _capacity = capacity;
+        _maxFieldSize = maxFieldSize;
+        _admissionCount = Math.max(1, admissionCount);
+    }
+
+    @ManagedAttribute("The max number of cached fields")
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    @ManagedAttribute("The max size of a cached field")
+    public int getMaxFieldSize()
+    {
+        return _maxFieldSize;
+    }
+
+    @ManagedAttribute("The number of times a field must be seen before it is cached")
+    public int getAdmissionCount()
+    {
+        return _admissionCount;
+    }
+
+    @ManagedAttribute("The number of cached fields")
+    public int getSize()
+    {
+        return _index.size();
+    }
+
+    @ManagedAttribute("The number of parsed fields found in the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of cacheable parsed fields not found in the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedOperation(value = "Clears the cache and its statistics", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            _entries = Map.of();
+            _index = new Index.Builder<Entry>().caseSensitive(false).build();
+            _candidates.clear();
+            _hits.reset();
+            _misses.reset();
+        }
+    }
+
+    /**
+     * <p>Looks up a whole field, name and value, at the given buffer position.</p>
+     * <p>A field is only returned if its value is followed by CR or LF,
+     * so that it is not a prefix of a longer value.</p>
+     *
+     * @param buffer the buffer holding the field
+     * @param offset the offset from the buffer position where the field starts
+     * @param length the max length of the field
+     * @return the cached field, or null
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        Entry entry = _index.getBest(buffer, offset, length);
+        if (entry == null)
+            return null;
+        int end = buffer.position() + offset + entry._key.length();
+        if (end >= buffer.limit())
+            return null;
+        byte next = buffer.get(end);
+        if (next != HttpTokens.CARRIAGE_RETURN && next != HttpTokens.LINE_FEED)
+            return null;
+        entry._hits.increment();
+        _hits.increment();
+        return entry._field;
+    }
+
+    /**
+     * @param header the field header
+     * @return whether fields with the given header may be cached
+     */
+    public boolean isCacheable(HttpHeader header)
+    {
+        if (header == null)
+            return false;
+        return switch (header)
+        {
+            case HOST, ACCEPT, ACCEPT_CHARSET, ACCEPT_ENCODING, ACCEPT_LANGUAGE, CACHE_CONTROL, USER_AGENT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * <p>Offers a field that was not found in the cache.</p>
+     *
+     * @param field a field with a {@link #isCacheable(HttpHeader) cacheable} header
+     */
+    public void offer(HttpField field)
+    {
+        _misses.increment();
+        String value = field.getValue();
+        if (_capacity <= 0 || !isCacheable(field.getHeader()) || value == null)
+            return;
+        String key = field.getHeader().asString() + ": " + value;
+        if (key.length() > _maxFieldSize || !isVisibleAscii(value))
+            return;
+
+        // Unique values, possibly sent on purpose, are never admitted, so the candidates must be bounded here.
+        if (_candidates.size() >= getMaxCandidates())
+            trimCandidates();
+
+        int count = _candidates.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (count < _admissionCount)
+            return;
+        admit(key, field, count);
+    }
+
+    private void admit(String key, HttpField field, int count)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_entries.containsKey(key))
+                return;
+
+            Map<String, Entry> entries = new HashMap<>(_entries);
+            if (entries.size() >= _capacity)
+            {
+                Entry victim = null;
+                long victimHits = Long.MAX_VALUE;
+                for (Entry entry : entries.values())
+                {
+                    long hits = entry._hits.sum();
+                    if (hits < victimHits)
+                    {
+                        victim = entry;
+                        victimHits = hits;
+                    }
+                }
+                if (victim == null || count <= victimHits)
+                    return;
+                entries.remove(victim._key);
+            }
+            entries.put(key, new Entry(key, field));
+
+            Index.Builder<Entry> builder = new Index.Builder<Entry>().caseSensitive(false);
+            entries.forEach(builder::with);
+            _index = builder.build();
+            _entries = entries;
+            _candidates.remove(key);
+        }
+    }
+
+    int getMaxCandidates()
+    {
+        return 4 * _capacity;
+    }
+
+    int getCandidates()
+    {
+        return _candidates.size();
+    }
+
+    private void trimCandidates()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            // Another thread may have already trimmed the candidates.
+            if (_candidates.size() < getMaxCandidates())
+                return;
+            _candidates.clear();
+
+            // Age the popularity, so that fields that are no longer used can be evicted.
+            for (Entry entry : _entries.values())
+            {
+                long hits = entry._hits.sumThenReset();
+                entry._hits.add(hits / 2);
+            }
+        }
+    }
+
+    private static boolean isVisibleAscii(String value)
+    {
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (c < 0x20 || c > 0x7E)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(), getSize(), _capacity, getHits(), getMisses());
+    }
+
+    private static class Entry
+    {
+        private final LongAdder _hits = new LongAdder();
+        private final String _key;
+        private final HttpField _field;
+
+        private Entry(String key, HttpField field)
+        {
+            _key = key;
+            _field = field;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _key;
+        }
+    }
+}
@@ -18,12 +18,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.time.Instant;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
@@ -50,6 +51,11 @@ import org.slf4j.LoggerFactory;
  * assumed to be valid. This class can be extended to implement the validation behaviours on
  * {@link CachingHttpContent} which allow entries to be evicted once they become invalid.
  * </p>
+ * <p>
+ * When the cache exceeds its limits, entries are evicted in the order chosen by an {@link EvictionPolicy},
+ * by default a lock-free CLOCK policy that approximates LRU with amortized constant cost per eviction.
+ * Subclasses may provide a different policy by overriding {@link #newEvictionPolicy()}.
+ * </p>
  * <br>
  * The default values for the cache are:
  * <ul>
@@ -69,7 +75,11 @@ public class CachingHttpContentFactory implements HttpContent.Factory
     private final HttpContent.Factory _authority;
     private final ConcurrentHashMap<String, CachingHttpContent> _cache = new ConcurrentHashMap<>();
     private final AtomicLong _cachedSize = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
     private final ByteBufferPool _bufferPool;
+    private final EvictionPolicy _evictionPolicy;
     private int _maxCachedFileSize = DEFAULT_MAX_CACHED_FILE_SIZE;
     private int _maxCachedFiles = DEFAULT_MAX_CACHED_FILES;
     private long _maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
@@ -79,6 +89,18 @@ public class CachingHttpContentFactory implements HttpContent.Factory
     {
         _authority = authority;
         _bufferPool = bufferPool != null ? bufferPool : new ByteBufferPool.NonPooling();
+        _evictionPolicy = newEvictionPolicy();
+    }
+
+    /**
+     * <p>Creates the {@link EvictionPolicy} that chooses the entries to evict when the cache exceeds its limits.</p>
+     * <p>This method is called from the constructor.</p>
+     *
+     * @return a new {@link EvictionPolicy}
+     */
+    protected EvictionPolicy newEvictionPolicy()
+    {
+        return new ClockEvictionPolicy();
     }
 
     protected ConcurrentMap<String, CachingHttpContent> getCache()
@@ -96,6 +118,30 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return _cache.size();
     }
 
+    /**
+     * @return the number of requests for content that were served from the cache
+     */
+    public long getCacheHits()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * @return the number of requests for content that were not served from the cache
+     */
+    public long getCacheMisses()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted because the cache exceeded its limits
+     */
+    public long getCacheEvictions()
+    {
+        return _evictions.sum();
+    }
+
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -147,46 +193,32 @@ public class CachingHttpContentFactory implements HttpContent.Factory
 
     private void shrinkCache()
     {
-        // While we need to shrink
-        int numCacheEntries = _cache.size();
-        while (numCacheEntries > 0 && (numCacheEntries > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        // While we need to shrink, evict the entries chosen by the policy.
+        while (_cache.size() > 0 && (_cache.size() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachingHttpContent> sorted = new TreeSet<>((c1, c2) ->
-            {
-                long delta = NanoTime.elapsed(c2.getLastAccessedNanos(), c1.getLastAccessedNanos());
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
-
-                delta = c1.getContentLengthValue() - c2.getContentLengthValue();
-                if (delta != 0)
-                    return delta < 0 ? -1 : 1;
-
-                return c1.getKey().compareTo(c2.getKey());
-            });
-            sorted.addAll(_cache.values());
-
+            CachingHttpContent victim = _evictionPolicy.evict();
+            if (victim == null)
+                break;
             // TODO: Can we remove the buffers from the content before evicting.
-            // Invalidate least recently used first
-            for (CachingHttpContent content : sorted)
-            {
-                if (_cache.size() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
-                    break;
-                removeFromCache(content);
-            }
-
-            numCacheEntries = _cache.size();
+            if (remove(victim))
+                _evictions.increment();
         }
     }
 
     protected void removeFromCache(CachingHttpContent content)
     {
-        CachingHttpContent removed = _cache.remove(content.getKey());
-        if (removed != null)
-        {
-            removed.release();
-            _cachedSize.addAndGet(-removed.getBytesOccupied());
-        }
+        remove(content);
+    }
+
+    private boolean remove(CachingHttpContent content)
+    {
+        // Only remove this content, not a more recent one cached with the same key.
+        if (!_cache.remove(content.getKey(), content))
+            return false;
+        _evictionPolicy.removed(content);
+        content.release();
+        _cachedSize.addAndGet(-content.getBytesOccupied());
+        return true;
     }
 
     public void flushCache()
@@ -230,12 +262,16 @@ public class CachingHttpContentFactory implements HttpContent.Factory
             {
                 // If retain fails the CachingHttpContent was already evicted.
                 if (cachingHttpContent.retain())
+                {
+                    _hits.increment();
                     return (cachingHttpContent instanceof NotFoundHttpContent) ? null : cachingHttpContent;
+                }
             }
             else
                 removeFromCache(cachingHttpContent);
         }
 
+        _misses.increment();
         HttpContent httpContent = _authority.getContent(path);
         if (!isCacheable(httpContent))
             return httpContent;
@@ -250,6 +286,9 @@ public class CachingHttpContentFactory implements HttpContent.Factory
             return cachingContent;
         });
 
+        if (added.get())
+            _evictionPolicy.added(cachingHttpContent);
+
         // If retain fails the CachingHttpContent was already evicted.
         if (!cachingHttpContent.retain())
             return httpContent;
@@ -279,6 +318,117 @@ public class CachingHttpContentFactory implements HttpContent.Factory
         return new NotFoundHttpContent(p);
     }
 
+    /**
+     * <p>A policy that chooses the cached entries to evict when the cache exceeds its limits.</p>
+     * <p>Implementations must be thread-safe, and should not scan the whole cache to choose an entry,
+     * as eviction happens on the request threads.</p>
+     */
+    protected interface EvictionPolicy
+    {
+        /**
+         * <p>Called after an entry has been added to the cache.</p>
+         *
+         * @param content the added entry
+         */
+        void added(CachingHttpContent content);
+
+        /**
+         * <p>Called after an entry has been removed from the cache, either because it was evicted or
+         * because it was invalid.</p>
+         *
+         * @param content the removed entry
+         */
+        void removed(CachingHttpContent content);
+
+        /**
+         * <p>Chooses the next entry to evict.</p>
+         * <p>Accesses to the entries are tracked via {@link CachingHttpContent#getLastAccessedNanos()}.
+         * The returned entry may have been concurrently removed from the cache, in which case the
+         * cache asks for another entry.</p>
+         *
+         * @return the entry to evict, or null if there are no entries to evict
+         */
+        CachingHttpContent evict();
+    }
+
+    /**
+     * <p>An {@link EvictionPolicy} implementing the CLOCK algorithm, also known as second chance.</p>
+     * <p>Entries are queued in insertion order; the entry at the head of the queue is evicted unless
+     * it has been accessed since it was queued, in which case it is queued again at the tail.
+     * Entries removed from the cache for other reasons are discarded from the queue lazily.</p>
+     */
+    protected class ClockEvictionPolicy implements EvictionPolicy
+    {
+        private final ConcurrentLinkedQueue<Hand> _queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _queued = new AtomicInteger();
+
+        @Override
+        public void added(CachingHttpContent content)
+        {
+            offer(content);
+        }
+
+        @Override
+        public void removed(CachingHttpContent content)
+        {
+            // Entries that are not evicted remain in the queue until polled; when they
+            // outnumber the cached entries, purge them in one pass, which amortizes to O(1).
+            int queued = _queued.get();
+            if (queued > 2 * _cache.size() + 64 && _queued.compareAndSet(queued, 0))
+            {
+                _queue.removeIf(hand -> !isCached(hand._content));
+                _queued.addAndGet(_queue.size());
+            }
+        }
+
+        @Override
+        public CachingHttpContent evict()
+        {
+            // Give each entry at most one second chance per call, even if
+            // concurrent accesses keep marking the entries as recently used.
+            int chances = _queued.get();
+            while (true)
+            {
+                Hand hand = _queue.poll();
+                if (hand == null)
+                    return null;
+                _queued.decrementAndGet();
+                CachingHttpContent content = hand._content;
+                if (!isCached(content))
+                    continue;
+                if (chances-- > 0 && content.getLastAccessedNanos() != hand._lastAccessed)
+                {
+                    offer(content);
+                    continue;
+                }
+                return content;
+            }
+        }
+
+        private void offer(CachingHttpContent content)
+        {
+            _queue.offer(new Hand(content));
+            _queued.incrementAndGet();
+        }
+
+        private boolean isCached(CachingHttpContent content)
+        {
+            return _cache.get(content.getKey()) == content;
+        }
+    }
+
+    private static class Hand
+    {
+        private final CachingHttpContent _content;
+        private final long _lastAccessed;
+
+        private Hand(CachingHttpContent content)
+        {
+            _content = content;
+            _lastAccessed = content.getLastAccessedNanos();
+        }
+    }
+
     protected interface CachingHttpContent extends HttpContent
     {
         long getLastAccessedNanos();
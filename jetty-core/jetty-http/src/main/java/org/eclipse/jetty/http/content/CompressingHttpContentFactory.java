@@ -0,0 +1,700 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.content;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.EtagUtils;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * {@link HttpContent.Factory} that compresses static content on the fly, once per {@link CompressedContentFormat},
+ * for the resources that do not have a pre-compressed variant on disk.
+ * </p>
+ * <p>
+ * When a compressible content is first fetched, its compression is submitted to the {@link Executor}, so that the
+ * request that triggered it is served uncompressed. Once compressed, the format is added to
+ * {@link HttpContent#getPreCompressedContentFormats()} of the content, which is a live set, and the compressed
+ * variant is available from this factory at the path of the content suffixed by the format extension, exactly
+ * like a pre-compressed resource. Placing a {@link CachingHttpContentFactory} in front of this factory caches the
+ * compressed bytes alongside the identity bytes, so that compressed static content is served from memory.
+ * </p>
+ * <p>
+ * The compressed variants are discarded when the resource is modified. When the {@link #getMaxCompressedSize() max
+ * compressed size} is reached, the variants that have not been requested from this factory for
+ * {@link #getMaxIdleTime()}, for example because a {@link CachingHttpContentFactory} in front of it serves them,
+ * are evicted to make room for the contents being requested. An evicted variant remains advertised, so that the
+ * cache can keep serving it, and its content is compressed again when it is next requested from this factory.
+ * Only {@link CompressedContentFormat#GZIP} is
+ * supported by default; subclasses may support other formats by overriding
+ * {@link #compress(CompressedContentFormat, HttpContent)}.
+ * </p>
+ * @see PreCompressedHttpContentFactory
+ */
+public class CompressingHttpContentFactory implements HttpContent.Factory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CompressingHttpContentFactory.class);
+    private static final int DEFAULT_MIN_COMPRESS_SIZE = 32;
+    private static final int DEFAULT_MAX_COMPRESS_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_MAX_COMPRESSED_SIZE = 64 * 1024 * 1024;
+    private static final long DEFAULT_MAX_IDLE_TIME = 60 * 1000;
+    private static final long MAX_SWEEP_PERIOD = 1000;
+    private static final Set<String> EXCLUDED_MIME_TYPES = Set.of(
+        "application/compress",
+        "application/zip",
+        "application/gzip",
+        "application/bzip2",
+        "application/brotli",
+        "application/x-xz",
+        "application/x-rar-compressed",
+        "text/event-stream"
+    );
+
+    private final HttpContent.Factory _factory;
+    private final List<CompressedContentFormat> _formats;
+    private final Executor _executor;
+    private final Map<String, Variants> _variants = new ConcurrentHashMap<>();
+    private final AtomicLong _compressedSize = new AtomicLong();
+    private final AtomicLong _lastSweep = new AtomicLong(NanoTime.now());
+    private int _minCompressSize = DEFAULT_MIN_COMPRESS_SIZE;
+    private int _maxCompressSize = DEFAULT_MAX_COMPRESS_SIZE;
+    private long _maxCompressedSize = DEFAULT_MAX_COMPRESSED_SIZE;
+    private long _maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+    private int _compressionLevel = Deflater.BEST_COMPRESSION;
+
+    /**
+     * @param factory the wrapped {@link HttpContent.Factory}
+     * @param formats the formats in which contents are compressed
+     * @param executor the executor that compresses the contents, or null to compress them in the calling thread
+     */
+    public CompressingHttpContentFactory(HttpContent.Factory factory, List<CompressedContentFormat> formats, Executor executor)
+    {
+        _factory = Objects.requireNonNull(factory);
+        _formats = List.copyOf(formats);
+        _executor = executor;
+    }
+
+    /**
+     * @return the min size of a content for it to be compressed
+     */
+    public int getMinCompressSize()
+    {
+        return _minCompressSize;
+    }
+
+    /**
+     * @param minCompressSize the min size of a content for it to be compressed
+     */
+    public void setMinCompressSize(int minCompressSize)
+    {
+        _minCompressSize = minCompressSize;
+    }
+
+    /**
+     * @return the max size of a content for it to be compressed
+     */
+    public int getMaxCompressSize()
+    {
+        return _maxCompressSize;
+    }
+
+    /**
+     * @param maxCompressSize the max size of a content for it to be compressed
+     */
+    public void setMaxCompressSize(int maxCompressSize)
+    {
+        _maxCompressSize = maxCompressSize;
+    }
+
+    /**
+     * @return the max total size of the compressed variants held by this factory
+     */
+    public long getMaxCompressedSize()
+    {
+        return _maxCompressedSize;
+    }
+
+    /**
+     * @param maxCompressedSize the max total size of the compressed variants held by this factory
+     */
+    public void setMaxCompressedSize(long maxCompressedSize)
+    {
+        _maxCompressedSize = maxCompressedSize;
+    }
+
+    /**
+     * @return the time in milliseconds after which the compressed variants of a content that is not
+     * requested may be evicted to make room for other contents, once the max compressed size is reached
+     */
+    public long getMaxIdleTime()
+    {
+        return _maxIdleTime;
+    }
+
+    /**
+     * @param maxIdleTime the time in milliseconds after which the compressed variants of a content that is not
+     * requested may be evicted to make room for other contents, once the max compressed size is reached
+     */
+    public void setMaxIdleTime(long maxIdleTime)
+    {
+        _maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * @return the total size of the compressed variants held by this factory
+     */
+    public long getCompressedSize()
+    {
+        return _compressedSize.get();
+    }
+
+    /**
+     * @return the {@link Deflater} level used to compress the contents
+     */
+    public int getCompressionLevel()
+    {
+        return _compressionLevel;
+    }
+
+    /**
+     * <p>Sets the {@link Deflater} level used to compress the contents.</p>
+     * <p>Contents are compressed only once, so the default is {@link Deflater#BEST_COMPRESSION}.</p>
+     *
+     * @param compressionLevel the {@link Deflater} level used to compress the contents
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        _compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public HttpContent getContent(String path) throws IOException
+    {
+        HttpContent content = _factory.getContent(path);
+        if (content == null)
+            return getCompressedContent(path);
+
+        if (!isCompressible(path, content))
+            return content;
+
+        Variants variants = _variants.get(path);
+        if (variants != null && !variants.isValid(content))
+        {
+            // The content was modified, discard its compressed variants.
+            if (_variants.remove(path, variants))
+                variants.discard();
+            variants = null;
+        }
+        if (variants == null)
+        {
+            // Do not compress more content than the max compressed size.
+            if (_compressedSize.get() >= _maxCompressedSize && !evictIdleVariants())
+                return content;
+            Variants newVariants = new Variants(path, content);
+            variants = _variants.putIfAbsent(path, newVariants);
+            if (variants == null)
+            {
+                variants = newVariants;
+                variants.submit(content);
+            }
+        }
+        variants.access();
+        return new CompressibleHttpContent(content, variants._formats);
+    }
+
+    /**
+     * <p>Evicts the variants that have been idle for longer than the max idle time,
+     * until the compressed size is below the max.</p>
+     * <p>Idle variants are searched at most once per sweep period, so that requests
+     * for contents that cannot be compressed do not scan the variants every time.</p>
+     *
+     * @return whether the compressed size is below the max compressed size
+     */
+    private boolean evictIdleVariants()
+    {
+        long now = NanoTime.now();
+        long lastSweep = _lastSweep.get();
+        if (NanoTime.millisElapsed(lastSweep, now) < Math.min(_maxIdleTime, MAX_SWEEP_PERIOD) || !_lastSweep.compareAndSet(lastSweep, now))
+            return false;
+
+        for (Variants variants : _variants.values())
+        {
+            if (_compressedSize.get() < _maxCompressedSize)
+                break;
+            if (NanoTime.millisElapsed(variants._accessed, now) < _maxIdleTime)
+                continue;
+            if (_variants.remove(variants._path, variants))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Evicting idle {}", variants._path);
+                variants.evict();
+            }
+        }
+        return _compressedSize.get() < _maxCompressedSize;
+    }
+
+    private HttpContent getCompressedContent(String path) throws IOException
+    {
+        for (CompressedContentFormat format : _formats)
+        {
+            if (!path.endsWith(format.getExtension()))
+                continue;
+
+            String identityPath = path.substring(0, path.length() - format.getExtension().length());
+            Variants variants = _variants.get(identityPath);
+            if (variants == null)
+            {
+                // The variants may have been evicted while still advertised,
+                // so compress the content again for the next requests.
+                HttpContent content = getContent(identityPath);
+                if (content != null)
+                    content.release();
+                return null;
+            }
+            ByteBuffer compressed = variants._compressed.get(format);
+            if (compressed == null)
+                return null;
+            variants.access();
+
+            HttpContent content = _factory.getContent(identityPath);
+            if (content == null || !variants.isValid(content))
+            {
+                if (_variants.remove(identityPath, variants))
+                    variants.discard();
+                if (content != null)
+                    content.release();
+                return null;
+            }
+            return new CompressedHttpContent(content, format, compressed);
+        }
+        return null;
+    }
+
+    /**
+     * <p>Tests whether the given content should be compressed.</p>
+     * <p>Contents are compressible if they are neither encoded nor pre-compressed, their size is between
+     * {@link #getMinCompressSize()} and {@link #getMaxCompressSize()}, and their mime type is not a
+     * type that is already compressed, such as images, audio, video and archives.</p>
+     *
+     * @param path the path of the content
+     * @param content the content to test
+     * @return whether the content should be compressed
+     */
+    protected boolean isCompressible(String path, HttpContent content)
+    {
+        if (content.getContentEncodingValue() != null)
+            return false;
+
+        Resource resource = content.getResource();
+        if (resource == null || resource.isDirectory())
+            return false;
+
+        long length = content.getContentLengthValue();
+        if (length < _minCompressSize || length > _maxCompressSize)
+            return false;
+
+        if (path.endsWith(".svgz"))
+            return false;
+        for (CompressedContentFormat format : _formats)
+        {
+            if (path.endsWith(format.getExtension()))
+                return false;
+        }
+
+        String mimeType = content.getContentTypeValue();
+        if (mimeType == null)
+            return false;
+        mimeType = StringUtil.asciiToLowerCase(mimeType);
+        int semicolon = mimeType.indexOf(';');
+        if (semicolon >= 0)
+            mimeType = mimeType.substring(0, semicolon).trim();
+        if (mimeType.startsWith("image/"))
+            return "image/svg+xml".equals(mimeType);
+        return !mimeType.startsWith("audio/") &&
+            !mimeType.startsWith("video/") &&
+            !EXCLUDED_MIME_TYPES.contains(mimeType);
+    }
+
+    /**
+     * <p>Compresses the given content.</p>
+     *
+     * @param format the compression format
+     * @param content the content to compress
+     * @return the compressed bytes, or null if the format is not supported
+     * @throws IOException if the content cannot be read
+     */
+    protected ByteBuffer compress(CompressedContentFormat format, HttpContent content) throws IOException
+    {
+        if (!CompressedContentFormat.GZIP.equals(format))
+            return null;
+
+        long length = content.getContentLengthValue();
+        ByteArrayOutputStream2 bytes = new ByteArrayOutputStream2((int)Math.max(256, length / 4));
+        try (InputStream input = content.getResource().newInputStream();
+             OutputStream output = new LevelGZIPOutputStream(bytes, _compressionLevel))
+        {
+            IO.copy(input, output);
+        }
+        return ByteBuffer.wrap(bytes.getBuf(), 0, bytes.getCount()).slice();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "%s@%x[%s,%s]".formatted(getClass().getSimpleName(), hashCode(), _factory, _formats);
+    }
+
+    /**
+     * <p>The compressed variants of a content, valid until the content is modified or they are evicted.</p>
+     */
+    private class Variants
+    {
+        private final String _path;
+        private final Instant _lastModified;
+        private final long _length;
+        private final Set<CompressedContentFormat> _formats = new CopyOnWriteArraySet<>();
+        private final Map<CompressedContentFormat, ByteBuffer> _compressed = new ConcurrentHashMap<>();
+        private volatile long _accessed = NanoTime.now();
+
+        private Variants(String path, HttpContent content)
+        {
+            _path = path;
+            _lastModified = content.getLastModifiedInstant();
+            _length = content.getContentLengthValue();
+            Set<CompressedContentFormat> preCompressedFormats = content.getPreCompressedContentFormats();
+            if (preCompressedFormats != null)
+                _formats.addAll(preCompressedFormats);
+        }
+
+        private void access()
+        {
+            _accessed = NanoTime.now();
+        }
+
+        private boolean isValid(HttpContent content)
+        {
+            return Objects.equals(_lastModified, content.getLastModifiedInstant()) && _length == content.getContentLengthValue();
+        }
+
+        private void submit(HttpContent content)
+        {
+            Runnable task = () -> compressAll(content);
+            if (_executor == null)
+                task.run();
+            else
+                _executor.execute(task);
+        }
+
+        private void compressAll(HttpContent content)
+        {
+            for (CompressedContentFormat format : CompressingHttpContentFactory.this._formats)
+            {
+                // Pre-compressed variants on disk take precedence.
+                if (_formats.contains(format))
+                    continue;
+                if (_variants.get(_path) != this)
+                    return;
+                if (_compressedSize.get() >= _maxCompressedSize)
+                    return;
+                try
+                {
+                    ByteBuffer compressed = compress(format, content);
+                    // Only keep variants that are smaller than the content.
+                    if (compressed == null || compressed.remaining() >= _length)
+                        continue;
+                    _compressed.put(format, compressed);
+                    _compressedSize.addAndGet(compressed.remaining());
+                    _formats.add(format);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Compressed {} {} {}->{}", _path, format, _length, compressed.remaining());
+                }
+                catch (Throwable x)
+                {
+                    LOG.warn("Failed to compress {} to {}", _path, format, x);
+                }
+            }
+            // The content may have been replaced while compressing.
+            if (_variants.get(_path) != this)
+                discard();
+        }
+
+        private void discard()
+        {
+            _formats.removeAll(_compressed.keySet());
+            evict();
+        }
+
+        private void evict()
+        {
+            // The formats are not removed, as a cache may still hold the compressed bytes.
+            _compressed.values().removeIf(compressed ->
+            {
+                _compressedSize.addAndGet(-compressed.remaining());
+                return true;
+            });
+        }
+    }
+
+    private static class CompressibleHttpContent extends HttpContent.Wrapper
+    {
+        private final Set<CompressedContentFormat> _formats;
+
+        private CompressibleHttpContent(HttpContent content, Set<CompressedContentFormat> formats)
+        {
+            super(content);
+            _formats = formats;
+        }
+
+        @Override
+        public Set<CompressedContentFormat> getPreCompressedContentFormats()
+        {
+            return _formats;
+        }
+    }
+
+    private static class CompressedHttpContent extends HttpContent.Wrapper
+    {
+        private final CompressedContentFormat _format;
+        private final ByteBuffer _buffer;
+        private final HttpField _contentLength;
+        private final HttpField _etag;
+        private final Resource _resource;
+
+        private CompressedHttpContent(HttpContent content, CompressedContentFormat format, ByteBuffer buffer)
+        {
+            super(content);
+            _format = format;
+            _buffer = buffer;
+            _resource = content.getResource() == null ? null : new CompressedResource(content.getResource(), buffer);
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, buffer.remaining());
+            String etag = content.getETagValue();
+            _etag = etag == null ? null : new PreEncodedHttpField(HttpHeader.ETAG, EtagUtils.rewriteWithSuffix(etag, format.getEtagSuffix()));
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return _format.getContentEncoding();
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return _format.getEncoding();
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            return _etag;
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            return _etag == null ? null : _etag.getValue();
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            // The compressed bytes only exist in memory, so never expose the path
+            // of the uncompressed file, which could otherwise be sent with sendfile.
+            return _resource;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer()
+        {
+            return _buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public long getBytesOccupied()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public Set<CompressedContentFormat> getPreCompressedContentFormats()
+        {
+            return Set.of();
+        }
+    }
+
+    /**
+     * <p>A {@link Resource} for the in memory compressed variant of another resource.</p>
+     * <p>It has no {@link Path} and its content is the compressed bytes, while
+     * everything else is delegated to the original resource.</p>
+     */
+    private static class CompressedResource extends Resource
+    {
+        private final Resource _resource;
+        private final ByteBuffer _buffer;
+
+        private CompressedResource(Resource resource, ByteBuffer buffer)
+        {
+            _resource = resource;
+            _buffer = buffer;
+        }
+
+        @Override
+        public Path getPath()
+        {
+            return null;
+        }
+
+        @Override
+        public boolean isContainedIn(Resource r)
+        {
+            return _resource.isContainedIn(r);
+        }
+
+        @Override
+        public boolean isDirectory()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isReadable()
+        {
+            return _resource.isReadable();
+        }
+
+        @Override
+        public boolean exists()
+        {
+            return _resource.exists();
+        }
+
+        @Override
+        public Instant lastModified()
+        {
+            return _resource.lastModified();
+        }
+
+        @Override
+        public long length()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public URI getURI()
+        {
+            return _resource.getURI();
+        }
+
+        @Override
+        public String getName()
+        {
+            return _resource.getName();
+        }
+
+        @Override
+        public String getFileName()
+        {
+            return _resource.getFileName();
+        }
+
+        @Override
+        public boolean isAlias()
+        {
+            return _resource.isAlias();
+        }
+
+        @Override
+        public URI getRealURI()
+        {
+            return _resource.getRealURI();
+        }
+
+        @Override
+        public Resource resolve(String subUriPath)
+        {
+            return null;
+        }
+
+        @Override
+        public InputStream newInputStream()
+        {
+            return new ByteArrayInputStream(BufferUtil.toArray(_buffer));
+        }
+
+        @Override
+        public ReadableByteChannel newReadableByteChannel()
+        {
+            return Channels.newChannel(newInputStream());
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), _resource);
+        }
+    }
+
+    private static class LevelGZIPOutputStream extends GZIPOutputStream
+    {
+        private LevelGZIPOutputStream(OutputStream output, int level) throws IOException
+        {
+            super(output, 8192);
+            def.setLevel(level);
+        }
+    }
+}
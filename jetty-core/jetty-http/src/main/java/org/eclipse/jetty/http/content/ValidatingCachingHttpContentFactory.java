@@ -13,16 +13,35 @@
 
 package org.eclipse.jetty.http.content;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>
@@ -41,13 +60,30 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * This also remember a missed entry for the time set by {@code validationTime}ms. After this has
  * elapsed the entry will be invalid and will be evicted from the cache at the next access.
  * </p>
+ * <p>
+ * If a base {@link Resource} is passed to the constructor, the directories containing the cached entries are
+ * watched with a {@link WatchService}, and the entries are evicted as soon as the watched files are created,
+ * modified or deleted, so that they are trusted without checking the filesystem upon access.
+ * Only the directories of the cached entries are watched, and they are no longer watched once no entry
+ * remains in them. The sweeper then acts as a periodic full reconciliation of the cache with the filesystem,
+ * in case an event was missed, for example for files reached through symbolic links.
+ * Entries whose directory cannot be watched are validated using the {@code validationTime}.
+ * </p>
  */
-public class ValidatingCachingHttpContentFactory extends CachingHttpContentFactory implements Runnable
+public class ValidatingCachingHttpContentFactory extends CachingHttpContentFactory implements Runnable, Closeable
 {
+    private static final Logger LOG = LoggerFactory.getLogger(ValidatingCachingHttpContentFactory.class);
+
     private final Scheduler _scheduler;
     private final long _sweepDelay;
     private final long _validationTime;
     private final long _maxCacheIdleTime;
+    private final List<Path> _roots = new ArrayList<>();
+    private final ConcurrentMap<Path, WatchKey> _watchKeys = new ConcurrentHashMap<>();
+    private final WatchService _watchService;
+    private final Runnable _poller = this::poll;
+    private volatile long _watchPollPeriod = 100;
+    private volatile boolean _closed;
 
     /**
      * Construct a {@link ValidatingCachingHttpContentFactory} which validates entries upon use to check if they
@@ -81,14 +117,102 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
                                                @Name("scheduler") Scheduler scheduler,
                                                @Name("sweepPeriod") long sweepPeriod,
                                                @Name("idleTimeout") long idleTimeout)
+    {
+        this(authority, validationPeriod, bufferPool, scheduler, sweepPeriod, idleTimeout, null);
+    }
+
+    /**
+     * Construct a {@link ValidatingCachingHttpContentFactory} which evicts entries when the files of the given
+     * base resource change, as notified by a {@link WatchService}, and an optional periodic sweeper of the cache
+     * that reconciles the entries with the filesystem and finds old entries to evict.
+     *
+     * @param authority the wrapped {@link HttpContent.Factory} to use.
+     * @param validationPeriod time between filesystem checks in ms to see if an {@link HttpContent} which cannot be watched is still valid (-1 never validate, 0 always validate).
+     * @param bufferPool the {@link org.eclipse.jetty.io.ByteBufferPool} to use.
+     * @param scheduler scheduler to use for the sweeper and to poll the filesystem events, can be null to not use sweeper and to poll the events upon access.
+     * @param sweepPeriod time between runs of the sweeper in ms (if 0 never sweep for invalid entries).
+     * @param idleTimeout amount of time in ms an entry can be unused before evicted by the sweeper (if 0 never evict unused entries).
+     * @param baseResource the base resource whose directories are watched, can be null to not watch the filesystem.
+     */
+    public ValidatingCachingHttpContentFactory(@Name("authority") HttpContent.Factory authority,
+                                               @Name("validationPeriod") long validationPeriod,
+                                               @Name("byteBufferPool") ByteBufferPool bufferPool,
+                                               @Name("scheduler") Scheduler scheduler,
+                                               @Name("sweepPeriod") long sweepPeriod,
+                                               @Name("idleTimeout") long idleTimeout,
+                                               @Name("baseResource") Resource baseResource)
     {
         super(authority, bufferPool);
         _validationTime = validationPeriod;
         _scheduler = scheduler;
         _sweepDelay = sweepPeriod;
         _maxCacheIdleTime = idleTimeout;
+        _watchService = newWatchService(baseResource);
         if (scheduler != null && sweepPeriod > 0)
             schedule();
+        if (scheduler != null && _watchService != null)
+            schedulePoll();
+    }
+
+    private WatchService newWatchService(Resource baseResource)
+    {
+        if (baseResource == null)
+            return null;
+        for (Resource resource : baseResource)
+        {
+            Path path = resource.getPath();
+            if (path != null && resource.isDirectory())
+                _roots.add(path);
+        }
+        if (_roots.isEmpty())
+            return null;
+        try
+        {
+            // Only the roots of the same FileSystem can share a WatchService.
+            FileSystem fileSystem = _roots.get(0).getFileSystem();
+            _roots.removeIf(root -> root.getFileSystem() != fileSystem);
+            return fileSystem.newWatchService();
+        }
+        catch (IOException | UnsupportedOperationException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Cannot watch {}", baseResource, x);
+            _roots.clear();
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the cached entries are evicted when their files change, as notified by a {@link WatchService}
+     */
+    public boolean isWatching()
+    {
+        return _watchService != null;
+    }
+
+    /**
+     * @return the time in ms between polls of the filesystem events
+     */
+    public long getWatchPollPeriod()
+    {
+        return _watchPollPeriod;
+    }
+
+    /**
+     * @param watchPollPeriod the time in ms between polls of the filesystem events, when a scheduler is used
+     */
+    public void setWatchPollPeriod(long watchPollPeriod)
+    {
+        _watchPollPeriod = watchPollPeriod;
+    }
+
+    @Override
+    public HttpContent getContent(String path) throws IOException
+    {
+        // Without a scheduler, the filesystem events are processed upon access.
+        if (_scheduler == null && _watchService != null)
+            processEvents();
+        return super.getContent(path);
     }
 
     @Override
@@ -101,7 +225,14 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
 
     private void schedule()
     {
-        _scheduler.schedule(this, _sweepDelay, TimeUnit.MILLISECONDS);
+        if (!_closed)
+            _scheduler.schedule(this, _sweepDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void schedulePoll()
+    {
+        if (!_closed)
+            _scheduler.schedule(_poller, _watchPollPeriod, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -109,14 +240,45 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
     {
         try
         {
+            Set<Path> watched = new HashSet<>();
             ConcurrentMap<String, CachingHttpContent> cache = getCache();
             for (Map.Entry<String, CachingHttpContent> entry : cache.entrySet())
             {
                 CachingHttpContent value = entry.getValue();
                 if (_maxCacheIdleTime > 0 && NanoTime.since(value.getLastAccessedNanos()) > TimeUnit.MILLISECONDS.toNanos(_maxCacheIdleTime))
+                {
                     removeFromCache(value);
-                else if (!value.isValid())
+                    continue;
+                }
+
+                List<Path> paths = getWatchedPaths(value);
+                if (paths == null)
+                {
+                    if (!value.isValid())
+                        removeFromCache(value);
+                }
+                else if (!reconcile(value))
+                {
                     removeFromCache(value);
+                }
+                else
+                {
+                    for (Path path : paths)
+                    {
+                        Path dir = path.getParent();
+                        while (dir != null && watched.add(dir))
+                        {
+                            dir = dir.getParent();
+                        }
+                    }
+                }
+            }
+
+            // Stop watching the directories that no longer contain cached entries.
+            for (Map.Entry<Path, WatchKey> entry : _watchKeys.entrySet())
+            {
+                if (!watched.contains(entry.getKey()) && _watchKeys.remove(entry.getKey(), entry.getValue()))
+                    entry.getValue().cancel();
             }
         }
         finally
@@ -125,33 +287,261 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
         }
     }
 
+    private void poll()
+    {
+        try
+        {
+            processEvents();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Failed to process filesystem events", x);
+        }
+        finally
+        {
+            schedulePoll();
+        }
+    }
+
+    private void processEvents()
+    {
+        Set<Path> changed = new HashSet<>();
+        boolean overflow = false;
+        try
+        {
+            WatchKey key;
+            while ((key = _watchService.poll()) != null)
+            {
+                Path dir = (Path)key.watchable();
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        overflow = true;
+                    else
+                        changed.add(dir.resolve((Path)event.context()));
+                }
+                if (!key.reset())
+                {
+                    // The directory is no longer watchable, for example because it was deleted.
+                    _watchKeys.remove(dir, key);
+                    changed.add(dir);
+                }
+            }
+        }
+        catch (ClosedWatchServiceException x)
+        {
+            return;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Changed {}{}", changed, overflow ? " with overflow" : "");
+
+        if (overflow)
+        {
+            // Events were lost, so any entry may be stale.
+            flushCache();
+        }
+        else if (!changed.isEmpty())
+        {
+            for (CachingHttpContent content : getCache().values())
+            {
+                if (isChanged(getWatchedPaths(content), changed))
+                    removeFromCache(content);
+            }
+        }
+    }
+
+    private static boolean isChanged(List<Path> paths, Set<Path> changed)
+    {
+        if (paths == null)
+            return false;
+        for (Path path : paths)
+        {
+            // A change to a parent directory, for example its deletion or renaming, also changes the path.
+            for (Path p = path; p != null; p = p.getParent())
+            {
+                if (changed.contains(p))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWatched(List<WatchKey> keys)
+    {
+        // The sweeper may have cancelled a key that was just returned for a new entry,
+        // in which case the entry is evicted and its directories are watched again.
+        if (keys == null)
+            return false;
+        for (WatchKey key : keys)
+        {
+            if (!key.isValid())
+                return false;
+        }
+        return true;
+    }
+
+    private static List<Path> getWatchedPaths(CachingHttpContent content)
+    {
+        if (content instanceof ValidatingCachedContent cachedContent)
+            return cachedContent._watchedPaths;
+        if (content instanceof ValidatingNotFoundContent notFoundContent)
+            return notFoundContent._watchedPaths;
+        return null;
+    }
+
+    private static boolean reconcile(CachingHttpContent content)
+    {
+        if (content instanceof ValidatingCachedContent cachedContent)
+            return cachedContent.reconcile();
+        if (content instanceof ValidatingNotFoundContent notFoundContent)
+            return notFoundContent.reconcile();
+        return content.isValid();
+    }
+
+    /**
+     * <p>Watches the directories of the files that the given cache key maps to in each of the roots,
+     * or of their closest existing parent directory if the file does not exist.</p>
+     *
+     * @param key the cache key
+     * @param resource the resource of the cached content, or null for a not found entry
+     * @param keys the list to add the {@link WatchKey}s of the watched directories to
+     * @return the watched paths of the cache key, or null if they cannot all be watched
+     */
+    private List<Path> watch(String key, Resource resource, List<WatchKey> keys)
+    {
+        if (_watchService == null || _closed)
+            return null;
+        // A resource without a path, for example a compressed variant, is not a file that can be watched.
+        if (resource != null && resource.getPath() == null)
+            return null;
+
+        List<Path> paths = new ArrayList<>(_roots.size() + 1);
+        for (Path root : _roots)
+        {
+            Path path = root;
+            for (String segment : key.split("/"))
+            {
+                if (!segment.isEmpty())
+                    path = path.resolve(segment);
+            }
+            path = path.normalize();
+            if (!path.startsWith(root) || !watchParent(root, path, keys))
+                return null;
+            paths.add(path);
+        }
+
+        Path path = resource == null ? null : resource.getPath();
+        if (path != null && !paths.contains(path))
+        {
+            // The content was found outside the roots, for example through an alias.
+            Path root = path.getParent();
+            if (root == null || root.getFileSystem() != _roots.get(0).getFileSystem() || !watchParent(root, path, keys))
+                return null;
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    private boolean watchParent(Path root, Path path, List<WatchKey> keys)
+    {
+        Path dir = path.getParent();
+        while (dir != null && dir.startsWith(root) && !Files.isDirectory(dir))
+        {
+            dir = dir.getParent();
+        }
+        if (dir == null || !dir.startsWith(root))
+            return false;
+
+        WatchKey key = _watchKeys.computeIfAbsent(dir, d ->
+        {
+            try
+            {
+                return d.register(_watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            catch (IOException | ClosedWatchServiceException x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Cannot watch {}", d, x);
+                return null;
+            }
+        });
+        if (key == null)
+            return false;
+        keys.add(key);
+        return true;
+    }
+
+    /**
+     * <p>Stops watching the filesystem and stops the sweeper.</p>
+     */
+    @Override
+    public void close()
+    {
+        _closed = true;
+        IO.close(_watchService);
+        _watchKeys.clear();
+    }
+
     @Override
     protected CachingHttpContent newCachedContent(String p, HttpContent httpContent)
     {
-        return new ValidatingCachedContent(p, httpContent, _validationTime);
+        List<WatchKey> keys = new ArrayList<>();
+        List<Path> paths = watch(p, httpContent.getResource(), keys);
+        return new ValidatingCachedContent(p, httpContent, _validationTime, paths, paths == null ? null : keys);
     }
 
     @Override
     protected CachingHttpContent newNotFoundContent(String p)
     {
-        return new ValidatingNotFoundContent(p, _validationTime);
+        List<WatchKey> keys = new ArrayList<>();
+        List<Path> paths = watch(p, null, keys);
+        return new ValidatingNotFoundContent(p, _validationTime, paths, paths == null ? null : keys);
     }
 
     protected class ValidatingCachedContent extends CachedHttpContent
     {
         private final long _validationTime;
         private final AtomicLong _lastValidated = new AtomicLong();
+        private final List<Path> _watchedPaths;
+        private final List<WatchKey> _watchKeys;
+        private volatile boolean _verified;
 
         public ValidatingCachedContent(String key, HttpContent httpContent, long validationTime)
+        {
+            this(key, httpContent, validationTime, null, null);
+        }
+
+        /**
+         * @param key the cache key
+         * @param httpContent the content to cache
+         * @param validationTime the time between validations, when the content is not watched
+         * @param watchedPaths the paths whose changes evict this content, or null if it is not watched
+         * @param watchKeys the keys of the directories watched for the paths, or null if it is not watched
+         */
+        public ValidatingCachedContent(String key, HttpContent httpContent, long validationTime, List<Path> watchedPaths, List<WatchKey> watchKeys)
         {
             super(key, httpContent);
             _lastValidated.set(NanoTime.now());
             _validationTime = validationTime;
+            _watchedPaths = watchedPaths;
+            _watchKeys = watchKeys;
         }
 
         @Override
         public boolean isValid()
         {
+            if (_watchedPaths != null)
+            {
+                if (!isWatched(_watchKeys))
+                    return false;
+                // The file may have changed after it was read, but before its directory was watched,
+                // so it is verified once, and then trusted until an event evicts it.
+                if (!_verified)
+                    _verified = reconcile();
+                return _verified;
+            }
+
             if (_validationTime < 0)
             {
                 return true;
@@ -164,6 +554,16 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
                     return true;
             }
 
+            return reconcile();
+        }
+
+        /**
+         * @return whether the cached content is still the same as the content on the filesystem
+         */
+        public boolean reconcile()
+        {
+            if (_watchedPaths != null && !isWatched(_watchKeys))
+                return false;
             return Objects.equals(getLastModifiedInstant(), getWrapped().getLastModifiedInstant());
         }
     }
@@ -172,22 +572,71 @@ public class ValidatingCachingHttpContentFactory extends CachingHttpContentFacto
     {
         private final long _validationTime;
         private final AtomicLong _lastValidated = new AtomicLong();
+        private final List<WatchKey> _watchKeys;
+        private volatile List<Path> _watchedPaths;
+        private volatile boolean _verified;
 
         public ValidatingNotFoundContent(String key, long validationTime)
+        {
+            this(key, validationTime, null, null);
+        }
+
+        /**
+         * @param key the cache key
+         * @param validationTime the time the entry is valid for, when it is not watched
+         * @param watchedPaths the paths whose creation evicts this entry, or null if it is not watched
+         * @param watchKeys the keys of the directories watched for the paths, or null if it is not watched
+         */
+        public ValidatingNotFoundContent(String key, long validationTime, List<Path> watchedPaths, List<WatchKey> watchKeys)
         {
             super(key);
             _validationTime = validationTime;
             _lastValidated.set(NanoTime.now());
+            _watchedPaths = watchedPaths;
+            _watchKeys = watchKeys;
         }
 
         @Override
         public boolean isValid()
         {
+            if (_watchedPaths != null)
+            {
+                if (!isWatched(_watchKeys))
+                    return false;
+                if (_verified)
+                    return true;
+                // If a file exists, it is not found for another reason than its absence,
+                // so the entry cannot be watched and is only valid for the validation time.
+                if (reconcile())
+                    _verified = true;
+                else
+                    _watchedPaths = null;
+                return isValid();
+            }
+
             if (_validationTime < 0)
                 return true;
             if (_validationTime > 0)
                 return NanoTime.since(_lastValidated.get()) < TimeUnit.MILLISECONDS.toNanos(_validationTime);
             return false;
         }
+
+        /**
+         * @return whether none of the watched paths exist
+         */
+        public boolean reconcile()
+        {
+            List<Path> paths = _watchedPaths;
+            if (paths == null)
+                return isValid();
+            if (!isWatched(_watchKeys))
+                return false;
+            for (Path path : paths)
+            {
+                if (Files.exists(path))
+                    return false;
+            }
+            return true;
+        }
     }
 }
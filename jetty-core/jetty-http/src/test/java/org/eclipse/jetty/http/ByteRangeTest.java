@@ -139,6 +139,18 @@ public class ByteRangeTest
         assertRange("Range [" + rangeString + "]", 5, 25, size, ranges.get(0));
     }
 
+    @Test
+    public void testMultipleRangesAdjacent()
+    {
+        int size = 200;
+        String rangeString = "bytes=11-20,5-10,30-40";
+        List<ByteRange> ranges = parseRanges(size, rangeString);
+
+        assertEquals(2, ranges.size(), "Satisfiable Ranges of [" + rangeString + "] count");
+        assertRange("Range [" + rangeString + "]", 5, 20, size, ranges.get(0));
+        assertRange("Range [" + rangeString + "]", 30, 40, size, ranges.get(1));
+    }
+
     @Test
     public void testMultipleRangesSplit()
     {
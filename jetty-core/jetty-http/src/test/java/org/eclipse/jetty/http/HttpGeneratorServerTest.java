@@ -24,8 +24,10 @@ import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpGeneratorServerTest
 {
@@ -106,6 +108,47 @@ public class HttpGeneratorServerTest
         assertThat(response, containsString("\r\n0123456789"));
     }
 
+    @Test
+    public void testPreEncodedBlock() throws Exception
+    {
+        PreEncodedHttpFields block = new PreEncodedHttpFields(
+            new HttpField(HttpHeader.SERVER, "test"),
+            new HttpField("X-Frame-Options", "DENY"),
+            new HttpField(HttpHeader.CACHE_CONTROL, "no-store"));
+        assertThrows(IllegalArgumentException.class, () -> new PreEncodedHttpFields(new HttpField(HttpHeader.CONTENT_LENGTH, "10")));
+        assertEquals("Server: test\r\nX-Frame-Options: DENY\r\nCache-Control: no-store\r\n".length(), block.getEncodedLength());
+
+        // Intact block.
+        HttpFields.Mutable fields = HttpFields.build();
+        fields.add("Content-Type", "test/data");
+        fields.add(block);
+        fields.add("Last-Modified", DateGenerator.__01Jan1970);
+        assertTrue(block.isAt(fields, 1));
+        String response = generate(fields);
+        assertThat(response, containsString("Content-Type: test/data\r\nServer: test\r\nX-Frame-Options: DENY\r\nCache-Control: no-store\r\nLast-Modified: "));
+
+        // Modified block, the remaining fields are still written.
+        fields = HttpFields.build();
+        fields.add(block);
+        fields.put(HttpHeader.CACHE_CONTROL, "max-age=10");
+        assertFalse(block.isAt(fields, 0));
+        response = generate(fields);
+        assertThat(response, containsString("Server: test\r\nX-Frame-Options: DENY\r\n"));
+        assertThat(response, containsString("Cache-Control: max-age=10\r\n"));
+        assertThat(response, not(containsString("no-store")));
+    }
+
+    private static String generate(HttpFields fields) throws Exception
+    {
+        ByteBuffer header = BufferUtil.allocate(8096);
+        ByteBuffer content = BufferUtil.toBuffer("0123456789");
+        HttpGenerator gen = new HttpGenerator();
+        MetaData.Response info = new MetaData.Response(200, null, HttpVersion.HTTP_1_1, fields, 10);
+        HttpGenerator.Result result = gen.generateResponse(info, false, header, null, content, true);
+        assertEquals(HttpGenerator.Result.FLUSH, result);
+        return BufferUtil.toString(header);
+    }
+
     @Test
     public void testHeaderOverflow() throws Exception
     {
@@ -48,6 +48,7 @@ import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -249,6 +250,188 @@ public class HttpParserTest
         assertEquals(-1, _headers);
     }
 
+    @Test
+    public void testDirectBufferParse()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET /ctx/path/to/r\u00e9source?q=\u0690 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "X-Long-Header-Name: some value with spaces\t \r\n" +
+            "\r\n", StandardCharsets.UTF_8);
+        ByteBuffer direct = BufferUtil.allocateDirect(buffer.remaining());
+        BufferUtil.append(direct, buffer);
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parseAll(parser, direct);
+        assertEquals("GET", _methodOrVersion);
+        assertEquals("/ctx/path/to/r\u00e9source?q=\u0690", _uriOrStatus);
+        assertEquals("HTTP/1.1", _versionOrReason);
+        assertEquals("Host", _hdr[0]);
+        assertEquals("localhost", _val[0]);
+        assertEquals("X-Long-Header-Name", _hdr[1]);
+        assertEquals("some value with spaces", _val[1]);
+        assertEquals(1, _headers);
+    }
+
+    @Test
+    public void testSharedFieldCache()
+    {
+        SharedFieldCache cache = new SharedFieldCache(16, 512, 2);
+        String request = "GET / HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/118.0\r\n" +
+            "Cookie: session=secret\r\n" +
+            "\r\n";
+
+        List<HttpField> first = null;
+        for (int i = 0; i < 4; ++i)
+        {
+            // A new parser for each request, as for short-lived connections.
+            HttpParser.RequestHandler handler = new Handler();
+            HttpParser parser = new HttpParser(handler);
+            parser.setHeaderCacheSize(0);
+            parser.setSharedFieldCache(cache);
+            parseAll(parser, BufferUtil.toBuffer(request));
+            assertEquals(3, _fields.size());
+            assertEquals("www.example.com", _fields.get(0).getValue());
+            assertThat(_fields.get(0), Matchers.instanceOf(HostPortHttpField.class));
+            if (i == 2)
+                first = new ArrayList<>(_fields);
+            if (i == 3)
+            {
+                assertSame(first.get(0), _fields.get(0));
+                assertSame(first.get(1), _fields.get(1));
+                // Credentials are never shared.
+                assertNotSame(first.get(2), _fields.get(2));
+            }
+        }
+
+        assertEquals(2, cache.getSize());
+        assertEquals(4, cache.getHits());
+    }
+
+    @Test
+    public void testLazyFieldValues()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "X-Forwarded-For: 10.0.0.1, 10.0.0.2 \t\r\n" +
+            "Content-Type: application/octet-stream; x=\u00e9\r\n" +
+            "X-Folded: one\r\n" +
+            " two\r\n" +
+            "Connection: close\r\n" +
+            "\r\n", StandardCharsets.ISO_8859_1);
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler, -1, HttpCompliance.RFC2616_LEGACY);
+        parser.setLazyFieldValues(true);
+        parseAll(parser, buffer);
+
+        assertEquals(5, _fields.size());
+        assertThat(_fields.get(0), Matchers.not(Matchers.instanceOf(LazyHttpField.class)));
+        assertThat(_fields.get(1), Matchers.instanceOf(LazyHttpField.class));
+        assertEquals("X-Forwarded-For", _fields.get(1).getName());
+        assertEquals("10.0.0.1, 10.0.0.2", _fields.get(1).getValue());
+        assertThat(_fields.get(2), Matchers.instanceOf(LazyHttpField.class));
+        assertEquals(HttpHeader.CONTENT_TYPE, _fields.get(2).getHeader());
+        assertEquals("application/octet-stream; x=\u00e9", _fields.get(2).getValue());
+        assertEquals("one two", _fields.get(3).getValue());
+        assertThat(_fields.get(4), Matchers.not(Matchers.instanceOf(LazyHttpField.class)));
+        assertTrue(parser.isState(State.END));
+        assertTrue(_fields.get(1).equals(new HttpField("x-forwarded-for", "10.0.0.1, 10.0.0.2")));
+
+        // Detached fields do not reference the buffer anymore.
+        LazyHttpField lazyField = (LazyHttpField)_fields.get(1);
+        lazyField.detach();
+        assertTrue(lazyField.isDetached());
+        BufferUtil.clear(buffer);
+        assertEquals("10.0.0.1, 10.0.0.2", lazyField.getValue());
+    }
+
+    @Test
+    public void testLazyFieldValuesSplitBuffers()
+    {
+        String request = "GET / HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "X-One: value one\r\n" +
+            "X-Two: value two\r\n" +
+            "\r\n";
+
+        for (int split = 1; split < request.length(); ++split)
+        {
+            HttpParser.RequestHandler handler = new Handler();
+            HttpParser parser = new HttpParser(handler);
+            parser.setLazyFieldValues(true);
+            ByteBuffer buffer1 = BufferUtil.toBuffer(request.substring(0, split));
+            ByteBuffer buffer2 = BufferUtil.toBuffer(request.substring(split));
+            parser.parseNext(buffer1);
+            // The first buffer may be reused once consumed.
+            assertFalse(buffer1.hasRemaining());
+            BufferUtil.clear(buffer1);
+            parser.parseNext(buffer2);
+
+            assertTrue(parser.isState(State.END), "split " + split);
+            assertEquals(3, _fields.size());
+            assertEquals("value one", _fields.get(1).getValue(), "split " + split);
+            assertEquals("value two", _fields.get(2).getValue(), "split " + split);
+        }
+    }
+
+    @Test
+    public void testSharedFieldCacheUniqueValuesBounded()
+    {
+        SharedFieldCache cache = new SharedFieldCache(16, 512, 2);
+        for (int i = 0; i < 100_000; ++i)
+        {
+            // Unique values are never admitted, but must not grow the candidates without bound.
+            cache.offer(new HttpField(HttpHeader.USER_AGENT, "agent-" + i + "-" + "x".repeat(400)));
+            assertThat(cache.getCandidates(), Matchers.lessThanOrEqualTo(cache.getMaxCandidates()));
+        }
+        assertEquals(0, cache.getSize());
+
+        // Popular values are still admitted.
+        HttpField field = new HttpField(HttpHeader.HOST, "www.example.com");
+        cache.offer(field);
+        cache.offer(field);
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testSharedFieldCacheEviction()
+    {
+        SharedFieldCache cache = new SharedFieldCache(2, 512, 1);
+        HttpField en = new HttpField(HttpHeader.ACCEPT_LANGUAGE, "en");
+        HttpField it = new HttpField(HttpHeader.ACCEPT_LANGUAGE, "it");
+        cache.offer(en);
+        cache.offer(it);
+        assertEquals(2, cache.getSize());
+        for (int i = 0; i < 3; ++i)
+        {
+            assertSame(en, cache.getBest(BufferUtil.toBuffer("Accept-Language: en\r\n"), 0, 21));
+        }
+        for (int i = 0; i < 2; ++i)
+        {
+            assertSame(it, cache.getBest(BufferUtil.toBuffer("Accept-Language: it\r\n"), 0, 21));
+        }
+
+        // A field not more popular than the least popular cached field is not admitted.
+        HttpField fr = new HttpField(HttpHeader.ACCEPT_LANGUAGE, "fr");
+        cache.offer(fr);
+        cache.offer(fr);
+        assertEquals(2, cache.getSize());
+        assertNull(cache.getBest(BufferUtil.toBuffer("Accept-Language: fr\r\n"), 0, 21));
+
+        // A more popular field evicts the least popular cached field.
+        cache.offer(fr);
+        assertSame(fr, cache.getBest(BufferUtil.toBuffer("Accept-Language: fr\r\n"), 0, 21));
+        assertNull(cache.getBest(BufferUtil.toBuffer("Accept-Language: it\r\n"), 0, 21));
+        assertSame(en, cache.getBest(BufferUtil.toBuffer("Accept-Language: en\r\n"), 0, 21));
+        // Not a whole field value.
+        assertNull(cache.getBest(BufferUtil.toBuffer("Accept-Language: en-US\r\n"), 0, 24));
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"\r\n", "\n"})
     public void testLongURLParse(String eoln)
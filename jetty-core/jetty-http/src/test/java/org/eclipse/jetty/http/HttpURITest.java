@@ -18,6 +18,7 @@ import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.stream.Stream;
 
 import org.eclipse.jetty.http.UriCompliance.Violation;
@@ -523,6 +524,64 @@ public class HttpURITest
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("decodePathTests")
+    public void testPathQueryCached(String input, String canonicalPath, String decodedPath, EnumSet<Violation> expected)
+    {
+        assumeTrue(input.startsWith("/"));
+        CanonicalPathCache cache = new CanonicalPathCache(16);
+        for (String pathQuery : new String[]{input, input + "?a=b", input + "?a=b#frag", input + "#frag"})
+        {
+            HttpURI uncached;
+            try
+            {
+                uncached = HttpURI.build().pathQuery(pathQuery);
+                uncached.getDecodedPath();
+            }
+            catch (Exception e)
+            {
+                // Bad paths are not cached, so they fail in the same way.
+                assertThrows(Exception.class, () -> HttpURI.build().pathQuery(pathQuery, cache).getDecodedPath());
+                assertThrows(Exception.class, () -> HttpURI.build().pathQuery(pathQuery, cache).getDecodedPath());
+                continue;
+            }
+
+            // The first time is a miss, the second a hit.
+            for (int i = 0; i < 2; ++i)
+            {
+                HttpURI cached = HttpURI.build("GET", pathQuery, cache).asImmutable();
+                assertThat(cached.getPath(), is(uncached.getPath()));
+                assertThat(cached.getParam(), is(uncached.getParam()));
+                assertThat(cached.getQuery(), is(uncached.getQuery()));
+                assertThat(cached.getFragment(), is(uncached.getFragment()));
+                assertThat(cached.getCanonicalPath(), is(uncached.getCanonicalPath()));
+                assertThat(cached.getDecodedPath(), is(uncached.getDecodedPath()));
+                assertThat(new HashSet<>(cached.getViolations()), is(new HashSet<>(uncached.getViolations())));
+            }
+        }
+    }
+
+    @Test
+    public void testCanonicalPathCacheEviction()
+    {
+        CanonicalPathCache cache = new CanonicalPathCache(2);
+        HttpURI.build("GET", "/a", cache);
+        HttpURI.build("GET", "/b", cache);
+        // Reference /a, so that /b is evicted.
+        HttpURI a = HttpURI.build("GET", "/a?x=y", cache);
+        assertThat(a.getQuery(), is("x=y"));
+        HttpURI.build("GET", "/c", cache);
+        assertThat(cache.getSize(), is(2));
+        assertThat(cache.getHits(), is(1L));
+
+        HttpURI.build("GET", "/a", cache);
+        assertThat(cache.getHits(), is(2L));
+        HttpURI.build("GET", "/b", cache);
+        assertThat(cache.getHits(), is(2L));
+        assertThat(cache.getMisses(), is(4L));
+        assertThat(cache.getSize(), is(2));
+    }
+
     public static Stream<Arguments> testPathQueryTests()
     {
         return Arrays.stream(new Object[][]
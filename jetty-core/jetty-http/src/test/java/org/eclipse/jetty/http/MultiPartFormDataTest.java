@@ -30,6 +30,7 @@ import org.eclipse.jetty.io.content.AsyncContent;
 import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -467,6 +468,52 @@ public class MultiPartFormDataTest
         }
     }
 
+    @Test
+    public void testInMemoryChunksReleasedWhenFileIsWritten() throws Exception
+    {
+        AsyncContent source = new TestContent();
+        MultiPartFormData.Parser formData = new MultiPartFormData.Parser("AaB03x");
+        formData.setFilesDirectory(_tmpDir);
+        String chunk = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        formData.setMaxMemoryFileSize(3 * chunk.length());
+        CompletableFuture<MultiPartFormData.Parts> futureParts = formData.parse(source);
+
+        Content.Sink.write(source, false, """
+            --AaB03x\r
+            Content-Disposition: form-data; name="file"; filename="file.txt"\r
+            \r
+            """, Callback.NOOP);
+        List<FutureCallback> callbacks = new ArrayList<>();
+        for (int i = 0; i < 3; ++i)
+        {
+            FutureCallback callback = new FutureCallback();
+            callbacks.add(callback);
+            Content.Sink.write(source, false, chunk, callback);
+        }
+        // The chunks are retained in memory.
+        for (FutureCallback callback : callbacks)
+        {
+            assertFalse(callback.isDone());
+        }
+
+        // Exceed the max memory file size.
+        Content.Sink.write(source, false, chunk, Callback.NOOP);
+        // The chunks have been written to the file and released.
+        for (FutureCallback callback : callbacks)
+        {
+            callback.get(5, TimeUnit.SECONDS);
+        }
+        Content.Sink.write(source, true, "\r\n--AaB03x--\r\n", Callback.NOOP);
+
+        try (MultiPartFormData.Parts parts = futureParts.get(5, TimeUnit.SECONDS))
+        {
+            assertEquals(1, parts.size());
+            MultiPart.Part part = parts.get(0);
+            assertThat(part, instanceOf(MultiPart.PathPart.class));
+            assertEquals(chunk.repeat(4), Files.readString(((MultiPart.PathPart)part).getPath()));
+        }
+    }
+
     @Test
     public void testPartWrite() throws Exception
     {
@@ -33,6 +33,7 @@ import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.parser.Parser;
 import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.AdaptiveBufferSizer;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
@@ -62,6 +63,7 @@ public class HTTP2Connection extends AbstractConnection implements Parser.Listen
     private final ExecutionStrategy strategy;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
+    private AdaptiveBufferSizer inputBufferSizer;
 
     protected HTTP2Connection(ByteBufferPool bufferPool, Executor executor, EndPoint endPoint, HTTP2Session session, int bufferSize)
     {
@@ -122,6 +124,19 @@ public class HTTP2Connection extends AbstractConnection implements Parser.Listen
         this.useInputDirectByteBuffers = useInputDirectByteBuffers;
     }
 
+    public AdaptiveBufferSizer getInputBufferSizer()
+    {
+        return inputBufferSizer;
+    }
+
+    /**
+     * @param inputBufferSizer the sizer of the network buffers, or null to use buffers of fixed size
+     */
+    public void setInputBufferSizer(AdaptiveBufferSizer inputBufferSizer)
+    {
+        this.inputBufferSizer = inputBufferSizer;
+    }
+
     public boolean isUseOutputDirectByteBuffers()
     {
         return useOutputDirectByteBuffers;
@@ -364,13 +379,18 @@ public class HTTP2Connection extends AbstractConnection implements Parser.Listen
 
                     // Here we know that this.networkBuffer is not retained by
                     // application code: either it has been released, or it's a new one.
-                    int filled = fill(getEndPoint(), networkBuffer.getBuffer());
+                    ByteBuffer buffer = networkBuffer.getBuffer();
+                    int space = BufferUtil.space(buffer);
+                    int filled = fill(getEndPoint(), buffer);
                     if (LOG.isDebugEnabled())
                         LOG.debug("Filled {} bytes in {}", filled, networkBuffer);
 
                     if (filled > 0)
                     {
                         bytesIn.addAndGet(filled);
+                        AdaptiveBufferSizer sizer = inputBufferSizer;
+                        if (sizer != null)
+                            sizer.onFilled(filled, space);
                         parse = true;
                     }
                     else if (filled == 0)
@@ -497,7 +517,8 @@ public class HTTP2Connection extends AbstractConnection implements Parser.Listen
 
         private NetworkBuffer()
         {
-            delegate = bufferPool.acquire(bufferSize, isUseInputDirectByteBuffers());
+            AdaptiveBufferSizer sizer = inputBufferSizer;
+            delegate = bufferPool.acquire(sizer == null ? bufferSize : sizer.getSize(), isUseInputDirectByteBuffers());
         }
 
         public ByteBuffer getBuffer()
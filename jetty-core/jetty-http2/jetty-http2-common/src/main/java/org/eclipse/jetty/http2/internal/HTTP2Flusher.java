@@ -30,6 +30,7 @@ import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.HTTP2Stream;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
+import org.eclipse.jetty.io.AbstractEndPoint;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.util.IteratingCallback;
@@ -182,6 +183,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed {}", session);
+            flushCoalescedWrites();
             return Action.IDLE;
         }
 
@@ -277,6 +279,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         if (byteBuffers.isEmpty())
         {
             finish();
+            flushCoalescedWrites();
             return Action.IDLE;
         }
 
@@ -293,6 +296,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         return Action.SCHEDULED;
     }
 
+    private void flushCoalescedWrites()
+    {
+        // Nothing more to write: do not leave the frames
+        // coalesced by the endpoint waiting for the delay.
+        if (session.getEndPoint() instanceof AbstractEndPoint endPoint)
+            endPoint.flushCoalescedWrites();
+    }
+
     public void onFlushed(long bytes) throws IOException
     {
         // A single EndPoint write may be flushed multiple times (for example with SSL).
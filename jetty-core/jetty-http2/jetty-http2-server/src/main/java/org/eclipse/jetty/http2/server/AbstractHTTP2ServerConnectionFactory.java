@@ -38,6 +38,7 @@ import org.eclipse.jetty.http2.hpack.HpackContext;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.server.internal.HTTP2ServerConnection;
 import org.eclipse.jetty.http2.server.internal.HTTP2ServerSession;
+import org.eclipse.jetty.io.AbstractEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.AbstractConnectionFactory;
@@ -329,8 +330,11 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
             endPoint, httpConfiguration, session, getInputBufferSize(), listener);
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
+        connection.setInputBufferSizer(httpConfiguration.newInputBufferSizer(getInputBufferSize()));
         connection.addEventListener(sessionContainer);
         parser.init(connection);
+        if (httpConfiguration.getWriteCoalescingSize() > 0 && endPoint instanceof AbstractEndPoint abstractEndPoint)
+            abstractEndPoint.setWriteCoalescing(connector.getByteBufferPool(), httpConfiguration.getWriteCoalescingSize(), httpConfiguration.getWriteCoalescingDelay());
 
         return configure(connection, connector, endPoint);
     }
@@ -15,6 +15,8 @@ package org.eclipse.jetty.http2.tests;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
@@ -25,7 +27,10 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.eclipse.jetty.http.HostPortHttpField;
 import org.eclipse.jetty.http.HttpFields;
@@ -44,10 +49,16 @@ import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.hpack.HpackException;
+import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
 import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.FuturePromise;
@@ -60,6 +71,7 @@ import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -984,6 +996,107 @@ public class HTTP2Test extends AbstractTest
         assertFalse(((HTTP2Session)serverSession).getEndPoint().isOpen());
     }
 
+    @Test
+    public void testSmallFramesCoalescedWithoutDelay() throws Exception
+    {
+        int chunks = 8;
+        AtomicInteger flushes = new AtomicInteger();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setWriteCoalescingSize(4096);
+        // The response would time out if its frames waited for the delay.
+        httpConfig.setWriteCoalescingDelay(TimeUnit.SECONDS.toMillis(60));
+        RawHTTP2ServerConnectionFactory connectionFactory = new RawHTTP2ServerConnectionFactory(httpConfig, new ServerSessionListener()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                // Respond from another thread once the server is idle
+                // waiting for input, so the response is not flushed
+                // because the server registers fill interest.
+                connector.getScheduler().schedule(() ->
+                {
+                    flushes.set(0);
+                    MetaData.Response response = new MetaData.Response(HttpStatus.OK_200, null, HttpVersion.HTTP_2, HttpFields.EMPTY);
+                    // Each frame is written only once the previous one has completed.
+                    stream.headers(new HeadersFrame(stream.getId(), response, null, false), new Callback()
+                    {
+                        private int chunk;
+
+                        @Override
+                        public void succeeded()
+                        {
+                            if (chunk < chunks)
+                            {
+                                ++chunk;
+                                stream.data(new DataFrame(stream.getId(), BufferUtil.toBuffer("chunk" + chunk), chunk == chunks), this);
+                            }
+                        }
+                    });
+                }, 100, TimeUnit.MILLISECONDS);
+                return null;
+            }
+        });
+        server = new Server();
+        connector = new ServerConnector(server, 1, 1, connectionFactory)
+        {
+            @Override
+            protected SocketChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key)
+            {
+                SocketChannelEndPoint endPoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler())
+                {
+                    @Override
+                    public boolean flush(ByteBuffer... buffers) throws IOException
+                    {
+                        if (BufferUtil.remaining(buffers) > 0)
+                            flushes.incrementAndGet();
+                        return super.flush(buffers);
+                    }
+                };
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        server.addConnector(connector);
+        server.start();
+        prepareClient();
+        httpClient.start();
+
+        Session session = newClientSession(new Session.Listener() {});
+        MetaData.Request metaData = newRequest("GET", HttpFields.EMPTY);
+        StringBuilder content = new StringBuilder();
+        CountDownLatch latch = new CountDownLatch(1);
+        session.newStream(new HeadersFrame(metaData, null, true), new Promise.Adapter<>(), new Stream.Listener()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                stream.demand();
+            }
+
+            @Override
+            public void onDataAvailable(Stream stream)
+            {
+                Stream.Data data = stream.readData();
+                if (data == null)
+                {
+                    stream.demand();
+                    return;
+                }
+                content.append(BufferUtil.toString(data.frame().getByteBuffer()));
+                data.release();
+                if (data.frame().isEndStream())
+                    latch.countDown();
+                else
+                    stream.demand();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(IntStream.rangeClosed(1, chunks).mapToObj(i -> "chunk" + i).collect(Collectors.joining()), content.toString());
+        // The frames are written together, rather than one write each.
+        assertThat(flushes.get(), lessThan(chunks));
+    }
+
     private static void sleep(long time)
     {
         try
@@ -0,0 +1,515 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.uring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.FunctionDescriptor;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static jdk.incubator.foreign.CLinker.C_INT;
+import static jdk.incubator.foreign.CLinker.C_LONG;
+
+/**
+ * <p>A minimal binding to a Linux io_uring instance, using the Java 17 incubating Foreign API.</p>
+ * <p>This class is not thread-safe: submissions and completions must be performed by a single
+ * thread, normally the {@link IOUringLoop} thread.
+ * Submission queue entries are {@link #prepare(byte, int, long, int, long) prepared} in the
+ * shared submission ring, and handed to the kernel in batch by {@link #submit(boolean)},
+ * with at most one {@code io_uring_enter} system call for the whole batch.
+ * Completion queue entries are {@link #reap(Completions) reaped} directly from the shared
+ * completion ring, without system calls.</p>
+ */
+final class IOUring implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IOUring.class);
+
+    static final byte OP_WRITEV = 2;
+    static final byte OP_READ = 22;
+    static final byte OP_RECV = 27;
+
+    private static final long SYS_IO_URING_SETUP = 425;
+    private static final long SYS_IO_URING_ENTER = 426;
+    private static final int IORING_ENTER_GETEVENTS = 1;
+    private static final int IORING_FEAT_SINGLE_MMAP = 1;
+    private static final int IORING_FEAT_NODROP = 1 << 1;
+    private static final int IORING_FEAT_FAST_POLL = 1 << 5;
+    private static final long IORING_OFF_SQ_RING = 0L;
+    private static final long IORING_OFF_CQ_RING = 0x8000000L;
+    private static final long IORING_OFF_SQES = 0x10000000L;
+    private static final int PROT_READ = 0x1;
+    private static final int PROT_WRITE = 0x2;
+    private static final int MAP_SHARED = 0x1;
+    private static final int MAP_POPULATE = 0x8000;
+    private static final int EFD_NONBLOCK = 0x800;
+    private static final int EFD_CLOEXEC = 0x80000;
+    private static final int SQE_SIZE = 64;
+    private static final int CQE_SIZE = 16;
+    private static final int PARAMS_SIZE = 120;
+    static final int IOVEC_SIZE = 16;
+
+    private static final Throwable UNAVAILABLE = probe();
+
+    private final int _fd;
+    private final long _sqRingAddress;
+    private final long _sqRingSize;
+    private final long _cqRingAddress;
+    private final long _cqRingSize;
+    private final long _sqesAddress;
+    private final long _sqesSize;
+    private final MemorySegment _sqRing;
+    private final MemorySegment _cqRing;
+    private final MemorySegment _sqes;
+    private final int _sqEntries;
+    private final int _cqEntries;
+    private final long _sqHead;
+    private final long _sqTail;
+    private final int _sqMask;
+    private final long _sqArray;
+    private final long _cqHead;
+    private final long _cqTail;
+    private final int _cqMask;
+    private final long _cqes;
+    private int _tail;
+    private int _toSubmit;
+
+    private IOUring(int entries) throws IOException
+    {
+        try (ResourceScope scope = ResourceScope.newConfinedScope())
+        {
+            MemorySegment params = MemorySegment.allocateNative(PARAMS_SIZE, 8, scope);
+            int fd = (int)syscall(SYS_IO_URING_SETUP, entries, params.address().toRawLongValue(), 0, 0, 0);
+            if (fd < 0)
+                throw new IOException("io_uring_setup failed");
+            _fd = fd;
+
+            _sqEntries = MemoryAccess.getIntAtOffset(params, 0);
+            _cqEntries = MemoryAccess.getIntAtOffset(params, 4);
+            int features = MemoryAccess.getIntAtOffset(params, 20);
+            // struct io_sqring_offsets starts at offset 40.
+            int sqHead = MemoryAccess.getIntAtOffset(params, 40);
+            int sqTail = MemoryAccess.getIntAtOffset(params, 44);
+            int sqMask = MemoryAccess.getIntAtOffset(params, 48);
+            int sqArray = MemoryAccess.getIntAtOffset(params, 64);
+            // struct io_cqring_offsets starts at offset 80.
+            int cqHead = MemoryAccess.getIntAtOffset(params, 80);
+            int cqTail = MemoryAccess.getIntAtOffset(params, 84);
+            int cqMask = MemoryAccess.getIntAtOffset(params, 88);
+            int cqes = MemoryAccess.getIntAtOffset(params, 100);
+
+            if ((features & IORING_FEAT_NODROP) == 0 || (features & IORING_FEAT_FAST_POLL) == 0)
+            {
+                close(fd);
+                throw new IOException("io_uring features not supported: 0x" + Integer.toHexString(features));
+            }
+
+            long sqRingSize = sqArray + (long)_sqEntries * Integer.BYTES;
+            long cqRingSize = cqes + (long)_cqEntries * CQE_SIZE;
+            if ((features & IORING_FEAT_SINGLE_MMAP) != 0)
+            {
+                sqRingSize = Math.max(sqRingSize, cqRingSize);
+                _sqRingAddress = mmap(sqRingSize, fd, IORING_OFF_SQ_RING);
+                _cqRingAddress = _sqRingAddress;
+                cqRingSize = 0;
+            }
+            else
+            {
+                _sqRingAddress = mmap(sqRingSize, fd, IORING_OFF_SQ_RING);
+                _cqRingAddress = mmap(cqRingSize, fd, IORING_OFF_CQ_RING);
+            }
+            _sqRingSize = sqRingSize;
+            _cqRingSize = cqRingSize;
+            _sqesSize = (long)_sqEntries * SQE_SIZE;
+            _sqesAddress = mmap(_sqesSize, fd, IORING_OFF_SQES);
+
+            _sqRing = segment(_sqRingAddress, Math.max(_sqRingSize, sqArray + (long)_sqEntries * Integer.BYTES));
+            _cqRing = segment(_cqRingAddress, cqes + (long)_cqEntries * CQE_SIZE);
+            _sqes = segment(_sqesAddress, _sqesSize);
+
+            _sqHead = sqHead;
+            _sqTail = sqTail;
+            _sqMask = MemoryAccess.getIntAtOffset(_sqRing, sqMask);
+            _sqArray = sqArray;
+            _cqHead = cqHead;
+            _cqTail = cqTail;
+            _cqMask = MemoryAccess.getIntAtOffset(_cqRing, cqMask);
+            _cqes = cqes;
+            _tail = MemoryAccess.getIntAtOffset(_sqRing, _sqTail);
+        }
+    }
+
+    /**
+     * @return whether io_uring is available in this JVM and operating system
+     */
+    static boolean isAvailable()
+    {
+        return UNAVAILABLE == null;
+    }
+
+    /**
+     * @return the reason why io_uring is not available, or null if it is available
+     */
+    static Throwable getUnavailableCause()
+    {
+        return UNAVAILABLE;
+    }
+
+    /**
+     * <p>Creates a new io_uring instance.</p>
+     *
+     * @param entries the number of submission queue entries
+     * @return a new io_uring instance
+     * @throws IOException if the io_uring instance cannot be created
+     */
+    static IOUring open(int entries) throws IOException
+    {
+        if (UNAVAILABLE != null)
+            throw new IOException("io_uring not available", UNAVAILABLE);
+        return new IOUring(entries);
+    }
+
+    int getSubmissionEntries()
+    {
+        return _sqEntries;
+    }
+
+    int getCompletionEntries()
+    {
+        return _cqEntries;
+    }
+
+    /**
+     * <p>Prepares a submission queue entry, that will be submitted
+     * to the kernel by the next call to {@link #submit(boolean)}.</p>
+     *
+     * @param opcode the operation code
+     * @param fd the file descriptor
+     * @param address the native address of the buffer or iovec array
+     * @param length the length of the buffer or the iovec array
+     * @param userData the opaque value returned with the completion
+     * @return false if the submission queue is full
+     */
+    boolean prepare(byte opcode, int fd, long address, int length, long userData)
+    {
+        int head = MemoryAccess.getIntAtOffset(_sqRing, _sqHead);
+        VarHandle.acquireFence();
+        if (_tail - head >= _sqEntries)
+            return false;
+
+        int index = _tail & _sqMask;
+        long sqe = (long)index * SQE_SIZE;
+        _sqes.asSlice(sqe, SQE_SIZE).fill((byte)0);
+        MemoryAccess.setByteAtOffset(_sqes, sqe, opcode);
+        MemoryAccess.setIntAtOffset(_sqes, sqe + 4, fd);
+        MemoryAccess.setLongAtOffset(_sqes, sqe + 16, address);
+        MemoryAccess.setIntAtOffset(_sqes, sqe + 24, length);
+        MemoryAccess.setLongAtOffset(_sqes, sqe + 32, userData);
+        MemoryAccess.setIntAtOffset(_sqRing, _sqArray + (long)index * Integer.BYTES, index);
+        ++_tail;
+        ++_toSubmit;
+        VarHandle.releaseFence();
+        MemoryAccess.setIntAtOffset(_sqRing, _sqTail, _tail);
+        return true;
+    }
+
+    /**
+     * @return whether there are completions that can be reaped without waiting
+     */
+    boolean hasCompletions()
+    {
+        int tail = MemoryAccess.getIntAtOffset(_cqRing, _cqTail);
+        VarHandle.acquireFence();
+        return MemoryAccess.getIntAtOffset(_cqRing, _cqHead) != tail;
+    }
+
+    /**
+     * <p>Submits the prepared entries to the kernel, optionally waiting for at least one completion.</p>
+     *
+     * @param wait whether to wait for at least one completion
+     * @return the number of entries submitted, or -1 if the system call failed or was interrupted
+     */
+    int submit(boolean wait)
+    {
+        if (_toSubmit == 0 && !wait)
+            return 0;
+        int submitted = (int)syscall(SYS_IO_URING_ENTER, _fd, _toSubmit, wait ? 1 : 0, wait ? IORING_ENTER_GETEVENTS : 0, 0);
+        if (submitted > 0)
+            _toSubmit -= submitted;
+        return submitted;
+    }
+
+    /**
+     * <p>Reaps the available completion queue entries.</p>
+     *
+     * @param completions the function invoked for each completion
+     * @return the number of completions reaped
+     */
+    int reap(Completions completions)
+    {
+        int head = MemoryAccess.getIntAtOffset(_cqRing, _cqHead);
+        int tail = MemoryAccess.getIntAtOffset(_cqRing, _cqTail);
+        VarHandle.acquireFence();
+        int reaped = 0;
+        while (head != tail)
+        {
+            long cqe = _cqes + (long)(head & _cqMask) * CQE_SIZE;
+            long userData = MemoryAccess.getLongAtOffset(_cqRing, cqe);
+            int result = MemoryAccess.getIntAtOffset(_cqRing, cqe + 8);
+            ++head;
+            ++reaped;
+            // Release the entry before the callback, that may prepare new submissions.
+            VarHandle.releaseFence();
+            MemoryAccess.setIntAtOffset(_cqRing, _cqHead, head);
+            completions.complete(userData, result);
+        }
+        return reaped;
+    }
+
+    @Override
+    public void close()
+    {
+        munmap(_sqesAddress, _sqesSize);
+        if (_cqRingSize > 0)
+            munmap(_cqRingAddress, _cqRingSize);
+        munmap(_sqRingAddress, _sqRingSize);
+        close(_fd);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[fd=%d,sq=%d,cq=%d]", getClass().getSimpleName(), hashCode(), _fd, _sqEntries, _cqEntries);
+    }
+
+    /**
+     * @param buffer a direct buffer
+     * @return the native address of the given buffer position
+     */
+    static long address(ByteBuffer buffer)
+    {
+        return MemorySegment.ofByteBuffer(buffer).address().toRawLongValue();
+    }
+
+    /**
+     * @param channel a {@code SocketChannel} from the default {@link java.nio.channels.spi.SelectorProvider}
+     * @return the file descriptor of the channel
+     * @throws IOException if the file descriptor cannot be obtained
+     */
+    static int fd(SelectableChannel channel) throws IOException
+    {
+        try
+        {
+            return (int)Native.GET_FD_VAL.invoke(channel);
+        }
+        catch (Throwable x)
+        {
+            throw new IOException("Could not obtain file descriptor of " + channel, x);
+        }
+    }
+
+    /**
+     * @return a new non-blocking eventfd file descriptor
+     * @throws IOException if the eventfd cannot be created
+     */
+    static int eventfd() throws IOException
+    {
+        try
+        {
+            int fd = (int)Native.EVENTFD.invokeExact(0, EFD_NONBLOCK | EFD_CLOEXEC);
+            if (fd < 0)
+                throw new IOException("eventfd failed");
+            return fd;
+        }
+        catch (IOException x)
+        {
+            throw x;
+        }
+        catch (Throwable x)
+        {
+            throw new IOException(x);
+        }
+    }
+
+    /**
+     * <p>Writes the given 8 bytes value to the given eventfd.</p>
+     *
+     * @param fd the eventfd file descriptor
+     * @param value the native address of an 8 bytes value
+     */
+    static void signal(int fd, long value)
+    {
+        try
+        {
+            long ignored = (long)Native.WRITE.invokeExact(fd, value, 8L);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not signal eventfd {}", fd, x);
+        }
+    }
+
+    static void close(int fd)
+    {
+        try
+        {
+            int ignored = (int)Native.CLOSE.invokeExact(fd);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not close fd {}", fd, x);
+        }
+    }
+
+    private static MemorySegment segment(long address, long size)
+    {
+        return MemoryAddress.ofLong(address).asSegment(size, ResourceScope.globalScope());
+    }
+
+    private static long mmap(long size, int fd, long offset) throws IOException
+    {
+        try
+        {
+            long address = (long)Native.MMAP.invokeExact(0L, size, PROT_READ | PROT_WRITE, MAP_SHARED | MAP_POPULATE, fd, offset);
+            if (address == -1)
+                throw new IOException("mmap failed");
+            return address;
+        }
+        catch (IOException x)
+        {
+            throw x;
+        }
+        catch (Throwable x)
+        {
+            throw new IOException(x);
+        }
+    }
+
+    private static void munmap(long address, long size)
+    {
+        try
+        {
+            int ignored = (int)Native.MUNMAP.invokeExact(address, size);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not munmap {}", address, x);
+        }
+    }
+
+    private static long syscall(long number, long arg1, long arg2, long arg3, long arg4, long arg5)
+    {
+        try
+        {
+            return (long)Native.SYSCALL.invokeExact(number, arg1, arg2, arg3, arg4, arg5, 0L);
+        }
+        catch (Throwable x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private static Throwable probe()
+    {
+        try
+        {
+            if (!System.getProperty("os.name", "").startsWith("Linux"))
+                throw new UnsupportedOperationException("io_uring is only available on Linux");
+            // Verify that the native functions can be linked,
+            // and that the file descriptors of channels can be accessed.
+            if (Native.GET_FD_VAL == null)
+                throw new UnsupportedOperationException();
+            try (IOUring ring = new IOUring(2))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("io_uring available {}", ring);
+            }
+            return null;
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("io_uring not available", x);
+            return x;
+        }
+    }
+
+    /**
+     * <p>A function invoked for each completion queue entry.</p>
+     */
+    @FunctionalInterface
+    interface Completions
+    {
+        void complete(long userData, int result);
+    }
+
+    private static class Native
+    {
+        private static final MethodHandle SYSCALL = downcall("syscall",
+            MethodType.methodType(long.class, long.class, long.class, long.class, long.class, long.class, long.class, long.class),
+            FunctionDescriptor.of(C_LONG, C_LONG, C_LONG, C_LONG, C_LONG, C_LONG, C_LONG, C_LONG));
+        private static final MethodHandle MMAP = downcall("mmap",
+            MethodType.methodType(long.class, long.class, long.class, int.class, int.class, int.class, long.class),
+            FunctionDescriptor.of(C_LONG, C_LONG, C_LONG, C_INT, C_INT, C_INT, C_LONG));
+        private static final MethodHandle MUNMAP = downcall("munmap",
+            MethodType.methodType(int.class, long.class, long.class),
+            FunctionDescriptor.of(C_INT, C_LONG, C_LONG));
+        private static final MethodHandle CLOSE = downcall("close",
+            MethodType.methodType(int.class, int.class),
+            FunctionDescriptor.of(C_INT, C_INT));
+        private static final MethodHandle EVENTFD = downcall("eventfd",
+            MethodType.methodType(int.class, int.class, int.class),
+            FunctionDescriptor.of(C_INT, C_INT, C_INT));
+        private static final MethodHandle WRITE = downcall("write",
+            MethodType.methodType(long.class, int.class, long.class, long.class),
+            FunctionDescriptor.of(C_LONG, C_INT, C_LONG, C_LONG));
+        private static final Method GET_FD_VAL = getFdVal();
+
+        private static MethodHandle downcall(String name, MethodType type, FunctionDescriptor descriptor)
+        {
+            MemoryAddress symbol = CLinker.systemLookup().lookup(name)
+                .orElseThrow(() -> new UnsatisfiedLinkError("unresolved symbol: " + name));
+            return CLinker.getInstance().downcallHandle(symbol, type, descriptor);
+        }
+
+        private static Method getFdVal()
+        {
+            try
+            {
+                // Requires --add-exports java.base/sun.nio.ch=org.eclipse.jetty.io.uring
+                Class<?> selChImpl = Class.forName("sun.nio.ch.SelChImpl");
+                Method method = selChImpl.getMethod("getFDVal");
+                if (!selChImpl.getModule().isExported(selChImpl.getPackageName(), IOUring.class.getModule()))
+                    throw new UnsupportedOperationException("package sun.nio.ch not exported to " + IOUring.class.getModule());
+                return method;
+            }
+            catch (ReflectiveOperationException x)
+            {
+                throw new UnsupportedOperationException(x);
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.uring;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.eclipse.jetty.io.AbstractEndPoint;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An {@link org.eclipse.jetty.io.EndPoint} for a {@link SocketChannel} whose
+ * reads and writes are performed asynchronously by an {@link IOUringLoop}.</p>
+ * <p>A receive is submitted into a pooled direct buffer when fill interest is
+ * registered, and {@link #fill(ByteBuffer)} copies from that buffer.
+ * A flush copies the given buffers into a pooled direct buffer owned by this
+ * endpoint, submits a write of that buffer and returns {@code false}; the
+ * completion of the write is then notified to the
+ * {@link org.eclipse.jetty.io.WriteFlusher}, that flushes again so that the
+ * written bytes are consumed from the buffers.</p>
+ * <p>The kernel never reads from the buffers passed to {@link #flush(ByteBuffer...)},
+ * because the write may still be in flight when the write is failed, for example
+ * by an idle timeout, and those buffers are then released by their owner.
+ * The endpoint buffer is only released when the write completes.</p>
+ */
+public class IOUringEndPoint extends AbstractEndPoint
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IOUringEndPoint.class);
+    private static final int MAX_GATHER_SIZE = 64 * 1024;
+
+    private final AutoLock _lock = new AutoLock();
+    private final Receive _receive = new Receive();
+    private final Send _send = new Send();
+    private final Invocable.Task _runFillable = new Invocable.Task()
+    {
+        @Override
+        public void run()
+        {
+            getFillInterest().fillable();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return getFillInterest().getCallbackInvocationType();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s:runFillable:%s", IOUringEndPoint.this, getInvocationType());
+        }
+    };
+    private final Invocable.Task _runCompleteWrite = new Invocable.Task()
+    {
+        @Override
+        public void run()
+        {
+            getWriteFlusher().completeWrite();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return getWriteFlusher().getCallbackInvocationType();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s:runCompleteWrite:%s->%s", IOUringEndPoint.this, getInvocationType(), getWriteFlusher());
+        }
+    };
+    private final SocketChannel _channel;
+    private final IOUringLoop _loop;
+    private final ByteBufferPool _bufferPool;
+    private final int _inputBufferSize;
+    private final int _fd;
+    private RetainableByteBuffer _input;
+    private boolean _receiving;
+    private boolean _eof;
+    private RetainableByteBuffer _output;
+    private boolean _sending;
+    private boolean _flushPending;
+    private long _sent;
+    private Throwable _sendFailure;
+    private boolean _closed;
+
+    public IOUringEndPoint(SocketChannel channel, IOUringLoop loop, Scheduler scheduler, ByteBufferPool bufferPool, int inputBufferSize) throws IOException
+    {
+        super(scheduler);
+        _channel = channel;
+        _loop = loop;
+        _bufferPool = bufferPool;
+        _inputBufferSize = inputBufferSize;
+        _fd = IOUring.fd(channel);
+    }
+
+    public SocketChannel getChannel()
+    {
+        return _channel;
+    }
+
+    @Override
+    public Object getTransport()
+    {
+        return getChannel();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress()
+    {
+        try
+        {
+            return _channel.getLocalAddress();
+        }
+        catch (Throwable x)
+        {
+            LOG.trace("Could not retrieve local socket address", x);
+            return null;
+        }
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress()
+    {
+        try
+        {
+            return _channel.getRemoteAddress();
+        }
+        catch (Throwable x)
+        {
+            LOG.trace("Could not retrieve remote socket address", x);
+            return null;
+        }
+    }
+
+    @Override
+    public void onOpen()
+    {
+        super.onOpen();
+        _loop.onOpened(this);
+    }
+
+    @Override
+    public int fill(ByteBuffer buffer) throws IOException
+    {
+        if (isInputShutdown())
+            return -1;
+
+        int filled = 0;
+        boolean eof = false;
+        try (AutoLock l = _lock.lock())
+        {
+            if (_input != null)
+            {
+                ByteBuffer input = _input.getByteBuffer();
+                if (input.hasRemaining())
+                    filled = BufferUtil.append(buffer, input);
+                // Do not retain memory for idle connections.
+                if (!input.hasRemaining() && !_receiving)
+                {
+                    _input.release();
+                    _input = null;
+                }
+            }
+            if (filled == 0 && _eof && !_receiving)
+                eof = true;
+        }
+
+        if (filled > 0)
+            notIdle();
+        else if (eof)
+        {
+            shutdownInput();
+            filled = -1;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("filled {} {}", filled, BufferUtil.toDetailString(buffer));
+        return filled;
+    }
+
+    @Override
+    protected void needsFillInterest()
+    {
+        boolean fillable;
+        try (AutoLock l = _lock.lock())
+        {
+            if (_receiving)
+                return;
+            fillable = _eof || _input != null && _input.hasRemaining();
+            if (!fillable)
+            {
+                if (_input == null)
+                    _input = _bufferPool.acquire(_inputBufferSize, true);
+                _receiving = true;
+            }
+        }
+        if (fillable)
+            _loop.execute(_runFillable);
+        else
+            _loop.submit(_receive);
+    }
+
+    @Override
+    public boolean flush(ByteBuffer... buffers) throws IOException
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (_sendFailure != null)
+                throw new EofException(_sendFailure);
+            if (_sending)
+                return false;
+
+            long sent = _sent;
+            _sent = 0;
+            if (sent > 0)
+            {
+                notIdle();
+                for (ByteBuffer buffer : buffers)
+                {
+                    int consumed = (int)Math.min(buffer.remaining(), sent);
+                    buffer.position(buffer.position() + consumed);
+                    sent -= consumed;
+                    if (sent == 0)
+                        break;
+                }
+            }
+
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers)
+            {
+                remaining += buffer.remaining();
+            }
+            if (remaining == 0)
+                return true;
+            if (_closed)
+                throw new EofException("Closed");
+
+            // Gather the buffers into a buffer of this endpoint, that the kernel
+            // may keep reading even if the write is failed while in flight.
+            _output = _bufferPool.acquire((int)Math.min(remaining, MAX_GATHER_SIZE), true);
+            ByteBuffer output = _output.getByteBuffer();
+            for (ByteBuffer buffer : buffers)
+            {
+                BufferUtil.append(output, buffer.slice());
+            }
+            _sending = true;
+        }
+        _loop.submit(_send);
+        return false;
+    }
+
+    @Override
+    protected void onIncompleteFlush()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (_sending)
+            {
+                _flushPending = true;
+                return;
+            }
+        }
+        // The send completed before we got here.
+        _loop.execute(_runCompleteWrite);
+    }
+
+    @Override
+    protected void doShutdownOutput()
+    {
+        try
+        {
+            _channel.shutdownOutput();
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not shutdown output for {}", _channel, x);
+        }
+    }
+
+    @Override
+    protected void doClose()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("doClose {}", this);
+        try (AutoLock l = _lock.lock())
+        {
+            _closed = true;
+            if (!_receiving && _input != null)
+            {
+                _input.release();
+                _input = null;
+            }
+        }
+        try
+        {
+            // Shutting down the socket completes the operations in flight,
+            // while the file descriptor is closed later by the loop.
+            if (_channel.isOpen())
+            {
+                _channel.shutdownInput();
+                _channel.shutdownOutput();
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not shutdown {}", _channel, x);
+        }
+        _loop.close(_channel);
+        super.doClose();
+    }
+
+    @Override
+    public void onClose(Throwable cause)
+    {
+        try
+        {
+            super.onClose(cause);
+        }
+        finally
+        {
+            _loop.onClosed(this, cause);
+        }
+    }
+
+    @Override
+    public String toEndPointString()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return String.format("%s{fd=%d,r=%b,s=%b}", super.toEndPointString(), _fd, _receiving, _sending);
+        }
+    }
+
+    private class Receive extends IOUringLoop.Operation
+    {
+        @Override
+        IOUringLoop.Prepared prepare(IOUring ring, long userData, long iovecs)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                if (_closed)
+                    return IOUringLoop.Prepared.CANCELLED;
+                ByteBuffer input = _input.getByteBuffer();
+                // The input buffer is empty, receive from its beginning.
+                long address = IOUring.address(input.duplicate().clear());
+                if (!ring.prepare(IOUring.OP_RECV, _fd, address, input.capacity(), userData))
+                    return IOUringLoop.Prepared.FULL;
+                return IOUringLoop.Prepared.PREPARED;
+            }
+        }
+
+        @Override
+        Runnable complete(int result)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _receiving = false;
+                if (result > 0)
+                {
+                    _input.getByteBuffer().position(0).limit(result);
+                }
+                else
+                {
+                    // Zero means the peer shut down its output; errors
+                    // (including cancellation) are reported as EOF too.
+                    if (result < 0 && LOG.isDebugEnabled())
+                        LOG.debug("Receive failed errno={} {}", -result, IOUringEndPoint.this);
+                    _eof = true;
+                }
+                if (_closed)
+                {
+                    _input.release();
+                    _input = null;
+                }
+            }
+            return _runFillable;
+        }
+
+        @Override
+        Runnable failed(Throwable failure)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _receiving = false;
+                _eof = true;
+            }
+            return () -> close(failure);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), IOUringEndPoint.this);
+        }
+    }
+
+    private class Send extends IOUringLoop.Operation
+    {
+        @Override
+        IOUringLoop.Prepared prepare(IOUring ring, long userData, long iovecs)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                if (_closed)
+                    return IOUringLoop.Prepared.CANCELLED;
+                ByteBuffer output = _output.getByteBuffer();
+                MemorySegment segment = MemoryAddress.ofLong(iovecs).asSegment(IOUring.IOVEC_SIZE, ResourceScope.globalScope());
+                MemoryAccess.setLongAtOffset(segment, 0, IOUring.address(output));
+                MemoryAccess.setLongAtOffset(segment, 8, output.remaining());
+                if (!ring.prepare(IOUring.OP_WRITEV, _fd, iovecs, 1, userData))
+                    return IOUringLoop.Prepared.FULL;
+                return IOUringLoop.Prepared.PREPARED;
+            }
+        }
+
+        @Override
+        Runnable complete(int result)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _sending = false;
+                if (result >= 0)
+                    _sent = result;
+                else
+                    _sendFailure = new IOException("writev failed errno=" + -result);
+                // The kernel no longer reads the output buffer, and the
+                // written bytes are consumed from the flushed buffers.
+                _output.release();
+                _output = null;
+                if (!_flushPending)
+                    return null;
+                _flushPending = false;
+            }
+            return _runCompleteWrite;
+        }
+
+        @Override
+        Runnable failed(Throwable failure)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _sending = false;
+                _flushPending = false;
+                if (_sendFailure == null)
+                    _sendFailure = failure;
+                if (_output != null)
+                {
+                    _output.release();
+                    _output = null;
+                }
+            }
+            return () -> close(failure);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), IOUringEndPoint.this);
+        }
+    }
+}
@@ -0,0 +1,493 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.uring;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An event loop that performs the I/O operations of {@link IOUringEndPoint}s
+ * through a single io_uring instance.</p>
+ * <p>Operations may be submitted from any thread; they are queued and prepared
+ * in the submission ring by the loop thread, that submits them to the kernel
+ * in batch and waits for their completions with a single system call.
+ * The loop thread is woken up from the wait via an {@code eventfd} only when
+ * operations are submitted while it is waiting.</p>
+ * <p>Channels are closed by the loop thread, between batches, so that a file
+ * descriptor is never reused by the kernel while an operation referring to it
+ * is still waiting to be submitted.</p>
+ * <p>An operation that throws while being prepared or completed is
+ * {@link Operation#failed(Throwable) failed}, so that the loop thread keeps
+ * serving the other operations.</p>
+ */
+@ManagedObject("An io_uring event loop")
+public class IOUringLoop extends AbstractLifeCycle implements Dumpable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IOUringLoop.class);
+    static final int MAX_IOVECS = 16;
+    private static final long WAKEUP = -1L;
+    private static final int ECANCELED = 125;
+    private static final long STOP_TIMEOUT = 5000;
+
+    private final AtomicBoolean _sleeping = new AtomicBoolean();
+    private final Queue<Operation> _submissions = new ConcurrentLinkedQueue<>();
+    private final Queue<Closeable> _closes = new ConcurrentLinkedQueue<>();
+    private final Set<IOUringEndPoint> _endPoints = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> _tasks = new ArrayList<>();
+    private final IOUringSelectorManager _manager;
+    private final int _id;
+    private final int _entries;
+    private volatile boolean _running;
+    private volatile Thread _thread;
+    private CountDownLatch _started;
+    private CountDownLatch _stopped;
+    private IOUring _ring;
+    private int _eventFd;
+    private ResourceScope _scope;
+    private long _wakeupAddress;
+    private long _signalAddress;
+    private long _iovecsAddress;
+    private Operation[] _inFlight;
+    private int[] _free;
+    private int _freeCount;
+    private boolean _wakeupArmed;
+    private volatile long _submitted;
+    private volatile long _completed;
+    private volatile long _enters;
+    private volatile long _wakeups;
+
+    public IOUringLoop(IOUringSelectorManager manager, int id, int entries)
+    {
+        _manager = manager;
+        _id = id;
+        _entries = entries;
+    }
+
+    public int getId()
+    {
+        return _id;
+    }
+
+    @ManagedAttribute("The number of endpoints of this loop")
+    public int size()
+    {
+        return _endPoints.size();
+    }
+
+    @ManagedAttribute("The number of operations submitted to the kernel")
+    public long getSubmittedOperations()
+    {
+        return _submitted;
+    }
+
+    @ManagedAttribute("The number of operations completed by the kernel")
+    public long getCompletedOperations()
+    {
+        return _completed;
+    }
+
+    @ManagedAttribute("The number of io_uring_enter system calls")
+    public long getSystemCalls()
+    {
+        return _enters;
+    }
+
+    @ManagedAttribute("The number of wakeups of the loop thread")
+    public long getWakeups()
+    {
+        return _wakeups;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _ring = IOUring.open(_entries);
+        _eventFd = IOUring.eventfd();
+        // Reserve one completion entry for the wakeup operation.
+        int slots = _ring.getCompletionEntries() - 1;
+        _scope = ResourceScope.newSharedScope();
+        MemorySegment memory = MemorySegment.allocateNative(16 + (long)slots * MAX_IOVECS * IOUring.IOVEC_SIZE, 8, _scope);
+        _wakeupAddress = memory.address().toRawLongValue();
+        _signalAddress = _wakeupAddress + 8;
+        MemoryAccess.setLongAtOffset(memory, 8, 1L);
+        _iovecsAddress = _wakeupAddress + 16;
+        _inFlight = new Operation[slots];
+        _free = new int[slots];
+        for (int i = 0; i < slots; i++)
+        {
+            _free[i] = slots - 1 - i;
+        }
+        _freeCount = slots;
+
+        _running = true;
+        _started = new CountDownLatch(1);
+        _stopped = new CountDownLatch(1);
+        _manager.execute(this::loop);
+        _started.await();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _running = false;
+        IOUring.signal(_eventFd, _signalAddress);
+        long timeout = STOP_TIMEOUT;
+        if (_stopped.await(timeout, TimeUnit.MILLISECONDS))
+        {
+            _ring.close();
+            IOUring.close(_eventFd);
+            _scope.close();
+        }
+        else
+        {
+            // The kernel may still write into the native memory, so it is not released.
+            LOG.warn("Could not stop {} in {} ms", this, timeout);
+        }
+        _ring = null;
+        super.doStop();
+    }
+
+    /**
+     * <p>Submits the given operation, waking up the loop thread if necessary.</p>
+     *
+     * @param operation the operation to submit
+     */
+    void submit(Operation operation)
+    {
+        _submissions.offer(operation);
+        wakeup();
+    }
+
+    /**
+     * <p>Closes the given channel from the loop thread.</p>
+     *
+     * @param channel the channel to close
+     */
+    void close(Closeable channel)
+    {
+        if (_running)
+        {
+            _closes.offer(channel);
+            wakeup();
+        }
+        else
+        {
+            IO.close(channel);
+        }
+    }
+
+    private void wakeup()
+    {
+        if (_sleeping.compareAndSet(true, false))
+            IOUring.signal(_eventFd, _signalAddress);
+    }
+
+    /**
+     * <p>Executes the given task, possibly in the calling
+     * thread if the task is non-blocking and the calling
+     * thread is the loop thread.</p>
+     *
+     * @param task the task to execute
+     */
+    void execute(Runnable task)
+    {
+        if (Thread.currentThread() == _thread && Invocable.getInvocationType(task) == Invocable.InvocationType.NON_BLOCKING)
+            run(task);
+        else
+            _manager.execute(task);
+    }
+
+    private void run(Runnable task)
+    {
+        try
+        {
+            task.run();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Task failure {}", task, x);
+        }
+    }
+
+    void onOpened(IOUringEndPoint endPoint)
+    {
+        _endPoints.add(endPoint);
+    }
+
+    void onClosed(IOUringEndPoint endPoint, Throwable cause)
+    {
+        _manager.execute(() ->
+        {
+            if (_endPoints.remove(endPoint))
+            {
+                Connection connection = endPoint.getConnection();
+                if (connection != null)
+                    _manager.connectionClosed(connection, cause);
+                _manager.endPointClosed(endPoint);
+            }
+        });
+    }
+
+    private void loop()
+    {
+        _thread = Thread.currentThread();
+        _started.countDown();
+        boolean closing = false;
+        try
+        {
+            while (true)
+            {
+                if (!_running && !closing)
+                {
+                    closing = true;
+                    _endPoints.forEach(EndPoint::close);
+                }
+
+                prepare();
+
+                if (closing && _freeCount == _inFlight.length && !_wakeupArmed)
+                    break;
+
+                boolean wait = !_ring.hasCompletions();
+                if (wait)
+                {
+                    _sleeping.set(true);
+                    // Re-check after publishing the sleeping state, as
+                    // wakeup() does not signal if it is not sleeping.
+                    if (!_submissions.isEmpty() || !_closes.isEmpty())
+                    {
+                        _sleeping.set(false);
+                        prepare();
+                        wait = false;
+                    }
+                }
+                if (_ring.submit(wait) != 0 || wait)
+                    ++_enters;
+                _sleeping.set(false);
+
+                // The operations submitted so far have resolved their
+                // file descriptors, so it is now safe to close channels.
+                Closeable channel;
+                while ((channel = _closes.poll()) != null)
+                {
+                    IO.close(channel);
+                }
+
+                _ring.reap(this::complete);
+                for (Runnable task : _tasks)
+                {
+                    execute(task);
+                }
+                _tasks.clear();
+            }
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Unexpected failure in {}", this, x);
+        }
+        finally
+        {
+            _thread = null;
+            _stopped.countDown();
+        }
+    }
+
+    private void prepare()
+    {
+        if (_running && !_wakeupArmed)
+            _wakeupArmed = _ring.prepare(IOUring.OP_READ, _eventFd, _wakeupAddress, 8, WAKEUP);
+
+        while (_freeCount > 0)
+        {
+            Operation operation = _submissions.peek();
+            if (operation == null)
+                return;
+            int slot = _free[_freeCount - 1];
+            long iovecs = _iovecsAddress + (long)slot * MAX_IOVECS * IOUring.IOVEC_SIZE;
+            Prepared prepared;
+            try
+            {
+                prepared = operation.prepare(_ring, slot, iovecs);
+            }
+            catch (Throwable x)
+            {
+                // The slot has not been taken, only the operation is failed.
+                _submissions.poll();
+                fail(operation, x);
+                continue;
+            }
+            if (prepared == Prepared.FULL)
+                return;
+            _submissions.poll();
+            if (prepared == Prepared.CANCELLED)
+            {
+                complete(operation, -ECANCELED);
+            }
+            else
+            {
+                --_freeCount;
+                _inFlight[slot] = operation;
+                ++_submitted;
+            }
+        }
+    }
+
+    private void complete(long userData, int result)
+    {
+        if (userData == WAKEUP)
+        {
+            _wakeupArmed = false;
+            ++_wakeups;
+            return;
+        }
+
+        int slot = (int)userData;
+        Operation operation = _inFlight[slot];
+        _inFlight[slot] = null;
+        _free[_freeCount++] = slot;
+        ++_completed;
+        if (LOG.isDebugEnabled())
+            LOG.debug("completed {} result={} on {}", operation, result, this);
+        complete(operation, result);
+    }
+
+    private void complete(Operation operation, int result)
+    {
+        try
+        {
+            Runnable task = operation.complete(result);
+            if (task != null)
+                _tasks.add(task);
+        }
+        catch (Throwable x)
+        {
+            fail(operation, x);
+        }
+    }
+
+    private void fail(Operation operation, Throwable failure)
+    {
+        LOG.warn("Operation failure {}", operation, failure);
+        try
+        {
+            Runnable task = operation.failed(failure);
+            if (task != null)
+                _tasks.add(task);
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Could not fail {}", operation, x);
+        }
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(out, indent, this, new DumpableCollection("endPoints", _endPoints));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{id=%d,%s,ring=%s,endPoints=%d,submitted=%d,completed=%d,syscalls=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            _id,
+            getState(),
+            _ring,
+            _endPoints.size(),
+            _submitted,
+            _completed,
+            _enters);
+    }
+
+    /**
+     * <p>The result of {@link Operation#prepare(IOUring, long, long)}.</p>
+     */
+    enum Prepared
+    {
+        /**
+         * The operation has been prepared in the submission ring.
+         */
+        PREPARED,
+        /**
+         * The submission ring is full, the operation must be prepared later.
+         */
+        FULL,
+        /**
+         * The operation must not be submitted, and is completed with {@code -ECANCELED}.
+         */
+        CANCELLED
+    }
+
+    /**
+     * <p>An I/O operation performed by the loop.</p>
+     * <p>An operation is prepared and completed by the loop thread.</p>
+     */
+    abstract static class Operation
+    {
+        /**
+         * <p>Prepares this operation in the submission ring.</p>
+         *
+         * @param ring the io_uring instance
+         * @param userData the opaque value to prepare the operation with
+         * @param iovecs the native address of an array of {@link #MAX_IOVECS} iovecs this operation may use
+         * @return the result of the preparation
+         */
+        abstract Prepared prepare(IOUring ring, long userData, long iovecs);
+
+        /**
+         * <p>Completes this operation.</p>
+         *
+         * @param result the result of the operation, a negated {@code errno} in case of failure
+         * @return a task to execute, or null
+         */
+        abstract Runnable complete(int result);
+
+        /**
+         * <p>Fails this operation, when {@link #prepare(IOUring, long, long)} or
+         * {@link #complete(int)} throw, so that only the owner of this operation
+         * is affected by the failure.</p>
+         *
+         * @param failure the failure thrown
+         * @return a task to execute, or null
+         */
+        abstract Runnable failed(Throwable failure);
+    }
+}
@@ -0,0 +1,273 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.uring;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.ThreadPoolBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link SelectorManager} that performs the I/O of accepted
+ * {@link SocketChannel}s with io_uring, when available.</p>
+ * <p>Accepted channels are assigned to {@link IOUringLoop}s in round-robin,
+ * and wrapped by {@link IOUringEndPoint}s created by
+ * {@link #newEndPoint(SocketChannel, IOUringLoop)}, so that each loop
+ * submits the reads and writes of all its endpoints with one system call
+ * per batch, rather than one system call per read or write.</p>
+ * <p>If io_uring is not available, because of the operating system, the
+ * kernel version, the JVM configuration or the absence of the
+ * {@code jdk.incubator.foreign} module, or if it is disabled with
+ * {@link #setUseIOUring(boolean)}, this class behaves like a plain
+ * {@link SelectorManager}. Outgoing connections always use NIO selectors.</p>
+ * <p>io_uring requires the JVM to be started with
+ * {@code --add-modules jdk.incubator.foreign --enable-native-access org.eclipse.jetty.io.uring}
+ * and {@code --add-exports java.base/sun.nio.ch=org.eclipse.jetty.io.uring}.</p>
+ */
+@ManagedObject("Manager of the io_uring loops")
+public abstract class IOUringSelectorManager extends SelectorManager
+{
+    private static final Logger LOG = LoggerFactory.getLogger(IOUringSelectorManager.class);
+
+    private final AtomicInteger _loopIndex = new AtomicInteger();
+    private final ByteBufferPool _bufferPool;
+    private final IOUringLoop[] _loops;
+    private int _entries = 256;
+    private int _inputBufferSize = 8192;
+    private boolean _useIOUring = true;
+    private ThreadPoolBudget.Lease _lease;
+    private volatile boolean _started;
+
+    protected IOUringSelectorManager(Executor executor, Scheduler scheduler, int selectors, ByteBufferPool bufferPool)
+    {
+        super(executor, scheduler, selectors);
+        _bufferPool = bufferPool;
+        _loops = new IOUringLoop[getSelectorCount()];
+    }
+
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _bufferPool;
+    }
+
+    @ManagedAttribute("The number of entries of the io_uring submission rings")
+    public int getEntries()
+    {
+        return _entries;
+    }
+
+    public void setEntries(int entries)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        _entries = entries;
+    }
+
+    @ManagedAttribute("The size of the buffers io_uring receives into")
+    public int getInputBufferSize()
+    {
+        return _inputBufferSize;
+    }
+
+    public void setInputBufferSize(int inputBufferSize)
+    {
+        _inputBufferSize = inputBufferSize;
+    }
+
+    @ManagedAttribute("Whether io_uring is used when available")
+    public boolean isUseIOUring()
+    {
+        return _useIOUring;
+    }
+
+    public void setUseIOUring(boolean useIOUring)
+    {
+        if (isStarted())
+            throw new IllegalStateException();
+        _useIOUring = useIOUring;
+    }
+
+    @ManagedAttribute(value = "Whether io_uring is in use", readonly = true)
+    public boolean isIOUringInUse()
+    {
+        return _started;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        if (_useIOUring)
+        {
+            // Check the Foreign module before loading any class that refers to it.
+            Throwable cause = foreignUnavailableCause();
+            if (cause == null && IOUring.isAvailable())
+            {
+                _lease = ThreadPoolBudget.leaseFrom(getExecutor(), this, _loops.length);
+                for (int i = 0; i < _loops.length; i++)
+                {
+                    IOUringLoop loop = newIOUringLoop(i);
+                    _loops[i] = loop;
+                    addBean(loop, true);
+                }
+                _started = true;
+            }
+            else
+            {
+                if (cause == null)
+                    cause = IOUring.getUnavailableCause();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("io_uring not available, using NIO", cause);
+                else
+                    LOG.info("io_uring not available, using NIO: {}", String.valueOf(cause));
+            }
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _started = false;
+        try
+        {
+            for (IOUringLoop loop : _loops)
+            {
+                if (loop != null)
+                {
+                    loop.stop();
+                    removeBean(loop);
+                }
+            }
+        }
+        finally
+        {
+            Arrays.fill(_loops, null);
+            if (_lease != null)
+                _lease.close();
+            _lease = null;
+            super.doStop();
+        }
+    }
+
+    private static Throwable foreignUnavailableCause()
+    {
+        Module foreign = ModuleLayer.boot().findModule("jdk.incubator.foreign").orElse(null);
+        if (foreign == null)
+            return new UnsupportedOperationException("Module jdk.incubator.foreign not available");
+        if (!IOUringSelectorManager.class.getModule().canRead(foreign))
+            return new UnsupportedOperationException("Module jdk.incubator.foreign not readable");
+        return null;
+    }
+
+    /**
+     * <p>Factory method for {@link IOUringLoop}.</p>
+     *
+     * @param id an identifier for the {@link IOUringLoop} to create
+     * @return a new {@link IOUringLoop}
+     */
+    protected IOUringLoop newIOUringLoop(int id)
+    {
+        return new IOUringLoop(this, id, getEntries());
+    }
+
+    protected IOUringLoop chooseLoop()
+    {
+        return _loops[Math.floorMod(_loopIndex.getAndIncrement(), _loops.length)];
+    }
+
+    @Override
+    public int getTotalKeys()
+    {
+        int keys = super.getTotalKeys();
+        for (IOUringLoop loop : _loops)
+        {
+            if (loop != null)
+                keys += loop.size();
+        }
+        return keys;
+    }
+
+    @Override
+    public void accept(SelectableChannel channel, Object attachment)
+    {
+        if (!_started || !(channel instanceof SocketChannel))
+        {
+            super.accept(channel, attachment);
+            return;
+        }
+
+        SocketChannel socket = (SocketChannel)channel;
+        try
+        {
+            onAccepting(channel);
+            EndPoint endPoint = newEndPoint(socket, chooseLoop());
+            Connection connection = newConnection(channel, endPoint, attachment);
+            endPoint.setConnection(connection);
+            endPoint.onOpen();
+            endPointOpened(endPoint);
+            connectionOpened(connection, attachment);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Created {}", endPoint);
+            onAccepted(channel);
+        }
+        catch (Throwable x)
+        {
+            IO.close(channel);
+            if (LOG.isDebugEnabled())
+                LOG.warn("Could not accept {}", channel, x);
+            else
+                LOG.warn("Could not accept {}: {}", channel, String.valueOf(x));
+            onAcceptFailed(channel, x);
+        }
+    }
+
+    /**
+     * <p>Creates a new {@link EndPoint} for the given channel, performing I/O with the given loop.</p>
+     *
+     * @param channel the channel accepted
+     * @param loop the loop performing the I/O of the endpoint
+     * @return a new endpoint
+     * @throws IOException if the endpoint cannot be created
+     */
+    protected EndPoint newEndPoint(SocketChannel channel, IOUringLoop loop) throws IOException
+    {
+        return new IOUringEndPoint(channel, loop, getScheduler(), getByteBufferPool(), getInputBufferSize());
+    }
+
+    @Override
+    protected void execute(Runnable task)
+    {
+        super.execute(task);
+    }
+
+    @Override
+    protected void endPointClosed(EndPoint endpoint)
+    {
+        super.endPointClosed(endpoint);
+    }
+}
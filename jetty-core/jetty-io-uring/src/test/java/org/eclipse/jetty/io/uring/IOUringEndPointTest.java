@@ -0,0 +1,349 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.uring;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.TimerScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class IOUringEndPointTest
+{
+    private final CountDownLatch _closed = new CountDownLatch(1);
+    private ServerSocketChannel _connector;
+    private QueuedThreadPool _threadPool;
+    private Scheduler _scheduler;
+    private ByteBufferPool _bufferPool;
+    private IOUringSelectorManager _manager;
+    private volatile EndPoint _endPoint;
+
+    @BeforeEach
+    public void prepare() throws Exception
+    {
+        assumeTrue(IOUring.isAvailable(), () -> "io_uring not available: " + IOUring.getUnavailableCause());
+
+        _threadPool = new QueuedThreadPool();
+        _scheduler = new TimerScheduler();
+        _bufferPool = new ArrayByteBufferPool();
+        _manager = new IOUringSelectorManager(_threadPool, _scheduler, 1, _bufferPool)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, selectionKey, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endPoint, Object attachment)
+            {
+                _endPoint = endPoint;
+                return new EchoConnection(endPoint, getExecutor());
+            }
+        };
+        _manager.setInputBufferSize(1024);
+        _connector = ServerSocketChannel.open();
+        _connector.bind(null);
+        _scheduler.start();
+        _threadPool.start();
+        _manager.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (_manager != null)
+            _manager.stop();
+        if (_threadPool != null)
+            _threadPool.stop();
+        if (_scheduler != null)
+            _scheduler.stop();
+        if (_connector != null)
+            _connector.close();
+    }
+
+    @Test
+    public void testEcho() throws Exception
+    {
+        assertTrue(_manager.isIOUringInUse());
+        try (Socket client = new Socket(_connector.socket().getInetAddress(), _connector.socket().getLocalPort()))
+        {
+            client.setSoTimeout(5000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            OutputStream output = client.getOutputStream();
+            InputStream input = client.getInputStream();
+            for (int i = 0; i < 10; i++)
+            {
+                String message = "message-" + i;
+                output.write(message.getBytes(StandardCharsets.UTF_8));
+                output.flush();
+                assertThat(new String(input.readNBytes(message.length()), StandardCharsets.UTF_8), is(message));
+            }
+            assertThat(_endPoint, instanceOf(IOUringEndPoint.class));
+
+            // Larger than the input buffer, so it is received in multiple batches.
+            byte[] large = new byte[256 * 1024];
+            for (int i = 0; i < large.length; i++)
+            {
+                large[i] = (byte)('a' + i % 26);
+            }
+            AtomicReference<Throwable> writeFailure = new AtomicReference<>();
+            Thread writer = new Thread(() ->
+            {
+                try
+                {
+                    output.write(large);
+                }
+                catch (Throwable x)
+                {
+                    writeFailure.set(x);
+                }
+            });
+            writer.start();
+            byte[] echoed;
+            try
+            {
+                echoed = input.readNBytes(large.length);
+            }
+            finally
+            {
+                // A write failure is the cause of a read failure, so report it first.
+                writer.join(5000);
+                assertNull(writeFailure.get());
+            }
+            assertThat(new String(echoed, StandardCharsets.US_ASCII), is(new String(large, StandardCharsets.US_ASCII)));
+
+            client.shutdownOutput();
+            assertThat(input.read(), is(-1));
+            assertTrue(_closed.await(5, TimeUnit.SECONDS));
+        }
+
+        IOUringLoop loop = _manager.getBeans(IOUringLoop.class).iterator().next();
+        assertThat(loop.getSubmittedOperations(), greaterThan(0L));
+        assertThat(_manager.getTotalKeys(), is(0));
+    }
+
+    @Test
+    public void testOperationFailureDoesNotStopLoop() throws Exception
+    {
+        IOUringLoop loop = _manager.getBeans(IOUringLoop.class).iterator().next();
+        CountDownLatch failed = new CountDownLatch(1);
+        loop.submit(new IOUringLoop.Operation()
+        {
+            @Override
+            IOUringLoop.Prepared prepare(IOUring ring, long userData, long iovecs)
+            {
+                throw new IllegalStateException("explicitly_thrown_by_test");
+            }
+
+            @Override
+            Runnable complete(int result)
+            {
+                return null;
+            }
+
+            @Override
+            Runnable failed(Throwable failure)
+            {
+                failed.countDown();
+                return null;
+            }
+        });
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        // The loop still performs the I/O of the endpoints.
+        try (Socket client = new Socket(_connector.socket().getInetAddress(), _connector.socket().getLocalPort()))
+        {
+            client.setSoTimeout(5000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            client.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+            assertThat(new String(client.getInputStream().readNBytes(5), StandardCharsets.UTF_8), is("hello"));
+        }
+    }
+
+    @Test
+    public void testCloseWithPendingReceive() throws Exception
+    {
+        try (Socket client = new Socket(_connector.socket().getInetAddress(), _connector.socket().getLocalPort()))
+        {
+            client.setSoTimeout(5000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            client.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+            assertThat(new String(client.getInputStream().readNBytes(5), StandardCharsets.UTF_8), is("hello"));
+
+            // The endpoint has a receive in flight, close it from the server.
+            _endPoint.close();
+            assertThat(client.getInputStream().read(), is(-1));
+            assertTrue(_closed.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testIdleTimeoutWithPendingWrite() throws Exception
+    {
+        try (Socket client = new Socket())
+        {
+            // A small receive buffer, so that the write remains pending.
+            client.setReceiveBufferSize(64 * 1024);
+            client.connect(_connector.getLocalAddress());
+            client.setSoTimeout(1000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            client.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+            assertThat(new String(client.getInputStream().readNBytes(5), StandardCharsets.UTF_8), is("hello"));
+
+            // Write more than the socket buffers can hold, to a peer that does not read.
+            ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 1024 * 1024);
+            while (buffer.hasRemaining())
+            {
+                buffer.put((byte)'a');
+            }
+            buffer.flip();
+            CountDownLatch failed = new CountDownLatch(1);
+            _endPoint.setIdleTimeout(500);
+            _endPoint.write(Callback.from(() -> {}, x ->
+            {
+                // The owner of the buffer reuses it once the write is failed.
+                ByteBuffer reused = buffer.duplicate().clear();
+                while (reused.hasRemaining())
+                {
+                    reused.put((byte)'X');
+                }
+                failed.countDown();
+            }), buffer);
+            // The write is failed while the kernel may still be sending it.
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+            // Only the bytes of the failed write are received, not those of the reused buffer.
+            InputStream input = client.getInputStream();
+            byte[] bytes = new byte[64 * 1024];
+            long received = 0;
+            try
+            {
+                while (true)
+                {
+                    int read = input.read(bytes);
+                    if (read < 0)
+                        break;
+                    for (int i = 0; i < read; i++)
+                    {
+                        assertThat(bytes[i], is((byte)'a'));
+                    }
+                    received += read;
+                }
+            }
+            catch (SocketTimeoutException x)
+            {
+                // No more bytes.
+            }
+            assertThat(received, greaterThan(0L));
+        }
+    }
+
+    private class EchoConnection extends AbstractConnection
+    {
+        private final ByteBuffer _buffer = BufferUtil.allocate(4096);
+
+        private EchoConnection(EndPoint endPoint, Executor executor)
+        {
+            super(endPoint, executor);
+        }
+
+        @Override
+        public void onOpen()
+        {
+            super.onOpen();
+            fillInterested();
+        }
+
+        @Override
+        public void onClose(Throwable cause)
+        {
+            super.onClose(cause);
+            _closed.countDown();
+        }
+
+        @Override
+        protected boolean onReadTimeout(TimeoutException timeout)
+        {
+            // Only fail the pending operations, without shutting down the output.
+            return false;
+        }
+
+        @Override
+        public void onFillable()
+        {
+            try
+            {
+                BufferUtil.clear(_buffer);
+                int filled = getEndPoint().fill(_buffer);
+                if (filled > 0)
+                    getEndPoint().write(Callback.from(this::onFillable, x -> close()), _buffer);
+                else if (filled == 0)
+                    fillInterested();
+                else
+                    getEndPoint().close();
+            }
+            catch (Throwable x)
+            {
+                close();
+            }
+        }
+    }
+}
@@ -42,6 +42,8 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
         @Override
         protected void needsFillInterest() throws IOException
         {
+            // No more writes are expected before more input, flush the coalesced ones.
+            _writeFlusher.flushCoalesced();
             AbstractEndPoint.this.needsFillInterest();
         }
     };
@@ -148,6 +150,9 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
     {
         if (LOG.isDebugEnabled())
             LOG.debug("shutdownOutput {}", this);
+        // Shutdown the output after the coalesced writes have been flushed.
+        if (_writeFlusher.flushCoalesced(this::shutdownOutput))
+            return;
         while (true)
         {
             State s = _state.get();
@@ -210,6 +215,8 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
     {
         if (LOG.isDebugEnabled())
             LOG.debug("close({}) {}", failure, this);
+        // Try to write out the coalesced writes, which have already completed.
+        _writeFlusher.flushCoalescedOnClose(failure);
         while (true)
         {
             State s = _state.get();
@@ -388,6 +395,56 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
         return _writeFlusher;
     }
 
+    /**
+     * @return the max number of bytes of small writes that are coalesced, or 0 if coalescing is disabled
+     * @see #setWriteCoalescing(ByteBufferPool, int, long)
+     */
+    public int getWriteCoalescingSize()
+    {
+        return _writeFlusher.getCoalescingSize();
+    }
+
+    /**
+     * @return the max time in milliseconds that coalesced writes wait before being flushed
+     * @see #setWriteCoalescing(ByteBufferPool, int, long)
+     */
+    public long getWriteCoalescingDelay()
+    {
+        return _writeFlusher.getCoalescingDelay();
+    }
+
+    /**
+     * <p>Configures the coalescing of small writes, so that writes issued back to back
+     * are flushed with a single gathering write.</p>
+     * <p>The callbacks of coalesced writes are succeeded as soon as their bytes have been copied,
+     * so that the writer can issue its next write right away.
+     * Coalesced writes are flushed when a write does not fit in {@code maxBytes},
+     * when this endpoint registers fill interest, when {@link #flushCoalescedWrites()} is called,
+     * when the output is shutdown, or at the latest after {@code delay} milliseconds.</p>
+     *
+     * @param bufferPool the pool to acquire the coalescing buffer from
+     * @param maxBytes the max number of bytes to coalesce, or 0 to disable coalescing
+     * @param delay the max time in milliseconds that coalesced writes wait before being flushed
+     * @see WriteFlusher#setCoalescing(Scheduler, ByteBufferPool, int, long)
+     */
+    public void setWriteCoalescing(ByteBufferPool bufferPool, int maxBytes, long delay)
+    {
+        _writeFlusher.setCoalescing(getScheduler(), bufferPool, maxBytes, delay);
+    }
+
+    /**
+     * <p>Flushes the coalesced writes, if any.</p>
+     * <p>Writers that do not wait for more input before going idle, for example because
+     * they write on behalf of other threads, should call this method when they have
+     * nothing more to write, so that the coalesced writes do not wait for the delay.</p>
+     *
+     * @see #setWriteCoalescing(ByteBufferPool, int, long)
+     */
+    public void flushCoalescedWrites()
+    {
+        _writeFlusher.flushCoalesced();
+    }
+
     @Override
     protected void onIdleExpired(TimeoutException timeout)
     {
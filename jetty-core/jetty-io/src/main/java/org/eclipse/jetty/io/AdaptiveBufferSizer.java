@@ -0,0 +1,104 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+/**
+ * <p>Computes the size of the buffers to acquire to fill from a connection,
+ * based on the number of bytes read by the recent fills.</p>
+ * <p>The size follows an exponentially weighted moving average of the bytes
+ * per fill, rounded up to a power of two and bounded by the min and max sizes.
+ * A fill that fills the whole buffer suggests that more bytes were available,
+ * so the size doubles immediately, while it shrinks gradually as smaller fills
+ * lower the average.
+ * In this way idle or chatty connections hold small buffers, while connections
+ * that receive bulk uploads use large buffers.</p>
+ * <p>Instances are not thread-safe, and are meant to be used by a single
+ * connection where fills are not concurrent.</p>
+ */
+public class AdaptiveBufferSizer
+{
+    private static final double WEIGHT = 0.25D;
+
+    private final int _minSize;
+    private final int _maxSize;
+    private double _average;
+    private int _size;
+
+    /**
+     * @param minSize the minimum buffer size
+     * @param maxSize the maximum buffer size
+     * @param initialSize the initial buffer size
+     */
+    public AdaptiveBufferSizer(int minSize, int maxSize, int initialSize)
+    {
+        if (minSize <= 0 || maxSize < minSize)
+            throw new IllegalArgumentException("Invalid sizes: min=" + minSize + " max=" + maxSize);
+        _minSize = minSize;
+        _maxSize = maxSize;
+        _average = Math.max(minSize, Math.min(maxSize, initialSize));
+        _size = size(_average);
+    }
+
+    /**
+     * @return the size of the next buffer to acquire
+     */
+    public int getSize()
+    {
+        return _size;
+    }
+
+    public int getMinSize()
+    {
+        return _minSize;
+    }
+
+    public int getMaxSize()
+    {
+        return _maxSize;
+    }
+
+    /**
+     * <p>Updates the buffer size with the result of a fill.</p>
+     *
+     * @param filled the number of bytes filled, as returned by {@link EndPoint#fill(java.nio.ByteBuffer)}
+     * @param space the space that was available in the buffer for the fill
+     */
+    public void onFilled(int filled, int space)
+    {
+        // Fills that read nothing carry no information about the traffic.
+        if (filled <= 0)
+            return;
+        if (filled >= space)
+            _average = Math.max(_average, 2.0D * _size);
+        else
+            _average += (filled - _average) * WEIGHT;
+        _size = size(_average);
+    }
+
+    private int size(double average)
+    {
+        int size = (int)Math.min(Integer.MAX_VALUE, Math.ceil(average));
+        // Round up to a power of two, so that sizes map to few buffer pool buckets.
+        int power = Integer.highestOneBit(size);
+        if (power < size && power < (1 << 30))
+            power <<= 1;
+        return Math.max(_minSize, Math.min(_maxSize, power));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[size=%d,min=%d,max=%d]", getClass().getSimpleName(), hashCode(), _size, _minSize, _maxSize);
+    }
+}
@@ -0,0 +1,516 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link RetainableByteBuffer} pool that carves its direct buffers out of a fixed
+ * arena of a few large direct memory slabs, optionally mapped from a file.</p>
+ * <p>The whole arena is allocated when the pool is created, so that the direct memory
+ * used by the pool is exactly the arena size, regardless of the traffic.
+ * The arena is divided into pages of {@code maxCapacity} bytes; a page is carved
+ * on demand into buffers of a single size class, and each page keeps its released
+ * buffers in a free list so that they are reused without any allocation.
+ * Size classes are powers of 2, from {@code minCapacity} (at least 1024 bytes)
+ * up to {@code maxCapacity}.</p>
+ * <p>When all the buffers of a page are released, the page is returned to the arena,
+ * so that it can be carved for another size class, unless it is the last page with
+ * available buffers of its size class; {@link #clear()} returns those pages too.</p>
+ * <p>Requests for direct buffers outside of the size classes, or that cannot be
+ * served because the arena is exhausted, are allocated and not pooled; the direct
+ * memory they retain is reported by {@link #getUnpooledDirectMemory()}.
+ * Requests for heap buffers are delegated to an {@link ArrayByteBufferPool} that
+ * retains at most as much memory as the arena size.</p>
+ */
+@ManagedObject
+public class ArenaByteBufferPool implements ByteBufferPool, Dumpable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ArenaByteBufferPool.class);
+    static final int MIN_CHUNK_CAPACITY = 1024;
+    static final int DEFAULT_MAX_CAPACITY = 65536;
+    static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final AutoLock _lock = new AutoLock();
+    private final ByteBufferPool _heapPool;
+    private final ByteBuffer[] _slabs;
+    private final SizeClass[] _sizeClasses;
+    private final int _minShift;
+    private final int _minCapacity;
+    private final int _maxCapacity;
+    private final int _pagesPerSlab;
+    private final int _pages;
+    private final LongAdder _unpooledCount = new LongAdder();
+    private final LongAdder _unpooledMemory = new LongAdder();
+    private final Deque<Integer> _freePages = new ArrayDeque<>();
+    private int _nextPage;
+    private int _usedPages;
+
+    /**
+     * Creates a new ArenaByteBufferPool with a default configuration.
+     * The arena size defaults to {@link Runtime#maxMemory()} divided by 8.
+     */
+    public ArenaByteBufferPool()
+    {
+        this(0, -1, 0, -1);
+    }
+
+    /**
+     * Creates a new ArenaByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param maxCapacity the maximum ByteBuffer capacity, must be a power of 2
+     * @param arenaSize the arena size in bytes, or 0 to use default heuristic
+     * @param slabSize the size in bytes of each slab the arena is allocated in, at most the arena size
+     */
+    public ArenaByteBufferPool(int minCapacity, int maxCapacity, long arenaSize, int slabSize)
+    {
+        this(minCapacity, maxCapacity, arenaSize, slabSize, null);
+    }
+
+    /**
+     * Creates a new ArenaByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param maxCapacity the maximum ByteBuffer capacity, must be a power of 2
+     * @param arenaSize the arena size in bytes, or 0 to use default heuristic
+     * @param slabSize the size in bytes of each slab the arena is allocated in, at most the arena size
+     * @param mappedFile the file the arena is memory-mapped from, or null to allocate the arena in direct memory
+     */
+    public ArenaByteBufferPool(int minCapacity, int maxCapacity, long arenaSize, int slabSize, Path mappedFile)
+    {
+        if (minCapacity <= 0)
+            minCapacity = 0;
+        if (maxCapacity <= 0)
+            maxCapacity = DEFAULT_MAX_CAPACITY;
+        if (Integer.bitCount(maxCapacity) != 1 || maxCapacity < MIN_CHUNK_CAPACITY)
+            throw new IllegalArgumentException(String.format("The maxCapacity(%d) must be a power of 2 not less than %d", maxCapacity, MIN_CHUNK_CAPACITY));
+        if (arenaSize <= 0)
+            arenaSize = Runtime.getRuntime().maxMemory() / 8;
+        if (arenaSize < maxCapacity)
+            throw new IllegalArgumentException(String.format("The arenaSize(%d) must not be less than maxCapacity(%d)", arenaSize, maxCapacity));
+        if (slabSize <= 0)
+            slabSize = DEFAULT_SLAB_SIZE;
+        if (slabSize < maxCapacity)
+            throw new IllegalArgumentException(String.format("The slabSize(%d) must not be less than maxCapacity(%d)", slabSize, maxCapacity));
+        // A slab cannot be larger than the arena, so that the arena size is never exceeded.
+        slabSize = (int)Math.min(slabSize, arenaSize);
+
+        // Slabs hold a whole number of pages, and the arena a whole number of slabs.
+        _pagesPerSlab = slabSize / maxCapacity;
+        int pageSlabSize = _pagesPerSlab * maxCapacity;
+        int slabs = (int)(arenaSize / pageSlabSize);
+        _slabs = newSlabs(slabs, pageSlabSize, mappedFile);
+        _pages = slabs * _pagesPerSlab;
+
+        _minShift = Math.max(shift(MIN_CHUNK_CAPACITY), shift(Math.max(1, minCapacity)));
+        int length = shift(maxCapacity) - _minShift + 1;
+        _sizeClasses = new SizeClass[Math.max(1, length)];
+        for (int i = 0; i < _sizeClasses.length; i++)
+        {
+            _sizeClasses[i] = new SizeClass(this, Math.min(1 << (_minShift + i), maxCapacity));
+        }
+
+        _minCapacity = minCapacity;
+        _maxCapacity = maxCapacity;
+        int factor = Math.min(ArrayByteBufferPool.DEFAULT_FACTOR, maxCapacity / 2);
+        // The heap buffers are bounded like the arena: as many buffers per bucket as pages, and as much memory.
+        _heapPool = new ArrayByteBufferPool(minCapacity, factor, maxCapacity, _pages, getArenaMemory(), -1);
+    }
+
+    private static int shift(int capacity)
+    {
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private static ByteBuffer[] newSlabs(int slabs, int slabSize, Path mappedFile)
+    {
+        ByteBuffer[] result = new ByteBuffer[slabs];
+        if (mappedFile == null)
+        {
+            for (int i = 0; i < slabs; i++)
+            {
+                result[i] = ByteBuffer.allocateDirect(slabSize);
+            }
+            return result;
+        }
+
+        try (FileChannel channel = FileChannel.open(mappedFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            for (int i = 0; i < slabs; i++)
+            {
+                result[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long)i * slabSize, slabSize);
+            }
+            return result;
+        }
+        catch (IOException x)
+        {
+            throw new UncheckedIOException(x);
+        }
+    }
+
+    @ManagedAttribute("The minimum pooled buffer capacity")
+    public int getMinCapacity()
+    {
+        return _minCapacity;
+    }
+
+    @ManagedAttribute("The maximum pooled buffer capacity")
+    @Override
+    public int getMaxCapacity()
+    {
+        return _maxCapacity;
+    }
+
+    @ManagedAttribute("The number of slabs of the arena")
+    public int getSlabCount()
+    {
+        return _slabs.length;
+    }
+
+    @ManagedAttribute("The bytes of direct memory of the arena")
+    public long getArenaMemory()
+    {
+        return (long)_pages * _maxCapacity;
+    }
+
+    @ManagedAttribute("The bytes of the arena carved into pooled direct ByteBuffers")
+    public long getDirectMemory()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return (long)_usedPages * _maxCapacity;
+        }
+    }
+
+    @ManagedAttribute("The available bytes retained by pooled direct ByteBuffers")
+    public long getAvailableDirectMemory()
+    {
+        return Arrays.stream(_sizeClasses).mapToLong(sizeClass -> (long)sizeClass._available.get() * sizeClass._capacity).sum();
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers")
+    public long getDirectByteBufferCount()
+    {
+        return Arrays.stream(_sizeClasses).mapToLong(sizeClass -> sizeClass._chunks.get()).sum();
+    }
+
+    @ManagedAttribute("The number of pooled direct ByteBuffers that are available")
+    public long getAvailableDirectByteBufferCount()
+    {
+        return Arrays.stream(_sizeClasses).mapToLong(sizeClass -> sizeClass._available.get()).sum();
+    }
+
+    @ManagedAttribute("The number of direct ByteBuffers in use that are allocated outside the arena")
+    public long getUnpooledDirectByteBufferCount()
+    {
+        return _unpooledCount.sum();
+    }
+
+    @ManagedAttribute("The bytes of direct memory in use that are allocated outside the arena")
+    public long getUnpooledDirectMemory()
+    {
+        return _unpooledMemory.sum();
+    }
+
+    @Override
+    public RetainableByteBuffer acquire(int size, boolean direct)
+    {
+        if (!direct)
+            return _heapPool.acquire(size, false);
+
+        SizeClass sizeClass = sizeClassFor(size);
+        Buffer buffer = sizeClass == null ? null : sizeClass.acquire();
+        if (buffer == null)
+            return new UnpooledBuffer(this, BufferUtil.allocateDirect(size));
+        buffer.acquire();
+        return buffer;
+    }
+
+    private SizeClass sizeClassFor(int capacity)
+    {
+        if (capacity < _minCapacity || capacity > _maxCapacity)
+            return null;
+        int index = Math.max(0, shift(Math.max(1, capacity)) - _minShift);
+        return _sizeClasses[index];
+    }
+
+    /**
+     * @param sizeClass the size class to carve a page for
+     * @return a new page carved into buffers of the given size class, or null if the arena is exhausted
+     */
+    private Page carve(SizeClass sizeClass)
+    {
+        int page;
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (!_freePages.isEmpty())
+            {
+                page = _freePages.pop();
+            }
+            else if (_nextPage < _pages)
+            {
+                page = _nextPage++;
+            }
+            else
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("arena exhausted for {} {}", sizeClass, this);
+                return null;
+            }
+            _usedPages++;
+        }
+
+        ByteBuffer slab = _slabs[page / _pagesPerSlab];
+        int offset = (page % _pagesPerSlab) * _maxCapacity;
+        int capacity = sizeClass._capacity;
+        int chunks = _maxCapacity / capacity;
+        Page result = new Page(page, chunks);
+        // Push in reverse order, so that the buffers are used from the start of the page.
+        for (int i = chunks - 1; i >= 0; i--)
+        {
+            result._free.push(new Buffer(sizeClass, result, slab.slice(offset + i * capacity, capacity)));
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("carved page {} into {} buffers of {} bytes", page, chunks, capacity);
+        return result;
+    }
+
+    private void release(Page page)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            _freePages.push(page._index);
+            _usedPages--;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("returned page {} to the arena", page._index);
+    }
+
+    @Override
+    public void clear()
+    {
+        _heapPool.clear();
+        for (SizeClass sizeClass : _sizeClasses)
+        {
+            sizeClass.clear();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s{min=%d,max=%d,slabs=%d,pages=%d/%d,unpooled=%d}",
+            super.toString(),
+            _minCapacity, _maxCapacity,
+            _slabs.length,
+            getDirectMemory() / _maxCapacity, _pages,
+            _unpooledCount.sum());
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        Dumpable.dumpObjects(
+            out,
+            indent,
+            this,
+            DumpableCollection.fromArray("direct", _sizeClasses),
+            _heapPool);
+    }
+
+    private static class SizeClass
+    {
+        private final AutoLock _lock = new AutoLock();
+        // The pages with available buffers, in the order they became available,
+        // so that the oldest pages are filled first and the others can become free.
+        private final Set<Page> _pages = new LinkedHashSet<>();
+        private final AtomicInteger _available = new AtomicInteger();
+        private final AtomicInteger _chunks = new AtomicInteger();
+        private final ArenaByteBufferPool _arena;
+        private final int _capacity;
+
+        private SizeClass(ArenaByteBufferPool arena, int capacity)
+        {
+            _arena = arena;
+            _capacity = capacity;
+        }
+
+        private Buffer acquire()
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                Iterator<Page> iterator = _pages.iterator();
+                Page page = iterator.hasNext() ? iterator.next() : null;
+                if (page == null)
+                {
+                    page = _arena.carve(this);
+                    if (page == null)
+                        return null;
+                    _pages.add(page);
+                    _chunks.addAndGet(page._chunks);
+                    _available.addAndGet(page._chunks);
+                }
+                // LIFO, so that recently used memory is reused first.
+                Buffer buffer = page._free.pop();
+                _available.decrementAndGet();
+                if (page._free.isEmpty())
+                    _pages.remove(page);
+                return buffer;
+            }
+        }
+
+        private void release(Buffer buffer)
+        {
+            Page page = buffer._page;
+            boolean free = false;
+            try (AutoLock ignored = _lock.lock())
+            {
+                page._free.push(buffer);
+                _available.incrementAndGet();
+                if (page._free.size() == 1)
+                    _pages.add(page);
+                // Keep the last page with available buffers, to avoid carving a page again soon.
+                if (page._free.size() == page._chunks && _pages.size() > 1)
+                {
+                    remove(page);
+                    free = true;
+                }
+            }
+            if (free)
+                _arena.release(page);
+        }
+
+        private void clear()
+        {
+            Deque<Page> free = new ArrayDeque<>();
+            try (AutoLock ignored = _lock.lock())
+            {
+                for (Page page : _pages)
+                {
+                    if (page._free.size() == page._chunks)
+                        free.add(page);
+                }
+                free.forEach(this::remove);
+            }
+            free.forEach(_arena::release);
+        }
+
+        private void remove(Page page)
+        {
+            _pages.remove(page);
+            _chunks.addAndGet(-page._chunks);
+            _available.addAndGet(-page._chunks);
+        }
+
+        @Override
+        public String toString()
+        {
+            int chunks = _chunks.get();
+            int inUse = chunks - _available.get();
+            return String.format("%s{capacity=%d,inuse=%d(%d%%)}",
+                super.toString(),
+                _capacity,
+                inUse,
+                chunks > 0 ? (inUse * 100) / chunks : 0);
+        }
+    }
+
+    private static class Page
+    {
+        private final Deque<Buffer> _free = new ArrayDeque<>();
+        private final int _index;
+        private final int _chunks;
+
+        private Page(int index, int chunks)
+        {
+            _index = index;
+            _chunks = chunks;
+        }
+    }
+
+    private static class Buffer extends AbstractRetainableByteBuffer
+    {
+        private final SizeClass _sizeClass;
+        private final Page _page;
+
+        private Buffer(SizeClass sizeClass, Page page, ByteBuffer byteBuffer)
+        {
+            super(byteBuffer);
+            _sizeClass = sizeClass;
+            _page = page;
+            BufferUtil.reset(byteBuffer);
+        }
+
+        @Override
+        public boolean release()
+        {
+            boolean released = super.release();
+            if (released)
+            {
+                BufferUtil.reset(getByteBuffer());
+                _sizeClass.release(this);
+            }
+            return released;
+        }
+    }
+
+    private static class UnpooledBuffer extends AbstractRetainableByteBuffer
+    {
+        private final ArenaByteBufferPool _arena;
+
+        private UnpooledBuffer(ArenaByteBufferPool arena, ByteBuffer byteBuffer)
+        {
+            super(byteBuffer);
+            _arena = arena;
+            acquire();
+            _arena._unpooledCount.increment();
+            _arena._unpooledMemory.add(byteBuffer.capacity());
+        }
+
+        @Override
+        public boolean release()
+        {
+            boolean released = super.release();
+            if (released)
+            {
+                _arena._unpooledCount.decrement();
+                _arena._unpooledMemory.add(-getByteBuffer().capacity());
+            }
+            return released;
+        }
+    }
+}
@@ -16,14 +16,18 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
@@ -34,11 +38,13 @@ import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.ConcurrentPool;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.VirtualThreads;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +56,14 @@ import org.slf4j.LoggerFactory;
  * 2048, and so on with capacities 3072, 4096, 5120, etc.</p>
  * <p>The {@code maxHeapMemory} and {@code maxDirectMemory} default heuristic is to use {@link Runtime#maxMemory()}
  * divided by 8.</p>
+ * <p>When a positive {@code threadCacheSize} is configured, each platform thread keeps a small per-bucket
+ * cache (a "magazine") of RetainableByteBuffers in front of the shared {@link Pool}s: buffers released
+ * by a thread are retained in its magazine and handed back to the next acquire performed by the same
+ * thread, so that most acquire/release pairs do not touch the shared buckets.
+ * When a magazine is full, half of it is spilled back to the shared bucket in one batch.
+ * Buffers held in magazines are accounted as in use by the shared buckets, and are returned to
+ * the shared buckets when the max memory is exceeded, so that they can be evicted.
+ * Virtual threads never use magazines.</p>
  */
 @ManagedObject
 public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
@@ -67,6 +81,12 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     private final AtomicLong _currentHeapMemory = new AtomicLong();
     private final AtomicLong _currentDirectMemory = new AtomicLong();
     private final IntUnaryOperator _bucketIndexFor;
+    private final int _threadCacheSize;
+    private final ThreadLocal<ThreadCache> _threadCache;
+    private final Set<ThreadCache> _threadCaches = ConcurrentHashMap.newKeySet();
+    private final LongAdder _threadCacheHits = new LongAdder();
+    private final LongAdder _threadCacheMisses = new LongAdder();
+    private final LongAdder _threadCacheSpills = new LongAdder();
 
     /**
      * Creates a new ArrayByteBufferPool with a default configuration.
@@ -116,7 +136,23 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
      */
     public ArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory)
     {
-        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, null, null);
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, 0);
+    }
+
+    /**
+     * Creates a new ArrayByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxBucketSize the maximum number of ByteBuffers for each bucket
+     * @param maxHeapMemory the max heap memory in bytes, -1 for unlimited memory or 0 to use default heuristic
+     * @param maxDirectMemory the max direct memory in bytes, -1 for unlimited memory or 0 to use default heuristic
+     * @param threadCacheSize the max number of ByteBuffers cached per thread for each bucket, or 0 to disable thread caching
+     */
+    public ArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory, int threadCacheSize)
+    {
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, null, null, threadCacheSize);
     }
 
     /**
@@ -132,6 +168,24 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
      * @param bucketCapacity a {@link IntUnaryOperator} that takes a bucket index and returns a capacity
      */
     protected ArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory, IntUnaryOperator bucketIndexFor, IntUnaryOperator bucketCapacity)
+    {
+        this(minCapacity, factor, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, bucketIndexFor, bucketCapacity, 0);
+    }
+
+    /**
+     * Creates a new ArrayByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxBucketSize the maximum number of ByteBuffers for each bucket
+     * @param maxHeapMemory the max heap memory in bytes, -1 for unlimited memory or 0 to use default heuristic
+     * @param maxDirectMemory the max direct memory in bytes, -1 for unlimited memory or 0 to use default heuristic
+     * @param bucketIndexFor a {@link IntUnaryOperator} that takes a capacity and returns a bucket index
+     * @param bucketCapacity a {@link IntUnaryOperator} that takes a bucket index and returns a capacity
+     * @param threadCacheSize the max number of ByteBuffers cached per thread for each bucket, or 0 to disable thread caching
+     */
+    protected ArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory, IntUnaryOperator bucketIndexFor, IntUnaryOperator bucketCapacity, int threadCacheSize)
     {
         if (minCapacity <= 0)
             minCapacity = 0;
@@ -153,8 +207,8 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         for (int i = 0; i < directArray.length; i++)
         {
             int capacity = Math.min(bucketCapacity.applyAsInt(i), maxCapacity);
-            directArray[i] = new RetainedBucket(capacity, maxBucketSize);
-            indirectArray[i] = new RetainedBucket(capacity, maxBucketSize);
+            directArray[i] = new RetainedBucket(i, capacity, maxBucketSize);
+            indirectArray[i] = new RetainedBucket(length + i, capacity, maxBucketSize);
         }
 
         _minCapacity = minCapacity;
@@ -164,6 +218,8 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         _maxHeapMemory = maxMemory(maxHeapMemory);
         _maxDirectMemory = maxMemory(maxDirectMemory);
         _bucketIndexFor = bucketIndexFor;
+        _threadCacheSize = Math.max(0, threadCacheSize);
+        _threadCache = _threadCacheSize > 0 ? ThreadLocal.withInitial(this::newThreadCache) : null;
     }
 
     private long maxMemory(long maxMemory)
@@ -182,29 +238,41 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     }
 
     @ManagedAttribute("The maximum pooled buffer capacity")
+    @Override
     public int getMaxCapacity()
     {
         return _maxCapacity;
     }
 
+    @ManagedAttribute("The max number of buffers cached per thread for each bucket")
+    public int getThreadCacheSize()
+    {
+        return _threadCacheSize;
+    }
+
     @Override
     public RetainableByteBuffer acquire(int size, boolean direct)
     {
         RetainedBucket bucket = bucketFor(size, direct);
         if (bucket == null)
             return newRetainableByteBuffer(size, direct, this::removed);
-        Pool.Entry<RetainableByteBuffer> entry = bucket.getPool().acquire();
+
+        ThreadCache threadCache = _threadCache == null ? null : _threadCache.get();
+        Pool.Entry<RetainableByteBuffer> entry = threadCache == null ? null : threadCache.poll(bucket);
+        if (entry == null)
+            entry = bucket.getPool().acquire();
 
         RetainableByteBuffer buffer;
         if (entry == null)
         {
+            bucket._misses.increment();
             Pool.Entry<RetainableByteBuffer> reservedEntry = bucket.getPool().reserve();
             if (reservedEntry != null)
             {
                 buffer = newRetainableByteBuffer(bucket._capacity, direct, retainedBuffer ->
                 {
                     BufferUtil.reset(retainedBuffer.getByteBuffer());
-                    reservedEntry.release();
+                    release(bucket, reservedEntry);
                 });
                 reservedEntry.enable(buffer, true);
                 if (direct)
@@ -220,12 +288,42 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         }
         else
         {
+            bucket._hits.increment();
             buffer = entry.getPooled();
             ((Buffer)buffer).acquire();
         }
         return buffer;
     }
 
+    private void release(RetainedBucket bucket, Pool.Entry<RetainableByteBuffer> entry)
+    {
+        ThreadCache threadCache = _threadCache == null ? null : _threadCache.get();
+        if (threadCache == null || !threadCache.offer(bucket, entry))
+            entry.release();
+    }
+
+    private ThreadCache newThreadCache()
+    {
+        // Virtual threads are too many and too short-lived to be worth caching for.
+        if (VirtualThreads.areSupported() && VirtualThreads.isVirtualThread())
+            return null;
+        // Reclaim the buffers cached by threads that have exited.
+        for (ThreadCache threadCache : _threadCaches)
+        {
+            if (!threadCache.isOwnerAlive())
+                removeThreadCache(threadCache);
+        }
+        ThreadCache threadCache = new ThreadCache(_direct.length + _indirect.length);
+        _threadCaches.add(threadCache);
+        return threadCache;
+    }
+
+    private void removeThreadCache(ThreadCache threadCache)
+    {
+        if (_threadCaches.remove(threadCache))
+            threadCache.drain();
+    }
+
     protected ByteBuffer allocate(int capacity)
     {
         return ByteBuffer.allocate(capacity);
@@ -345,9 +443,60 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         return total;
     }
 
+    @ManagedAttribute("The ratio of acquires served by pooled direct ByteBuffers, by bucket capacity")
+    public Map<Integer, Double> getDirectHitRatios()
+    {
+        return getHitRatios(true);
+    }
+
+    @ManagedAttribute("The ratio of acquires served by pooled heap ByteBuffers, by bucket capacity")
+    public Map<Integer, Double> getHeapHitRatios()
+    {
+        return getHitRatios(false);
+    }
+
+    private Map<Integer, Double> getHitRatios(boolean direct)
+    {
+        RetainedBucket[] buckets = direct ? _direct : _indirect;
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        for (RetainedBucket bucket : buckets)
+        {
+            long hits = bucket._hits.sum();
+            long acquires = hits + bucket._misses.sum();
+            if (acquires > 0)
+                result.put(bucket._capacity, (double)hits / acquires);
+        }
+        return result;
+    }
+
+    @ManagedAttribute("The number of acquires served by thread caches")
+    public long getThreadCacheHits()
+    {
+        return _threadCacheHits.sum();
+    }
+
+    @ManagedAttribute("The number of acquires not served by thread caches")
+    public long getThreadCacheMisses()
+    {
+        return _threadCacheMisses.sum();
+    }
+
+    @ManagedAttribute("The number of batches spilled from thread caches to the shared buckets")
+    public long getThreadCacheSpills()
+    {
+        return _threadCacheSpills.sum();
+    }
+
+    @ManagedAttribute("The number of ByteBuffers held by thread caches")
+    public long getThreadCachedByteBufferCount()
+    {
+        return _threadCaches.stream().mapToLong(ThreadCache::size).sum();
+    }
+
     @ManagedOperation(value = "Clears this ByteBufferPool", impact = "ACTION")
     public void clear()
     {
+        _threadCaches.forEach(ThreadCache::drain);
         clearArray(_direct, _currentDirectMemory);
         clearArray(_indirect, _currentHeapMemory);
     }
@@ -374,7 +523,12 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         {
             long excess = getMemory(direct) - maxMemory;
             if (excess > 0)
+            {
+                // Return the cached buffers to the buckets, so that
+                // they are evicted before the buffers in use.
+                _threadCaches.forEach(ThreadCache::drain);
                 evict(direct, excess);
+            }
         }
     }
 
@@ -425,23 +579,42 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
     @Override
     public String toString()
     {
-        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d}",
+        return String.format("%s{min=%d,max=%d,buckets=%d,heap=%d/%d,direct=%d/%d,threadCache=%d}",
             super.toString(),
             _minCapacity, _maxCapacity,
             _direct.length,
             _currentHeapMemory.get(), _maxHeapMemory,
-            _currentDirectMemory.get(), _maxDirectMemory);
+            _currentDirectMemory.get(), _maxDirectMemory,
+            _threadCacheSize);
     }
 
     @Override
     public void dump(Appendable out, String indent) throws IOException
     {
-        Dumpable.dumpObjects(
-            out,
-            indent,
-            this,
-            DumpableCollection.fromArray("direct", _direct),
-            DumpableCollection.fromArray("indirect", _indirect));
+        if (_threadCacheSize > 0)
+        {
+            Dumpable.dumpObjects(
+                out,
+                indent,
+                this,
+                DumpableCollection.fromArray("direct", _direct),
+                DumpableCollection.fromArray("indirect", _indirect),
+                String.format("threadCaches{threads=%d,cached=%d,hits=%d,misses=%d,spills=%d}",
+                    _threadCaches.size(),
+                    getThreadCachedByteBufferCount(),
+                    getThreadCacheHits(),
+                    getThreadCacheMisses(),
+                    getThreadCacheSpills()));
+        }
+        else
+        {
+            Dumpable.dumpObjects(
+                out,
+                indent,
+                this,
+                DumpableCollection.fromArray("direct", _direct),
+                DumpableCollection.fromArray("indirect", _indirect));
+        }
     }
 
     private Pool.Entry<RetainableByteBuffer> findOldestEntry(long now, Pool<RetainableByteBuffer> bucket)
@@ -473,11 +646,15 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
 
     private static class RetainedBucket
     {
+        private final int _id;
         private final Pool<RetainableByteBuffer> _pool;
         private final int _capacity;
+        private final LongAdder _hits = new LongAdder();
+        private final LongAdder _misses = new LongAdder();
 
-        private RetainedBucket(int capacity, int poolSize)
+        private RetainedBucket(int id, int capacity, int poolSize)
         {
+            _id = id;
             if (poolSize <= ConcurrentPool.OPTIMAL_MAX_SIZE)
                 _pool = new ConcurrentPool<>(ConcurrentPool.StrategyType.THREAD_ID, poolSize, true);
             else
@@ -505,11 +682,124 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
                     inUse++;
             }
 
-            return String.format("%s{capacity=%d,inuse=%d(%d%%)}",
+            return String.format("%s{capacity=%d,inuse=%d(%d%%),hits=%d,misses=%d}",
                 super.toString(),
                 _capacity,
                 inUse,
-                entries > 0 ? (inUse * 100) / entries : 0);
+                entries > 0 ? (inUse * 100) / entries : 0,
+                _hits.sum(),
+                _misses.sum());
+        }
+    }
+
+    /**
+     * <p>The per-thread cache of pool entries, with one magazine per bucket.</p>
+     * <p>Only the owner thread offers and polls entries, so the lock is uncontended
+     * except when the pool is cleared or the owner thread has exited.</p>
+     */
+    private class ThreadCache
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final WeakReference<Thread> _owner = new WeakReference<>(Thread.currentThread());
+        private final Pool.Entry<RetainableByteBuffer>[][] _magazines;
+        private final int[] _sizes;
+
+        @SuppressWarnings("unchecked")
+        private ThreadCache(int buckets)
+        {
+            _magazines = new Pool.Entry[buckets][];
+            _sizes = new int[buckets];
+        }
+
+        private boolean isOwnerAlive()
+        {
+            Thread owner = _owner.get();
+            return owner != null && owner.isAlive();
+        }
+
+        private Pool.Entry<RetainableByteBuffer> poll(RetainedBucket bucket)
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                int id = bucket._id;
+                int size = _sizes[id];
+                Pool.Entry<RetainableByteBuffer>[] magazine = _magazines[id];
+                while (size > 0)
+                {
+                    Pool.Entry<RetainableByteBuffer> entry = magazine[--size];
+                    magazine[size] = null;
+                    _sizes[id] = size;
+                    // Cached entries are in use, so they may have been
+                    // evicted and accounted as freed; drop them.
+                    if (entry.isTerminated())
+                        continue;
+                    _threadCacheHits.increment();
+                    return entry;
+                }
+                _threadCacheMisses.increment();
+                return null;
+            }
+        }
+
+        private boolean offer(RetainedBucket bucket, Pool.Entry<RetainableByteBuffer> entry)
+        {
+            // An evicted entry is no longer accounted by the pool, do not cache it.
+            if (entry.isTerminated())
+                return false;
+            try (AutoLock ignored = _lock.lock())
+            {
+                int id = bucket._id;
+                Pool.Entry<RetainableByteBuffer>[] magazine = _magazines[id];
+                if (magazine == null)
+                    magazine = _magazines[id] = new Pool.Entry[_threadCacheSize];
+                int size = _sizes[id];
+                if (size == magazine.length)
+                    size = spill(magazine, size);
+                magazine[size++] = entry;
+                _sizes[id] = size;
+                return true;
+            }
+        }
+
+        private int spill(Pool.Entry<RetainableByteBuffer>[] magazine, int size)
+        {
+            // Release the least recently cached half of the magazine, keeping the most recent.
+            int half = (size + 1) / 2;
+            for (int i = 0; i < half; i++)
+            {
+                magazine[i].release();
+            }
+            System.arraycopy(magazine, half, magazine, 0, size - half);
+            Arrays.fill(magazine, size - half, size, null);
+            _threadCacheSpills.increment();
+            return size - half;
+        }
+
+        private long size()
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                return Arrays.stream(_sizes).sum();
+            }
+        }
+
+        private void drain()
+        {
+            try (AutoLock ignored = _lock.lock())
+            {
+                for (int id = 0; id < _magazines.length; id++)
+                {
+                    Pool.Entry<RetainableByteBuffer>[] magazine = _magazines[id];
+                    if (magazine == null)
+                        continue;
+                    for (int i = 0; i < _sizes[id]; i++)
+                    {
+                        magazine[i].release();
+                        magazine[i] = null;
+                    }
+                    _sizes[id] = 0;
+                }
+            }
         }
     }
 
@@ -560,6 +850,11 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
         }
 
         public Quadratic(int minCapacity, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory)
+        {
+            this(minCapacity, maxCapacity, maxBucketSize, maxHeapMemory, maxDirectMemory, 0);
+        }
+
+        public Quadratic(int minCapacity, int maxCapacity, int maxBucketSize, long maxHeapMemory, long maxDirectMemory, int threadCacheSize)
         {
             super(minCapacity,
                 -1,
@@ -568,7 +863,8 @@ public class ArrayByteBufferPool implements ByteBufferPool, Dumpable
                 maxHeapMemory,
                 maxDirectMemory,
                 c -> 32 - Integer.numberOfLeadingZeros(c - 1),
-                i -> 1 << i
+                i -> 1 << i,
+                threadCacheSize
             );
         }
     }
@@ -60,6 +60,17 @@ public interface ByteBufferPool
      */
     void clear();
 
+    /**
+     * <p>Returns the maximum capacity of the buffers pooled by this pool.</p>
+     * <p>Buffers acquired with a larger size are not pooled.</p>
+     *
+     * @return the maximum pooled buffer capacity, or {@link Integer#MAX_VALUE} if unbounded or unknown
+     */
+    default int getMaxCapacity()
+    {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * <p>A wrapper for {@link ByteBufferPool} instances.</p>
      */
@@ -88,6 +99,12 @@ public interface ByteBufferPool
         {
             getWrapped().clear();
         }
+
+        @Override
+        public int getMaxCapacity()
+        {
+            return getWrapped().getMaxCapacity();
+        }
     }
 
     /**
@@ -38,8 +38,11 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
@@ -58,6 +61,11 @@ import org.slf4j.LoggerFactory;
  * <p>{@link ManagedSelector} runs the select loop, which waits on {@link Selector#select()} until events
  * happen for registered channels. When events happen, it notifies the {@link EndPoint} associated
  * with the channel.</p>
+ * <p>When {@link SelectorManager#setSelectSpinMicros(long) spinning} is enabled, the select loop
+ * polls with {@link Selector#selectNow()} for the configured time before blocking in
+ * {@link Selector#select()}; while spinning, the updates submitted to this selector are
+ * processed without waking up the selector.
+ * This trades a CPU core for lower latency, so it should only be used with dedicated cores.</p>
  */
 public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 {
@@ -88,6 +96,11 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     private Deque<SelectorUpdate> _updates = new ArrayDeque<>();
     private Deque<SelectorUpdate> _updateable = new ArrayDeque<>();
     private final SampleStatistic _keyStats = new SampleStatistic();
+    private final AtomicInteger _pendingKeys = new AtomicInteger();
+    private volatile long _selectLoopLatency;
+    private final LongAdder _spinHits = new LongAdder();
+    private final LongAdder _parks = new LongAdder();
+    private long _spinNanos;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
@@ -109,6 +122,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     {
         super.doStart();
 
+        _spinNanos = TimeUnit.MICROSECONDS.toNanos(_selectorManager.getSelectSpinMicros());
         _selector = _selectorManager.newSelector();
 
         // The producer used by the strategies will never
@@ -152,6 +166,49 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         return selector == null ? 0 : selector.keys().size();
     }
 
+    /**
+     * @return the number of channels submitted to this selector that are not registered yet
+     */
+    @ManagedAttribute(value = "Number of channels pending registration", readonly = true)
+    public int getPendingKeys()
+    {
+        return _pendingKeys.get();
+    }
+
+    /**
+     * <p>Returns the exponentially weighted moving average of the time between
+     * the wakeup from {@link Selector#select()} and the next call to it, which
+     * includes the time spent running the tasks that the selector thread runs
+     * directly, and therefore grows with the load of this selector.</p>
+     *
+     * @return the average latency of the select loop, in nanoseconds
+     */
+    @ManagedAttribute(value = "Average latency of the select loop in ns", readonly = true)
+    public long getSelectLoopLatency()
+    {
+        return _selectLoopLatency;
+    }
+
+    /**
+     * @return the number of times that spinning found selected keys or submitted updates without blocking
+     * @see SelectorManager#setSelectSpinMicros(long)
+     */
+    @ManagedAttribute(value = "Number of select spins that avoided blocking", readonly = true)
+    public long getSpinHits()
+    {
+        return _spinHits.sum();
+    }
+
+    /**
+     * @return the number of times that spinning found nothing and the selector blocked in select()
+     * @see SelectorManager#setSelectSpinMicros(long)
+     */
+    @ManagedAttribute(value = "Number of select spins that ended up blocking", readonly = true)
+    public long getParks()
+    {
+        return _parks.sum();
+    }
+
     @ManagedAttribute(value = "Average number of selected keys", readonly = true)
     public double getAverageSelectedKeys()
     {
@@ -174,6 +231,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     public void resetStats()
     {
         _keyStats.reset();
+        _selectLoopLatency = 0;
+        _spinHits.reset();
+        _parks.reset();
     }
 
     protected int nioSelect(Selector selector, boolean now) throws IOException
@@ -210,6 +270,54 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         }
     }
 
+    private int spinSelect(Selector selector) throws IOException
+    {
+        long begin = NanoTime.now();
+        while (true)
+        {
+            try
+            {
+                int selected = nioSelect(selector, true);
+                if (selected > 0)
+                {
+                    _spinHits.increment();
+                    return selected;
+                }
+            }
+            catch (ClosedSelectorException x)
+            {
+                throw x;
+            }
+            catch (Throwable x)
+            {
+                handleSelectFailure(selector, x);
+                return 0;
+            }
+
+            try (AutoLock l = _lock.lock())
+            {
+                // Updates are submitted without wakeup while spinning, process them.
+                if (!_updates.isEmpty())
+                {
+                    _spinHits.increment();
+                    return 0;
+                }
+                if (NanoTime.since(begin) >= _spinNanos)
+                {
+                    // From now on, submitted updates must wake up the selector.
+                    _selecting = true;
+                    break;
+                }
+            }
+
+            if (Thread.interrupted() && !isRunning())
+                throw new ClosedSelectorException();
+            Thread.onSpinWait();
+        }
+        _parks.increment();
+        return select(selector);
+    }
+
     protected void handleSelectFailure(Selector selector, Throwable failure) throws IOException
     {
         LOG.info("Caught select() failure, trying to recover: {}", failure.toString());
@@ -525,6 +633,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     {
         private Set<SelectionKey> _keys = Collections.emptySet();
         private Iterator<SelectionKey> _cursor = Collections.emptyIterator();
+        private long _selectedNanoTime;
 
         @Override
         public Runnable produce()
@@ -578,8 +687,11 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             try (AutoLock l = _lock.lock())
             {
                 updates = _updates.size();
-                _selecting = updates == 0;
-                selector = _selecting ? null : _selector;
+                // When spinning, the selector is not woken up by submitted
+                // updates, as spinning checks for updates until it blocks.
+                boolean spinning = _spinNanos > 0;
+                _selecting = updates == 0 && !spinning;
+                selector = updates == 0 || spinning ? null : _selector;
             }
 
             if (LOG.isDebugEnabled())
@@ -602,7 +714,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector {} waiting with {} keys", selector, selector.keys().size());
-                    int selected = ManagedSelector.this.select(selector);
+                    recordSelectLoopLatency();
+                    int selected = _spinNanos > 0 ? spinSelect(selector) : ManagedSelector.this.select(selector);
+                    _selectedNanoTime = NanoTime.now();
                     // The selector may have been recreated.
                     selector = _selector;
                     if (selector != null)
@@ -651,6 +765,16 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             return false;
         }
 
+        private void recordSelectLoopLatency()
+        {
+            if (_selectedNanoTime == 0)
+                return;
+            // Only the producing thread writes the average, with a weight of 1/8 for the new sample.
+            long latency = NanoTime.since(_selectedNanoTime);
+            long average = _selectLoopLatency;
+            _selectLoopLatency = average + ((latency - average) >> 3);
+        }
+
         private Runnable processSelected()
         {
             while (_cursor.hasNext())
@@ -854,6 +978,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         {
             this.channel = channel;
             this.attachment = attachment;
+            _pendingKeys.incrementAndGet();
             _selectorManager.onAccepting(channel);
         }
 
@@ -880,6 +1005,10 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 if (LOG.isDebugEnabled())
                     LOG.debug("Could not register channel after accept {}", channel, x);
             }
+            finally
+            {
+                _pendingKeys.decrementAndGet();
+            }
         }
 
         @Override
@@ -924,6 +1053,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         {
             this.channel = channel;
             this.attachment = attachment;
+            _pendingKeys.incrementAndGet();
             long timeout = ManagedSelector.this._selectorManager.getConnectTimeout();
             if (timeout > 0)
                 this.timeout = ManagedSelector.this._selectorManager.getScheduler().schedule(this, timeout, TimeUnit.MILLISECONDS);
@@ -942,6 +1072,10 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             {
                 failed(x);
             }
+            finally
+            {
+                _pendingKeys.decrementAndGet();
+            }
         }
 
         @Override
@@ -0,0 +1,188 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The strategy used by {@link SelectorManager} to choose the {@link ManagedSelector}
+ * that new channels are registered with.</p>
+ * <p>The default {@link RoundRobin} strategy is cheap and fair with respect to the
+ * number of channels, but when connections have very different lifetimes, for example
+ * long-lived HTTP/2 or WebSocket connections mixed with short-lived HTTP/1.1 ones,
+ * the long-lived connections may pile up on few selectors.
+ * The other strategies take into account the current load of the selectors.</p>
+ *
+ * @see SelectorManager#setSelectorChooser(SelectorChooser)
+ */
+@FunctionalInterface
+public interface SelectorChooser
+{
+    /**
+     * <p>Chooses a selector.</p>
+     * <p>This method may be called concurrently by multiple threads.</p>
+     *
+     * @param selectors the selectors to choose from, never empty
+     * @return the chosen selector
+     */
+    ManagedSelector choose(List<ManagedSelector> selectors);
+
+    /**
+     * @param selector the selector
+     * @return the number of registered channels plus the channels pending registration
+     */
+    private static long keys(ManagedSelector selector)
+    {
+        return selector.getTotalKeys() + selector.getPendingKeys();
+    }
+
+    /**
+     * <p>Chooses the selectors in turn.</p>
+     */
+    class RoundRobin implements SelectorChooser
+    {
+        private final AtomicInteger _index = new AtomicInteger();
+
+        @Override
+        public ManagedSelector choose(List<ManagedSelector> selectors)
+        {
+            return selectors.get(Math.floorMod(_index.getAndIncrement(), selectors.size()));
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Chooses the selector with the least number of keys, including the channels pending registration.</p>
+     * <p>This strategy scans all the selectors for every choice.</p>
+     *
+     * @see ManagedSelector#getTotalKeys()
+     * @see ManagedSelector#getPendingKeys()
+     */
+    class LeastKeys implements SelectorChooser
+    {
+        @Override
+        public ManagedSelector choose(List<ManagedSelector> selectors)
+        {
+            ManagedSelector result = null;
+            long min = Long.MAX_VALUE;
+            for (ManagedSelector selector : selectors)
+            {
+                long keys = keys(selector);
+                if (keys < min)
+                {
+                    result = selector;
+                    min = keys;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * <p>Chooses the selector with the lowest average select loop latency.</p>
+     * <p>Latencies are compared at the given resolution, so that selectors
+     * with similar latencies, for example idle selectors, are discriminated
+     * by their number of keys rather than by noise.</p>
+     *
+     * @see ManagedSelector#getSelectLoopLatency()
+     */
+    class LeastLatency implements SelectorChooser
+    {
+        private final long _resolution;
+
+        public LeastLatency()
+        {
+            this(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+
+        /**
+         * @param resolution the resolution in nanoseconds at which latencies are compared
+         */
+        public LeastLatency(long resolution)
+        {
+            _resolution = Math.max(1, resolution);
+        }
+
+        @Override
+        public ManagedSelector choose(List<ManagedSelector> selectors)
+        {
+            ManagedSelector result = null;
+            long latency = Long.MAX_VALUE;
+            long keys = Long.MAX_VALUE;
+            for (ManagedSelector selector : selectors)
+            {
+                long l = selector.getSelectLoopLatency() / _resolution;
+                if (l > latency)
+                    continue;
+                long k = keys(selector);
+                if (l < latency || k < keys)
+                {
+                    result = selector;
+                    latency = l;
+                    keys = k;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[resolution=%dns]", getClass().getSimpleName(), _resolution);
+        }
+    }
+
+    /**
+     * <p>Chooses two selectors at random, and picks the one with the least number of keys.</p>
+     * <p>This strategy approximates {@link LeastKeys} at a constant cost, which matters
+     * when there are many selectors.</p>
+     */
+    class PowerOfTwoChoices implements SelectorChooser
+    {
+        @Override
+        public ManagedSelector choose(List<ManagedSelector> selectors)
+        {
+            int size = selectors.size();
+            if (size == 1)
+                return selectors.get(0);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            // Pick a second index different from the first.
+            int second = (first + 1 + random.nextInt(size - 1)) % size;
+            ManagedSelector selector1 = selectors.get(first);
+            ManagedSelector selector2 = selectors.get(second);
+            return keys(selector2) < keys(selector1) ? selector2 : selector1;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getClass().getSimpleName();
+        }
+    }
+}
@@ -25,10 +25,9 @@ import java.nio.channels.SocketChannel;
 import java.util.Arrays;
 import java.util.EventListener;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntUnaryOperator;
 
 import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -58,10 +57,11 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private final Executor executor;
     private final Scheduler scheduler;
     private final ManagedSelector[] _selectors;
-    private final AtomicInteger _selectorIndex = new AtomicInteger();
-    private final IntUnaryOperator _selectorIndexUpdate;
+    private volatile List<ManagedSelector> _selectorList = List.of();
+    private SelectorChooser _selectorChooser = new SelectorChooser.RoundRobin();
     private final List<AcceptListener> _acceptListeners = new CopyOnWriteArrayList<>();
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long _selectSpinMicros;
     private ThreadPoolBudget.Lease _lease;
 
     private static int defaultSelectors(Executor executor)
@@ -93,7 +93,6 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         this.executor = executor;
         this.scheduler = scheduler;
         _selectors = new ManagedSelector[selectors];
-        _selectorIndexUpdate = index -> (index + 1) % _selectors.length;
     }
 
     @ManagedAttribute("The Executor")
@@ -129,6 +128,34 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _connectTimeout = milliseconds;
     }
 
+    /**
+     * @return the time in microseconds that selectors spin before blocking, or 0 if they do not spin
+     * @see #setSelectSpinMicros(long)
+     */
+    @ManagedAttribute("The time in microseconds that selectors spin before blocking")
+    public long getSelectSpinMicros()
+    {
+        return _selectSpinMicros;
+    }
+
+    /**
+     * <p>Sets the time in microseconds that selectors spin, polling for selected keys
+     * and submitted updates, before blocking in {@link Selector#select()}.</p>
+     * <p>Spinning avoids the latency of waking up blocked selectors, at the cost of
+     * keeping the selector threads busy, so it should only be enabled when the selector
+     * threads can run on dedicated cores.</p>
+     *
+     * @param micros the time in microseconds that selectors spin before blocking, or 0 to not spin
+     * @see ManagedSelector#getSpinHits()
+     * @see ManagedSelector#getParks()
+     */
+    public void setSelectSpinMicros(long micros)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _selectSpinMicros = Math.max(0, micros);
+    }
+
     /**
      * Executes the given task in a different thread.
      *
@@ -165,9 +192,27 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         return _selectors.length;
     }
 
+    /**
+     * @return the strategy to choose the selector that new channels are registered with
+     */
+    @ManagedAttribute("The strategy to choose selectors")
+    public SelectorChooser getSelectorChooser()
+    {
+        return _selectorChooser;
+    }
+
+    /**
+     * @param selectorChooser the strategy to choose the selector that new channels are registered with
+     */
+    public void setSelectorChooser(SelectorChooser selectorChooser)
+    {
+        _selectorChooser = Objects.requireNonNull(selectorChooser);
+    }
+
     protected ManagedSelector chooseSelector()
     {
-        return _selectors[_selectorIndex.updateAndGet(_selectorIndexUpdate)];
+        List<ManagedSelector> selectors = _selectorList;
+        return selectors.isEmpty() ? null : _selectorChooser.choose(selectors);
     }
 
     /**
@@ -212,6 +257,24 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         selector.submit(selector.new Accept(channel, attachment));
     }
 
+    /**
+     * <p>Registers a channel to perform non-blocking read/write operations
+     * with the selector of the given index, rather than with the selector
+     * returned by {@link #chooseSelector()}.</p>
+     * <p>This allows to keep the channels accepted from the same source,
+     * for example the same listening socket, on the same selector.</p>
+     *
+     * @param channel the channel to register
+     * @param attachment the attachment object
+     * @param selectorIndex the index of the selector, modulo the number of selectors
+     * @see #accept(SelectableChannel, Object)
+     */
+    public void accept(SelectableChannel channel, Object attachment, int selectorIndex)
+    {
+        ManagedSelector selector = _selectors[Math.floorMod(selectorIndex, _selectors.length)];
+        selector.submit(selector.new Accept(channel, attachment));
+    }
+
     /**
      * <p>Registers a server channel for accept operations.
      * When a {@link SocketChannel} is accepted from the given {@link ServerSocketChannel}
@@ -253,6 +316,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
             _selectors[i] = selector;
             addBean(selector);
         }
+        _selectorList = List.of(_selectors);
         super.doStart();
     }
 
@@ -282,6 +346,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         finally
         {
             // Cleanup
+            _selectorList = List.of();
             for (ManagedSelector selector : _selectors)
             {
                 if (selector != null)
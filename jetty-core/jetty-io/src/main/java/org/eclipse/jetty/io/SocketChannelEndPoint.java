@@ -16,10 +16,13 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +34,8 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
 {
     private static final Logger LOG = LoggerFactory.getLogger(SocketChannelEndPoint.class);
 
+    private volatile FileTransfer _transfer;
+
     public SocketChannelEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
     {
         super(scheduler, channel, selector, key);
@@ -126,6 +131,90 @@ public class SocketChannelEndPoint extends SelectableChannelEndPoint
                 return false;
         }
 
-        return true;
+        FileTransfer transfer = _transfer;
+        return transfer == null || transfer.transfer();
+    }
+
+    /**
+     * <p>Writes the given buffers, followed by the given region of the given file.</p>
+     * <p>The file region is transferred with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which on most operating systems uses {@code sendfile()} so that the file bytes are not
+     * copied to user space.</p>
+     * <p>Like {@link #write(Callback, ByteBuffer...)}, the callback is completed when all the
+     * bytes have been written, or when the write fails; the file channel is not closed.</p>
+     *
+     * @param callback the callback to call on either failed or complete
+     * @param file the file to transfer from
+     * @param position the position in the file of the first byte to transfer
+     * @param length the number of bytes to transfer
+     * @param buffers the buffers to write before the file region, typically protocol headers
+     * @throws WritePendingException if unable to write due to prior pending write
+     */
+    public void transferFrom(Callback callback, FileChannel file, long position, long length, ByteBuffer... buffers) throws WritePendingException
+    {
+        if (_transfer != null || !getWriteFlusher().isIdle())
+            throw new WritePendingException();
+        _transfer = new FileTransfer(file, position, length);
+        getWriteFlusher().writeThrough(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _transfer = null;
+                super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                _transfer = null;
+                super.failed(x);
+            }
+        }, buffers);
+    }
+
+    private class FileTransfer
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileTransfer(FileChannel file, long position, long length)
+        {
+            _file = file;
+            _position = position;
+            _remaining = length;
+        }
+
+        private boolean transfer() throws IOException
+        {
+            while (_remaining > 0)
+            {
+                long transferred;
+                try
+                {
+                    transferred = _file.transferTo(_position, _remaining, getChannel());
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("transferred {}/{} {}", transferred, _remaining, SocketChannelEndPoint.this);
+                }
+                catch (IOException e)
+                {
+                    throw new EofException(e);
+                }
+
+                if (transferred == 0)
+                {
+                    // Either the socket buffer is full, or the file was truncated.
+                    if (_position >= _file.size())
+                        throw new EofException("File truncated at " + _position);
+                    return false;
+                }
+
+                notIdle();
+                _position += transferred;
+                _remaining -= transferred;
+            }
+            return true;
+        }
     }
 }
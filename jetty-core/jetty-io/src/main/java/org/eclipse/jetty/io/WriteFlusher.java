@@ -23,12 +23,15 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Invocable.InvocationType;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +41,11 @@ import org.slf4j.LoggerFactory;
  * The abstract method {@link #onIncompleteFlush()} is called when not all content has been written after a call to
  * flush and should organize for the {@link #completeWrite()} method to be called when a subsequent call to flush
  * should  be able to make more progress.
+ * <p>Optionally, small writes may be coalesced (see {@link #setCoalescing(Scheduler, ByteBufferPool, int, long)}):
+ * their bytes are copied into a pooled coalescing buffer, so that the writes that follow back to back
+ * are flushed together with a single gathering write, rather than one write each.
+ * The callbacks of the coalesced writes are succeeded as soon as their bytes have been copied,
+ * so that the writer can produce the next write without waiting for the coalesced bytes to be flushed.</p>
  */
 public abstract class WriteFlusher
 {
@@ -50,6 +58,20 @@ public abstract class WriteFlusher
     private static final State __COMPLETING = new CompletingState();
     private final EndPoint _endPoint;
     private final AtomicReference<State> _state = new AtomicReference<>();
+    private final AutoLock _coalesceLock = new AutoLock();
+    private Scheduler _coalesceScheduler;
+    private ByteBufferPool _coalesceBufferPool;
+    private int _coalesceSize;
+    private long _coalesceDelay;
+    private RetainableByteBuffer _coalesced;
+    private boolean _coalescedInUse;
+    private boolean _coalescedFlushing;
+    private Scheduler.Task _coalesceTask;
+    private Callback _deferredCallback;
+    private ByteBuffer[] _deferredBuffers;
+    private boolean _deferredCoalescable;
+    private Runnable _afterCoalescedFlush;
+    private long _flushedAhead;
 
     static
     {
@@ -258,6 +280,33 @@ public abstract class WriteFlusher
     {
         Objects.requireNonNull(callback);
 
+        if (address == null && _coalesceSize > 0)
+            coalesce(callback, buffers, true);
+        else
+            doWrite(callback, address, buffers);
+    }
+
+    /**
+     * <p>Writes the given buffers like {@link #write(Callback, ByteBuffer...)}, but never
+     * coalesces them, so that {@link EndPoint#flush(ByteBuffer...)} is always called.</p>
+     * <p>The bytes already coalesced, if any, are flushed before the given buffers.</p>
+     *
+     * @param callback the callback to call on either failed or complete
+     * @param buffers the buffers to flush to the endpoint
+     * @throws WritePendingException if unable to write due to prior pending write
+     */
+    void writeThrough(Callback callback, ByteBuffer... buffers) throws WritePendingException
+    {
+        Objects.requireNonNull(callback);
+
+        if (_coalesceSize > 0)
+            coalesce(callback, buffers, false);
+        else
+            doWrite(callback, null, buffers);
+    }
+
+    private void doWrite(Callback callback, SocketAddress address, ByteBuffer... buffers) throws WritePendingException
+    {
         if (isFailed())
         {
             fail(callback);
@@ -303,6 +352,238 @@ public abstract class WriteFlusher
         }
     }
 
+    /**
+     * <p>Configures the coalescing of small writes.</p>
+     * <p>A write whose bytes, added to those already coalesced, do not exceed {@code maxBytes}
+     * is copied into a coalescing buffer acquired from the given pool, and its callback is succeeded
+     * right away, as if its bytes had been flushed, so that the writer can produce its next write.
+     * The coalesced bytes are flushed together with the first write that does not fit,
+     * when {@link #flushCoalesced()} is called, or at the latest after {@code delay} milliseconds,
+     * and the coalescing buffer is released back to the pool once they have been written.
+     * A failure to write the coalesced bytes fails this flusher, and therefore the writes that follow.</p>
+     * <p>Writers must call {@link #flushCoalesced()} at the end of their cycle, when they have
+     * nothing more to write; {@link AbstractEndPoint} does so when fill interest is registered.
+     * {@link AbstractEndPoint#shutdownOutput()} flushes the coalesced bytes before shutting down
+     * the output, while closing the endpoint attempts a single non-blocking flush of the coalesced
+     * bytes and discards those that could not be written.</p>
+     *
+     * @param scheduler the scheduler used to flush the coalesced bytes after the delay
+     * @param bufferPool the pool to acquire the coalescing buffer from
+     * @param maxBytes the max number of bytes to coalesce, or 0 to disable coalescing
+     * @param delay the max time in milliseconds that coalesced bytes wait before being flushed
+     */
+    public void setCoalescing(Scheduler scheduler, ByteBufferPool bufferPool, int maxBytes, long delay)
+    {
+        if (maxBytes > 0)
+            Objects.requireNonNull(scheduler);
+        try (AutoLock l = _coalesceLock.lock())
+        {
+            if (_coalescedInUse || _coalesced != null)
+                throw new IllegalStateException("Coalesced bytes pending");
+            _coalesceScheduler = scheduler;
+            _coalesceBufferPool = bufferPool == null ? new ByteBufferPool.NonPooling() : bufferPool;
+            _coalesceSize = Math.max(0, maxBytes);
+            _coalesceDelay = delay;
+        }
+    }
+
+    /**
+     * @return the max number of bytes of small writes that are coalesced, or 0 if coalescing is disabled
+     * @see #setCoalescing(Scheduler, ByteBufferPool, int, long)
+     */
+    public int getCoalescingSize()
+    {
+        return _coalesceSize;
+    }
+
+    /**
+     * @return the max time in milliseconds that coalesced bytes wait before being flushed
+     * @see #setCoalescing(Scheduler, ByteBufferPool, int, long)
+     */
+    public long getCoalescingDelay()
+    {
+        return _coalesceDelay;
+    }
+
+    private void coalesce(Callback callback, ByteBuffer[] buffers, boolean coalescable)
+    {
+        CoalescedCallback coalesced = null;
+        long copied = -1;
+        try (AutoLock l = _coalesceLock.lock())
+        {
+            if (_coalescedFlushing)
+            {
+                // The coalesced bytes are being flushed, this write follows.
+                if (_deferredCallback != null)
+                    throw new WritePendingException();
+                _deferredCallback = callback;
+                _deferredBuffers = buffers;
+                _deferredCoalescable = coalescable;
+                return;
+            }
+
+            if (!_coalescedInUse)
+            {
+                int pending = _coalesced == null ? 0 : _coalesced.remaining();
+                if (coalescable && isIdle() && _endPoint.isOpen() && !_endPoint.isOutputShutdown() && BufferUtil.remaining(buffers) <= _coalesceSize - pending)
+                {
+                    if (_coalesced == null)
+                        _coalesced = _coalesceBufferPool.acquire(_coalesceSize, true);
+                    ByteBuffer byteBuffer = _coalesced.getByteBuffer();
+                    copied = 0;
+                    for (ByteBuffer buffer : buffers)
+                    {
+                        copied += BufferUtil.append(byteBuffer, buffer);
+                    }
+                    if (pending == 0)
+                        _coalesceTask = _coalesceScheduler.schedule(this::flushCoalesced, _coalesceDelay, TimeUnit.MILLISECONDS);
+                    if (DEBUG)
+                        LOG.debug("coalesced {} {}", this, BufferUtil.toDetailString(byteBuffer));
+                }
+                else if (pending > 0)
+                {
+                    // Flush the coalesced bytes together with this write.
+                    cancelCoalesceTask();
+                    coalesced = takeCoalesced(callback);
+                }
+            }
+        }
+
+        if (copied >= 0)
+        {
+            // The bytes have been copied, so the write is complete as far as the writer is concerned.
+            try
+            {
+                notifyFlushed(copied);
+            }
+            catch (Throwable x)
+            {
+                callback.failed(x);
+                return;
+            }
+            callback.succeeded();
+        }
+        else if (coalesced == null)
+        {
+            doWrite(callback, null, buffers);
+        }
+        else
+        {
+            ByteBuffer[] gathered = new ByteBuffer[buffers.length + 1];
+            gathered[0] = coalesced._buffer.getByteBuffer();
+            System.arraycopy(buffers, 0, gathered, 1, buffers.length);
+            doWrite(coalesced, null, gathered);
+        }
+    }
+
+    private CoalescedCallback takeCoalesced(Callback callback)
+    {
+        assert _coalesceLock.isHeldByCurrentThread();
+        CoalescedCallback coalesced = new CoalescedCallback(_coalesced, callback);
+        _coalescedInUse = true;
+        _coalesced = null;
+        // The coalesced bytes have already been notified as flushed when they were copied.
+        _flushedAhead = coalesced._buffer.remaining();
+        return coalesced;
+    }
+
+    private void cancelCoalesceTask()
+    {
+        if (_coalesceTask != null)
+        {
+            _coalesceTask.cancel();
+            _coalesceTask = null;
+        }
+    }
+
+    /**
+     * <p>Flushes the coalesced bytes, if any.</p>
+     * <p>This method is called when the coalescing delay expires, and should
+     * be called when no more writes are expected to be coalesced, for example
+     * when the connection is about to wait for more input.</p>
+     *
+     * @see #setCoalescing(Scheduler, ByteBufferPool, int, long)
+     */
+    public void flushCoalesced()
+    {
+        flushCoalesced(null);
+    }
+
+    /**
+     * @param then the task to run after the coalesced bytes have been flushed
+     * @return whether there were coalesced bytes to flush, in which case {@code then} will be run after they are flushed
+     */
+    boolean flushCoalesced(Runnable then)
+    {
+        CoalescedCallback coalesced;
+        boolean closed;
+        try (AutoLock l = _coalesceLock.lock())
+        {
+            if (_coalescedFlushing)
+            {
+                if (then == null)
+                    return false;
+                _afterCoalescedFlush = then;
+                return true;
+            }
+            if (_coalescedInUse || _coalesced == null)
+                return false;
+            cancelCoalesceTask();
+            coalesced = takeCoalesced(null);
+            closed = !_endPoint.isOpen();
+            if (!closed)
+            {
+                _coalescedFlushing = true;
+                _afterCoalescedFlush = then;
+            }
+        }
+        if (closed)
+        {
+            coalesced.failed(new ClosedChannelException());
+            return false;
+        }
+        if (DEBUG)
+            LOG.debug("flush coalesced {} {}", this, BufferUtil.toDetailString(coalesced._buffer.getByteBuffer()));
+        doWrite(coalesced, null, coalesced._buffer.getByteBuffer());
+        return true;
+    }
+
+    /**
+     * <p>Attempts a single non-blocking flush of the coalesced bytes, because the endpoint is being closed.</p>
+     * <p>The coalesced bytes that cannot be flushed are discarded, as the writes that produced them have already completed.</p>
+     *
+     * @param failure the cause of the close, or null
+     */
+    void flushCoalescedOnClose(Throwable failure)
+    {
+        CoalescedCallback coalesced;
+        try (AutoLock l = _coalesceLock.lock())
+        {
+            if (_coalescedInUse || _coalesced == null)
+                return;
+            cancelCoalesceTask();
+            coalesced = takeCoalesced(null);
+        }
+        ByteBuffer buffer = coalesced._buffer.getByteBuffer();
+        try
+        {
+            if (_endPoint.isOpen() && !_endPoint.isOutputShutdown())
+                _endPoint.flush(buffer);
+            if (DEBUG)
+                LOG.debug("flushed coalesced on close {} {}", this, BufferUtil.toDetailString(buffer));
+            if (buffer.hasRemaining())
+                coalesced.failed(failure == null ? new ClosedChannelException() : failure);
+            else
+                coalesced.succeeded();
+        }
+        catch (Throwable x)
+        {
+            if (DEBUG)
+                LOG.debug("could not flush coalesced on close {}", this, x);
+            coalesced.failed(x);
+        }
+    }
+
     private void fail(Callback callback, Throwable... suppressed)
     {
         Throwable cause;
@@ -426,11 +707,15 @@ public abstract class WriteFlusher
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed={} written={} remaining={} {}", flushed, written, after, this);
 
-            if (written > 0)
+            if (_flushedAhead > 0)
+            {
+                long ahead = Math.min(_flushedAhead, written);
+                _flushedAhead -= ahead;
+                notifyFlushed(written - ahead);
+            }
+            else
             {
-                Connection connection = _endPoint.getConnection();
-                if (connection instanceof Listener)
-                    ((Listener)connection).onFlushed(written);
+                notifyFlushed(written);
             }
 
             if (flushed)
@@ -470,6 +755,16 @@ public abstract class WriteFlusher
         return buffers == null ? EMPTY_BUFFERS : buffers;
     }
 
+    private void notifyFlushed(long written) throws IOException
+    {
+        if (written > 0)
+        {
+            Connection connection = _endPoint.getConnection();
+            if (connection instanceof Listener)
+                ((Listener)connection).onFlushed(written);
+        }
+    }
+
     /**
      * Notify the flusher of a failure
      *
@@ -578,6 +873,92 @@ public abstract class WriteFlusher
         return String.format("WriteFlusher@%x{%s}->%s", hashCode(), s, s instanceof PendingState ? ((PendingState)s)._callback : null);
     }
 
+    /**
+     * <p>The callback of a write of the coalesced bytes, possibly gathered with a write that
+     * could not be coalesced, which releases the coalescing buffer and completes the gathered write.</p>
+     */
+    private class CoalescedCallback implements Callback
+    {
+        private final RetainableByteBuffer _buffer;
+        private final Callback _callback;
+        private final InvocationType _invocationType;
+
+        private CoalescedCallback(RetainableByteBuffer buffer, Callback callback)
+        {
+            _buffer = buffer;
+            _callback = callback;
+            _invocationType = callback == null ? InvocationType.NON_BLOCKING : Invocable.getInvocationType(callback);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            complete(null);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            complete(x);
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _invocationType;
+        }
+
+        private void complete(Throwable failure)
+        {
+            Callback deferred = null;
+            ByteBuffer[] buffers = null;
+            boolean coalescable = false;
+            Runnable after = null;
+            try (AutoLock l = _coalesceLock.lock())
+            {
+                _coalescedInUse = false;
+                _flushedAhead = 0;
+                if (_callback == null)
+                {
+                    _coalescedFlushing = false;
+                    deferred = _deferredCallback;
+                    buffers = _deferredBuffers;
+                    coalescable = _deferredCoalescable;
+                    _deferredCallback = null;
+                    _deferredBuffers = null;
+                    after = _afterCoalescedFlush;
+                    _afterCoalescedFlush = null;
+                }
+            }
+            _buffer.release();
+            if (failure != null && DEBUG)
+                LOG.debug("failed to flush coalesced bytes {}", WriteFlusher.this, failure);
+
+            if (_callback != null)
+            {
+                if (failure == null)
+                    _callback.succeeded();
+                else
+                    _callback.failed(failure);
+                return;
+            }
+
+            if (deferred != null)
+            {
+                if (failure != null)
+                    deferred.failed(failure);
+                else if (coalescable)
+                    write(deferred, buffers);
+                else
+                    writeThrough(deferred, buffers);
+            }
+            // Run the deferred action, typically the output shutdown, even if the flush
+            // failed, otherwise the endpoint would only be cleaned up by the idle timeout.
+            if (after != null)
+                after.run();
+        }
+    }
+
     /**
      * <p>A listener of {@link WriteFlusher} events.
      * If implemented by a Connection class, the {@link #onFlushed(long)} event will be delivered to it.</p>
@@ -46,6 +46,7 @@ public class SslClientConnectionFactory implements ClientConnectionFactory
     private boolean _directBuffersForEncryption = true;
     private boolean _directBuffersForDecryption = true;
     private boolean _requireCloseMessage;
+    private int _maxFlushRecords = 1;
 
     public SslClientConnectionFactory(SslContextFactory sslContextFactory, ByteBufferPool byteBufferPool, Executor executor, ClientConnectionFactory connectionFactory)
     {
@@ -98,6 +99,27 @@ public class SslClientConnectionFactory implements ClientConnectionFactory
         _requireCloseMessage = requireCloseMessage;
     }
 
+    /**
+     * @return the max number of TLS records encrypted before they are written to the network
+     * @see SslConnection#getMaxFlushRecords()
+     */
+    public int getMaxFlushRecords()
+    {
+        return _maxFlushRecords;
+    }
+
+    /**
+     * @param maxFlushRecords the max number of TLS records encrypted before they are written to the network
+     * @throws IllegalArgumentException if {@code maxFlushRecords} is less than 1
+     * @see SslConnection#setMaxFlushRecords(int)
+     */
+    public void setMaxFlushRecords(int maxFlushRecords)
+    {
+        if (maxFlushRecords < 1)
+            throw new IllegalArgumentException("Invalid maxFlushRecords " + maxFlushRecords);
+        _maxFlushRecords = maxFlushRecords;
+    }
+
     @Override
     public org.eclipse.jetty.io.Connection newConnection(EndPoint endPoint, Map<String, Object> context) throws IOException
     {
@@ -144,6 +166,7 @@ public class SslClientConnectionFactory implements ClientConnectionFactory
             sslConnection.setRenegotiationAllowed(sslContextFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(sslContextFactory.getRenegotiationLimit());
             sslConnection.setRequireCloseMessage(isRequireCloseMessage());
+            sslConnection.setMaxFlushRecords(getMaxFlushRecords());
             ContainerLifeCycle client = (ContainerLifeCycle)context.get(ClientConnectionFactory.CLIENT_CONTEXT_KEY);
             if (client != null)
                 client.getBeans(SslHandshakeListener.class).forEach(sslConnection::addHandshakeListener);
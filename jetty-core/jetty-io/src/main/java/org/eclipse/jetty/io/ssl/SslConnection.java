@@ -121,6 +121,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private int _renegotiationLimit = -1;
     private boolean _closedOutbound;
     private boolean _requireCloseMessage;
+    private int _maxFlushRecords = 1;
     private FlushState _flushState = FlushState.IDLE;
     private FillState _fillState = FillState.IDLE;
     private boolean _underflown;
@@ -271,6 +272,34 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         _requireCloseMessage = requireCloseMessage;
     }
 
+    /**
+     * @return the max number of TLS records encrypted before they are written to the network
+     */
+    public int getMaxFlushRecords()
+    {
+        return _maxFlushRecords;
+    }
+
+    /**
+     * <p>Sets the max number of TLS records that are encrypted before they are written to the network.</p>
+     * <p>By default, every TLS record is written as soon as it is encrypted, so that flushing
+     * a large amount of application data costs one network write per record (of at most 16 KiB).
+     * Larger values encrypt multiple records into a larger buffer that is then written with a
+     * single network write, trading memory for fewer system calls.
+     * The handshake records are always written one at a time, and the records are batched
+     * only up to the max capacity of the {@link ByteBufferPool}, so that the larger buffer
+     * is pooled.</p>
+     *
+     * @param maxFlushRecords the max number of TLS records encrypted before they are written to the network
+     * @throws IllegalArgumentException if {@code maxFlushRecords} is less than 1
+     */
+    public void setMaxFlushRecords(int maxFlushRecords)
+    {
+        if (maxFlushRecords < 1)
+            throw new IllegalArgumentException("Invalid maxFlushRecords " + maxFlushRecords);
+        _maxFlushRecords = maxFlushRecords;
+    }
+
     private boolean isHandshakeInitial()
     {
         return _handshake.get() == HandshakeState.INITIAL;
@@ -317,8 +346,17 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private void acquireEncryptedOutput()
     {
         // TODO: before the output was done with the BBP only.
+        int packetBufferSize = getPacketBufferSize();
+        int records = 1;
+        // Batch only as many records as fit in a pooled buffer.
+        if (isHandshakeSucceeded() && _maxFlushRecords > 1)
+            records = Math.max(1, Math.min(_maxFlushRecords, _bufferPool.getMaxCapacity() / packetBufferSize));
+        int capacity = records * packetBufferSize;
+        // The buffer acquired during the handshake may be too small to batch records.
+        if (_encryptedOutput != null && _encryptedOutput.capacity() < capacity)
+            releaseEmptyEncryptedOutputBuffer();
         if (_encryptedOutput == null)
-            _encryptedOutput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
+            _encryptedOutput = _bufferPool.acquire(capacity, _encryptedDirectBuffers);
     }
 
     @Override
@@ -1105,10 +1143,16 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             // Was all the data consumed?
                             isEmpty = BufferUtil.isEmpty(appOuts);
 
+                            // Encrypt more records before flushing, if there is room for them.
+                            boolean batch = !isEmpty &&
+                                wrapResult.getStatus() == Status.OK &&
+                                (wrapResult.getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING || wrapResult.getHandshakeStatus() == HandshakeStatus.FINISHED) &&
+                                encryptedOutputBuffer.capacity() - encryptedOutputBuffer.limit() >= packetBufferSize;
+
                             // if we have net bytes, let's try to flush them
                             boolean flushed = true;
                             int remaining = encryptedOutputBuffer.remaining();
-                            if (remaining > 0)
+                            if (remaining > 0 && !batch)
                             {
                                 flushed = networkFlush(encryptedOutputBuffer);
                                 int written = remaining - encryptedOutputBuffer.remaining();
@@ -0,0 +1,77 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveBufferSizerTest
+{
+    @Test
+    public void testInitialSizeIsBounded()
+    {
+        assertThat(new AdaptiveBufferSizer(1024, 65536, 8192).getSize(), is(8192));
+        assertThat(new AdaptiveBufferSizer(1024, 65536, 100).getSize(), is(1024));
+        assertThat(new AdaptiveBufferSizer(1024, 65536, 1 << 20).getSize(), is(65536));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBufferSizer(0, 1024, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBufferSizer(2048, 1024, 1024));
+    }
+
+    @Test
+    public void testGrowsWhenBufferIsFilled()
+    {
+        AdaptiveBufferSizer sizer = new AdaptiveBufferSizer(1024, 65536, 8192);
+
+        sizer.onFilled(8192, 8192);
+        assertThat(sizer.getSize(), is(16384));
+        sizer.onFilled(16384, 16384);
+        assertThat(sizer.getSize(), is(32768));
+        sizer.onFilled(32768, 32768);
+        assertThat(sizer.getSize(), is(65536));
+        sizer.onFilled(65536, 65536);
+        assertThat(sizer.getSize(), is(65536));
+    }
+
+    @Test
+    public void testShrinksWithSmallFills()
+    {
+        AdaptiveBufferSizer sizer = new AdaptiveBufferSizer(1024, 65536, 65536);
+
+        for (int i = 0; i < 64; ++i)
+        {
+            sizer.onFilled(300, sizer.getSize());
+        }
+        assertThat(sizer.getSize(), is(1024));
+
+        // Fills that read nothing do not change the size.
+        sizer.onFilled(0, 1024);
+        sizer.onFilled(-1, 1024);
+        assertThat(sizer.getSize(), is(1024));
+    }
+
+    @Test
+    public void testSizeIsPowerOfTwo()
+    {
+        AdaptiveBufferSizer sizer = new AdaptiveBufferSizer(1024, 65536, 1024);
+
+        for (int i = 0; i < 64; ++i)
+        {
+            sizer.onFilled(5000, 8192);
+        }
+        assertThat(sizer.getSize(), is(8192));
+    }
+}
@@ -0,0 +1,206 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class ArenaByteBufferPoolTest
+{
+    @Test
+    public void testArenaIsAllocatedUpFront()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 64 * 1024, 16 * 1024);
+
+        assertThat(pool.getSlabCount(), is(4));
+        assertThat(pool.getArenaMemory(), is(64L * 1024));
+        assertThat(pool.getDirectMemory(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+    }
+
+    @Test
+    public void testSlabNotLargerThanArena()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 8192, 64 * 1024);
+
+        assertThat(pool.getSlabCount(), is(1));
+        assertThat(pool.getArenaMemory(), is(8192L));
+        // The heap buffers are bounded like the arena.
+        assertThat(pool.dump(), containsString("heap=0/8192"));
+    }
+
+    @Test
+    public void testPageCarvedIntoSizeClass()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 64 * 1024, 16 * 1024);
+
+        RetainableByteBuffer buffer = pool.acquire(10, true);
+        assertTrue(buffer.isDirect());
+        assertThat(buffer.capacity(), is(1024));
+        assertThat(buffer.remaining(), is(0));
+
+        // A whole page has been carved into 4 buffers of 1024 bytes.
+        assertThat(pool.getDirectMemory(), is(4096L));
+        assertThat(pool.getDirectByteBufferCount(), is(4L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(3L));
+        assertThat(pool.getAvailableDirectMemory(), is(3L * 1024));
+
+        buffer.getByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(buffer.release(), is(true));
+        assertThat(buffer.getByteBuffer().order(), is(ByteOrder.BIG_ENDIAN));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(4L));
+
+        // The most recently released buffer is reused first.
+        RetainableByteBuffer reused = pool.acquire(1000, true);
+        assertThat(reused, sameInstance(buffer));
+        assertThat(pool.getDirectMemory(), is(4096L));
+        assertThat(pool.dump(), containsString("{capacity=1024,inuse=1(25%)}"));
+        reused.release();
+    }
+
+    @Test
+    public void testArenaExhaustion()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 8192, 4096);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        buffers.add(pool.acquire(4096, true));
+        buffers.add(pool.acquire(4096, true));
+        assertThat(pool.getDirectMemory(), is(pool.getArenaMemory()));
+        assertThat(pool.getUnpooledDirectByteBufferCount(), is(0L));
+
+        // The arena is exhausted, the buffer is not pooled.
+        RetainableByteBuffer unpooled = pool.acquire(4096, true);
+        assertThat(pool.getUnpooledDirectByteBufferCount(), is(1L));
+        assertThat(pool.getUnpooledDirectMemory(), is(4096L));
+        assertThat(pool.getDirectByteBufferCount(), is(2L));
+        unpooled.release();
+        assertThat(pool.getUnpooledDirectByteBufferCount(), is(0L));
+        assertThat(pool.getUnpooledDirectMemory(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(2L));
+
+        // The page of the last released buffer is returned to the arena.
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectMemory(), is(4096L));
+        assertThat(pool.getDirectMemory(), is(4096L));
+    }
+
+    @Test
+    public void testFreePagesReturnedToArena()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 8192, 4096);
+
+        // Carve both pages into buffers of 1024 bytes.
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+        {
+            buffers.add(pool.acquire(1024, true));
+        }
+        assertThat(pool.getDirectMemory(), is(8192L));
+        assertThat(pool.getDirectByteBufferCount(), is(8L));
+
+        RetainableByteBuffer unpooled = pool.acquire(4096, true);
+        assertThat(pool.getUnpooledDirectMemory(), is(4096L));
+        unpooled.release();
+
+        // Once all its buffers are released, a page is returned to the arena,
+        // but the last page with available buffers is kept for its size class.
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getDirectMemory(), is(4096L));
+        assertThat(pool.getDirectByteBufferCount(), is(4L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(4L));
+
+        // The returned page is carved for another size class.
+        RetainableByteBuffer buffer = pool.acquire(4096, true);
+        assertThat(pool.getUnpooledDirectMemory(), is(0L));
+        assertThat(pool.getDirectMemory(), is(8192L));
+
+        // Clearing the pool returns the pages that are free.
+        pool.clear();
+        assertThat(pool.getDirectMemory(), is(4096L));
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        buffer.release();
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(1L));
+        pool.clear();
+        assertThat(pool.getDirectMemory(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+    }
+
+    @Test
+    public void testOutOfRangeCapacitiesAreNotPooled()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(100, 4096, 8192, 4096);
+
+        RetainableByteBuffer small = pool.acquire(10, true);
+        RetainableByteBuffer large = pool.acquire(8192, true);
+        assertThat(small.capacity(), is(10));
+        assertThat(large.capacity(), is(8192));
+        assertThat(pool.getDirectMemory(), is(0L));
+        assertThat(pool.getUnpooledDirectByteBufferCount(), is(2L));
+        assertThat(pool.getUnpooledDirectMemory(), is(10L + 8192));
+        small.release();
+        large.release();
+        assertThat(pool.getUnpooledDirectMemory(), is(0L));
+    }
+
+    @Test
+    public void testHeapBuffersAreNotInArena()
+    {
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 8192, 4096);
+
+        RetainableByteBuffer buffer = pool.acquire(100, false);
+        assertThat(buffer.isDirect(), is(false));
+        assertThat(pool.getDirectMemory(), is(0L));
+        buffer.release();
+    }
+
+    @Test
+    public void testInvalidConfiguration()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new ArenaByteBufferPool(0, 3000, 8192, 4096));
+        assertThrows(IllegalArgumentException.class, () -> new ArenaByteBufferPool(0, 8192, 8192, 4096));
+        assertThrows(IllegalArgumentException.class, () -> new ArenaByteBufferPool(0, 8192, 4096, 8192));
+    }
+
+    @Test
+    public void testMappedFileArena(WorkDir workDir)
+    {
+        Path file = workDir.getEmptyPathDir().resolve("arena.bin");
+        ArenaByteBufferPool pool = new ArenaByteBufferPool(0, 4096, 16 * 1024, 8192, file);
+
+        assertThat(pool.getSlabCount(), is(2));
+        RetainableByteBuffer buffer = pool.acquire(2048, true);
+        assertTrue(buffer.isDirect());
+        assertThat(buffer.capacity(), is(2048));
+        buffer.release();
+    }
+}
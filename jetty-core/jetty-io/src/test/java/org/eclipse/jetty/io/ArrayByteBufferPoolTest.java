@@ -16,6 +16,8 @@ package org.eclipse.jetty.io;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
@@ -101,6 +103,15 @@ public class ArrayByteBufferPoolTest
         assertThat(pool.getDirectMemory(), is(0L));
     }
 
+    @Test
+    public void testMaxCapacityThroughWrapper()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(10, 10, 20, Integer.MAX_VALUE);
+        assertThat(pool.getMaxCapacity(), is(20));
+        assertThat(new ByteBufferPool.Wrapper(new ByteBufferPool.Wrapper(pool)).getMaxCapacity(), is(20));
+        assertThat(new ByteBufferPool.NonPooling().getMaxCapacity(), is(Integer.MAX_VALUE));
+    }
+
     @Test
     public void testRetain()
     {
@@ -362,6 +373,21 @@ public class ArrayByteBufferPoolTest
         assertThat(pool.dump(), containsString("{capacity=4,inuse=3(75%)"));
     }
 
+    @Test
+    public void testHitRatios()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 10, 20, Integer.MAX_VALUE);
+
+        // First acquire of each size allocates, second one reuses the pooled buffer.
+        pool.acquire(10, true).release();
+        pool.acquire(10, true).release();
+        pool.acquire(20, true).release();
+
+        assertThat(pool.getDirectHitRatios(), is(Map.of(10, 0.5D, 20, 0.0D)));
+        assertThat(pool.getHeapHitRatios().isEmpty(), is(true));
+        assertThat(pool.dump(), containsString("{capacity=10,inuse=0(0%),hits=1,misses=1}"));
+    }
+
     @Test
     public void testEndiannessResetOnRelease()
     {
@@ -372,4 +398,112 @@ public class ArrayByteBufferPoolTest
         assertThat(buffer.release(), is(true));
         assertThat(buffer.getByteBuffer().order(), Matchers.is(ByteOrder.BIG_ENDIAN));
     }
+
+    @Test
+    public void testThreadCacheServesSameThread()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 10, 20, Integer.MAX_VALUE, 0, 0, 4);
+
+        RetainableByteBuffer buf1 = pool.acquire(10, true);
+        assertThat(pool.getThreadCacheMisses(), is(1L));
+        assertThat(buf1.release(), is(true));
+
+        // The released buffer is held by the thread cache, not idle in the bucket.
+        assertThat(pool.getThreadCachedByteBufferCount(), is(1L));
+        assertThat(pool.getDirectByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        RetainableByteBuffer buf2 = pool.acquire(10, true);
+        assertThat(buf2, sameInstance(buf1));
+        assertThat(pool.getThreadCacheHits(), is(1L));
+        assertThat(pool.getThreadCachedByteBufferCount(), is(0L));
+        assertThat(buf2.release(), is(true));
+
+        pool.clear();
+        assertThat(pool.getThreadCachedByteBufferCount(), is(0L));
+        assertThat(pool.getDirectByteBufferCount(), is(0L));
+        assertThat(pool.getDirectMemory(), is(0L));
+    }
+
+    @Test
+    public void testThreadCacheSpillsInBatches()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 10, 20, Integer.MAX_VALUE, 0, 0, 4);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            buffers.add(pool.acquire(10, false));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+
+        // The 5th release found the magazine full and spilled half of it.
+        assertThat(pool.getThreadCacheSpills(), is(1L));
+        assertThat(pool.getThreadCachedByteBufferCount(), is(3L));
+        assertThat(pool.getHeapByteBufferCount(), is(5L));
+        assertThat(pool.getAvailableHeapByteBufferCount(), is(2L));
+        assertThat(pool.dump(), containsString("threadCaches{threads=1,cached=3,"));
+    }
+
+    @Test
+    public void testThreadCacheWithMaxMemory()
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 1024, 16384, -1, 0, 4096, 64);
+
+        List<RetainableByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 64; i++)
+        {
+            buffers.add(pool.acquire(1024, true));
+        }
+        buffers.forEach(RetainableByteBuffer::release);
+
+        // The buffers evicted while in use are not cached.
+        assertThat(pool.getDirectMemory(), lessThanOrEqualTo(4096L));
+        assertThat(pool.getThreadCachedByteBufferCount(), lessThanOrEqualTo(4L));
+
+        // The buffers evicted while cached are not reused.
+        buffers.clear();
+        for (int i = 0; i < 64; i++)
+        {
+            buffers.add(pool.acquire(1024, true));
+        }
+        assertThat(pool.getDirectMemory(), lessThanOrEqualTo(4096L));
+        buffers.forEach(RetainableByteBuffer::release);
+        assertThat(pool.getDirectMemory(), lessThanOrEqualTo(4096L));
+        assertThat(pool.getThreadCachedByteBufferCount() + pool.getAvailableDirectByteBufferCount(), lessThanOrEqualTo(4L));
+
+        // Exceeding the max memory returns the cached buffers to the buckets to evict them.
+        RetainableByteBuffer cached = pool.acquire(1024, true);
+        cached.release();
+        assertThat(pool.getThreadCachedByteBufferCount(), greaterThan(0L));
+        RetainableByteBuffer large = pool.acquire(4096, true);
+        assertThat(pool.getDirectMemory(), lessThanOrEqualTo(4096L));
+        assertThat(pool.getThreadCachedByteBufferCount(), is(0L));
+        large.release();
+    }
+
+    @Test
+    public void testThreadCacheReclaimedFromExitedThread() throws Exception
+    {
+        ArrayByteBufferPool pool = new ArrayByteBufferPool(0, 10, 20, Integer.MAX_VALUE, 0, 0, 4);
+
+        AtomicReference<RetainableByteBuffer> released = new AtomicReference<>();
+        Thread thread = new Thread(() ->
+        {
+            RetainableByteBuffer buffer = pool.acquire(10, true);
+            buffer.release();
+            released.set(buffer);
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(pool.getThreadCachedByteBufferCount(), is(1L));
+        assertThat(pool.getAvailableDirectByteBufferCount(), is(0L));
+
+        // A new thread cache reclaims the buffers cached by exited threads.
+        RetainableByteBuffer buffer = pool.acquire(10, true);
+        assertThat(buffer, sameInstance(released.get()));
+        assertThat(pool.getThreadCachedByteBufferCount(), is(0L));
+        buffer.release();
+    }
 }
@@ -0,0 +1,114 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SelectorChooserTest
+{
+    private final SelectorManager manager = new SelectorManager(Runnable::run, null, 1)
+    {
+        @Override
+        protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+        {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    public void testRoundRobin()
+    {
+        List<ManagedSelector> selectors = List.of(selector(0, 0, 0), selector(1, 0, 0), selector(2, 0, 0));
+        SelectorChooser chooser = new SelectorChooser.RoundRobin();
+        for (int i = 0; i < 6; ++i)
+        {
+            assertThat(chooser.choose(selectors), sameInstance(selectors.get(i % 3)));
+        }
+    }
+
+    @Test
+    public void testLeastKeysCountsPendingKeys()
+    {
+        ManagedSelector busy = selector(10, 0, 0);
+        ManagedSelector pending = selector(2, 5, 0);
+        ManagedSelector idle = selector(3, 0, 0);
+        assertThat(new SelectorChooser.LeastKeys().choose(List.of(busy, pending, idle)), sameInstance(idle));
+    }
+
+    @Test
+    public void testPowerOfTwoChoicesNeverPicksTheBusiest()
+    {
+        ManagedSelector busy = selector(100, 0, 0);
+        ManagedSelector idle1 = selector(1, 0, 0);
+        ManagedSelector idle2 = selector(2, 0, 0);
+        SelectorChooser chooser = new SelectorChooser.PowerOfTwoChoices();
+        for (int i = 0; i < 100; ++i)
+        {
+            assertThat(chooser.choose(List.of(busy, idle1, idle2)), anyOf(sameInstance(idle1), sameInstance(idle2)));
+        }
+    }
+
+    @Test
+    public void testLeastLatency()
+    {
+        long resolution = TimeUnit.MICROSECONDS.toNanos(10);
+        ManagedSelector slow = selector(1, 0, TimeUnit.MILLISECONDS.toNanos(1));
+        ManagedSelector fast = selector(50, 0, TimeUnit.MICROSECONDS.toNanos(100));
+        assertThat(new SelectorChooser.LeastLatency(resolution).choose(List.of(slow, fast)), sameInstance(fast));
+
+        // Latencies within the resolution are compared by keys.
+        ManagedSelector similar1 = selector(5, 0, 1000);
+        ManagedSelector similar2 = selector(4, 0, 2000);
+        assertThat(new SelectorChooser.LeastLatency(resolution).choose(List.of(similar1, similar2)), sameInstance(similar2));
+    }
+
+    private ManagedSelector selector(int keys, int pendingKeys, long latency)
+    {
+        return new ManagedSelector(manager, 0)
+        {
+            @Override
+            public int getTotalKeys()
+            {
+                return keys;
+            }
+
+            @Override
+            public int getPendingKeys()
+            {
+                return pendingKeys;
+            }
+
+            @Override
+            public long getSelectLoopLatency()
+            {
+                return latency;
+            }
+        };
+    }
+}
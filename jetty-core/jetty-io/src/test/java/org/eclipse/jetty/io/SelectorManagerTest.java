@@ -16,20 +16,34 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.TimerScheduler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -152,4 +166,209 @@ public class SelectorManagerTest
             selectorManager.stop();
         }
     }
+
+    @Test
+    public void testSpinSelect() throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, 1)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                return new AbstractConnection(endpoint, executor)
+                {
+                    private final ByteBuffer buffer = BufferUtil.allocate(64);
+
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        fillInterested();
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                        try
+                        {
+                            BufferUtil.clear(buffer);
+                            int filled = getEndPoint().fill(buffer);
+                            if (filled > 0)
+                                getEndPoint().write(Callback.from(this::fillInterested, x -> close()), buffer);
+                            else if (filled == 0)
+                                fillInterested();
+                            else
+                                close();
+                        }
+                        catch (IOException x)
+                        {
+                            close();
+                        }
+                    }
+                };
+            }
+        };
+        selectorManager.setSelectSpinMicros(TimeUnit.MILLISECONDS.toMicros(100));
+        selectorManager.start();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                selectorManager.accept(channel);
+
+                ByteBuffer reply = ByteBuffer.allocate(1);
+                for (int i = 0; i < 10; ++i)
+                {
+                    client.write(ByteBuffer.wrap(new byte[]{(byte)i}));
+                    reply.clear();
+                    assertThat(client.read(reply), is(1));
+                    assertThat(reply.get(0), is((byte)i));
+                }
+            }
+
+            ManagedSelector selector = selectorManager.getBean(ManagedSelector.class);
+            assertThat(selector.getSpinHits(), greaterThan(0L));
+            // Once idle, the selector stops spinning and blocks.
+            await().atMost(5, TimeUnit.SECONDS).until(selector::getParks, greaterThan(0L));
+        }
+        finally
+        {
+            selectorManager.stop();
+        }
+    }
+
+    public static Stream<SelectorChooser> loadAwareChoosers()
+    {
+        return Stream.of(
+            new SelectorChooser.LeastKeys(),
+            new SelectorChooser.PowerOfTwoChoices(),
+            // Idle selectors have similar latencies, so the number of keys decides.
+            new SelectorChooser.LeastLatency(TimeUnit.MILLISECONDS.toNanos(100))
+        );
+    }
+
+    @Test
+    public void testRoundRobinSkewWithMixedLifetimes() throws Exception
+    {
+        int[] keys = registerMixedLifetimes(new SelectorChooser.RoundRobin());
+        // All the long-lived connections end up on the same selector.
+        Arrays.sort(keys);
+        assertThat(keys[SELECTORS - 1], is(LONG_LIVED));
+        assertThat(keys[0], is(0));
+    }
+
+    @ParameterizedTest
+    @MethodSource("loadAwareChoosers")
+    public void testLoadAwareChooserWithMixedLifetimes(SelectorChooser chooser) throws Exception
+    {
+        int[] keys = registerMixedLifetimes(chooser);
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int k : keys)
+        {
+            min = Math.min(min, k);
+            max = Math.max(max, k);
+        }
+        // Without the chooser, the skew would be LONG_LIVED.
+        assertThat(max - min, lessThanOrEqualTo(LONG_LIVED / 2));
+    }
+
+    private static final int SELECTORS = 4;
+    private static final int LONG_LIVED = 8;
+
+    /**
+     * <p>Registers channels with a pattern that defeats round-robin:
+     * one long-lived channel followed by {@code SELECTORS - 1} short-lived ones.</p>
+     *
+     * @return the number of keys of each selector once the short-lived channels are closed
+     */
+    private int[] registerMixedLifetimes(SelectorChooser chooser) throws Exception
+    {
+        SelectorManager selectorManager = new SelectorManager(executor, scheduler, SELECTORS)
+        {
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey key)
+            {
+                return new SocketChannelEndPoint((SocketChannel)channel, selector, key, getScheduler());
+            }
+
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                return new AbstractConnection(endpoint, executor)
+                {
+                    @Override
+                    public void onOpen()
+                    {
+                        super.onOpen();
+                        fillInterested();
+                    }
+
+                    @Override
+                    public void onFillable()
+                    {
+                        try
+                        {
+                            if (getEndPoint().fill(BufferUtil.allocate(64)) < 0)
+                                close();
+                            else
+                                fillInterested();
+                        }
+                        catch (IOException x)
+                        {
+                            close();
+                        }
+                    }
+                };
+            }
+        };
+        selectorManager.setSelectorChooser(chooser);
+        selectorManager.start();
+
+        List<SocketChannel> channels = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            for (int i = 0; i < LONG_LIVED * SELECTORS; ++i)
+            {
+                SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                channels.add(client);
+                SocketChannel channel = server.accept();
+                channel.configureBlocking(false);
+                int expected = selectorManager.getTotalKeys() + 1;
+                selectorManager.accept(channel);
+                awaitTotalKeys(selectorManager, expected);
+                if (i % SELECTORS != 0)
+                {
+                    // Short-lived, close it and wait for the key to be cancelled.
+                    client.close();
+                    awaitTotalKeys(selectorManager, expected - 1);
+                }
+            }
+
+            return selectorManager.getBeans(ManagedSelector.class).stream()
+                .mapToInt(ManagedSelector::getTotalKeys)
+                .toArray();
+        }
+        finally
+        {
+            channels.forEach(IO::close);
+            selectorManager.stop();
+        }
+    }
+
+    private static void awaitTotalKeys(SelectorManager selectorManager, int keys)
+    {
+        await().pollInterval(5, TimeUnit.MILLISECONDS).atMost(5, TimeUnit.SECONDS).until(selectorManager::getTotalKeys, is(keys));
+    }
 }
@@ -49,6 +49,8 @@ import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -61,11 +63,22 @@ public class SslConnectionTest
     private static final int TIMEOUT = 1000000;
 
     // TODO: track leaks
-    private final ByteBufferPool _bufferPool = new ArrayByteBufferPool();
+    private final AtomicInteger _maxAcquiredCapacity = new AtomicInteger();
+    private final ByteBufferPool _bufferPool = new ByteBufferPool.Wrapper(new ArrayByteBufferPool())
+    {
+        @Override
+        public RetainableByteBuffer acquire(int size, boolean direct)
+        {
+            _maxAcquiredCapacity.accumulateAndGet(size, Math::max);
+            return super.acquire(size, direct);
+        }
+    };
     private final SslContextFactory _sslCtxFactory = new SslContextFactory.Server();
     protected volatile EndPoint _lastEndp;
     private volatile boolean _testFill = true;
     private volatile boolean _onXWriteThenShutdown = false;
+    private volatile String _writeOnOpen = "Hello Client";
+    private volatile int _maxFlushRecords = 1;
 
     private volatile FutureCallback _writeCallback;
     protected ServerSocketChannel _connector;
@@ -90,6 +103,7 @@ public class SslConnectionTest
             SslConnection sslConnection = new SslConnection(_bufferPool, getExecutor(), endpoint, engine);
             sslConnection.setRenegotiationAllowed(_sslCtxFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(_sslCtxFactory.getRenegotiationLimit());
+            sslConnection.setMaxFlushRecords(_maxFlushRecords);
             SslConnection.SslEndPoint sslEndPoint = sslConnection.getSslEndPoint();
             Connection appConnection = new TestConnection(sslEndPoint);
             sslEndPoint.setConnection(appConnection);
@@ -109,6 +123,7 @@ public class SslConnectionTest
     static final AtomicInteger __startBlocking = new AtomicInteger();
     static final AtomicInteger __blockFor = new AtomicInteger();
     static final AtomicBoolean __onIncompleteFlush = new AtomicBoolean();
+    static final AtomicInteger __flushes = new AtomicInteger();
 
     private static class TestEP extends SocketChannelEndPoint
     {
@@ -134,6 +149,8 @@ public class SslConnectionTest
                     return false;
                 }
             }
+            if (!BufferUtil.isEmpty(buffers))
+                __flushes.incrementAndGet();
             return super.flush(buffers);
         }
     }
@@ -200,7 +217,7 @@ public class SslConnectionTest
                 fillInterested();
             else
             {
-                getExecutor().execute(() -> getEndPoint().write(_writeCallback, BufferUtil.toBuffer("Hello Client")));
+                getExecutor().execute(() -> getEndPoint().write(_writeCallback, BufferUtil.toBuffer(_writeOnOpen)));
             }
         }
 
@@ -429,6 +446,67 @@ public class SslConnectionTest
         }
     }
 
+    @Test
+    public void testMaxFlushRecords() throws Exception
+    {
+        _testFill = false;
+        _writeOnOpen = "x".repeat(8 * 16 * 1024);
+        startSSL();
+
+        int singleRecordFlushes = writeOnConnect(1);
+        int batchedRecordsFlushes = writeOnConnect(4);
+
+        // The handshake flushes are the same, but the content records
+        // are written in batches, rather than one per network write.
+        assertThat(batchedRecordsFlushes, lessThan(singleRecordFlushes));
+    }
+
+    @Test
+    public void testMaxFlushRecordsBoundedByPoolMaxCapacity() throws Exception
+    {
+        _testFill = false;
+        _writeOnOpen = "x".repeat(8 * 16 * 1024);
+        startSSL();
+
+        int singleRecordFlushes = writeOnConnect(1);
+        int batchedRecordsFlushes = writeOnConnect(16);
+
+        // The records are still batched, but only in buffers that can be pooled.
+        assertThat(batchedRecordsFlushes, lessThan(singleRecordFlushes));
+        int maxCapacity = ((ArrayByteBufferPool)((ByteBufferPool.Wrapper)_bufferPool).getWrapped()).getMaxCapacity();
+        assertThat(_maxAcquiredCapacity.get(), lessThanOrEqualTo(maxCapacity));
+    }
+
+    @Test
+    public void testInvalidMaxFlushRecords() throws Exception
+    {
+        startSSL();
+        SSLEngine engine = _sslCtxFactory.newSSLEngine();
+        SslConnection sslConnection = new SslConnection(_bufferPool, _threadPool, new ByteArrayEndPoint(), engine);
+        assertThrows(IllegalArgumentException.class, () -> sslConnection.setMaxFlushRecords(0));
+    }
+
+    private int writeOnConnect(int maxFlushRecords) throws Exception
+    {
+        _maxFlushRecords = maxFlushRecords;
+        _writeCallback = new FutureCallback();
+        __flushes.set(0);
+        try (SSLSocket client = newClient())
+        {
+            client.setSoTimeout(5000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                byte[] content = client.getInputStream().readNBytes(_writeOnOpen.length());
+                assertEquals(_writeOnOpen, new String(content, StandardCharsets.UTF_8));
+                assertNull(_writeCallback.get(5, TimeUnit.SECONDS));
+                return __flushes.get();
+            }
+        }
+    }
+
     @Test
     public void testBlockedWrite() throws Exception
     {
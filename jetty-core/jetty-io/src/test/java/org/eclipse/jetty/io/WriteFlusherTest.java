@@ -18,7 +18,9 @@ import java.io.InterruptedIOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritePendingException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -27,17 +29,21 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.logging.StacklessLogging;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.thread.TimerScheduler;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -467,6 +473,133 @@ public class WriteFlusherTest
         }
     }
 
+    @Test
+    public void testCoalescedWritesFlushedAfterDelay() throws Exception
+    {
+        TimerScheduler scheduler = new TimerScheduler();
+        scheduler.start();
+        try
+        {
+            ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+            ByteArrayEndPoint endPoint = new ByteArrayEndPoint(scheduler, -1, new byte[0], 1024);
+            endPoint.setWriteCoalescing(bufferPool, 64, 500);
+
+            FutureCallback callback1 = new FutureCallback();
+            endPoint.write(callback1, BufferUtil.toBuffer("Hello"));
+            // The coalesced writes complete as soon as their bytes are copied.
+            assertTrue(callback1.isDone());
+            FutureCallback callback2 = new FutureCallback();
+            endPoint.write(callback2, BufferUtil.toBuffer(" World"));
+            assertTrue(callback2.isDone());
+            assertEquals("", endPoint.getOutputString());
+            assertEquals("Hello World", BufferUtil.toString(endPoint.waitForOutput(5, TimeUnit.SECONDS)));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> bufferPool.getLeaks().size(), is(0));
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testShutdownOutputFlushesCoalescedWrites() throws Exception
+    {
+        TimerScheduler scheduler = new TimerScheduler();
+        scheduler.start();
+        try
+        {
+            ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+            ByteArrayEndPoint endPoint = new ByteArrayEndPoint(scheduler, -1, new byte[0], 1024);
+            endPoint.setWriteCoalescing(bufferPool, 64, TimeUnit.SECONDS.toMillis(60));
+
+            FutureCallback callback = new FutureCallback();
+            endPoint.write(callback, BufferUtil.toBuffer("Goodbye"));
+            callback.get(5, TimeUnit.SECONDS);
+            assertEquals("", endPoint.getOutputString());
+            assertFalse(endPoint.isOutputShutdown());
+            endPoint.shutdownOutput();
+            assertTrue(endPoint.isOutputShutdown());
+            assertEquals("Goodbye", endPoint.takeOutputString());
+            assertEquals(0, bufferPool.getLeaks().size());
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testShutdownOutputAfterFailedCoalescedFlush() throws Exception
+    {
+        TimerScheduler scheduler = new TimerScheduler();
+        scheduler.start();
+        try
+        {
+            ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+            ByteArrayEndPoint endPoint = new ByteArrayEndPoint(scheduler, -1, new byte[0], 1024)
+            {
+                @Override
+                public boolean flush(ByteBuffer... buffers) throws IOException
+                {
+                    throw new IOException("explicitly_thrown_by_test");
+                }
+            };
+            endPoint.setWriteCoalescing(bufferPool, 64, TimeUnit.SECONDS.toMillis(60));
+
+            FutureCallback callback = new FutureCallback();
+            endPoint.write(callback, BufferUtil.toBuffer("Goodbye"));
+            callback.get(5, TimeUnit.SECONDS);
+            // The shutdown is deferred until the coalesced flush completes, and it fails.
+            endPoint.shutdownOutput();
+            // The deferred shutdown is nevertheless performed.
+            assertTrue(endPoint.isOutputShutdown());
+            assertEquals(0, bufferPool.getLeaks().size());
+            // The failure of the coalesced flush fails the writes that follow.
+            FutureCallback next = new FutureCallback();
+            endPoint.write(next, BufferUtil.toBuffer("Again"));
+            ExecutionException x = assertThrows(ExecutionException.class, () -> next.get(5, TimeUnit.SECONDS));
+            assertEquals("explicitly_thrown_by_test", x.getCause().getMessage());
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testCloseDiscardsUnflushedCoalescedWrites() throws Exception
+    {
+        TimerScheduler scheduler = new TimerScheduler();
+        scheduler.start();
+        try
+        {
+            ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+            ByteArrayEndPoint endPoint = new ByteArrayEndPoint(scheduler, -1, new byte[0], 1024)
+            {
+                @Override
+                public boolean flush(ByteBuffer... buffers)
+                {
+                    // The peer does not read, nothing can be written.
+                    return false;
+                }
+            };
+            endPoint.setWriteCoalescing(bufferPool, 64, TimeUnit.SECONDS.toMillis(60));
+
+            FutureCallback callback = new FutureCallback();
+            endPoint.write(callback, BufferUtil.toBuffer("Lost"));
+            callback.get(5, TimeUnit.SECONDS);
+            assertEquals(1, bufferPool.getLeaks().size());
+            endPoint.close(new Throwable("Closed"));
+            assertEquals("", endPoint.getOutputString());
+            // The coalescing buffer is released even if its bytes could not be written.
+            assertEquals(0, bufferPool.getLeaks().size());
+        }
+        finally
+        {
+            scheduler.stop();
+        }
+    }
+
     private static class ConcurrentWriteFlusher extends WriteFlusher implements Runnable
     {
         private final ByteArrayEndPoint endPoint;
@@ -0,0 +1,32 @@
+# DO NOT EDIT THIS FILE - See: https://eclipse.dev/jetty/documentation/
+
+[description]
+Configures the ByteBufferPool used by ServerConnectors.
+The direct buffers are carved out of an arena of large direct memory slabs
+that is allocated at startup, so that the direct memory used by the pool is fixed.
+
+[tags]
+bytebufferpool
+
+[provides]
+bytebufferpool
+
+[depends]
+logging
+
+[xml]
+etc/jetty-bytebufferpool-arena.xml
+
+[ini-template]
+### Server ByteBufferPool Configuration
+## Minimum capacity to pool ByteBuffers
+#jetty.byteBufferPool.minCapacity=0
+
+## Maximum capacity to pool ByteBuffers (must be a power of 2)
+#jetty.byteBufferPool.maxCapacity=65536
+
+## Direct memory allocated at startup for the arena (0 for heuristic).
+#jetty.byteBufferPool.arenaSize=0
+
+## Size of each direct memory slab of the arena.
+#jetty.byteBufferPool.slabSize=67108864
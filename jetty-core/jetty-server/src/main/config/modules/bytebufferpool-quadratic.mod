@@ -30,6 +30,9 @@ etc/jetty-bytebufferpool-quadratic.xml
 ## Maximum direct memory held idle by the pool (0 for heuristic, -1 for unlimited).
 #jetty.byteBufferPool.maxDirectMemory=0
 
+## Maximum number of ByteBuffers cached per thread for each bucket (0 to disable thread caching).
+#jetty.byteBufferPool.threadCacheSize=0
+
 ## Maximum heap memory retained whilst in use by the pool (0 for heuristic, -1 for unlimited, -2 for no retained).
 #jetty.byteBufferPool.retainedHeapMemory=0
 
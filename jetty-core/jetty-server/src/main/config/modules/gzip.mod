@@ -42,6 +42,21 @@ etc/jetty-gzip.xml
 ## Set the {@link Deflater} flush mode to use.
 # jetty.gzip.syncFlush=false
 
+## Whether to lower the compression level when the server load is high
+# jetty.gzip.adaptiveCompression=false
+
+## The load (0 to 1) above which the compression level is lowered
+# jetty.gzip.adaptiveLoadThreshold=0.75
+
+## Min response size to gzip in parallel blocks (-1 to disable)
+# jetty.gzip.parallelCompressionThreshold=-1
+
+## Size of the blocks compressed in parallel, reduced to fit the buffer pool max capacity
+# jetty.gzip.parallelCompressionBlockSize=65536
+
+## Max number of blocks of a response being compressed or written
+# jetty.gzip.maxParallelCompressionBlocks=
+
 ## The set of DispatcherType that this filter will operate on
 # jetty.gzip.dispatcherTypes=REQUEST
 
@@ -31,6 +31,10 @@ etc/jetty-http.xml
 ## The number of selectors (-1 picks a default value based on number of cores).
 # jetty.http.selectors=-1
 
+## The time in microseconds that selectors spin before blocking (0 disables spinning).
+## Spinning lowers latency but keeps the selector threads busy, use only with dedicated cores.
+# jetty.http.selectSpinMicros=0
+
 ## The ServerSocketChannel accept queue backlog (0 picks the platform default).
 # jetty.http.acceptQueueSize=0
 
@@ -43,6 +47,9 @@ etc/jetty-http.xml
 ## Whether to enable the SO_REUSEPORT socket option.
 # jetty.http.reusePort=false
 
+## Whether to bind one SO_REUSEPORT listening socket per acceptor.
+# jetty.http.reusePortListeners=false
+
 ## Whether to enable the TCP_NODELAY socket option on accepted sockets.
 # jetty.http.acceptedTcpNoDelay=true
 
@@ -53,4 +60,11 @@ etc/jetty-http.xml
 ## The SO_SNDBUF socket option to set on accepted sockets.
 ## A value of -1 indicates that the platform default is used.
 # jetty.http.acceptedSendBufferSize=-1
+
+## The max number of request header fields cached across connections (0 disables the cache).
+## Authorization and Cookie fields are never cached across connections.
+# jetty.http.sharedHeaderCacheSize=0
+
+## The max number of parsed request paths cached across connections (0 disables the cache).
+# jetty.http.uriPathCacheSize=0
 # end::documentation[]
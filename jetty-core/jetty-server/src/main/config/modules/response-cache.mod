@@ -0,0 +1,21 @@
+[description]
+Applies ResponseCacheHandler to entire server, to cache the cacheable responses in memory.
+
+[tags]
+server
+
+[depend]
+server
+
+[xml]
+etc/jetty-response-cache.xml
+
+[ini-template]
+## The max size of a cached response content
+#jetty.responsecache.maxEntrySize=16777216
+
+## The max total size of the response contents cached in memory
+#jetty.responsecache.maxMemorySize=67108864
+
+## The max time in ms that a request waits for a concurrent request for the same URI, or 0 to not coalesce requests
+#jetty.responsecache.coalesceTimeout=5000
@@ -65,6 +65,28 @@ etc/jetty.xml
 ## Whether to use direct ByteBuffers for reading or writing
 # jetty.httpConfig.useInputDirectByteBuffers=true
 # jetty.httpConfig.useOutputDirectByteBuffers=true
+
+## Max bytes of small writes coalesced into a single write (0 to disable)
+# jetty.httpConfig.writeCoalescingSize=0
+
+## Max time (in milliseconds) that coalesced writes wait before being flushed
+# jetty.httpConfig.writeCoalescingDelay=1
+
+## Whether static file content may be sent with sendfile() over cleartext HTTP/1.1
+# jetty.httpConfig.sendFileEnabled=true
+
+## Min and max sizes of the read buffers, adapted to the traffic of each connection (0 to disable)
+# jetty.httpConfig.minInputBufferSize=0
+# jetty.httpConfig.maxInputBufferSize=0
+
+## Whether HTTP/1 request header values are decoded only when accessed
+# jetty.httpConfig.lazyHeaderValues=false
+
+## Max number of pipelined HTTP/1.1 requests handled concurrently per connection (0 to disable)
+# jetty.httpConfig.maxPipelinedRequests=0
+
+## Max number of bytes of pipelined responses buffered per connection
+# jetty.httpConfig.pipelinedResponseBufferSize=65536
 # end::documentation-http-config[]
 
 # tag::documentation-server-compliance[]
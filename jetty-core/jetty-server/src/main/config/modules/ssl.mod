@@ -33,6 +33,10 @@ etc/jetty-ssl-context.xml
 ## The number of selectors (-1 picks a default value based on number of cores).
 # jetty.ssl.selectors=-1
 
+## The time in microseconds that selectors spin before blocking (0 disables spinning).
+## Spinning lowers latency but keeps the selector threads busy, use only with dedicated cores.
+# jetty.ssl.selectSpinMicros=0
+
 ## The ServerSocketChannel accept queue backlog (0 picks the platform default).
 # jetty.ssl.acceptQueueSize=0
 
@@ -45,6 +49,9 @@ etc/jetty-ssl-context.xml
 ## Whether to enable the SO_REUSEPORT socket option.
 # jetty.ssl.reusePort=false
 
+## Whether to bind one SO_REUSEPORT listening socket per acceptor.
+# jetty.ssl.reusePortListeners=false
+
 ## Whether to enable the TCP_NODELAY socket option on accepted sockets.
 # jetty.ssl.acceptedTcpNoDelay=true
 
@@ -56,6 +63,9 @@ etc/jetty-ssl-context.xml
 ## A value of -1 indicates that the platform default is used.
 # jetty.ssl.acceptedSendBufferSize=-1
 
+## The max number of TLS records encrypted before they are written to the network.
+# jetty.ssl.maxFlushRecords=1
+
 ## Whether client SNI data is required for all secure connections.
 ## When SNI is required, clients that do not send SNI data are rejected with an HTTP 400 response.
 # jetty.ssl.sniRequired=false
@@ -19,6 +19,9 @@ module org.eclipse.jetty.server
     // Only required if using JMX.
     requires static org.eclipse.jetty.jmx;
 
+    // Only required if using adaptive compression in GzipHandler.
+    requires static java.management;
+
     exports org.eclipse.jetty.server;
     exports org.eclipse.jetty.server.handler;
     exports org.eclipse.jetty.server.handler.gzip;
@@ -190,12 +190,14 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
 
     private final Fields _fields;
     private final CharsetStringBuilder _builder;
+    private final boolean _ascii;
     private final int _maxFields;
     private final int _maxLength;
     private int _length;
     private String _name;
     private int _percent = 0;
     private byte _percentCode;
+    private boolean _building;
 
     private FormFields(Content.Source source, Charset charset, int maxFields, int maxSize)
     {
@@ -203,6 +205,8 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
         _maxFields = maxFields;
         _maxLength = maxSize;
         _builder = CharsetStringBuilder.forCharset(charset);
+        // US-ASCII bytes are decoded to the same characters by these charsets.
+        _ascii = charset == StandardCharsets.UTF_8 || charset == StandardCharsets.ISO_8859_1 || charset == StandardCharsets.US_ASCII;
         _fields = new Fields();
     }
 
@@ -217,7 +221,39 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
             loop:
             while (BufferUtil.hasContent(buffer))
             {
+                if (_ascii && _percent == 0)
+                {
+                    // Fast path for a run of US-ASCII bytes that need no decoding.
+                    byte delimiter = _name == null ? (byte)'=' : (byte)'&';
+                    int start = buffer.position();
+                    int limit = buffer.limit();
+                    int end = scanPlain(buffer, start, delimiter);
+                    boolean delimited = end < limit && buffer.get(end) == delimiter;
+                    if (!_building && (delimited || end == limit && _name != null && chunk.isLast()))
+                    {
+                        // The whole name or value is in this chunk, make the String directly.
+                        String string = BufferUtil.toString(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+                        checkLength(string);
+                        buffer.position(delimited ? end + 1 : end);
+                        if (_name != null)
+                        {
+                            value = string;
+                            break loop;
+                        }
+                        _name = string;
+                        continue;
+                    }
+                    if (end > start)
+                    {
+                        _builder.append(buffer.slice(start, end - start));
+                        _building = true;
+                        buffer.position(end);
+                        continue;
+                    }
+                }
+
                 byte b = buffer.get();
+                _building = true;
                 switch (_percent)
                 {
                     case 1 ->
@@ -241,6 +277,7 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
                         case '=' ->
                         {
                             _name = _builder.build();
+                            _building = false;
                             checkLength(_name);
                         }
                         case '+' -> _builder.append((byte)' ');
@@ -255,6 +292,7 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
                         case '&' ->
                         {
                             value = _builder.build();
+                            _building = false;
                             checkLength(value);
                             break loop;
                         }
@@ -275,6 +313,7 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
                         _builder.append(_percentCode);
                     }
                     value = _builder.build();
+                    _building = false;
                     checkLength(value);
                 }
 
@@ -294,6 +333,19 @@ public class FormFields extends ContentSourceCompletableFuture<Fields>
         return chunk.isLast() ? _fields : null;
     }
 
+    private static int scanPlain(ByteBuffer buffer, int start, byte delimiter)
+    {
+        int limit = buffer.limit();
+        for (int i = start; i < limit; ++i)
+        {
+            byte b = buffer.get(i);
+            // Stop at non US-ASCII bytes, encoded bytes and the delimiter.
+            if (b < 0 || b == '+' || b == '%' || b == delimiter)
+                return i;
+        }
+        return limit;
+    }
+
     private void checkLength(String nameOrValue)
     {
         if (_maxLength >= 0)
@@ -25,6 +25,7 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.UriCompliance;
+import org.eclipse.jetty.io.AdaptiveBufferSizer;
 import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.Index;
 import org.eclipse.jetty.util.Jetty;
@@ -71,6 +72,14 @@ public class HttpConfiguration implements Dumpable
     private boolean _useOutputDirectByteBuffers = true;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
+    private int _writeCoalescingSize;
+    private long _writeCoalescingDelay = 1;
+    private boolean _sendFileEnabled = true;
+    private int _minInputBufferSize;
+    private int _maxInputBufferSize;
+    private boolean _lazyHeaderValues;
+    private int _maxPipelinedRequests;
+    private int _pipelinedResponseBufferSize = 64 * 1024;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
     private UriCompliance _uriCompliance = UriCompliance.DEFAULT;
     private CookieCompliance _requestCookieCompliance = CookieCompliance.RFC6265;
@@ -144,6 +153,14 @@ public class HttpConfiguration implements Dumpable
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
+        _writeCoalescingSize = config._writeCoalescingSize;
+        _writeCoalescingDelay = config._writeCoalescingDelay;
+        _sendFileEnabled = config._sendFileEnabled;
+        _minInputBufferSize = config._minInputBufferSize;
+        _maxInputBufferSize = config._maxInputBufferSize;
+        _lazyHeaderValues = config._lazyHeaderValues;
+        _maxPipelinedRequests = config._maxPipelinedRequests;
+        _pipelinedResponseBufferSize = config._pipelinedResponseBufferSize;
         _httpCompliance = config._httpCompliance;
         _requestCookieCompliance = config._requestCookieCompliance;
         _responseCookieCompliance = config._responseCookieCompliance;
@@ -566,6 +583,194 @@ public class HttpConfiguration implements Dumpable
         _minResponseDataRate = bytesPerSecond;
     }
 
+    /**
+     * @return the max number of bytes of small writes coalesced by the endpoint, or 0 if coalescing is disabled
+     */
+    @ManagedAttribute("The max number of bytes of small writes coalesced by the endpoint")
+    public int getWriteCoalescingSize()
+    {
+        return _writeCoalescingSize;
+    }
+
+    /**
+     * <p>Sets the max number of bytes of small writes that are coalesced by the endpoint.</p>
+     * <p>Small writes issued back to back are copied into a pooled buffer and flushed
+     * together with a single gathering write, rather than with one write each.
+     * The writes complete as soon as their bytes have been copied, and the coalesced
+     * bytes are flushed once the connection has nothing more to write, or at the latest
+     * after the {@link #getWriteCoalescingDelay() coalescing delay}.</p>
+     *
+     * @param writeCoalescingSize the max number of bytes to coalesce, or 0 to disable coalescing
+     * @see org.eclipse.jetty.io.AbstractEndPoint#setWriteCoalescing(org.eclipse.jetty.io.ByteBufferPool, int, long)
+     */
+    public void setWriteCoalescingSize(int writeCoalescingSize)
+    {
+        _writeCoalescingSize = writeCoalescingSize;
+    }
+
+    /**
+     * @return the max time in milliseconds that coalesced writes wait before being flushed
+     */
+    @ManagedAttribute("The max time in milliseconds that coalesced writes wait before being flushed")
+    public long getWriteCoalescingDelay()
+    {
+        return _writeCoalescingDelay;
+    }
+
+    /**
+     * @param writeCoalescingDelay the max time in milliseconds that coalesced writes wait before being flushed
+     * @see #setWriteCoalescingSize(int)
+     */
+    public void setWriteCoalescingDelay(long writeCoalescingDelay)
+    {
+        _writeCoalescingDelay = writeCoalescingDelay;
+    }
+
+    /**
+     * @return whether file content may be sent without copying it to user space
+     */
+    @ManagedAttribute("Whether file content may be sent without copying it to user space")
+    public boolean isSendFileEnabled()
+    {
+        return _sendFileEnabled;
+    }
+
+    /**
+     * <p>Sets whether file content, such as static resources, may be sent with
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * which on most operating systems uses {@code sendfile()} to avoid copying the file bytes to user space.</p>
+     * <p>This is only possible over cleartext HTTP/1.1, and only if the content is not transformed,
+     * for example by compression; in all other cases the content is copied as usual.</p>
+     *
+     * @param sendFileEnabled whether file content may be sent without copying it to user space
+     * @see Response#writeFile(java.nio.file.Path, long, long, org.eclipse.jetty.util.Callback)
+     */
+    public void setSendFileEnabled(boolean sendFileEnabled)
+    {
+        _sendFileEnabled = sendFileEnabled;
+    }
+
+    /**
+     * @return the min size of the buffers used to read from a connection, or 0 if the size is not adaptive
+     */
+    @ManagedAttribute("The min size of the buffers used to read from a connection")
+    public int getMinInputBufferSize()
+    {
+        return _minInputBufferSize;
+    }
+
+    /**
+     * <p>Sets the min size of the buffers used to read from a connection.</p>
+     * <p>When both the min and the max sizes are positive, connections adapt the
+     * size of their read buffers to the recent traffic: idle or chatty connections
+     * use small buffers, while connections that receive large request content use
+     * large buffers. Otherwise, the fixed input buffer size of the connection
+     * factory is used.</p>
+     *
+     * @param minInputBufferSize the min size of the read buffers, or 0 to disable adaptive sizing
+     * @see #setMaxInputBufferSize(int)
+     * @see AdaptiveBufferSizer
+     */
+    public void setMinInputBufferSize(int minInputBufferSize)
+    {
+        _minInputBufferSize = minInputBufferSize;
+    }
+
+    /**
+     * @return the max size of the buffers used to read from a connection, or 0 if the size is not adaptive
+     */
+    @ManagedAttribute("The max size of the buffers used to read from a connection")
+    public int getMaxInputBufferSize()
+    {
+        return _maxInputBufferSize;
+    }
+
+    /**
+     * @param maxInputBufferSize the max size of the read buffers, or 0 to disable adaptive sizing
+     * @see #setMinInputBufferSize(int)
+     */
+    public void setMaxInputBufferSize(int maxInputBufferSize)
+    {
+        _maxInputBufferSize = maxInputBufferSize;
+    }
+
+    /**
+     * @param initialSize the initial size of the read buffers
+     * @return a new sizer for the read buffers of a connection, or null if adaptive sizing is disabled
+     */
+    public AdaptiveBufferSizer newInputBufferSizer(int initialSize)
+    {
+        if (_minInputBufferSize <= 0 || _maxInputBufferSize < _minInputBufferSize)
+            return null;
+        return new AdaptiveBufferSizer(_minInputBufferSize, _maxInputBufferSize, initialSize);
+    }
+
+    @ManagedAttribute("Whether request header values are decoded only when accessed")
+    public boolean isLazyHeaderValues()
+    {
+        return _lazyHeaderValues;
+    }
+
+    /**
+     * <p>Sets whether the values of HTTP/1 request headers are decoded only when accessed.</p>
+     * <p>When enabled, the header values that are not interpreted by the server reference
+     * the request buffer, which is retained until the request completes, rather than being
+     * decoded into strings while parsing.
+     * This reduces the allocations for requests with many headers that are mostly not
+     * accessed, at the cost of retaining the request buffers for longer.</p>
+     *
+     * @param lazyHeaderValues whether request header values are decoded only when accessed
+     * @see org.eclipse.jetty.http.LazyHttpField
+     */
+    public void setLazyHeaderValues(boolean lazyHeaderValues)
+    {
+        _lazyHeaderValues = lazyHeaderValues;
+    }
+
+    @ManagedAttribute("The max number of pipelined HTTP/1.1 requests handled concurrently per connection")
+    public int getMaxPipelinedRequests()
+    {
+        return _maxPipelinedRequests;
+    }
+
+    /**
+     * <p>Sets the max number of pipelined HTTP/1.1 requests that are handled concurrently
+     * with the request that precedes them on the same connection.</p>
+     * <p>When greater than zero, the safe requests without content ({@code GET}, {@code HEAD}
+     * and {@code OPTIONS}) that are already received behind a safe request are handled
+     * without waiting for the previous responses to complete.
+     * Their responses are buffered and written in request order, so that a slow request
+     * does not delay the handling of the requests pipelined behind it.
+     * When zero, pipelined requests are handled one at a time.</p>
+     *
+     * @param maxPipelinedRequests the max number of pipelined requests handled concurrently, or 0 to disable
+     * @see #setPipelinedResponseBufferSize(int)
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests)
+    {
+        _maxPipelinedRequests = maxPipelinedRequests;
+    }
+
+    @ManagedAttribute("The max number of bytes of pipelined responses buffered per connection")
+    public int getPipelinedResponseBufferSize()
+    {
+        return _pipelinedResponseBufferSize;
+    }
+
+    /**
+     * <p>Sets the max number of bytes of the responses to pipelined requests that are
+     * buffered per connection, while waiting for the previous responses to be written.</p>
+     * <p>When the limit is exceeded, the writes of the pipelined responses wait until
+     * it is their turn to be written to the network.</p>
+     *
+     * @param pipelinedResponseBufferSize the max number of bytes of buffered pipelined responses
+     * @see #setMaxPipelinedRequests(int)
+     */
+    public void setPipelinedResponseBufferSize(int pipelinedResponseBufferSize)
+    {
+        _pipelinedResponseBufferSize = pipelinedResponseBufferSize;
+    }
+
     public HttpCompliance getHttpCompliance()
     {
         return _httpCompliance;
@@ -767,6 +972,14 @@ public class HttpConfiguration implements Dumpable
             "maxErrorDispatches=" + _maxErrorDispatches,
             "minRequestDataRate=" + _minRequestDataRate,
             "minResponseDataRate=" + _minResponseDataRate,
+            "writeCoalescingSize=" + _writeCoalescingSize,
+            "writeCoalescingDelay=" + _writeCoalescingDelay,
+            "sendFileEnabled=" + _sendFileEnabled,
+            "minInputBufferSize=" + _minInputBufferSize,
+            "maxInputBufferSize=" + _maxInputBufferSize,
+            "lazyHeaderValues=" + _lazyHeaderValues,
+            "maxPipelinedRequests=" + _maxPipelinedRequests,
+            "pipelinedResponseBufferSize=" + _pipelinedResponseBufferSize,
             "requestCookieCompliance=" + _requestCookieCompliance,
             "responseCookieCompliance=" + _responseCookieCompliance,
             "notifyRemoteAsyncErrors=" + _notifyRemoteAsyncErrors,
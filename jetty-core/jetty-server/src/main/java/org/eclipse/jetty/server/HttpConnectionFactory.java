@@ -15,10 +15,14 @@ package org.eclipse.jetty.server;
 
 import java.util.Objects;
 
+import org.eclipse.jetty.http.CanonicalPathCache;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.SharedFieldCache;
+import org.eclipse.jetty.io.AbstractEndPoint;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.internal.HttpConnection;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.Name;
 
 /**
@@ -33,6 +37,8 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
     private boolean _recordHttpComplianceViolations;
     private boolean _useInputDirectByteBuffers;
     private boolean _useOutputDirectByteBuffers;
+    private SharedFieldCache _sharedFieldCache;
+    private CanonicalPathCache _canonicalPathCache;
 
     public HttpConnectionFactory()
     {
@@ -84,12 +90,71 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
         _useOutputDirectByteBuffers = useOutputDirectByteBuffers;
     }
 
+    @ManagedAttribute("The max number of header fields cached across connections, or 0 if the cache is disabled")
+    public int getSharedHeaderCacheSize()
+    {
+        SharedFieldCache cache = _sharedFieldCache;
+        return cache == null ? 0 : cache.getCapacity();
+    }
+
+    /**
+     * <p>Sets the max number of header fields cached across the connections created by this factory.</p>
+     * <p>Each connection parser has its own header cache, which does not help when connections
+     * are short-lived; the shared cache learns the header fields that are popular across all
+     * connections, so that their parsing does not allocate.</p>
+     *
+     * @param size the max number of shared header fields, or 0 to disable the shared cache
+     * @see SharedFieldCache
+     */
+    public void setSharedHeaderCacheSize(int size)
+    {
+        SharedFieldCache cache = size > 0 ? new SharedFieldCache(size) : null;
+        updateBean(_sharedFieldCache, cache);
+        _sharedFieldCache = cache;
+    }
+
+    public SharedFieldCache getSharedFieldCache()
+    {
+        return _sharedFieldCache;
+    }
+
+    @ManagedAttribute("The max number of parsed request paths cached across connections, or 0 if the cache is disabled")
+    public int getUriPathCacheSize()
+    {
+        CanonicalPathCache cache = _canonicalPathCache;
+        return cache == null ? 0 : cache.getCapacity();
+    }
+
+    /**
+     * <p>Sets the max number of parsed request paths cached across the connections created by this factory.</p>
+     * <p>The cache stores the canonical path, the decoded path and the URI compliance violations
+     * of the most recently used request paths, so that they are not parsed and decoded again.</p>
+     *
+     * @param size the max number of cached request paths, or 0 to disable the cache
+     * @see CanonicalPathCache
+     */
+    public void setUriPathCacheSize(int size)
+    {
+        CanonicalPathCache cache = size > 0 ? new CanonicalPathCache(size) : null;
+        updateBean(_canonicalPathCache, cache);
+        _canonicalPathCache = cache;
+    }
+
+    public CanonicalPathCache getCanonicalPathCache()
+    {
+        return _canonicalPathCache;
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         HttpConnection connection = new HttpConnection(_config, connector, endPoint, isRecordHttpComplianceViolations());
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
+        connection.getParser().setSharedFieldCache(_sharedFieldCache);
+        connection.setCanonicalPathCache(_canonicalPathCache);
+        if (_config.getWriteCoalescingSize() > 0 && endPoint instanceof AbstractEndPoint abstractEndPoint)
+            abstractEndPoint.setWriteCoalescing(connector.getByteBufferPool(), _config.getWriteCoalescingSize(), _config.getWriteCoalescingDelay());
         return configure(connection, connector, endPoint);
     }
 }
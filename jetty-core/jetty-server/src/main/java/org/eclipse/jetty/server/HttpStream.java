@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.MetaData;
@@ -82,6 +83,31 @@ public interface HttpStream extends Callback
      */
     void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback);
 
+    /**
+     * @return whether {@link #sendFile(MetaData.Request, MetaData.Response, FileChannel, long, long, Callback)}
+     * can be used to send the response content
+     */
+    default boolean isSendFileSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Send response meta-data, followed by the given region of the given file as the whole response content.</p>
+     * <p>This method must only be called if {@link #isSendFileSupported()} returns {@code true}.</p>
+     * @param request The request metadata for which the response should be sent.
+     * @param response The response metadata to be sent.
+     * @param file The file to send the content from; it is not closed by this method.
+     * @param position The position in the file of the first byte to send.
+     * @param length The number of bytes to send, which must be equal to the response content length.
+     * @param callback The callback to invoke when the send is completed successfully or in failure.
+     * @throws UnsupportedOperationException if sending a file is not supported
+     */
+    default void sendFile(MetaData.Request request, MetaData.Response response, FileChannel file, long position, long length, Callback callback)
+    {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * <p>Pushes the given {@code resource} to the client.</p>
      *
@@ -76,6 +76,7 @@ public class ResourceService
     private int _encodingCacheSize = 100;
     private boolean _dirAllowed = true;
     private boolean _acceptRanges = true;
+    private int _maxRanges = 200;
     private HttpField _cacheControl;
 
     public ResourceService()
@@ -677,6 +678,19 @@ public class ResourceService
             return;
         }
 
+        // If there are too many ranges, ignore them and send the entire content.
+        if (_maxRanges >= 0 && ranges.size() > _maxRanges)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Ignoring {} ranges, max is {}", ranges.size(), _maxRanges);
+            putHeaders(response, content, USE_KNOWN_CONTENT_LENGTH);
+            writeHttpContent(request, response, callback, content);
+            return;
+        }
+
+        // Cached or memory mapped content is sliced, rather than read again for each range.
+        ByteBuffer buffer = content.getByteBuffer();
+
         // If there is only a single valid range, send that range with a 206 response.
         if (ranges.size() == 1)
         {
@@ -685,6 +699,12 @@ public class ResourceService
             response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
             response.getHeaders().put(HttpHeader.CONTENT_RANGE, range.toHeaderValue(contentLength));
 
+            if (buffer != null)
+            {
+                response.write(true, buffer.slice(buffer.position() + (int)range.first(), (int)range.getLength()), callback);
+                return;
+            }
+
             // Try using the resource's path if possible, as the nio API is async and helps to avoid buffer copies.
             Path path = content.getResource().getPath();
             Content.Source source;
@@ -701,9 +721,18 @@ public class ResourceService
         response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
         String contentType = "multipart/byteranges; boundary=";
         String boundary = MultiPart.generateBoundary(null, 24);
-        MultiPartByteRanges.ContentSource byteRanges = new MultiPartByteRanges.ContentSource(boundary);
-        ranges.forEach(range -> byteRanges.addPart(new MultiPartByteRanges.Part(content.getContentTypeValue(), content.getResource(), range, contentLength)));
-        byteRanges.close();
+        Content.Source byteRanges;
+        if (buffer != null)
+        {
+            byteRanges = new MultiPartByteRanges.ByteBufferContentSource(boundary, content.getContentTypeValue(), buffer, ranges);
+        }
+        else
+        {
+            MultiPartByteRanges.ContentSource partsSource = new MultiPartByteRanges.ContentSource(boundary);
+            ranges.forEach(range -> partsSource.addPart(new MultiPartByteRanges.Part(content.getContentTypeValue(), content.getResource(), range, contentLength)));
+            partsSource.close();
+            byteRanges = partsSource;
+        }
         long partsContentLength = byteRanges.getLength();
         putHeaders(response, content, partsContentLength);
         response.getHeaders().put(HttpHeader.CONTENT_TYPE, contentType + boundary);
@@ -716,9 +745,19 @@ public class ResourceService
         {
             ByteBuffer buffer = content.getByteBuffer(); // this buffer is going to be consumed by response.write()
             if (buffer != null)
+            {
+                // The buffer may be cached, mapped or hold bytes that differ from the file, so it is always used.
                 response.write(true, buffer, callback);
-            else
-                new ContentWriterIteratingCallback(content, response, callback).iterate();
+                return;
+            }
+
+            // Try to send the file without copying its bytes.
+            Path path = content.getResource() == null ? null : content.getResource().getPath();
+            long contentLength = content.getContentLengthValue();
+            if (path != null && contentLength >= 0 && response.writeFile(path, 0, contentLength, callback))
+                return;
+
+            new ContentWriterIteratingCallback(content, response, callback).iterate();
         }
         catch (Throwable x)
         {
@@ -788,6 +827,14 @@ public class ResourceService
         return _acceptRanges;
     }
 
+    /**
+     * @return the max number of ranges of a request, after coalescing, or -1 for unlimited
+     */
+    public int getMaxRanges()
+    {
+        return _maxRanges;
+    }
+
     /**
      * @return If true, directory listings are returned if no welcome target is found. Else 403 Forbidden.
      */
@@ -830,6 +877,18 @@ public class ResourceService
         _acceptRanges = acceptRanges;
     }
 
+    /**
+     * <p>Sets the max number of ranges of a request, after overlapping and adjacent ranges are coalesced.</p>
+     * <p>The {@code Range} header of requests with more ranges is ignored, and the entire content is sent,
+     * so that many small ranges cannot be used to amplify the cost of a request.</p>
+     *
+     * @param maxRanges the max number of ranges of a request, or -1 for unlimited
+     */
+    public void setMaxRanges(int maxRanges)
+    {
+        _maxRanges = maxRanges;
+    }
+
     /**
      * @param cacheControl the cacheControl header to set on all static content.
      */
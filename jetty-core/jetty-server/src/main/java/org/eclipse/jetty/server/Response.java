@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ListIterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
@@ -158,6 +159,30 @@ public interface Response extends Content.Sink
     @Override
     void write(boolean last, ByteBuffer byteBuffer, Callback callback);
 
+    /**
+     * <p>Writes the given region of the given file as the whole, last content of this response,
+     * possibly without copying the file bytes to user space (for example with {@code sendfile()}).</p>
+     * <p>The write is only possible when the response is not committed, nothing has been
+     * written yet, the {@code Content-Length} header is set to {@code length}, and the
+     * transport supports it (for example cleartext HTTP/1.1).
+     * If it is not possible, this method returns {@code false} without using the callback,
+     * and the content must be written with {@link #write(boolean, ByteBuffer, Callback)}.</p>
+     * <p>{@link Wrapper}s do not forward this method by default, because they may
+     * transform the content; wrappers that do not transform the content may override
+     * this method to forward it to the wrapped response.</p>
+     *
+     * @param path the path of the file to write from
+     * @param position the position in the file of the first byte to write
+     * @param length the number of bytes to write
+     * @param callback the callback to notify when the write operation is complete
+     * @return {@code true} if the write was initiated and the callback will be completed,
+     * {@code false} if the write is not possible
+     */
+    default boolean writeFile(Path path, long position, long length, Callback callback)
+    {
+        return false;
+    }
+
     /**
      * <p>Returns a chunk processor suitable to be passed to the
      * {@link Content#copy(Content.Source, Content.Sink, Content.Chunk.Processor, Callback)}
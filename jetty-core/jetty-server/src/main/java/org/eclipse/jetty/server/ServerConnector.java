@@ -28,6 +28,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.EventListener;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.io.ByteBufferPool;
@@ -68,6 +69,14 @@ import org.eclipse.jetty.util.thread.Scheduler;
  * which should allow optimal performance even if all the connections used are performing
  * significant non-blocking work in the callback tasks.
  * </p>
+ * <h2>Listeners</h2>
+ * <p>
+ * By default, all the acceptor threads accept connections from a single listening socket.
+ * If {@link #setReusePortListeners(boolean)} is enabled and the platform supports the
+ * {@code SO_REUSEPORT} socket option, one listening socket per acceptor is bound to the
+ * same address, so that the kernel spreads the incoming connections across them.
+ * The connections accepted from a listening socket are all registered with the same selector.
+ * </p>
  */
 @ManagedObject("HTTP connector using NIO ByteChannels and Selectors")
 public class ServerConnector extends AbstractNetworkConnector
@@ -75,11 +84,14 @@ public class ServerConnector extends AbstractNetworkConnector
     private final SelectorManager _manager;
     private final AtomicReference<Closeable> _acceptor = new AtomicReference<>();
     private volatile ServerSocketChannel _acceptChannel;
+    private volatile ServerSocketChannel[] _listenChannels;
+    private volatile AtomicLongArray _listenerAccepted;
     private volatile boolean _inheritChannel = false;
     private volatile int _localPort = -1;
     private volatile int _acceptQueueSize = 0;
     private volatile boolean _reuseAddress = true;
     private volatile boolean _reusePort = false;
+    private volatile boolean _reusePortListeners = false;
     private volatile boolean _acceptedTcpNoDelay = true;
     private volatile int _acceptedReceiveBufferSize = -1;
     private volatile int _acceptedSendBufferSize = -1;
@@ -308,7 +320,49 @@ public class ServerConnector extends AbstractNetworkConnector
             if (_localPort <= 0)
                 throw new IOException("Server channel not bound");
             addBean(_acceptChannel);
+            openListenChannels();
+        }
+    }
+
+    private void openListenChannels() throws IOException
+    {
+        int listeners = getAcceptors();
+        if (!isReusePortListeners() || listeners < 2 || isInheritChannel())
+            return;
+
+        if (!_acceptChannel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+        {
+            LOG.warn("SO_REUSEPORT not supported, using a single listener for {}", this);
+            return;
+        }
+
+        ServerSocketChannel[] channels = new ServerSocketChannel[listeners];
+        channels[0] = _acceptChannel;
+        try
+        {
+            for (int i = 1; i < listeners; ++i)
+            {
+                // Bind to the actual port, as the configured one may be 0.
+                ServerSocketChannel channel = openReusePortChannel(_localPort);
+                channel.configureBlocking(true);
+                channels[i] = channel;
+                addBean(channel);
+            }
+        }
+        catch (Throwable x)
+        {
+            for (int i = 1; i < listeners; ++i)
+            {
+                if (channels[i] != null)
+                {
+                    removeBean(channels[i]);
+                    IO.close(channels[i]);
+                }
+            }
+            throw x;
         }
+        _listenChannels = channels;
+        _listenerAccepted = new AtomicLongArray(listeners);
     }
 
     /**
@@ -334,7 +388,7 @@ public class ServerConnector extends AbstractNetworkConnector
             InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(getPort()) : new InetSocketAddress(getHost(), getPort());
             serverChannel = ServerSocketChannel.open();
             setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
-            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort());
+            setSocketOption(serverChannel, StandardSocketOptions.SO_REUSEPORT, isReusePort() || isReusePortListeners());
             try
             {
                 serverChannel.bind(bindAddress, getAcceptQueueSize());
@@ -349,6 +403,24 @@ public class ServerConnector extends AbstractNetworkConnector
         return serverChannel;
     }
 
+    private ServerSocketChannel openReusePortChannel(int port) throws IOException
+    {
+        InetSocketAddress bindAddress = getHost() == null ? new InetSocketAddress(port) : new InetSocketAddress(getHost(), port);
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try
+        {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            serverChannel.bind(bindAddress, getAcceptQueueSize());
+            return serverChannel;
+        }
+        catch (Throwable e)
+        {
+            IO.close(serverChannel);
+            throw new IOException("Failed to bind to " + bindAddress, e);
+        }
+    }
+
     private <T> void setSocketOption(ServerSocketChannel channel, SocketOption<T> option, T value)
     {
         try
@@ -367,6 +439,18 @@ public class ServerConnector extends AbstractNetworkConnector
     {
         super.close();
 
+        ServerSocketChannel[] listenChannels = _listenChannels;
+        _listenChannels = null;
+        if (listenChannels != null)
+        {
+            // The first listener is the accept channel, closed below.
+            for (int i = 1; i < listenChannels.length; ++i)
+            {
+                removeBean(listenChannels[i]);
+                IO.close(listenChannels[i]);
+            }
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         _acceptChannel = null;
         if (serverChannel != null)
@@ -391,6 +475,20 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     public void accept(int acceptorID) throws IOException
     {
+        ServerSocketChannel[] listenChannels = _listenChannels;
+        if (listenChannels != null)
+        {
+            int listener = acceptorID % listenChannels.length;
+            ServerSocketChannel serverChannel = listenChannels[listener];
+            if (serverChannel.isOpen())
+            {
+                SocketChannel channel = serverChannel.accept();
+                _listenerAccepted.incrementAndGet(listener);
+                accepted(channel, listener);
+            }
+            return;
+        }
+
         ServerSocketChannel serverChannel = _acceptChannel;
         if (serverChannel != null && serverChannel.isOpen())
         {
@@ -400,11 +498,19 @@ public class ServerConnector extends AbstractNetworkConnector
     }
 
     private void accepted(SocketChannel channel) throws IOException
+    {
+        accepted(channel, -1);
+    }
+
+    private void accepted(SocketChannel channel, int listener) throws IOException
     {
         channel.configureBlocking(false);
         Socket socket = channel.socket();
         configure(socket);
-        _manager.accept(channel);
+        if (listener < 0)
+            _manager.accept(channel);
+        else
+            _manager.accept(channel, null, listener);
     }
 
     protected void configure(Socket socket)
@@ -502,6 +608,67 @@ public class ServerConnector extends AbstractNetworkConnector
         _reusePort = reusePort;
     }
 
+    /**
+     * @return whether one listening socket per acceptor is bound with {@code SO_REUSEPORT}
+     */
+    @ManagedAttribute("Whether one SO_REUSEPORT listening socket per acceptor is used")
+    public boolean isReusePortListeners()
+    {
+        return _reusePortListeners;
+    }
+
+    /**
+     * <p>Sets whether one listening socket per acceptor is bound with {@code SO_REUSEPORT}.</p>
+     * <p>When enabled, and when there is more than one acceptor, the kernel spreads the
+     * incoming connections across the listening sockets, rather than having all the
+     * acceptors compete for the single accept queue of a shared listening socket.
+     * Each acceptor accepts from its own listening socket and registers the accepted
+     * connections with the selector of the same index, modulo the number of selectors.</p>
+     * <p>This setting is ignored if the platform does not support {@code SO_REUSEPORT},
+     * if the channel is inherited, or if the channel is passed to {@link #open(ServerSocketChannel)}.</p>
+     *
+     * @param reusePortListeners whether one listening socket per acceptor is bound with {@code SO_REUSEPORT}
+     */
+    public void setReusePortListeners(boolean reusePortListeners)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _reusePortListeners = reusePortListeners;
+    }
+
+    /**
+     * @return the number of listening sockets in use
+     * @see #setReusePortListeners(boolean)
+     */
+    @ManagedAttribute("The number of listening sockets")
+    public int getListenerCount()
+    {
+        ServerSocketChannel[] listenChannels = _listenChannels;
+        if (listenChannels != null)
+            return listenChannels.length;
+        return isOpen() ? 1 : 0;
+    }
+
+    /**
+     * <p>Returns the number of connections accepted by each listening socket,
+     * or an empty array if a single listening socket is in use.</p>
+     *
+     * @return the number of connections accepted by each listening socket
+     * @see #setReusePortListeners(boolean)
+     */
+    public long[] getListenerAcceptedCounts()
+    {
+        AtomicLongArray accepted = _listenerAccepted;
+        if (accepted == null)
+            return new long[0];
+        long[] result = new long[accepted.length()];
+        for (int i = 0; i < result.length; ++i)
+        {
+            result[i] = accepted.get(i);
+        }
+        return result;
+    }
+
     /**
      * @return whether the accepted socket gets {@link java.net.SocketOptions#TCP_NODELAY TCP_NODELAY} enabled.
      * @see Socket#getTcpNoDelay()
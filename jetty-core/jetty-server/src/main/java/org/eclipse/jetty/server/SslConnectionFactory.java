@@ -41,6 +41,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
     private boolean _directBuffersForEncryption = false;
     private boolean _directBuffersForDecryption = false;
     private boolean _ensureSecureRequestCustomizer = true;
+    private int _maxFlushRecords = 1;
 
     public SslConnectionFactory()
     {
@@ -105,6 +106,27 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         _ensureSecureRequestCustomizer = ensureSecureRequestCustomizer;
     }
 
+    /**
+     * @return the max number of TLS records encrypted before they are written to the network
+     * @see SslConnection#getMaxFlushRecords()
+     */
+    public int getMaxFlushRecords()
+    {
+        return _maxFlushRecords;
+    }
+
+    /**
+     * @param maxFlushRecords the max number of TLS records encrypted before they are written to the network
+     * @throws IllegalArgumentException if {@code maxFlushRecords} is less than 1
+     * @see SslConnection#setMaxFlushRecords(int)
+     */
+    public void setMaxFlushRecords(int maxFlushRecords)
+    {
+        if (maxFlushRecords < 1)
+            throw new IllegalArgumentException("Invalid maxFlushRecords " + maxFlushRecords);
+        _maxFlushRecords = maxFlushRecords;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -154,6 +176,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setMaxFlushRecords(getMaxFlushRecords());
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server.handler;
 
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
@@ -33,7 +34,19 @@ public class ContextResponse extends Response.Wrapper
     @Override
     public void write(boolean last, ByteBuffer content, Callback callback)
     {
-        Callback contextCallback = new Callback()
+        super.write(last, content, newContextCallback(callback));
+    }
+
+    @Override
+    public boolean writeFile(Path path, long position, long length, Callback callback)
+    {
+        // The content is not transformed, so the file can be written by the wrapped response.
+        return getWrapped().writeFile(path, position, length, newContextCallback(callback));
+    }
+
+    private Callback newContextCallback(Callback callback)
+    {
+        return new Callback()
         {
             @Override
             public void succeeded()
@@ -53,6 +66,5 @@ public class ContextResponse extends Response.Wrapper
                 return Invocable.getInvocationType(callback);
             }
         };
-        super.write(last, content, contextCallback);
     }
 }
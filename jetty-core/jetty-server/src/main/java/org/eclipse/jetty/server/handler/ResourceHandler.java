@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.server.handler;
 
+import java.io.Closeable;
 import java.time.Duration;
 import java.util.List;
 
@@ -20,6 +21,7 @@ import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.content.CompressingHttpContentFactory;
 import org.eclipse.jetty.http.content.FileMappingHttpContentFactory;
 import org.eclipse.jetty.http.content.HttpContent;
 import org.eclipse.jetty.http.content.PreCompressedHttpContentFactory;
@@ -34,6 +36,7 @@ import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
@@ -62,6 +65,8 @@ public class ResourceHandler extends Handler.Wrapper
     private Resource _styleSheet;
     private MimeTypes _mimeTypes;
     private List<String> _welcomes = List.of("index.html");
+    private List<CompressedContentFormat> _compressedFormats = List.of();
+    private boolean _watchBaseResource;
 
     public ResourceHandler()
     {
@@ -105,6 +110,14 @@ public class ResourceHandler extends Handler.Wrapper
         super.doStart();
     }
 
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        if (getHttpContentFactory() instanceof Closeable closeable)
+            IO.close(closeable);
+    }
+
     private ByteBufferPool getByteBufferPool(Context context)
     {
         if (context == null)
@@ -126,7 +139,16 @@ public class ResourceHandler extends Handler.Wrapper
         contentFactory = new FileMappingHttpContentFactory(contentFactory);
         contentFactory = new VirtualHttpContentFactory(contentFactory, getStyleSheet(), "text/css");
         contentFactory = new PreCompressedHttpContentFactory(contentFactory, getPrecompressedFormats());
-        contentFactory = new ValidatingCachingHttpContentFactory(contentFactory, Duration.ofSeconds(1).toMillis(), getByteBufferPool());
+        Server server = getServer();
+        if (!getCompressedFormats().isEmpty())
+        {
+            contentFactory = new CompressingHttpContentFactory(contentFactory, getCompressedFormats(), server == null ? null : server.getThreadPool());
+        }
+        if (isWatchBaseResource() && server != null)
+            contentFactory = new ValidatingCachingHttpContentFactory(contentFactory, Duration.ofSeconds(1).toMillis(), getByteBufferPool(),
+                server.getScheduler(), Duration.ofMinutes(1).toMillis(), -1, getBaseResource());
+        else
+            contentFactory = new ValidatingCachingHttpContentFactory(contentFactory, Duration.ofSeconds(1).toMillis(), getByteBufferPool());
         return contentFactory;
     }
 
@@ -224,6 +246,15 @@ public class ResourceHandler extends Handler.Wrapper
         return _resourceService.isAcceptRanges();
     }
 
+    /**
+     * @return the max number of ranges of a request, or -1 for unlimited
+     * @see ResourceService#getMaxRanges()
+     */
+    public int getMaxRanges()
+    {
+        return _resourceService.getMaxRanges();
+    }
+
     /**
      * @return If true, directory listings are returned if no welcome file is found. Else 403 Forbidden.
      */
@@ -248,6 +279,38 @@ public class ResourceHandler extends Handler.Wrapper
         return _resourceService.getPrecompressedFormats();
     }
 
+    /**
+     * @return Formats in which static content is compressed on the fly and cached, if no precompressed resource is found.
+     */
+    public List<CompressedContentFormat> getCompressedFormats()
+    {
+        return _compressedFormats;
+    }
+
+    /**
+     * @return whether the cached content is evicted as soon as the files of the base resource change
+     * @see ValidatingCachingHttpContentFactory
+     */
+    public boolean isWatchBaseResource()
+    {
+        return _watchBaseResource;
+    }
+
+    /**
+     * <p>Sets whether the directories of the cached content are watched for changes, so that the content
+     * is evicted as soon as its files change, rather than checking the files when they are accessed.</p>
+     * <p>The cache is also reconciled with the filesystem every minute, in case a change was missed.</p>
+     *
+     * @param watchBaseResource whether the cached content is evicted as soon as the files of the base resource change
+     * @see ValidatingCachingHttpContentFactory
+     */
+    public void setWatchBaseResource(boolean watchBaseResource)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _watchBaseResource = watchBaseResource;
+    }
+
     public ResourceService.WelcomeMode getWelcomeMode()
     {
         return _resourceService.getWelcomeMode();
@@ -261,6 +324,15 @@ public class ResourceHandler extends Handler.Wrapper
         _resourceService.setAcceptRanges(acceptRanges);
     }
 
+    /**
+     * @param maxRanges the max number of ranges of a request, or -1 for unlimited
+     * @see ResourceService#setMaxRanges(int)
+     */
+    public void setMaxRanges(int maxRanges)
+    {
+        _resourceService.setMaxRanges(maxRanges);
+    }
+
     /**
      * @param base The resourceBase to server content from. If null the
      * context resource base is used.
@@ -333,6 +405,26 @@ public class ResourceHandler extends Handler.Wrapper
         _resourceService.setPrecompressedFormats(precompressedFormats);
     }
 
+    /**
+     * @param compressedFormats The list of formats in which static content is compressed on the fly and cached,
+     * if no precompressed resource is found. For example serve a cached gzip encoded variant of a text file.
+     * @see CompressingHttpContentFactory
+     */
+    public void setCompressedFormats(CompressedContentFormat... compressedFormats)
+    {
+        setCompressedFormats(List.of(compressedFormats));
+    }
+
+    /**
+     * @param compressedFormats The list of formats in which static content is compressed on the fly and cached,
+     * if no precompressed resource is found. For example serve a cached gzip encoded variant of a text file.
+     * @see CompressingHttpContentFactory
+     */
+    public void setCompressedFormats(List<CompressedContentFormat> compressedFormats)
+    {
+        _compressedFormats = List.copyOf(compressedFormats);
+    }
+
     public void setEncodingCacheSize(int encodingCacheSize)
     {
         _resourceService.setEncodingCacheSize(encodingCacheSize);
@@ -0,0 +1,1203 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.DateParser;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.io.ByteBufferAccumulator;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Retainable;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link Handler} that acts as a shared HTTP cache, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9111">RFC 9111</a>, for the responses of the handlers it wraps,
+ * for example a {@code ResourceHandler} or a {@code ProxyHandler}.</p>
+ * <p>{@code GET} responses are stored when their status and their {@code Cache-Control}, {@code Expires},
+ * {@code Vary} and {@code Last-Modified} headers allow it, and are then served from the cache while they are
+ * fresh, to {@code GET} and {@code HEAD} requests whose headers match the headers listed by {@code Vary}.
+ * Conditional requests with {@code If-None-Match} or {@code If-Modified-Since} are answered by the cache.
+ * Stale responses are not revalidated, but fetched again from the wrapped handler.
+ * Successful unsafe requests, such as {@code POST}, invalidate the responses cached for their URI.</p>
+ * <p>Concurrent requests that miss the cache for the same URI are coalesced: only the first is handled by
+ * the wrapped handler, while the others wait, up to {@link #getCoalesceTimeout()}, to be served from the
+ * cache once the first response is stored.</p>
+ * <p>The response content is stored in buffers from the {@link ByteBufferPool}, up to {@link #getMaxMemorySize()}.
+ * If a {@link #setDiskDirectory(Path) disk directory} is configured, the contents larger than
+ * {@link #getMaxMemoryEntrySize()} are stored in files of that directory and served memory-mapped, up to
+ * {@link #getMaxDiskSize()}. Entries are evicted from each store with the CLOCK algorithm, which approximates LRU.</p>
+ * <p>As a shared cache, responses to requests with {@code Authorization} are only stored if explicitly allowed,
+ * responses with {@code Set-Cookie}, {@code Cache-Control: private}, {@code no-store} or {@code no-cache}
+ * are never stored.</p>
+ */
+@ManagedObject("A shared HTTP response cache")
+public class ResponseCacheHandler extends Handler.Wrapper
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCacheHandler.class);
+    // RFC 9110 status codes that are heuristically cacheable.
+    private static final Set<Integer> CACHEABLE_STATUS = Set.of(200, 203, 204, 300, 301, 308, 404, 405, 410, 414, 501);
+    // Hop-by-hop headers, and headers that are computed when the response is served.
+    private static final EnumSet<HttpHeader> UNSTORED_HEADERS = EnumSet.of(
+        HttpHeader.CONNECTION,
+        HttpHeader.KEEP_ALIVE,
+        HttpHeader.PROXY_AUTHENTICATE,
+        HttpHeader.PROXY_AUTHORIZATION,
+        HttpHeader.TE,
+        HttpHeader.TRAILER,
+        HttpHeader.TRANSFER_ENCODING,
+        HttpHeader.UPGRADE,
+        HttpHeader.DATE,
+        HttpHeader.AGE,
+        HttpHeader.CONTENT_LENGTH
+    );
+    // RFC 9110 headers sent in a 304 response.
+    private static final EnumSet<HttpHeader> NOT_MODIFIED_HEADERS = EnumSet.of(
+        HttpHeader.CACHE_CONTROL,
+        HttpHeader.CONTENT_LOCATION,
+        HttpHeader.ETAG,
+        HttpHeader.EXPIRES,
+        HttpHeader.VARY
+    );
+    // RFC 9111 suggests 10% of the time since last modification, capped here to one day.
+    private static final long MAX_HEURISTIC_FRESHNESS = TimeUnit.DAYS.toSeconds(1);
+
+    private final Map<String, List<Entry>> _entries = new ConcurrentHashMap<>();
+    private final Map<String, Fill> _fills = new ConcurrentHashMap<>();
+    private final Store _memory = new Store();
+    private final Store _disk = new Store();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _stores = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _coalesced = new LongAdder();
+    private int _maxEntrySize = 16 * 1024 * 1024;
+    private int _maxMemoryEntrySize = 1024 * 1024;
+    private long _maxMemorySize = 64 * 1024 * 1024;
+    private long _maxDiskSize = 1024 * 1024 * 1024;
+    private long _coalesceTimeout = 5000;
+    private Path _diskDirectory;
+
+    public ResponseCacheHandler()
+    {
+        this(null);
+    }
+
+    public ResponseCacheHandler(Handler handler)
+    {
+        super(handler);
+    }
+
+    @ManagedAttribute("The max size of a cached response content")
+    public int getMaxEntrySize()
+    {
+        return _maxEntrySize;
+    }
+
+    public void setMaxEntrySize(int maxEntrySize)
+    {
+        _maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute("The max size of a response content cached in memory, when a disk directory is configured")
+    public int getMaxMemoryEntrySize()
+    {
+        return _maxMemoryEntrySize;
+    }
+
+    public void setMaxMemoryEntrySize(int maxMemoryEntrySize)
+    {
+        _maxMemoryEntrySize = maxMemoryEntrySize;
+    }
+
+    @ManagedAttribute("The max total size of the response contents cached in memory")
+    public long getMaxMemorySize()
+    {
+        return _maxMemorySize;
+    }
+
+    public void setMaxMemorySize(long maxMemorySize)
+    {
+        _maxMemorySize = maxMemorySize;
+    }
+
+    @ManagedAttribute("The max total size of the response contents cached on disk")
+    public long getMaxDiskSize()
+    {
+        return _maxDiskSize;
+    }
+
+    public void setMaxDiskSize(long maxDiskSize)
+    {
+        _maxDiskSize = maxDiskSize;
+    }
+
+    /**
+     * @return the directory of the files of the response contents cached on disk, or null if
+     * the response contents are only cached in memory
+     */
+    public Path getDiskDirectory()
+    {
+        return _diskDirectory;
+    }
+
+    /**
+     * @param diskDirectory the directory of the files of the response contents cached on disk, or
+     * null to only cache the response contents in memory
+     */
+    public void setDiskDirectory(Path diskDirectory)
+    {
+        _diskDirectory = diskDirectory;
+    }
+
+    @ManagedAttribute("The max time in ms that a request waits for a concurrent request for the same URI, or 0 to not coalesce requests")
+    public long getCoalesceTimeout()
+    {
+        return _coalesceTimeout;
+    }
+
+    public void setCoalesceTimeout(long coalesceTimeout)
+    {
+        _coalesceTimeout = coalesceTimeout;
+    }
+
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of requests not served from the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of responses stored in the cache")
+    public long getStores()
+    {
+        return _stores.sum();
+    }
+
+    @ManagedAttribute("The number of responses evicted from the cache to make room")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedAttribute("The number of requests that waited for a concurrent request for the same URI")
+    public long getCoalesced()
+    {
+        return _coalesced.sum();
+    }
+
+    @ManagedAttribute("The number of cached responses")
+    public int getEntries()
+    {
+        return _memory._count.get() + _disk._count.get();
+    }
+
+    @ManagedAttribute("The total size of the response contents cached in memory")
+    public long getMemorySize()
+    {
+        return _memory._size.get();
+    }
+
+    @ManagedAttribute("The total size of the response contents cached on disk")
+    public long getDiskSize()
+    {
+        return _disk._size.get();
+    }
+
+    @ManagedOperation(value = "Clears the cache and its statistics", impact = "ACTION")
+    public void clear()
+    {
+        for (List<Entry> variants : _entries.values())
+        {
+            for (Entry entry : variants)
+            {
+                remove(entry);
+            }
+        }
+        _hits.reset();
+        _misses.reset();
+        _stores.reset();
+        _evictions.reset();
+        _coalesced.reset();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        clear();
+    }
+
+    @Override
+    public boolean handle(Request request, Response response, Callback callback) throws Exception
+    {
+        Handler next = getHandler();
+        if (next == null)
+            return false;
+
+        HttpMethod method = HttpMethod.fromString(request.getMethod());
+        if (method != HttpMethod.GET && method != HttpMethod.HEAD)
+        {
+            // Successful unsafe requests invalidate the cached responses.
+            if (method != null && method.isSafe())
+                return next.handle(request, response, callback);
+            String key = key(request);
+            InvalidatingResponse invalidating = new InvalidatingResponse(request, response, callback, key);
+            return next.handle(request, invalidating, invalidating);
+        }
+
+        CacheControl cacheControl = CacheControl.from(request.getHeaders());
+        if (cacheControl._noStore)
+            return next.handle(request, response, callback);
+
+        String key = key(request);
+        if (!cacheControl._noCache)
+        {
+            Entry entry = lookup(key, request, cacheControl);
+            if (entry != null)
+            {
+                _hits.increment();
+                serve(request, response, callback, entry);
+                return true;
+            }
+        }
+
+        _misses.increment();
+        if (cacheControl._onlyIfCached)
+        {
+            Response.writeError(request, response, callback, HttpStatus.GATEWAY_TIMEOUT_504);
+            return true;
+        }
+
+        // Only GET responses are stored.
+        if (method == HttpMethod.HEAD)
+            return next.handle(request, response, callback);
+
+        Fill fill = null;
+        if (_coalesceTimeout > 0 && !cacheControl._noCache)
+        {
+            fill = new Fill(key);
+            Fill leader = _fills.putIfAbsent(key, fill);
+            if (leader != null)
+            {
+                fill = null;
+                if (leader.await(request, () -> resume(next, request, response, callback, key, cacheControl)))
+                {
+                    _coalesced.increment();
+                    return true;
+                }
+            }
+        }
+        return forward(next, request, response, callback, key, fill);
+    }
+
+    private void resume(Handler next, Request request, Response response, Callback callback, String key, CacheControl cacheControl)
+    {
+        try
+        {
+            Entry entry = lookup(key, request, cacheControl);
+            if (entry != null)
+            {
+                _hits.increment();
+                serve(request, response, callback, entry);
+            }
+            else if (!forward(next, request, response, callback, key, null))
+            {
+                Response.writeError(request, response, callback, HttpStatus.NOT_FOUND_404);
+            }
+        }
+        catch (Throwable x)
+        {
+            Response.writeError(request, response, callback, x);
+        }
+    }
+
+    private boolean forward(Handler next, Request request, Response response, Callback callback, String key, Fill fill) throws Exception
+    {
+        CachingResponse cachingResponse = new CachingResponse(request, response, callback, key, fill);
+        try
+        {
+            if (next.handle(request, cachingResponse, cachingResponse))
+                return true;
+            cachingResponse.abort();
+            return false;
+        }
+        catch (Throwable x)
+        {
+            cachingResponse.abort();
+            throw x;
+        }
+    }
+
+    private static String key(Request request)
+    {
+        HttpURI uri = request.getHttpURI();
+        String pathQuery = uri.getPathQuery();
+        return uri.getScheme() + "://" + uri.getAuthority() + (pathQuery == null ? "/" : pathQuery);
+    }
+
+    private Entry lookup(String key, Request request, CacheControl cacheControl)
+    {
+        List<Entry> variants = _entries.get(key);
+        if (variants == null)
+            return null;
+        for (Entry entry : variants)
+        {
+            if (!entry.matches(request))
+                continue;
+            long age = entry.getAge();
+            if (age >= entry._freshness)
+            {
+                // Stale entries are fetched again.
+                remove(entry);
+                return null;
+            }
+            if (cacheControl._maxAge >= 0 && age > cacheControl._maxAge)
+                return null;
+            if (!entry.retain())
+                return null;
+            entry._referenced = true;
+            return entry;
+        }
+        return null;
+    }
+
+    private void serve(Request request, Response response, Callback callback, Entry entry)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} serving {} for {}", this, entry, request);
+
+        Callback release = Callback.from(callback, entry::release);
+        HttpFields.Mutable headers = response.getHeaders();
+        String age = Long.toString(entry.getAge());
+        if (isNotModified(request, entry))
+        {
+            response.setStatus(HttpStatus.NOT_MODIFIED_304);
+            for (HttpField field : entry._headers)
+            {
+                if (NOT_MODIFIED_HEADERS.contains(field.getHeader()))
+                    headers.add(field);
+            }
+            headers.put(HttpHeader.AGE, age);
+            response.write(true, null, release);
+            return;
+        }
+
+        response.setStatus(entry._status);
+        headers.add(entry._headers);
+        headers.put(HttpHeader.AGE, age);
+        headers.put(HttpHeader.CONTENT_LENGTH, entry._length);
+        if (HttpMethod.HEAD.is(request.getMethod()))
+            response.write(true, null, release);
+        else
+            response.write(true, entry._content.slice(), release);
+    }
+
+    private boolean isNotModified(Request request, Entry entry)
+    {
+        if (entry._status != HttpStatus.OK_200)
+            return false;
+
+        HttpFields headers = request.getHeaders();
+        List<String> ifNoneMatch = headers.getValuesList(HttpHeader.IF_NONE_MATCH);
+        if (!ifNoneMatch.isEmpty())
+        {
+            if (entry._etag == null)
+                return false;
+            QuotedCSV etags = new QuotedCSV(true, ifNoneMatch.toArray(String[]::new));
+            for (String etag : etags)
+            {
+                // If-None-Match uses the weak comparison.
+                if ("*".equals(etag) || weak(etag).equals(weak(entry._etag)))
+                    return true;
+            }
+            return false;
+        }
+
+        String ifModifiedSince = headers.get(HttpHeader.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null && entry._lastModified >= 0)
+        {
+            long date = DateParser.parseDate(ifModifiedSince);
+            return date >= 0 && entry._lastModified <= date;
+        }
+        return false;
+    }
+
+    private static String weak(String etag)
+    {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * <p>Removes the cached responses for the given URI.</p>
+     *
+     * @param uri the URI of the responses to remove, including scheme and authority
+     */
+    public void invalidate(String uri)
+    {
+        List<Entry> variants = _entries.get(uri);
+        if (variants == null)
+            return;
+        for (Entry entry : variants)
+        {
+            remove(entry);
+        }
+    }
+
+    private void store(Request request, String key, int status, HttpFields headers, RetainableByteBuffer content)
+    {
+        try
+        {
+            Entry entry = newEntry(request, key, status, headers, content);
+            if (entry == null)
+            {
+                content.release();
+                return;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} storing {}", this, entry);
+
+            List<Entry> replaced = new ArrayList<>();
+            _entries.compute(key, (k, variants) ->
+            {
+                List<Entry> result = new ArrayList<>();
+                if (variants != null)
+                {
+                    for (Entry variant : variants)
+                    {
+                        if (variant.isVariantOf(entry))
+                            replaced.add(variant);
+                        else
+                            result.add(variant);
+                    }
+                }
+                result.add(entry);
+                return List.copyOf(result);
+            });
+            for (Entry variant : replaced)
+            {
+                variant.discard();
+            }
+            _stores.increment();
+            entry._store.add(entry);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} could not store {}", this, key, x);
+        }
+    }
+
+    private Entry newEntry(Request request, String key, int status, HttpFields headers, RetainableByteBuffer content) throws IOException
+    {
+        if (!CACHEABLE_STATUS.contains(status))
+            return null;
+
+        CacheControl cacheControl = CacheControl.from(headers);
+        if (cacheControl._noStore || cacheControl._noCache || cacheControl._private)
+            return null;
+        if (headers.contains(HttpHeader.SET_COOKIE))
+            return null;
+        if (request.getHeaders().contains(HttpHeader.AUTHORIZATION) &&
+            !cacheControl._public && !cacheControl._mustRevalidate && cacheControl._sMaxAge < 0)
+            return null;
+
+        List<String> vary = new ArrayList<>();
+        for (String name : new QuotedCSV(false, headers.getValuesList(HttpHeader.VARY).toArray(String[]::new)))
+        {
+            if ("*".equals(name))
+                return null;
+            vary.add(name);
+        }
+
+        long now = System.currentTimeMillis();
+        long date = parseDate(headers.get(HttpHeader.DATE), now);
+        long lastModified = parseDate(headers.get(HttpHeader.LAST_MODIFIED), -1);
+        long freshness;
+        if (cacheControl._sMaxAge >= 0)
+            freshness = cacheControl._sMaxAge;
+        else if (cacheControl._maxAge >= 0)
+            freshness = cacheControl._maxAge;
+        else if (headers.contains(HttpHeader.EXPIRES))
+            freshness = Math.max(0, TimeUnit.MILLISECONDS.toSeconds(parseDate(headers.get(HttpHeader.EXPIRES), date) - date));
+        else if (lastModified >= 0 && lastModified < date)
+            freshness = Math.min(MAX_HEURISTIC_FRESHNESS, TimeUnit.MILLISECONDS.toSeconds(date - lastModified) / 10);
+        else
+            freshness = 0;
+
+        long age = Math.max(0, headers.getLongField(HttpHeader.AGE));
+        if (freshness <= age)
+            return null;
+
+        HttpFields.Mutable stored = HttpFields.build(headers.size());
+        for (HttpField field : headers)
+        {
+            if (!UNSTORED_HEADERS.contains(field.getHeader()))
+                stored.add(field);
+        }
+
+        List<String> varyValues = new ArrayList<>(vary.size());
+        for (String name : vary)
+        {
+            varyValues.add(varyValue(request.getHeaders(), name));
+        }
+
+        int length = content.remaining();
+        Path diskDirectory = getDiskDirectory();
+        if (diskDirectory == null || length <= getMaxMemoryEntrySize())
+            return new Entry(key, vary, varyValues, status, stored.asImmutable(), cacheControl, freshness, age, lastModified, _memory, content, null);
+
+        // Write large contents to disk, and serve them memory-mapped.
+        Path file = Files.createTempFile(diskDirectory, "cache-", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer byteBuffer = content.getByteBuffer().slice();
+            while (byteBuffer.hasRemaining())
+            {
+                channel.write(byteBuffer);
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            content.release();
+            return new Entry(key, vary, varyValues, status, stored.asImmutable(), cacheControl, freshness, age, lastModified, _disk, null, mapped).withFile(file);
+        }
+        catch (Throwable x)
+        {
+            Files.deleteIfExists(file);
+            throw x;
+        }
+    }
+
+    private static long parseDate(String value, long defaultValue)
+    {
+        if (value == null)
+            return defaultValue;
+        long date = DateParser.parseDate(value);
+        return date < 0 ? defaultValue : date;
+    }
+
+    private static String varyValue(HttpFields headers, String name)
+    {
+        List<String> values = headers.getValuesList(name);
+        if (values.isEmpty())
+            return null;
+        StringBuilder builder = new StringBuilder();
+        for (String value : values)
+        {
+            if (!builder.isEmpty())
+                builder.append(',');
+            builder.append(StringUtil.strip(value, " "));
+        }
+        return builder.toString();
+    }
+
+    private void remove(Entry entry)
+    {
+        _entries.computeIfPresent(entry._key, (k, variants) ->
+        {
+            if (!variants.contains(entry))
+                return variants;
+            List<Entry> result = new ArrayList<>(variants);
+            result.remove(entry);
+            return result.isEmpty() ? null : List.copyOf(result);
+        });
+        entry.discard();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{entries=%d,memory=%d,disk=%d}", getClass().getSimpleName(), hashCode(), getEntries(), getMemorySize(), getDiskSize());
+    }
+
+    /**
+     * <p>The {@code Cache-Control} directives relevant to a shared cache.</p>
+     */
+    private static class CacheControl
+    {
+        private boolean _noStore;
+        private boolean _noCache;
+        private boolean _private;
+        private boolean _public;
+        private boolean _mustRevalidate;
+        private boolean _onlyIfCached;
+        private long _maxAge = -1;
+        private long _sMaxAge = -1;
+
+        private static CacheControl from(HttpFields headers)
+        {
+            CacheControl cacheControl = new CacheControl();
+            List<String> values = headers.getValuesList(HttpHeader.CACHE_CONTROL);
+            if (values.isEmpty())
+            {
+                if (headers.contains(HttpHeader.PRAGMA, HttpHeaderValue.NO_CACHE.asString()))
+                    cacheControl._noCache = true;
+                return cacheControl;
+            }
+
+            for (String directive : new QuotedCSV(false, values.toArray(String[]::new)))
+            {
+                String name = directive;
+                String value = null;
+                int equals = directive.indexOf('=');
+                if (equals >= 0)
+                {
+                    name = directive.substring(0, equals).trim();
+                    value = directive.substring(equals + 1).trim();
+                }
+                switch (StringUtil.asciiToLowerCase(name))
+                {
+                    case "no-store" -> cacheControl._noStore = true;
+                    // The qualified forms of no-cache and private are handled as unqualified.
+                    case "no-cache" -> cacheControl._noCache = true;
+                    case "private" -> cacheControl._private = true;
+                    case "public" -> cacheControl._public = true;
+                    case "must-revalidate", "proxy-revalidate" -> cacheControl._mustRevalidate = true;
+                    case "only-if-cached" -> cacheControl._onlyIfCached = true;
+                    case "max-age" -> cacheControl._maxAge = seconds(value);
+                    case "s-maxage" -> cacheControl._sMaxAge = seconds(value);
+                    default ->
+                    {
+                    }
+                }
+            }
+            return cacheControl;
+        }
+
+        private static long seconds(String value)
+        {
+            try
+            {
+                // Invalid values are treated as stale.
+                return value == null ? 0 : Math.max(0, Long.parseLong(value));
+            }
+            catch (NumberFormatException x)
+            {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * <p>A stored response.</p>
+     */
+    private class Entry
+    {
+        private final Retainable.ReferenceCounter _references = new Retainable.ReferenceCounter();
+        private final AtomicBoolean _discarded = new AtomicBoolean();
+        private final String _key;
+        private final List<String> _vary;
+        private final List<String> _varyValues;
+        private final int _status;
+        private final HttpFields _headers;
+        private final long _freshness;
+        private final long _initialAge;
+        private final long _storedNanos = NanoTime.now();
+        private final long _lastModified;
+        private final String _etag;
+        private final Store _store;
+        private final RetainableByteBuffer _buffer;
+        private final ByteBuffer _content;
+        private final int _length;
+        private Path _file;
+        private volatile boolean _referenced;
+
+        private Entry(String key, List<String> vary, List<String> varyValues, int status, HttpFields headers, CacheControl cacheControl, long freshness, long initialAge, long lastModified, Store store, RetainableByteBuffer buffer, ByteBuffer mapped)
+        {
+            _key = key;
+            _vary = vary;
+            _varyValues = varyValues;
+            _status = status;
+            _headers = headers;
+            _freshness = freshness;
+            _initialAge = initialAge;
+            _lastModified = lastModified;
+            _etag = headers.get(HttpHeader.ETAG);
+            _store = store;
+            _buffer = buffer;
+            _content = (buffer == null ? mapped : buffer.getByteBuffer()).asReadOnlyBuffer();
+            _length = _content.remaining();
+        }
+
+        private Entry withFile(Path file)
+        {
+            _file = file;
+            return this;
+        }
+
+        private long getAge()
+        {
+            return _initialAge + TimeUnit.NANOSECONDS.toSeconds(NanoTime.since(_storedNanos));
+        }
+
+        private boolean matches(Request request)
+        {
+            for (int i = 0; i < _vary.size(); ++i)
+            {
+                if (!Objects.equals(_varyValues.get(i), varyValue(request.getHeaders(), _vary.get(i))))
+                    return false;
+            }
+            return true;
+        }
+
+        private boolean isVariantOf(Entry entry)
+        {
+            return _vary.equals(entry._vary) && _varyValues.equals(entry._varyValues);
+        }
+
+        private boolean retain()
+        {
+            return _references.tryRetain();
+        }
+
+        private void release()
+        {
+            if (_references.release())
+            {
+                if (_buffer != null)
+                    _buffer.release();
+                if (_file != null)
+                {
+                    try
+                    {
+                        Files.deleteIfExists(_file);
+                    }
+                    catch (Throwable x)
+                    {
+                        LOG.trace("IGNORED", x);
+                    }
+                }
+            }
+        }
+
+        private void discard()
+        {
+            if (_discarded.compareAndSet(false, true))
+            {
+                _store.removed(this);
+                release();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s,%d,%s,length=%d,age=%d/%d}", getClass().getSimpleName(), hashCode(), _key, _status, _varyValues, _length, getAge(), _freshness);
+        }
+    }
+
+    /**
+     * <p>The entries stored in memory or on disk, evicted with the CLOCK algorithm.</p>
+     */
+    private class Store
+    {
+        private final ConcurrentLinkedQueue<Entry> _clock = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _queued = new AtomicInteger();
+        private final AtomicInteger _count = new AtomicInteger();
+        private final AtomicLong _size = new AtomicLong();
+
+        private long getMaxSize()
+        {
+            return this == _memory ? getMaxMemorySize() : getMaxDiskSize();
+        }
+
+        private void add(Entry entry)
+        {
+            _count.incrementAndGet();
+            _size.addAndGet(entry._length);
+            _clock.offer(entry);
+            _queued.incrementAndGet();
+            evict();
+        }
+
+        private void removed(Entry entry)
+        {
+            _count.decrementAndGet();
+            _size.addAndGet(-entry._length);
+            // Removed entries remain in the clock until polled; purge
+            // them when they outnumber the stored entries.
+            int queued = _queued.get();
+            if (queued > 2 * _count.get() + 64 && _queued.compareAndSet(queued, 0))
+            {
+                _clock.removeIf(e -> e._discarded.get());
+                _queued.addAndGet(_clock.size());
+            }
+        }
+
+        private void evict()
+        {
+            int chances = _queued.get();
+            while (_size.get() > getMaxSize())
+            {
+                Entry entry = _clock.poll();
+                if (entry == null)
+                    return;
+                _queued.decrementAndGet();
+                if (entry._discarded.get())
+                    continue;
+                if (entry._referenced && chances-- > 0)
+                {
+                    // Second chance for recently used entries.
+                    entry._referenced = false;
+                    _clock.offer(entry);
+                    _queued.incrementAndGet();
+                    continue;
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} evicting {}", ResponseCacheHandler.this, entry);
+                _evictions.increment();
+                remove(entry);
+            }
+        }
+    }
+
+    /**
+     * <p>A response being fetched from the wrapped handler, that concurrent requests for the same URI wait for.</p>
+     */
+    private class Fill
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final String _key;
+        private List<Waiter> _waiters = new ArrayList<>();
+
+        private Fill(String key)
+        {
+            _key = key;
+        }
+
+        private boolean await(Request request, Runnable resume)
+        {
+            Waiter waiter = new Waiter(request, resume);
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_waiters == null)
+                    return false;
+                _waiters.add(waiter);
+            }
+            Scheduler scheduler = request.getComponents().getScheduler();
+            waiter._timeout = scheduler.schedule(waiter, getCoalesceTimeout(), TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        private void complete()
+        {
+            _fills.remove(_key, this);
+            List<Waiter> waiters;
+            try (AutoLock ignored = _lock.lock())
+            {
+                waiters = _waiters;
+                _waiters = null;
+            }
+            if (waiters != null)
+                waiters.forEach(Waiter::run);
+        }
+    }
+
+    /**
+     * <p>A request waiting for a {@link Fill}, resumed either when the fill completes or when the coalesce timeout expires.</p>
+     */
+    private static class Waiter implements Runnable
+    {
+        private final AtomicBoolean _resumed = new AtomicBoolean();
+        private final Request _request;
+        private final Runnable _resume;
+        private volatile Scheduler.Task _timeout;
+
+        private Waiter(Request request, Runnable resume)
+        {
+            _request = request;
+            _resume = resume;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!_resumed.compareAndSet(false, true))
+                return;
+            Scheduler.Task timeout = _timeout;
+            if (timeout != null)
+                timeout.cancel();
+            _request.getContext().execute(_resume);
+        }
+    }
+
+    /**
+     * <p>A response to an unsafe request, that invalidates the cached responses
+     * before the response is complete, so that subsequent requests are not
+     * served a stale cached response.</p>
+     */
+    private class InvalidatingResponse extends Response.Wrapper implements Callback
+    {
+        private final Callback _callback;
+        private final String _key;
+
+        private InvalidatingResponse(Request request, Response response, Callback callback, String key)
+        {
+            super(request, response);
+            _callback = callback;
+            _key = key;
+        }
+
+        @Override
+        public void write(boolean last, ByteBuffer byteBuffer, Callback callback)
+        {
+            if (last)
+                invalidate();
+            super.write(last, byteBuffer, callback);
+        }
+
+        @Override
+        public void succeeded()
+        {
+            try
+            {
+                // The response may complete without a last write.
+                invalidate();
+            }
+            finally
+            {
+                _callback.succeeded();
+            }
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            _callback.failed(x);
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _callback.getInvocationType();
+        }
+
+        private void invalidate()
+        {
+            if (getStatus() < HttpStatus.BAD_REQUEST_400)
+                ResponseCacheHandler.this.invalidate(_key);
+        }
+    }
+
+    /**
+     * <p>A response that copies the content written by the wrapped handler, to store it once completed.</p>
+     */
+    private class CachingResponse extends Response.Wrapper implements Callback
+    {
+        private final Callback _callback;
+        private final String _key;
+        private final Fill _fill;
+        private ByteBufferAccumulator _accumulator;
+        private int _status;
+        private HttpFields _headers;
+        private boolean _capturing = true;
+        private boolean _completed;
+
+        private CachingResponse(Request request, Response response, Callback callback, String key, Fill fill)
+        {
+            super(request, response);
+            _callback = callback;
+            _key = key;
+            _fill = fill;
+        }
+
+        @Override
+        public void write(boolean last, ByteBuffer byteBuffer, Callback callback)
+        {
+            if (_headers == null)
+                snapshot();
+            if (_capturing && byteBuffer != null && byteBuffer.hasRemaining())
+            {
+                if (_accumulator.getLength() + byteBuffer.remaining() > getMaxEntrySize())
+                    abandon();
+                else
+                    _accumulator.copyBuffer(byteBuffer.slice());
+            }
+            if (last)
+            {
+                // Store only once the last write succeeded, as a failed response must not be served from the cache.
+                callback = new Callback.Nested(callback)
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        try
+                        {
+                            finish();
+                        }
+                        finally
+                        {
+                            super.succeeded();
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        try
+                        {
+                            abort();
+                        }
+                        finally
+                        {
+                            super.failed(x);
+                        }
+                    }
+                };
+            }
+            super.write(last, byteBuffer, callback);
+        }
+
+        private void snapshot()
+        {
+            // A status not set by the handler defaults to 200.
+            _status = getStatus() == 0 ? HttpStatus.OK_200 : getStatus();
+            _headers = HttpFields.build(getHeaders()).asImmutable();
+            _capturing = CACHEABLE_STATUS.contains(_status);
+            if (_capturing)
+            {
+                ByteBufferPool bufferPool = getRequest().getComponents().getByteBufferPool();
+                _accumulator = new ByteBufferAccumulator(bufferPool, false);
+            }
+        }
+
+        private void abandon()
+        {
+            _capturing = false;
+            if (_accumulator != null)
+                _accumulator.close();
+        }
+
+        @Override
+        public void reset()
+        {
+            super.reset();
+            abandon();
+            _capturing = true;
+            _accumulator = null;
+            _headers = null;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            try
+            {
+                finish();
+            }
+            finally
+            {
+                _callback.succeeded();
+            }
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            try
+            {
+                abandon();
+            }
+            finally
+            {
+                complete();
+                _callback.failed(x);
+            }
+        }
+
+        private void finish()
+        {
+            try
+            {
+                if (_completed)
+                    return;
+                if (_headers == null)
+                    snapshot();
+                if (_capturing)
+                    store(getRequest(), _key, _status, _headers, _accumulator.takeRetainableByteBuffer());
+            }
+            finally
+            {
+                complete();
+            }
+        }
+
+        private void abort()
+        {
+            abandon();
+            complete();
+        }
+
+        private void complete()
+        {
+            if (_completed)
+                return;
+            _completed = true;
+            if (_accumulator != null)
+                _accumulator.close();
+            if (_fill != null)
+                _fill.complete();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return _callback.getInvocationType();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Destroyable;
+
+/**
+ * <p>A content-coding, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9110#section-8.4.1">RFC 9110</a>,
+ * that {@link GzipHandler} can use to encode responses and to decode requests.</p>
+ * <p>Implementations provide streaming {@link Encoder}s and {@link Decoder}s,
+ * typically backed by pools of the underlying codec objects, which are managed
+ * as beans of this component.</p>
+ *
+ * @see GzipCompression
+ * @see DeflateCompression
+ * @see LzwCompression
+ */
+public abstract class Compression extends ContainerLifeCycle
+{
+    private final CompressedContentFormat _format;
+
+    protected Compression(CompressedContentFormat format)
+    {
+        _format = format;
+    }
+
+    /**
+     * @return the content-coding name, for example {@code gzip}
+     */
+    public String getEncoding()
+    {
+        return _format.getEncoding();
+    }
+
+    /**
+     * @return the format used for the {@code Content-Encoding} header and the {@code ETag} suffix
+     */
+    public CompressedContentFormat getFormat()
+    {
+        return _format;
+    }
+
+    /**
+     * @param coding a content-coding name from {@code Accept-Encoding} or {@code Content-Encoding}
+     * @return whether the given content-coding is this compression, including its {@code x-} alias
+     */
+    public boolean isEncoding(String coding)
+    {
+        String encoding = getEncoding();
+        if (coding.equalsIgnoreCase(encoding))
+            return true;
+        return coding.length() == encoding.length() + 2 &&
+            coding.regionMatches(true, 0, "x-", 0, 2) &&
+            coding.regionMatches(true, 2, encoding, 0, encoding.length());
+    }
+
+    /**
+     * @return the lowest compression level, or the same as {@link #getMaxLevel()} if levels are not supported
+     */
+    public int getMinLevel()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the highest compression level
+     */
+    public int getMaxLevel()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the compression level used when none is specified
+     */
+    public int getDefaultLevel()
+    {
+        return getMaxLevel();
+    }
+
+    /**
+     * @param level the compression level, or -1 for the {@link #getDefaultLevel() default level}
+     * @return a new encoder, that must be {@link Encoder#release() released} after use
+     */
+    public abstract Encoder newEncoder(int level);
+
+    /**
+     * @param bufferPool the pool of the buffers of the decoded content
+     * @param bufferSize the size of the buffers of the decoded content
+     * @return a new decoder, that must be {@link Decoder#destroy() destroyed} after use
+     */
+    public abstract Decoder newDecoder(ByteBufferPool bufferPool, int bufferSize);
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s}", getClass().getSimpleName(), hashCode(), getState(), getEncoding());
+    }
+
+    /**
+     * <p>A streaming encoder, modeled after {@link java.util.zip.Deflater}.</p>
+     * <p>The output buffers passed to the methods of this interface are in fill mode.</p>
+     */
+    public interface Encoder
+    {
+        /**
+         * @param output the buffer to write the header of the encoded content to
+         */
+        void begin(ByteBuffer output);
+
+        /**
+         * <p>Sets the input to encode, whose position is advanced as it is encoded.</p>
+         *
+         * @param input the input to encode
+         */
+        void setInput(ByteBuffer input);
+
+        /**
+         * @return whether the input has been consumed
+         */
+        boolean needsInput();
+
+        /**
+         * @param output the buffer to write the encoded content to
+         * @param flush whether all the input should be encoded and written, if the encoding supports it
+         * @return the number of bytes written to the output
+         */
+        int encode(ByteBuffer output, boolean flush);
+
+        /**
+         * <p>Indicates that the encoding should finish with the current input.</p>
+         */
+        void finish();
+
+        /**
+         * @return whether the encoded content, without the trailer, has been entirely written
+         */
+        boolean finished();
+
+        /**
+         * @return the size of the trailer written by {@link #end(ByteBuffer)}
+         */
+        int getTrailerSize();
+
+        /**
+         * @param output the buffer to write the trailer of the encoded content to
+         */
+        void end(ByteBuffer output);
+
+        /**
+         * <p>Releases the resources of this encoder.</p>
+         */
+        void release();
+    }
+
+    /**
+     * <p>A streaming decoder.</p>
+     */
+    public interface Decoder extends Destroyable
+    {
+        /**
+         * <p>Decodes some of the given content, advancing its position.</p>
+         * <p>This method must be called again with the same buffer while it has remaining
+         * bytes, and decoded bytes are returned.</p>
+         *
+         * @param compressed the encoded content
+         * @return a buffer of decoded content, possibly empty or null if more input is needed
+         */
+        RetainableByteBuffer decode(ByteBuffer compressed);
+    }
+}
@@ -0,0 +1,315 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.jetty.http.BadMessageException;
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>The {@code deflate} content-coding, that is the
+ * <a href="https://www.rfc-editor.org/rfc/rfc1950">zlib</a> format,
+ * implemented with {@link Deflater} and {@link Inflater}.</p>
+ * <p>The deflaters for levels other than the one of the {@link #getDeflaterPool() deflater pool}
+ * are pooled separately, so that the level of the pooled deflaters is never changed.</p>
+ */
+public class DeflateCompression extends Compression
+{
+    public static final CompressedContentFormat DEFLATE = new CompressedContentFormat("deflate", ".zz");
+
+    private final AutoLock _lock = new AutoLock();
+    private final DeflaterPool[] _levelPools = new DeflaterPool[Deflater.BEST_COMPRESSION + 1];
+    private final boolean _nowrap;
+    private DeflaterPool _deflaterPool;
+    private InflaterPool _inflaterPool;
+
+    public DeflateCompression()
+    {
+        this(DEFLATE, false);
+    }
+
+    protected DeflateCompression(CompressedContentFormat format, boolean nowrap)
+    {
+        super(format);
+        _nowrap = nowrap;
+    }
+
+    /**
+     * @return the pool of deflaters with the default compression level
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /**
+     * <p>Sets the pool of deflaters with the default compression level.</p>
+     * <p>If not set when starting, a pool is created.</p>
+     *
+     * @param deflaterPool the pool of deflaters
+     */
+    public void setDeflaterPool(DeflaterPool deflaterPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        if (deflaterPool != null && deflaterPool.isNowrap() != _nowrap)
+            throw new IllegalArgumentException("nowrap must be " + _nowrap);
+        updateBean(_deflaterPool, deflaterPool);
+        _deflaterPool = deflaterPool;
+    }
+
+    public InflaterPool getInflaterPool()
+    {
+        return _inflaterPool;
+    }
+
+    /**
+     * <p>Sets the pool of inflaters used to decode requests.</p>
+     * <p>If not set when starting, a pool is created.</p>
+     *
+     * @param inflaterPool the pool of inflaters
+     */
+    public void setInflaterPool(InflaterPool inflaterPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        updateBean(_inflaterPool, inflaterPool);
+        _inflaterPool = inflaterPool;
+    }
+
+    @Override
+    public int getMinLevel()
+    {
+        return Deflater.BEST_SPEED;
+    }
+
+    @Override
+    public int getMaxLevel()
+    {
+        return Deflater.BEST_COMPRESSION;
+    }
+
+    @Override
+    public int getDefaultLevel()
+    {
+        int level = _deflaterPool == null ? Deflater.DEFAULT_COMPRESSION : _deflaterPool.getCompressionLevel();
+        // The zlib default compression level.
+        return level < 0 ? 6 : level;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_deflaterPool == null)
+            setDeflaterPool(new DeflaterPool(CompressionPool.DEFAULT_CAPACITY, Deflater.DEFAULT_COMPRESSION, _nowrap));
+        if (_inflaterPool == null)
+            setInflaterPool(new InflaterPool(CompressionPool.DEFAULT_CAPACITY, _nowrap));
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        for (int level = 0; level < _levelPools.length; ++level)
+        {
+            DeflaterPool pool = _levelPools[level];
+            if (pool != null)
+            {
+                removeBean(pool);
+                _levelPools[level] = null;
+            }
+        }
+    }
+
+    /**
+     * @param level the compression level, or -1 for the default level
+     * @return the pool of deflaters for the given level
+     */
+    protected DeflaterPool getDeflaterPool(int level)
+    {
+        if (level < 0 || level >= _levelPools.length || level == _deflaterPool.getCompressionLevel())
+            return _deflaterPool;
+        try (AutoLock ignored = _lock.lock())
+        {
+            DeflaterPool pool = _levelPools[level];
+            if (pool == null)
+            {
+                pool = new DeflaterPool(_deflaterPool.getCapacity(), level, _nowrap);
+                addBean(pool, true);
+                LifeCycle.start(pool);
+                _levelPools[level] = pool;
+            }
+            return pool;
+        }
+    }
+
+    @Override
+    public Encoder newEncoder(int level)
+    {
+        return new DeflaterEncoder(getDeflaterPool(level).acquire());
+    }
+
+    @Override
+    public Decoder newDecoder(ByteBufferPool bufferPool, int bufferSize)
+    {
+        return new InflaterDecoder(_inflaterPool.acquire(), bufferPool, bufferSize);
+    }
+
+    /**
+     * <p>An {@link Encoder} that deflates with a pooled {@link Deflater}.</p>
+     */
+    protected static class DeflaterEncoder implements Encoder
+    {
+        private final CompressionPool<Deflater>.Entry _entry;
+        private final Deflater _deflater;
+
+        protected DeflaterEncoder(CompressionPool<Deflater>.Entry entry)
+        {
+            _entry = entry;
+            _deflater = entry.get();
+        }
+
+        @Override
+        public void begin(ByteBuffer output)
+        {
+        }
+
+        @Override
+        public void setInput(ByteBuffer input)
+        {
+            _deflater.setInput(input);
+        }
+
+        @Override
+        public boolean needsInput()
+        {
+            return _deflater.needsInput();
+        }
+
+        @Override
+        public int encode(ByteBuffer output, boolean flush)
+        {
+            return _deflater.deflate(output, flush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH);
+        }
+
+        @Override
+        public void finish()
+        {
+            _deflater.finish();
+        }
+
+        @Override
+        public boolean finished()
+        {
+            return _deflater.finished();
+        }
+
+        @Override
+        public int getTrailerSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public void end(ByteBuffer output)
+        {
+        }
+
+        /**
+         * @return the number of input bytes deflated so far
+         */
+        protected long getTotalIn()
+        {
+            return _deflater.getBytesRead();
+        }
+
+        @Override
+        public void release()
+        {
+            _entry.release();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%s}", getClass().getSimpleName(), hashCode(), _entry);
+        }
+    }
+
+    /**
+     * <p>A {@link Decoder} that inflates with a pooled {@link Inflater}.</p>
+     */
+    private static class InflaterDecoder implements Decoder
+    {
+        private final CompressionPool<Inflater>.Entry _entry;
+        private final ByteBufferPool _bufferPool;
+        private final int _bufferSize;
+
+        private InflaterDecoder(CompressionPool<Inflater>.Entry entry, ByteBufferPool bufferPool, int bufferSize)
+        {
+            _entry = entry;
+            _bufferPool = bufferPool;
+            _bufferSize = bufferSize;
+        }
+
+        @Override
+        public RetainableByteBuffer decode(ByteBuffer compressed)
+        {
+            Inflater inflater = _entry.get();
+            if (inflater.finished())
+            {
+                // Ignore any content after the end of the deflated stream.
+                compressed.position(compressed.limit());
+                return null;
+            }
+
+            inflater.setInput(compressed);
+            RetainableByteBuffer buffer = _bufferPool.acquire(_bufferSize, false);
+            ByteBuffer byteBuffer = buffer.getByteBuffer();
+            int position = BufferUtil.flipToFill(byteBuffer);
+            try
+            {
+                int length = inflater.inflate(byteBuffer);
+                BufferUtil.flipToFlush(byteBuffer, position);
+                if (length == 0 && (inflater.needsDictionary() || inflater.finished()))
+                    compressed.position(compressed.limit());
+                return buffer;
+            }
+            catch (DataFormatException x)
+            {
+                buffer.release();
+                throw new BadMessageException("Invalid deflate content", x);
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            _entry.release();
+        }
+    }
+}
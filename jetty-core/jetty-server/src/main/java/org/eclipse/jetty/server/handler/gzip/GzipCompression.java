@@ -0,0 +1,150 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.GZIPContentDecoder;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.InflaterPool;
+
+/**
+ * <p>The {@code gzip} content-coding, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc1952">RFC 1952</a>.</p>
+ */
+public class GzipCompression extends DeflateCompression
+{
+    // Per RFC-1952 this is the "unknown" OS value byte.
+    private static final byte OS_UNKNOWN = (byte)0xFF;
+    private static final byte[] GZIP_HEADER = new byte[]{
+        (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, OS_UNKNOWN
+    };
+    // Per RFC-1952, the GZIP trailer is 8 bytes
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    public GzipCompression()
+    {
+        super(CompressedContentFormat.GZIP, true);
+    }
+
+    @Override
+    public Encoder newEncoder(int level)
+    {
+        return new GzipEncoder(getDeflaterPool(level).acquire());
+    }
+
+    /**
+     * @param entry the entry of a pooled deflater that does not wrap its output
+     * @return a new gzip encoder, that releases the given entry when it is released
+     */
+    static Encoder newEncoder(CompressionPool<Deflater>.Entry entry)
+    {
+        return new GzipEncoder(entry);
+    }
+
+    @Override
+    public Decoder newDecoder(ByteBufferPool bufferPool, int bufferSize)
+    {
+        return new GzipDecoder(getInflaterPool(), bufferPool, bufferSize);
+    }
+
+    static class GzipEncoder extends DeflaterEncoder
+    {
+        private final CRC32 _crc = new CRC32();
+
+        private GzipEncoder(CompressionPool<Deflater>.Entry entry)
+        {
+            super(entry);
+        }
+
+        /**
+         * @return the CRC of the input so far
+         */
+        CRC32 getCRC32()
+        {
+            return _crc;
+        }
+
+        @Override
+        public void begin(ByteBuffer output)
+        {
+            output.put(GZIP_HEADER, 0, GZIP_HEADER.length);
+        }
+
+        @Override
+        public void setInput(ByteBuffer input)
+        {
+            _crc.update(input.slice());
+            super.setInput(input);
+        }
+
+        @Override
+        public int getTrailerSize()
+        {
+            return GZIP_TRAILER_SIZE;
+        }
+
+        @Override
+        public void end(ByteBuffer output)
+        {
+            // Per RFC-1952, GZIP is LITTLE_ENDIAN
+            ByteOrder order = output.order();
+            output.order(ByteOrder.LITTLE_ENDIAN);
+            output.putInt((int)_crc.getValue());
+            output.putInt((int)getTotalIn());
+            output.order(order);
+        }
+    }
+
+    private static class GzipDecoder extends GZIPContentDecoder implements Decoder
+    {
+        private RetainableByteBuffer _decoded;
+
+        private GzipDecoder(InflaterPool inflaterPool, ByteBufferPool bufferPool, int bufferSize)
+        {
+            super(inflaterPool, bufferPool, bufferSize);
+        }
+
+        @Override
+        public RetainableByteBuffer decode(ByteBuffer compressed)
+        {
+            decodeChunks(compressed);
+            RetainableByteBuffer decoded = _decoded;
+            _decoded = null;
+            return decoded;
+        }
+
+        @Override
+        protected boolean decodedChunk(RetainableByteBuffer decoded)
+        {
+            // Retain the chunk because it is stored for later use.
+            decoded.retain();
+            _decoded = decoded;
+            return true;
+        }
+
+        @Override
+        public void decodeChunks(ByteBuffer compressed)
+        {
+            _decoded = null;
+            super.decodeChunks(compressed);
+        }
+    }
+}
@@ -18,7 +18,32 @@ import org.eclipse.jetty.util.compression.DeflaterPool;
 
 public interface GzipFactory
 {
+    /**
+     * @param request the request
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return a gzip deflater entry, or null if the response should not be compressed
+     * @deprecated use {@link #getEncoder(Compression, Request, long)} instead
+     */
+    @Deprecated
     DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength);
 
+    /**
+     * <p>Returns an encoder for the given compression.</p>
+     * <p>The default implementation only supports {@link GzipCompression gzip},
+     * with a deflater obtained from {@link #getDeflaterEntry(Request, long)}.</p>
+     *
+     * @param compression the negotiated compression
+     * @param request the request
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return an encoder, or null if the response should not be compressed
+     */
+    default Compression.Encoder getEncoder(Compression compression, Request request, long contentLength)
+    {
+        if (!(compression instanceof GzipCompression))
+            return null;
+        DeflaterPool.Entry entry = getDeflaterEntry(request, contentLength);
+        return entry == null ? null : GzipCompression.newEncoder(entry);
+    }
+
     boolean isMimeTypeDeflatable(String mimetype);
 }
@@ -13,8 +13,16 @@
 
 package org.eclipse.jetty.server.handler.gzip;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
 import org.eclipse.jetty.http.EtagUtils;
@@ -24,7 +32,12 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.QuotedCSV;
+import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.http.pathmap.PathSpecSet;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
@@ -32,12 +45,29 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.util.AsciiLowerCaseSet;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IncludeExclude;
+import org.eclipse.jetty.util.NanoTime;
+import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link Handler} that compresses the responses and decompresses the requests of the handlers it wraps.</p>
+ * <p>The content-codings are {@link Compression} implementations, by default only {@link GzipCompression gzip};
+ * others, such as {@link DeflateCompression deflate} or {@link LzwCompression compress}, can be
+ * {@link #setCompressions(Compression...) configured}. The coding of a response is negotiated from the
+ * {@code Accept-Encoding} request header, with ties broken by the order of the configured compressions.</p>
+ * <p>With {@link #setAdaptiveCompression(boolean) adaptive compression}, the compression level is lowered
+ * when the server load, measured as the utilization of a {@link QueuedThreadPool} or the system load
+ * average per processor, exceeds the {@link #setAdaptiveLoadThreshold(double) adaptive load threshold},
+ * so that peaks of load spend less CPU time compressing.</p>
+ * <p>With {@link #setParallelCompressionThreshold(long) parallel compression}, large responses are compressed
+ * to gzip in blocks deflated in parallel, so that their compression is not limited to a single core.</p>
+ */
 public class GzipHandler extends Handler.Wrapper implements GzipFactory
 {
     public static final String GZIP_HANDLER_ETAGS = "o.e.j.s.h.gzip.GzipHandler.etag";
@@ -46,6 +76,7 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
     public static final int DEFAULT_MIN_GZIP_SIZE = 32;
     public static final int BREAK_EVEN_GZIP_SIZE = 23;
     private static final Logger LOG = LoggerFactory.getLogger(GzipHandler.class);
+    private static final String NEGOTIATED_COMPRESSION = "o.e.j.s.h.gzip.GzipHandler.compression";
 
     private InflaterPool _inflaterPool;
     private DeflaterPool _deflaterPool;
@@ -58,6 +89,16 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
     private final IncludeExclude<String> _paths = new IncludeExclude<>(PathSpecSet.class);
     private final IncludeExclude<String> _mimeTypes = new IncludeExclude<>(AsciiLowerCaseSet.class);
     private HttpField _vary = GzipResponseAndCallback.VARY_ACCEPT_ENCODING;
+    private final List<Compression> _compressions = new CopyOnWriteArrayList<>();
+    private int _compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean _adaptiveCompression;
+    private double _adaptiveLoadThreshold = 0.75D;
+    private volatile long _cpuLoadNanoTime = NanoTime.now();
+    private volatile double _cpuLoad = -1;
+    private long _parallelCompressionThreshold = -1;
+    private int _parallelCompressionBlockSize = 64 * 1024;
+    private int _maxParallelCompressionBlocks = ProcessorUtils.availableProcessors();
+    private Executor _parallelCompressionExecutor;
 
     /**
      * Instantiates a new GzipHandler.
@@ -96,6 +137,8 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         // It is possible to use SSE with GzipHandler but you will need to set _synFlush to true which will impact performance.
         _mimeTypes.exclude("text/event-stream");
 
+        setCompressions(new GzipCompression());
+
         if (LOG.isDebugEnabled())
             LOG.debug("{} mime types {}", this, _mimeTypes);
     }
@@ -114,6 +157,17 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
             _deflaterPool = DeflaterPool.ensurePool(server);
             addBean(_deflaterPool);
         }
+        for (Compression compression : _compressions)
+        {
+            // The gzip compression uses the pools of this handler, unless configured otherwise.
+            if (compression instanceof GzipCompression gzip)
+            {
+                if (gzip.getDeflaterPool() == null && _deflaterPool.isNowrap())
+                    gzip.setDeflaterPool(_deflaterPool);
+                if (gzip.getInflaterPool() == null)
+                    gzip.setInflaterPool(_inflaterPool);
+            }
+        }
 
         super.doStart();
     }
@@ -130,6 +184,207 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         _deflaterPool = null;
     }
 
+    /**
+     * @return the compressions, in order of preference
+     */
+    public List<Compression> getCompressions()
+    {
+        return List.copyOf(_compressions);
+    }
+
+    /**
+     * <p>Sets the compressions, in order of preference when the client accepts
+     * several of them with the same quality.</p>
+     *
+     * @param compressions the compressions
+     */
+    public void setCompressions(Compression... compressions)
+    {
+        setCompressions(Arrays.asList(compressions));
+    }
+
+    /**
+     * <p>Sets the compressions, in order of preference when the client accepts
+     * several of them with the same quality.</p>
+     *
+     * @param compressions the compressions
+     */
+    public void setCompressions(List<Compression> compressions)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        updateBeans(_compressions.toArray(), compressions.toArray());
+        _compressions.clear();
+        _compressions.addAll(compressions);
+    }
+
+    /**
+     * @param compression the compression to add, as the least preferred
+     */
+    public void addCompression(Compression compression)
+    {
+        List<Compression> compressions = new ArrayList<>(_compressions);
+        compressions.add(compression);
+        setCompressions(compressions);
+    }
+
+    /**
+     * @param encoding the content-coding name
+     * @return the compression for the given content-coding, or null if there is no such compression
+     */
+    public Compression getCompression(String encoding)
+    {
+        for (Compression compression : _compressions)
+        {
+            if (compression.isEncoding(encoding))
+                return compression;
+        }
+        return null;
+    }
+
+    /**
+     * @return the compression level, or -1 for the default level of each compression
+     */
+    public int getCompressionLevel()
+    {
+        return _compressionLevel;
+    }
+
+    /**
+     * <p>Sets the compression level, limited to the levels supported by each compression.</p>
+     * <p>When -1, the default level of each compression is used, for example
+     * the level of the {@link #getDeflaterPool() deflater pool} for gzip.</p>
+     *
+     * @param compressionLevel the compression level, or -1 for the default level of each compression
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        _compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return whether the compression level is lowered when the load exceeds the {@link #getAdaptiveLoadThreshold() threshold}
+     */
+    public boolean isAdaptiveCompression()
+    {
+        return _adaptiveCompression;
+    }
+
+    /**
+     * @param adaptiveCompression whether the compression level is lowered when the load exceeds the {@link #getAdaptiveLoadThreshold() threshold}
+     */
+    public void setAdaptiveCompression(boolean adaptiveCompression)
+    {
+        _adaptiveCompression = adaptiveCompression;
+    }
+
+    /**
+     * @return the load, between 0 and 1, above which the compression level is lowered
+     */
+    public double getAdaptiveLoadThreshold()
+    {
+        return _adaptiveLoadThreshold;
+    }
+
+    /**
+     * <p>Sets the load above which the compression level is lowered, linearly down
+     * to the minimum compression level when the load is 1.</p>
+     *
+     * @param adaptiveLoadThreshold the load, between 0 and 1, above which the compression level is lowered
+     */
+    public void setAdaptiveLoadThreshold(double adaptiveLoadThreshold)
+    {
+        if (adaptiveLoadThreshold < 0 || adaptiveLoadThreshold >= 1)
+            throw new IllegalArgumentException("Invalid adaptive load threshold " + adaptiveLoadThreshold);
+        _adaptiveLoadThreshold = adaptiveLoadThreshold;
+    }
+
+    /**
+     * @return the min response content length to compress in parallel, or -1 if parallel compression is disabled
+     */
+    public long getParallelCompressionThreshold()
+    {
+        return _parallelCompressionThreshold;
+    }
+
+    /**
+     * <p>Sets the min response content length to compress to gzip in parallel.</p>
+     * <p>Responses with a known content length of at least this threshold are compressed in blocks
+     * of {@link #getParallelCompressionBlockSize()} bytes deflated in parallel. Responses with
+     * an unknown content length are compressed sequentially until the threshold is reached,
+     * and then in parallel. The compression ratio is close to the one of sequential
+     * compression since the dictionary of each block is primed with the end of the previous block.</p>
+     * <p>Parallel compression is not used with {@link #isSyncFlush() sync flush}, since the content
+     * is written only once a block is full.</p>
+     *
+     * @param threshold the min response content length to compress in parallel, or -1 to disable parallel compression
+     */
+    public void setParallelCompressionThreshold(long threshold)
+    {
+        _parallelCompressionThreshold = threshold;
+    }
+
+    /**
+     * @return the size of the blocks of content deflated in parallel
+     */
+    public int getParallelCompressionBlockSize()
+    {
+        return _parallelCompressionBlockSize;
+    }
+
+    /**
+     * <p>Sets the size of the blocks of content deflated in parallel.</p>
+     * <p>The size is reduced if the deflated blocks would not fit in the buffers of the
+     * {@link ByteBufferPool}, so that the blocks are always pooled.</p>
+     *
+     * @param blockSize the size of the blocks of content deflated in parallel
+     */
+    public void setParallelCompressionBlockSize(int blockSize)
+    {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        _parallelCompressionBlockSize = blockSize;
+    }
+
+    /**
+     * @return the max number of blocks of a response being deflated or waiting to be written
+     */
+    public int getMaxParallelCompressionBlocks()
+    {
+        return _maxParallelCompressionBlocks;
+    }
+
+    /**
+     * <p>Sets the max number of blocks of a response being deflated or waiting to be written,
+     * beyond which writes wait for blocks to be written, which bounds the memory used by
+     * the parallel compression of a response.</p>
+     *
+     * @param maxBlocks the max number of blocks of a response being deflated or waiting to be written
+     */
+    public void setMaxParallelCompressionBlocks(int maxBlocks)
+    {
+        if (maxBlocks <= 0)
+            throw new IllegalArgumentException("Invalid max blocks " + maxBlocks);
+        _maxParallelCompressionBlocks = maxBlocks;
+    }
+
+    /**
+     * @return the executor that deflates the blocks, or null to use the server thread pool
+     */
+    public Executor getParallelCompressionExecutor()
+    {
+        return _parallelCompressionExecutor;
+    }
+
+    /**
+     * @param executor the executor that deflates the blocks, for example a {@link java.util.concurrent.ForkJoinPool},
+     * or null to use the server thread pool
+     */
+    public void setParallelCompressionExecutor(Executor executor)
+    {
+        _parallelCompressionExecutor = executor;
+    }
+
     /**
      * @return The VARY field to use.
      */
@@ -375,23 +630,245 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         }
     }
 
+    /**
+     * @deprecated use {@link #getEncoder(Compression, Request, long)} instead
+     */
     @Override
+    @Deprecated
     public DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength)
     {
+        // Reuse the compression negotiated when the response was wrapped, if any.
+        Compression compression = request.getAttribute(NEGOTIATED_COMPRESSION) instanceof Compression negotiated
+            ? negotiated : negotiateCompression(request);
+
+        // check the accept encoding header
+        if (!(compression instanceof GzipCompression gzip))
+        {
+            LOG.debug("{} excluded not gzip accept {}", this, request);
+            return null;
+        }
+
         if (contentLength >= 0 && contentLength < _minGzipSize)
         {
             LOG.debug("{} excluded minGzipSize {}", this, request);
             return null;
         }
 
-        // check the accept encoding header
-        if (!request.getHeaders().contains(HttpHeader.ACCEPT_ENCODING, "gzip"))
+        return gzip.getDeflaterPool(getCompressionLevel(gzip, request)).acquire();
+    }
+
+    @Override
+    public Compression.Encoder getEncoder(Compression compression, Request request, long contentLength)
+    {
+        // Gzip responses use the deflater entry, which subclasses may override,
+        // with the compression negotiated when the response was wrapped.
+        if (compression instanceof GzipCompression)
         {
-            LOG.debug("{} excluded not gzip accept {}", this, request);
+            request.setAttribute(NEGOTIATED_COMPRESSION, compression);
+            try
+            {
+                return GzipFactory.super.getEncoder(compression, request, contentLength);
+            }
+            finally
+            {
+                request.removeAttribute(NEGOTIATED_COMPRESSION);
+            }
+        }
+
+        if (contentLength >= 0 && contentLength < _minGzipSize)
+        {
+            LOG.debug("{} excluded minGzipSize {}", this, request);
+            return null;
+        }
+
+        return compression.newEncoder(getCompressionLevel(compression, request));
+    }
+
+    /**
+     * @param compression the compression of the response
+     * @param request the request
+     * @param sink the sink to write the compressed content to
+     * @param contentLength the length of the content, or -1 if unknown
+     * @return a writer that compresses in parallel, or null if the response should be compressed sequentially
+     */
+    ParallelGzipWriter newParallelGzipWriter(Compression compression, Request request, Content.Sink sink, long contentLength)
+    {
+        long threshold = getParallelCompressionThreshold(compression, request);
+        if (threshold < 0 || contentLength < threshold)
+            return null;
+        return new ParallelGzipWriter(sink, request.getComponents().getByteBufferPool(), getParallelDeflaterPool(compression, request),
+            getParallelCompressionExecutor(request), getParallelCompressionBlockSize(), getMaxParallelCompressionBlocks());
+    }
+
+    /**
+     * @param compression the compression of the response
+     * @param request the request
+     * @param sink the sink to write the compressed content to
+     * @param crc the CRC of the content already compressed sequentially
+     * @param totalIn the length of the content already compressed sequentially, whose deflated bytes end with a sync flush
+     * @param dictionary the end of the content already compressed sequentially, released by the writer, or null
+     * @return a writer that continues the gzip content in parallel
+     */
+    ParallelGzipWriter newParallelGzipWriter(Compression compression, Request request, Content.Sink sink, CRC32 crc, long totalIn, RetainableByteBuffer dictionary)
+    {
+        return new ParallelGzipWriter(sink, request.getComponents().getByteBufferPool(), getParallelDeflaterPool(compression, request),
+            getParallelCompressionExecutor(request), getParallelCompressionBlockSize(), getMaxParallelCompressionBlocks(), crc, totalIn, dictionary);
+    }
+
+    /**
+     * @param compression the compression of the response
+     * @param request the request
+     * @return the min content length of the response to compress in parallel, or -1 if the response is compressed sequentially
+     */
+    long getParallelCompressionThreshold(Compression compression, Request request)
+    {
+        long threshold = getParallelCompressionThreshold();
+        if (threshold < 0 || isSyncFlush() || getParallelDeflaterPool(compression, request) == null)
+            return -1;
+        return Math.max(threshold, _minGzipSize);
+    }
+
+    private DeflaterPool getParallelDeflaterPool(Compression compression, Request request)
+    {
+        if (!(compression instanceof GzipCompression gzip))
+            return null;
+        DeflaterPool deflaterPool = gzip.getDeflaterPool(getCompressionLevel(compression, request));
+        if (deflaterPool == null || !deflaterPool.isNowrap())
             return null;
+        return deflaterPool;
+    }
+
+    private Executor getParallelCompressionExecutor(Request request)
+    {
+        Executor executor = getParallelCompressionExecutor();
+        return executor == null ? request.getComponents().getThreadPool() : executor;
+    }
+
+    /**
+     * <p>Negotiates the compression of the response from the {@code Accept-Encoding} request header.</p>
+     *
+     * @param request the request
+     * @return the compression of the response, or null if the response should not be compressed
+     */
+    protected Compression negotiateCompression(Request request)
+    {
+        List<String> acceptEncodings = request.getHeaders().getValuesList(HttpHeader.ACCEPT_ENCODING);
+        if (acceptEncodings.isEmpty())
+            return null;
+
+        // Sort by quality, then by preference of the compressions.
+        QuotedQualityCSV codings = new QuotedQualityCSV(coding ->
+        {
+            for (int i = 0; i < _compressions.size(); ++i)
+            {
+                if (_compressions.get(i).isEncoding(coding))
+                    return _compressions.size() - i;
+            }
+            return 0;
+        });
+        for (String acceptEncoding : acceptEncodings)
+        {
+            codings.addValue(acceptEncoding);
+        }
+
+        for (String coding : codings)
+        {
+            if ("identity".equalsIgnoreCase(coding))
+                return null;
+            if ("*".equals(coding))
+                return getWildcardCompression(acceptEncodings);
+            Compression compression = getCompression(coding);
+            if (compression != null)
+                return compression;
+        }
+        return null;
+    }
+
+    private Compression getWildcardCompression(List<String> acceptEncodings)
+    {
+        // The wildcard matches the codings not explicitly listed, including with q=0.
+        List<String> listed = new ArrayList<>();
+        for (String coding : new QuotedCSV(false, acceptEncodings.toArray(String[]::new)))
+        {
+            int semicolon = coding.indexOf(';');
+            listed.add((semicolon < 0 ? coding : coding.substring(0, semicolon)).trim());
+        }
+        for (Compression compression : _compressions)
+        {
+            if (listed.stream().noneMatch(compression::isEncoding))
+                return compression;
         }
+        return null;
+    }
+
+    /**
+     * <p>Returns the compression level for a response, lowered if {@link #isAdaptiveCompression() adaptive}
+     * and the {@link #getLoad(Request) load} exceeds the {@link #getAdaptiveLoadThreshold() threshold}.</p>
+     *
+     * @param compression the compression of the response
+     * @param request the request
+     * @return the compression level, or -1 for the default level of the compression
+     */
+    protected int getCompressionLevel(Compression compression, Request request)
+    {
+        int level = _compressionLevel;
+        if (!isAdaptiveCompression())
+            return level;
+
+        double load = getLoad(request);
+        double threshold = getAdaptiveLoadThreshold();
+        if (load <= threshold)
+            return level;
+
+        if (level < 0)
+            level = compression.getDefaultLevel();
+        level = Math.min(level, compression.getMaxLevel());
+        int minLevel = compression.getMinLevel();
+        if (level <= minLevel)
+            return level;
+        double excess = Math.min(1.0D, (load - threshold) / (1.0D - threshold));
+        level -= (int)Math.round((level - minLevel) * excess);
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} adapted compression level {} for load {}", this, level, load);
+        return level;
+    }
+
+    /**
+     * <p>Returns the load of the server, as the max of the utilization of the {@link QueuedThreadPool}
+     * and of the system load average per processor, which is sampled at most once per second.</p>
+     *
+     * @param request the request
+     * @return the load, where 1 means fully loaded
+     */
+    protected double getLoad(Request request)
+    {
+        double load = 0;
+        ThreadPool threadPool = request.getComponents().getThreadPool();
+        if (threadPool instanceof QueuedThreadPool queuedThreadPool)
+            load = queuedThreadPool.getUtilizationRate();
+        return Math.max(load, getCpuLoad());
+    }
 
-        return _deflaterPool.acquire();
+    private double getCpuLoad()
+    {
+        double cpuLoad = _cpuLoad;
+        if (cpuLoad >= 0 && NanoTime.millisSince(_cpuLoadNanoTime) < 1000)
+            return cpuLoad;
+        try
+        {
+            OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+            double loadAverage = system.getSystemLoadAverage();
+            cpuLoad = loadAverage < 0 ? 0 : loadAverage / system.getAvailableProcessors();
+        }
+        catch (Throwable x)
+        {
+            // The java.management module may not be available.
+            LOG.trace("IGNORED", x);
+            cpuLoad = 0;
+        }
+        _cpuLoad = cpuLoad;
+        _cpuLoadNanoTime = NanoTime.now();
+        return cpuLoad;
     }
 
     /**
@@ -548,8 +1025,7 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
 
         // Look for inflate and deflate headers
         HttpFields fields = request.getHeaders();
-        boolean inflatable = false;
-        boolean deflatable = false;
+        Compression inflation = null;
         boolean etagMatches = false;
         boolean seenContentEncoding = false;
         for (ListIterator<HttpField> i = fields.listIterator(fields.size()); i.hasPrevious();)
@@ -562,25 +1038,28 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
             {
                 case CONTENT_ENCODING ->
                 {
-                    inflatable |= !seenContentEncoding && field.containsLast("gzip");
+                    if (!seenContentEncoding)
+                        inflation = getInflation(field);
                     seenContentEncoding = true;
                 }
-                case ACCEPT_ENCODING -> deflatable = field.contains("gzip");
                 case IF_MATCH, IF_NONE_MATCH -> etagMatches |= field.getValue().contains(EtagUtils.ETAG_SEPARATOR);
             }
         }
 
+        boolean inflatable = inflation != null;
+        Compression deflation = tryDeflate ? negotiateCompression(request) : null;
+
         // We need to wrap the request IFF we are inflating or have seen etags with compression separators
         if (inflatable && tryInflate || etagMatches)
         {
             // Wrap the request to update the fields and do any inflation
-            request = new GzipRequest(request, inflatable && tryInflate ? getInflateBufferSize() : -1);
+            request = new GzipRequest(request, inflation, inflatable && tryInflate ? getInflateBufferSize() : -1, _compressions);
         }
 
         // Wrap the response and callback IFF we can be deflated and will try to deflate
-        if (deflatable && tryDeflate)
+        if (deflation != null)
         {
-            GzipResponseAndCallback gzipResponseAndCallback = new GzipResponseAndCallback(this, request, response, callback);
+            GzipResponseAndCallback gzipResponseAndCallback = new GzipResponseAndCallback(this, request, response, callback, deflation);
             response = gzipResponseAndCallback;
             callback = gzipResponseAndCallback;
         }
@@ -600,6 +1079,16 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
         return false;
     }
 
+    private Compression getInflation(HttpField contentEncoding)
+    {
+        for (Compression compression : _compressions)
+        {
+            if (contentEncoding.containsLast(compression.getEncoding()))
+                return compression;
+        }
+        return null;
+    }
+
     protected boolean isMimeTypeDeflatable(MimeTypes mimeTypes, String requestURI)
     {
         // Exclude non-compressible mime-types known from URI extension
@@ -889,6 +1378,6 @@ public class GzipHandler extends Handler.Wrapper implements GzipFactory
     @Override
     public String toString()
     {
-        return String.format("%s@%x{%s,min=%s,inflate=%s}", getClass().getSimpleName(), hashCode(), getState(), _minGzipSize, _inflateBufferSize);
+        return String.format("%s@%x{%s,min=%s,inflate=%s,compressions=%s}", getClass().getSimpleName(), hashCode(), getState(), _minGzipSize, _inflateBufferSize, _compressions);
     }
 }
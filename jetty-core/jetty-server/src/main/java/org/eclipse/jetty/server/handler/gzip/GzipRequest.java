@@ -13,16 +13,14 @@
 
 package org.eclipse.jetty.server.handler.gzip;
 
-import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
 import java.util.ListIterator;
 
-import org.eclipse.jetty.http.CompressedContentFormat;
-import org.eclipse.jetty.http.GZIPContentDecoder;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.PreEncodedHttpField;
-import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Content;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.io.content.ContentSourceTransformer;
@@ -34,28 +32,57 @@ public class GzipRequest extends Request.Wrapper
 {
     private static final HttpField X_CE_GZIP = new PreEncodedHttpField("X-Content-Encoding", "gzip");
 
-    // TODO: use InflaterPool from somewhere.
-    private static final InflaterPool __inflaterPool = new InflaterPool(-1, true);
-
     private final HttpFields _fields;
-    private Decoder _decoder;
+    private Compression.Decoder _decoder;
     private GzipTransformer _gzipTransformer;
 
+    /**
+     * @deprecated use {@link #GzipRequest(Request, Compression, int, Collection)} instead
+     */
+    @Deprecated
     public GzipRequest(Request request, int inflateBufferSize)
+    {
+        this(request, newGzipCompression(request), inflateBufferSize);
+    }
+
+    private GzipRequest(Request request, GzipCompression gzip, int inflateBufferSize)
+    {
+        this(request, gzip, inflateBufferSize, List.of(gzip));
+    }
+
+    /**
+     * @param request the request to wrap
+     * @param compression the compression of the request content, or null if the content is not inflated
+     * @param inflateBufferSize the size of the buffers of the inflated content, or -1 if the content is not inflated
+     * @param compressions the compressions whose suffixes are stripped from the {@code If-Match} and {@code If-None-Match} etags
+     */
+    public GzipRequest(Request request, Compression compression, int inflateBufferSize, Collection<Compression> compressions)
     {
         super(request);
-        _fields = updateRequestFields(request, inflateBufferSize > 0);
+        boolean inflatable = compression != null && inflateBufferSize > 0;
+        _fields = updateRequestFields(request, inflatable ? compression : null, compressions);
 
-        if (inflateBufferSize > 0)
+        if (inflatable)
         {
             Components components = getComponents();
-            _decoder = new Decoder(__inflaterPool, components.getByteBufferPool(), inflateBufferSize);
+            _decoder = compression.newDecoder(components.getByteBufferPool(), inflateBufferSize);
             _gzipTransformer = new GzipTransformer(getWrapped());
         }
     }
 
-    private HttpFields updateRequestFields(Request request, boolean inflatable)
+    private static GzipCompression newGzipCompression(Request request)
     {
+        // Without a GzipHandler, inflate with the pool managed by the server.
+        GzipCompression gzip = new GzipCompression();
+        gzip.setInflaterPool(InflaterPool.ensurePool(request.getConnectionMetaData().getConnector().getServer()));
+        return gzip;
+    }
+
+    private HttpFields updateRequestFields(Request request, Compression inflation, Collection<Compression> compressions)
+    {
+        boolean inflatable = inflation != null;
+        String encoding = inflatable ? inflation.getEncoding() : null;
+        HttpField xContentEncoding = inflatable && "gzip".equals(encoding) ? X_CE_GZIP : new HttpField("X-Content-Encoding", encoding);
         HttpFields fields = request.getHeaders();
         HttpFields.Mutable newFields = HttpFields.build(fields);
         boolean contentEncodingSeen = false;
@@ -77,23 +104,27 @@ public class GzipRequest extends Request.Wrapper
                     {
                         contentEncodingSeen = true;
 
-                        if (field.getValue().equalsIgnoreCase("gzip"))
+                        if (field.getValue().equalsIgnoreCase(encoding))
                         {
-                            i.set(X_CE_GZIP);
+                            i.set(xContentEncoding);
                         }
-                        else if (field.containsLast("gzip"))
+                        else if (field.containsLast(encoding))
                         {
                             String v = field.getValue();
                             v = v.substring(0, v.lastIndexOf(','));
                             i.set(new HttpField(HttpHeader.CONTENT_ENCODING, v));
-                            i.add(X_CE_GZIP);
+                            i.add(xContentEncoding);
                         }
                     }
                 }
                 case IF_MATCH, IF_NONE_MATCH ->
                 {
                     String etags = field.getValue();
-                    String etagsNoSuffix = CompressedContentFormat.GZIP.stripSuffixes(etags);
+                    String etagsNoSuffix = etags;
+                    for (Compression compression : compressions)
+                    {
+                        etagsNoSuffix = compression.getFormat().stripSuffixes(etagsNoSuffix);
+                    }
                     if (!etagsNoSuffix.equals(etags))
                     {
                         i.set(new HttpField(field.getHeader(), etagsNoSuffix));
@@ -166,7 +197,7 @@ public class GzipRequest extends Request.Wrapper
             // Retain the input chunk because its ByteBuffer will be referenced by the Inflater.
             if (retain)
                 _chunk.retain();
-            RetainableByteBuffer decodedBuffer = _decoder.decode(_chunk);
+            RetainableByteBuffer decodedBuffer = _decoder.decode(_chunk.getByteBuffer());
 
             if (decodedBuffer != null && decodedBuffer.hasRemaining())
             {
@@ -186,38 +217,4 @@ public class GzipRequest extends Request.Wrapper
             }
         }
     }
-
-    private static class Decoder extends GZIPContentDecoder
-    {
-        private RetainableByteBuffer _decoded;
-
-        private Decoder(InflaterPool inflaterPool, ByteBufferPool bufferPool, int bufferSize)
-        {
-            super(inflaterPool, bufferPool, bufferSize);
-        }
-
-        public RetainableByteBuffer decode(Content.Chunk chunk)
-        {
-            decodeChunks(chunk.getByteBuffer());
-            RetainableByteBuffer decoded = _decoded;
-            _decoded = null;
-            return decoded;
-        }
-
-        @Override
-        protected boolean decodedChunk(RetainableByteBuffer decoded)
-        {
-            // Retain the chunk because it is stored for later use.
-            decoded.retain();
-            _decoded = decoded;
-            return true;
-        }
-
-        @Override
-        public void decodeChunks(ByteBuffer compressed)
-        {
-            _decoded = null;
-            super.decodeChunks(compressed);
-        }
-    }
 }
@@ -14,12 +14,10 @@
 package org.eclipse.jetty.server.handler.gzip;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.zip.CRC32;
-import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -31,24 +29,18 @@ import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingNestedCallback;
-import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import static org.eclipse.jetty.http.CompressedContentFormat.GZIP;
-
 public class GzipResponseAndCallback extends Response.Wrapper implements Callback, Invocable
 {
     public static Logger LOG = LoggerFactory.getLogger(GzipResponseAndCallback.class);
 
-    // Per RFC-1952 this is the "unknown" OS value byte.
-    private static final byte OS_UNKNOWN = (byte)0xFF;
-    private static final byte[] GZIP_HEADER = new byte[]{
-        (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, OS_UNKNOWN
-    };
     // Per RFC-1952, the GZIP trailer is 8 bytes
     public static final int GZIP_TRAILER_SIZE = 8;
+    // Room for the header and the trailer of any compression
+    private static final int MIN_BUFFER_SIZE = 32;
 
     public static final HttpField VARY_ACCEPT_ENCODING = new PreEncodedHttpField(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
 
@@ -69,24 +61,39 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
     }
 
     private final AtomicReference<GZState> _state = new AtomicReference<>(GZState.MIGHT_COMPRESS);
-    private final CRC32 _crc = new CRC32();
 
     private final Callback _callback;
     private final GzipFactory _factory;
+    private final GzipHandler _handler;
+    private final Compression _compression;
     private final HttpField _vary;
     private final int _bufferSize;
     private final boolean _syncFlush;
 
-    private DeflaterPool.Entry _deflaterEntry;
+    private Compression.Encoder _encoder;
+    private ParallelGzipWriter _parallel;
+    private long _parallelThreshold = -1;
+    private long _written;
     private RetainableByteBuffer _buffer;
 
+    /**
+     * @deprecated use {@link #GzipResponseAndCallback(GzipHandler, Request, Response, Callback, Compression)} instead
+     */
+    @Deprecated
     public GzipResponseAndCallback(GzipHandler handler, Request request, Response response, Callback callback)
+    {
+        this(handler, request, response, callback, handler.getCompression(CompressedContentFormat.GZIP.getEncoding()));
+    }
+
+    public GzipResponseAndCallback(GzipHandler handler, Request request, Response response, Callback callback, Compression compression)
     {
         super(request, response);
         _callback = callback;
         _factory = handler;
+        _handler = handler;
+        _compression = compression;
         _vary = handler.getVary();
-        _bufferSize = Math.max(GZIP_HEADER.length + GZIP_TRAILER_SIZE, request.getConnectionMetaData().getHttpConfiguration().getOutputBufferSize());
+        _bufferSize = Math.max(MIN_BUFFER_SIZE, request.getConnectionMetaData().getHttpConfiguration().getOutputBufferSize());
         _syncFlush = handler.isSyncFlush();
     }
 
@@ -112,6 +119,8 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
     {
         try
         {
+            if (_parallel != null)
+                _parallel.fail(x);
             _callback.failed(x);
         }
         finally
@@ -149,17 +158,32 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
     private void addTrailer(ByteBuffer outputBuffer)
     {
         if (LOG.isDebugEnabled())
-            LOG.debug("addTrailer: _crc={}, _totalIn={})", _crc.getValue(), _deflaterEntry.get().getTotalIn());
-        outputBuffer.putInt((int)_crc.getValue());
-        outputBuffer.putInt(_deflaterEntry.get().getTotalIn());
+            LOG.debug("addTrailer: encoder={}", _encoder);
+        _encoder.end(outputBuffer);
     }
 
     private void gzip(boolean complete, final Callback callback, ByteBuffer content)
     {
-        if (content != null || complete)
-            new GzipBufferCB(complete, callback, content).iterate();
+        if (_parallel != null)
+        {
+            if (complete)
+                _state.set(GZState.FINISHED);
+            _parallel.write(complete, content, callback);
+        }
+        else if (content != null || complete)
+        {
+            boolean parallelize = false;
+            if (_parallelThreshold >= 0 && !complete && BufferUtil.hasContent(content))
+            {
+                _written += BufferUtil.length(content);
+                parallelize = _written >= _parallelThreshold;
+            }
+            new GzipBufferCB(complete, callback, content, parallelize).iterate();
+        }
         else
+        {
             callback.succeeded();
+        }
     }
 
     protected void commit(boolean last, Callback callback, ByteBuffer content)
@@ -183,7 +207,7 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
                 String responseEtag = response.getHeaders().get(HttpHeader.ETAG);
                 if (requestEtags != null && responseEtag != null)
                 {
-                    String responseEtagGzip = etagGzip(responseEtag);
+                    String responseEtagGzip = _compression.getFormat().etag(responseEtag);
                     if (requestEtags.contains(responseEtagGzip))
                         response.getHeaders().put(HttpHeader.ETAG, responseEtagGzip);
                     if (_vary != null)
@@ -231,25 +255,31 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
             if (contentLength < 0 && last)
                 contentLength = BufferUtil.length(content);
 
-            _deflaterEntry = _factory.getDeflaterEntry(request, contentLength);
-            if (_deflaterEntry == null)
+            _parallel = _handler.newParallelGzipWriter(_compression, request, super::write, contentLength);
+            if (_parallel == null)
+            {
+                _encoder = _factory.getEncoder(_compression, request, contentLength);
+                // Compress in parallel once the content of unknown length reaches the threshold.
+                if (contentLength < 0 && _encoder instanceof GzipCompression.GzipEncoder)
+                    _parallelThreshold = _handler.getParallelCompressionThreshold(_compression, request);
+            }
+            if (_parallel == null && _encoder == null)
             {
-                LOG.debug("{} exclude no deflater", this);
+                LOG.debug("{} exclude no encoder", this);
                 _state.set(GZState.NOT_COMPRESSING);
                 super.write(last, content, callback);
                 return;
             }
 
-            fields.put(GZIP.getContentEncoding());
-            _crc.reset();
+            fields.put(_compression.getFormat().getContentEncoding());
 
             // Adjust headers
             response.getHeaders().remove(HttpHeader.CONTENT_LENGTH);
             String etag = fields.get(HttpHeader.ETAG);
             if (etag != null)
-                fields.put(HttpHeader.ETAG, etagGzip(etag));
+                fields.put(HttpHeader.ETAG, _compression.getFormat().etag(etag));
 
-            LOG.debug("{} compressing {}", this, _deflaterEntry);
+            LOG.debug("{} compressing {}", this, _parallel != null ? _parallel : _encoder);
             _state.set(GZState.COMPRESSING);
 
             if (BufferUtil.isEmpty(content))
@@ -268,9 +298,15 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
         }
     }
 
-    private String etagGzip(String etag)
+    private void parallelize(ByteBuffer content)
     {
-        return GZIP.etag(etag);
+        // The end of the content primes the dictionary of the first parallel block.
+        RetainableByteBuffer dictionary = getRequest().getComponents().getByteBufferPool().acquire(content.remaining(), false);
+        BufferUtil.append(dictionary.getByteBuffer(), content);
+        GzipCompression.GzipEncoder encoder = (GzipCompression.GzipEncoder)_encoder;
+        _parallel = _handler.newParallelGzipWriter(_compression, getRequest(), super::write, encoder.getCRC32(), encoder.getTotalIn(), dictionary);
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} compressing {} after {} bytes", this, _parallel, _written);
     }
 
     public void noCompression()
@@ -297,31 +333,51 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
     {
         private final ByteBuffer _content;
         private final boolean _last;
+        private final ByteBuffer _dictionary;
+        private boolean _flushed;
 
-        public GzipBufferCB(boolean complete, Callback callback, ByteBuffer content)
+        public GzipBufferCB(boolean complete, Callback callback, ByteBuffer content, boolean parallelize)
         {
             super(callback);
             _content = content;
             _last = complete;
-
-            if (_content != null)
+            if (parallelize)
             {
-                _crc.update(_content.slice());
-                Deflater deflater = _deflaterEntry.get();
-                deflater.setInput(_content);
+                // The end of the content is copied once compressed, before the callback completes.
+                int length = Math.min(content.remaining(), ParallelGzipWriter.DICTIONARY_SIZE);
+                _dictionary = content.slice(content.limit() - length, length);
+            }
+            else
+            {
+                _dictionary = null;
             }
 
+            if (_content != null)
+                _encoder.setInput(_content);
+
             if (LOG.isDebugEnabled())
                 LOG.debug("GzipBufferCB(complete={}, callback={}, content={})", complete, callback, BufferUtil.toDetailString(content));
         }
 
+        @Override
+        protected void onCompleteSuccess()
+        {
+            if (_dictionary != null)
+            {
+                // The remaining content is compressed in parallel.
+                parallelize(_dictionary);
+                cleanup();
+            }
+            super.onCompleteSuccess();
+        }
+
         @Override
         protected void onCompleteFailure(Throwable x)
         {
-            if (_deflaterEntry != null)
+            if (_encoder != null)
             {
-                _deflaterEntry.release();
-                _deflaterEntry = null;
+                _encoder.release();
+                _encoder = null;
             }
             super.onCompleteFailure(x);
         }
@@ -349,11 +405,8 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
             {
                 _buffer = getRequest().getComponents().getByteBufferPool().acquire(_bufferSize, false);
                 ByteBuffer byteBuffer = _buffer.getByteBuffer();
-                // Per RFC-1952, GZIP is LITTLE_ENDIAN
-                byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
                 BufferUtil.flipToFill(byteBuffer);
-                // Add GZIP Header
-                byteBuffer.put(GZIP_HEADER, 0, GZIP_HEADER.length);
+                _encoder.begin(byteBuffer);
             }
             else
             {
@@ -361,22 +414,20 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
                 BufferUtil.clearToFill(_buffer.getByteBuffer());
             }
 
-            Deflater deflater = _deflaterEntry.get();
-
             return switch (gzstate)
             {
-                case COMPRESSING -> compressing(deflater, _buffer.getByteBuffer());
-                case FINISHING -> finishing(deflater, _buffer.getByteBuffer());
+                case COMPRESSING -> compressing(_encoder, _buffer.getByteBuffer());
+                case FINISHING -> finishing(_encoder, _buffer.getByteBuffer());
                 default -> throw new IllegalStateException("Unexpected state [" + _state.get() + "]");
             };
         }
 
         private void cleanup()
         {
-            if (_deflaterEntry != null)
+            if (_encoder != null)
             {
-                _deflaterEntry.release();
-                _deflaterEntry = null;
+                _encoder.release();
+                _encoder = null;
             }
 
             if (_buffer != null)
@@ -386,25 +437,20 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
             }
         }
 
-        private int getFlushMode()
-        {
-            return _syncFlush ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
-        }
-
         /**
          * This method is called directly from {@link #process()} to perform the compressing of
          * the content this {@link GzipBufferCB} represents.
          */
-        private Action compressing(Deflater deflater, ByteBuffer outputBuffer)
+        private Action compressing(Compression.Encoder encoder, ByteBuffer outputBuffer)
         {
             if (LOG.isDebugEnabled())
-                LOG.debug("compressing() deflater={}, outputBuffer={}", deflater, BufferUtil.toDetailString(outputBuffer));
+                LOG.debug("compressing() encoder={}, outputBuffer={}", encoder, BufferUtil.toDetailString(outputBuffer));
 
-            if (!deflater.finished())
+            if (!encoder.finished())
             {
-                if (!deflater.needsInput())
+                if (!encoder.needsInput())
                 {
-                    int len = deflater.deflate(outputBuffer, getFlushMode());
+                    int len = encoder.encode(outputBuffer, _syncFlush);
                     if (len > 0)
                     {
                         BufferUtil.flipToFlush(outputBuffer, 0);
@@ -417,8 +463,15 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
             if (_last)
             {
                 _state.set(GZState.FINISHING);
-                deflater.finish();
-                return finishing(deflater, outputBuffer);
+                encoder.finish();
+                return finishing(encoder, outputBuffer);
+            }
+
+            if (_dictionary != null && !_flushed)
+            {
+                // Flush the deflated content to a byte boundary, where the parallel compression continues.
+                encoder.encode(outputBuffer, true);
+                _flushed = outputBuffer.hasRemaining();
             }
 
             BufferUtil.flipToFlush(outputBuffer, 0);
@@ -428,7 +481,7 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
                 return Action.SCHEDULED;
             }
 
-            // the content held by GzipBufferCB is fully consumed as input to the Deflater instance, we are done
+            // the content held by GzipBufferCB is fully consumed as input to the encoder, we are done
             if (BufferUtil.isEmpty(_content))
                 return Action.SUCCEEDED;
 
@@ -437,18 +490,18 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
         }
 
         /**
-         * This method is called by {@link #compressing(Deflater, ByteBuffer)}, once the last chunk is compressed;
+         * This method is called by {@link #compressing(Compression.Encoder, ByteBuffer)}, once the last chunk is compressed;
          * or directly from {@link #process()} if an earlier call to this method was unable to complete.
          */
-        private Action finishing(Deflater deflater, ByteBuffer outputBuffer)
+        private Action finishing(Compression.Encoder encoder, ByteBuffer outputBuffer)
         {
             if (LOG.isDebugEnabled())
-                LOG.debug("finishing() deflater={}, outputBuffer={}", deflater, BufferUtil.toDetailString(outputBuffer));
-            if (!deflater.finished())
+                LOG.debug("finishing() encoder={}, outputBuffer={}", encoder, BufferUtil.toDetailString(outputBuffer));
+            if (!encoder.finished())
             {
-                int len = deflater.deflate(outputBuffer, getFlushMode());
+                int len = encoder.encode(outputBuffer, _syncFlush);
                 // try to preserve single write if possible (header + compressed content + trailer)
-                if (deflater.finished() && outputBuffer.remaining() >= GZIP_TRAILER_SIZE)
+                if (encoder.finished() && outputBuffer.remaining() >= encoder.getTrailerSize())
                 {
                     _state.set(GZState.FINISHED);
                     addTrailer(outputBuffer);
@@ -487,12 +540,12 @@ public class GzipResponseAndCallback extends Response.Wrapper implements Callbac
         @Override
         public String toString()
         {
-            return String.format("%s[content=%s last=%b buffer=%s deflate=%s %s]",
+            return String.format("%s[content=%s last=%b buffer=%s encoder=%s %s]",
                 super.toString(),
                 BufferUtil.toDetailString(_content),
                 _last,
                 _buffer,
-                _deflaterEntry,
+                _encoder,
                 _state.get());
         }
     }
@@ -0,0 +1,578 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.jetty.http.BadMessageException;
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.compression.CompressionPool;
+
+/**
+ * <p>The {@code compress} content-coding, that is the adaptive Lempel-Ziv-Welch
+ * format of the UNIX {@code compress} program, implemented in Java.</p>
+ * <p>The format is produced in block mode, clearing the dictionary when it is full,
+ * and with codes of up to {@link #getMaxBits()} bits. It does not support compression
+ * levels nor flushing, so {@link GzipHandler#isSyncFlush()} is ignored.</p>
+ * <p>The dictionaries of the encoders are pooled, since each one takes several hundreds of KiB.</p>
+ */
+public class LzwCompression extends Compression
+{
+    public static final CompressedContentFormat COMPRESS = new CompressedContentFormat("compress", ".Z");
+
+    private static final int MAGIC_0 = 0x1F;
+    private static final int MAGIC_1 = 0x9D;
+    private static final int BLOCK_MODE = 0x80;
+    private static final int BITS_MASK = 0x1F;
+    private static final int INIT_BITS = 9;
+    private static final int MAX_BITS = 16;
+    private static final int CLEAR = 256;
+    private static final int FIRST = 257;
+
+    private final CompressionPool<Dictionary> _dictionaryPool = new CompressionPool<>(CompressionPool.DEFAULT_CAPACITY)
+    {
+        @Override
+        protected Dictionary newPooled()
+        {
+            return new Dictionary(_maxBits);
+        }
+
+        @Override
+        protected void end(Dictionary dictionary)
+        {
+        }
+
+        @Override
+        protected void reset(Dictionary dictionary)
+        {
+            dictionary.clear();
+        }
+    };
+    private int _maxBits = MAX_BITS;
+
+    public LzwCompression()
+    {
+        super(COMPRESS);
+        addBean(_dictionaryPool);
+    }
+
+    /**
+     * @return the max number of bits of the codes of encoded content
+     */
+    public int getMaxBits()
+    {
+        return _maxBits;
+    }
+
+    /**
+     * @param maxBits the max number of bits of the codes of encoded content, between 9 and 16
+     */
+    public void setMaxBits(int maxBits)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        if (maxBits < INIT_BITS || maxBits > MAX_BITS)
+            throw new IllegalArgumentException("Invalid max bits " + maxBits);
+        _maxBits = maxBits;
+    }
+
+    @Override
+    public Encoder newEncoder(int level)
+    {
+        return new LzwEncoder(_dictionaryPool.acquire());
+    }
+
+    @Override
+    public Decoder newDecoder(ByteBufferPool bufferPool, int bufferSize)
+    {
+        return new LzwDecoder(bufferPool, bufferSize);
+    }
+
+    /**
+     * <p>Returns the max code for the given code size, after an increment of the code size.</p>
+     * <p>As in the original implementation, the initial code size is only considered to be the
+     * max code size after an increment, so that with 9 bits codes 10 bits codes are used once
+     * the dictionary is full.</p>
+     */
+    private static int maxCode(int bits, int maxBits)
+    {
+        return bits == maxBits ? 1 << maxBits : (1 << bits) - 1;
+    }
+
+    /**
+     * <p>The dictionary of an encoder, an open addressing hash table of
+     * {@code (prefix code, character)} keys to codes.</p>
+     */
+    private static class Dictionary
+    {
+        private final int _maxBits;
+        private final int[] _keys;
+        private final char[] _codes;
+
+        private Dictionary(int maxBits)
+        {
+            _maxBits = maxBits;
+            // A prime size about 5/4 of the max number of codes.
+            int size = (1 << maxBits) * 5 / 4;
+            while (!isPrime(size))
+            {
+                ++size;
+            }
+            _keys = new int[size];
+            _codes = new char[size];
+            clear();
+        }
+
+        private static boolean isPrime(int n)
+        {
+            for (int i = 2; i * i <= n; ++i)
+            {
+                if (n % i == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        private void clear()
+        {
+            Arrays.fill(_keys, -1);
+        }
+
+        /**
+         * @return the index of the key, or the complement of the index where the key can be inserted
+         */
+        private int find(int key, int prefix, int c)
+        {
+            int size = _keys.length;
+            int i = ((c << (_maxBits - 8)) ^ prefix) % size;
+            int displacement = i == 0 ? 1 : size - i;
+            while (true)
+            {
+                int k = _keys[i];
+                if (k == key)
+                    return i;
+                if (k < 0)
+                    return ~i;
+                i -= displacement;
+                if (i < 0)
+                    i += size;
+            }
+        }
+    }
+
+    private class LzwEncoder implements Encoder
+    {
+        private final CompressionPool<Dictionary>.Entry _entry;
+        private final Dictionary _dictionary;
+        private final int _maxBits;
+        private final int _maxMaxCode;
+        private byte[] _pending = new byte[64];
+        private int _pendingStart;
+        private int _pendingEnd;
+        private ByteBuffer _input = BufferUtil.EMPTY_BUFFER;
+        private int _prefix = -1;
+        private int _bits = INIT_BITS;
+        private int _maxCode = (1 << INIT_BITS) - 1;
+        private int _freeCode = FIRST;
+        private long _bitBuffer;
+        private int _bitCount;
+        private long _groupBits;
+        private boolean _finish;
+        private boolean _ended;
+
+        private LzwEncoder(CompressionPool<Dictionary>.Entry entry)
+        {
+            _entry = entry;
+            _dictionary = entry.get();
+            _maxBits = _dictionary._maxBits;
+            _maxMaxCode = 1 << _maxBits;
+        }
+
+        @Override
+        public void begin(ByteBuffer output)
+        {
+            output.put((byte)MAGIC_0);
+            output.put((byte)MAGIC_1);
+            output.put((byte)(BLOCK_MODE | _maxBits));
+        }
+
+        @Override
+        public void setInput(ByteBuffer input)
+        {
+            _input = input;
+        }
+
+        @Override
+        public boolean needsInput()
+        {
+            return !_input.hasRemaining() && _pendingStart == _pendingEnd;
+        }
+
+        @Override
+        public int encode(ByteBuffer output, boolean flush)
+        {
+            int start = output.position();
+            while (true)
+            {
+                // Drain the pending bytes.
+                int pending = Math.min(_pendingEnd - _pendingStart, output.remaining());
+                if (pending > 0)
+                {
+                    output.put(_pending, _pendingStart, pending);
+                    _pendingStart += pending;
+                }
+                if (_pendingStart < _pendingEnd)
+                    break;
+                _pendingStart = 0;
+                _pendingEnd = 0;
+
+                if (_input.hasRemaining())
+                {
+                    // Encode until there are enough pending bytes to fill the output.
+                    int room = output.remaining();
+                    while (_input.hasRemaining() && _pendingEnd <= room)
+                    {
+                        encode(_input.get() & 0xFF);
+                    }
+                    continue;
+                }
+
+                if (_finish && !_ended)
+                {
+                    _ended = true;
+                    if (_prefix >= 0)
+                        writeCode(_prefix, false);
+                    if (_bitCount > 0)
+                        writeBits(0, 8 - _bitCount);
+                    continue;
+                }
+                break;
+            }
+            return output.position() - start;
+        }
+
+        private void encode(int c)
+        {
+            if (_prefix < 0)
+            {
+                _prefix = c;
+                return;
+            }
+
+            int key = (c << MAX_BITS) | _prefix;
+            int index = _dictionary.find(key, _prefix, c);
+            if (index >= 0)
+            {
+                _prefix = _dictionary._codes[index];
+                return;
+            }
+
+            writeCode(_prefix, false);
+            if (_freeCode < _maxMaxCode)
+            {
+                index = ~index;
+                _dictionary._keys[index] = key;
+                _dictionary._codes[index] = (char)_freeCode++;
+            }
+            else
+            {
+                // The dictionary is full, start a new one.
+                _dictionary.clear();
+                _freeCode = FIRST;
+                writeCode(CLEAR, true);
+            }
+            _prefix = c;
+        }
+
+        private void writeCode(int code, boolean clear)
+        {
+            writeBits(code, _bits);
+            _groupBits += _bits;
+            if (clear || _freeCode > _maxCode)
+            {
+                // Codes are read in groups of 8 codes, so the last group of
+                // a code size is padded before changing the code size.
+                long groupSize = _bits * 8L;
+                long padding = (groupSize - _groupBits % groupSize) % groupSize;
+                while (padding > 0)
+                {
+                    int bits = (int)Math.min(padding, 32);
+                    writeBits(0, bits);
+                    padding -= bits;
+                }
+                _groupBits = 0;
+                if (clear)
+                {
+                    _bits = INIT_BITS;
+                    _maxCode = (1 << INIT_BITS) - 1;
+                }
+                else
+                {
+                    ++_bits;
+                    _maxCode = maxCode(_bits, _maxBits);
+                }
+            }
+        }
+
+        private void writeBits(int value, int bits)
+        {
+            _bitBuffer |= ((long)value) << _bitCount;
+            _bitCount += bits;
+            while (_bitCount >= 8)
+            {
+                if (_pendingEnd == _pending.length)
+                    _pending = Arrays.copyOf(_pending, _pending.length * 2);
+                _pending[_pendingEnd++] = (byte)_bitBuffer;
+                _bitBuffer >>>= 8;
+                _bitCount -= 8;
+            }
+        }
+
+        @Override
+        public void finish()
+        {
+            _finish = true;
+        }
+
+        @Override
+        public boolean finished()
+        {
+            return _ended && _pendingStart == _pendingEnd && !_input.hasRemaining();
+        }
+
+        @Override
+        public int getTrailerSize()
+        {
+            return 0;
+        }
+
+        @Override
+        public void end(ByteBuffer output)
+        {
+        }
+
+        @Override
+        public void release()
+        {
+            _entry.release();
+        }
+    }
+
+    private static class LzwDecoder implements Decoder
+    {
+        private final ByteBufferPool _bufferPool;
+        private final int _bufferSize;
+        private final char[] _prefixes = new char[1 << MAX_BITS];
+        private final byte[] _suffixes = new byte[1 << MAX_BITS];
+        private final byte[] _stack = new byte[1 << MAX_BITS];
+        private int _stackSize;
+        private int _header;
+        private int _maxBits;
+        private boolean _blockMode;
+        private int _bits = INIT_BITS;
+        private int _maxCode = (1 << INIT_BITS) - 1;
+        private int _freeCode;
+        private int _oldCode = -1;
+        private int _finalChar;
+        private long _bitBuffer;
+        private int _bitCount;
+        private long _groupBits;
+        private long _skipBits;
+
+        private LzwDecoder(ByteBufferPool bufferPool, int bufferSize)
+        {
+            _bufferPool = bufferPool;
+            _bufferSize = bufferSize;
+            for (int c = 0; c < 256; ++c)
+            {
+                _suffixes[c] = (byte)c;
+            }
+        }
+
+        @Override
+        public RetainableByteBuffer decode(ByteBuffer compressed)
+        {
+            if (!parseHeader(compressed))
+                return null;
+
+            RetainableByteBuffer buffer = _bufferPool.acquire(_bufferSize, false);
+            ByteBuffer output = buffer.getByteBuffer();
+            int position = BufferUtil.flipToFill(output);
+            while (true)
+            {
+                // Output the characters of the last code, which are in reverse order.
+                while (_stackSize > 0 && output.hasRemaining())
+                {
+                    output.put(_stack[--_stackSize]);
+                }
+                if (!output.hasRemaining())
+                    break;
+
+                if (!skipBits(compressed))
+                    break;
+
+                if (_freeCode > _maxCode)
+                {
+                    // Skip the padding of the last group of codes of the previous code size.
+                    startGroup();
+                    ++_bits;
+                    _maxCode = maxCode(_bits, _maxBits);
+                    continue;
+                }
+
+                while (_bitCount < _bits && compressed.hasRemaining())
+                {
+                    _bitBuffer |= (compressed.get() & 0xFFL) << _bitCount;
+                    _bitCount += 8;
+                }
+                if (_bitCount < _bits)
+                    break;
+                int code = (int)(_bitBuffer & ((1 << _bits) - 1));
+                _bitBuffer >>>= _bits;
+                _bitCount -= _bits;
+                _groupBits += _bits;
+                decode(code);
+            }
+
+            if (_stackSize > 0 && !compressed.hasRemaining())
+            {
+                // The input is consumed, so the characters of the last
+                // code cannot be left for the next call, grow the output.
+                RetainableByteBuffer larger = _bufferPool.acquire(output.position() - position + _stackSize, false);
+                ByteBuffer largerOutput = larger.getByteBuffer();
+                int largerPosition = BufferUtil.flipToFill(largerOutput);
+                largerOutput.put(output.flip().position(position));
+                buffer.release();
+                buffer = larger;
+                output = largerOutput;
+                position = largerPosition;
+                while (_stackSize > 0)
+                {
+                    output.put(_stack[--_stackSize]);
+                }
+            }
+            BufferUtil.flipToFlush(output, position);
+            return buffer;
+        }
+
+        private boolean parseHeader(ByteBuffer compressed)
+        {
+            while (_header < 3)
+            {
+                if (!compressed.hasRemaining())
+                    return false;
+                int b = compressed.get() & 0xFF;
+                switch (_header++)
+                {
+                    case 0, 1 ->
+                    {
+                        if (b != (_header == 1 ? MAGIC_0 : MAGIC_1))
+                            throw new BadMessageException("Invalid compress content");
+                    }
+                    default ->
+                    {
+                        _maxBits = b & BITS_MASK;
+                        _blockMode = (b & BLOCK_MODE) != 0;
+                        if (_maxBits < INIT_BITS || _maxBits > MAX_BITS)
+                            throw new BadMessageException("Invalid compress max bits " + _maxBits);
+                        _freeCode = _blockMode ? FIRST : 256;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private void startGroup()
+        {
+            long groupSize = _bits * 8L;
+            _skipBits = (groupSize - _groupBits % groupSize) % groupSize;
+            _groupBits = 0;
+        }
+
+        private boolean skipBits(ByteBuffer compressed)
+        {
+            while (_skipBits > 0)
+            {
+                if (_bitCount == 0)
+                {
+                    if (!compressed.hasRemaining())
+                        return false;
+                    _bitBuffer = compressed.get() & 0xFFL;
+                    _bitCount = 8;
+                }
+                int bits = (int)Math.min(_skipBits, _bitCount);
+                _bitBuffer >>>= bits;
+                _bitCount -= bits;
+                _skipBits -= bits;
+            }
+            return true;
+        }
+
+        private void decode(int code)
+        {
+            if (_oldCode < 0)
+            {
+                if (code >= 256)
+                    throw new BadMessageException("Invalid compress code " + code);
+                _oldCode = code;
+                _finalChar = code;
+                _stack[_stackSize++] = (byte)code;
+                return;
+            }
+
+            if (code == CLEAR && _blockMode)
+            {
+                _freeCode = FIRST - 1;
+                startGroup();
+                _bits = INIT_BITS;
+                _maxCode = (1 << INIT_BITS) - 1;
+                return;
+            }
+
+            int inCode = code;
+            if (code >= _freeCode)
+            {
+                if (code > _freeCode)
+                    throw new BadMessageException("Invalid compress code " + code);
+                // The code being defined, that is the previous string plus its first character.
+                _stack[_stackSize++] = (byte)_finalChar;
+                code = _oldCode;
+            }
+            while (code >= 256)
+            {
+                _stack[_stackSize++] = _suffixes[code];
+                code = _prefixes[code];
+            }
+            _finalChar = code;
+            _stack[_stackSize++] = (byte)code;
+
+            if (_freeCode < 1 << _maxBits)
+            {
+                _prefixes[_freeCode] = (char)_oldCode;
+                _suffixes[_freeCode] = (byte)_finalChar;
+                ++_freeCode;
+            }
+            _oldCode = inCode;
+        }
+
+        @Override
+        public void destroy()
+        {
+        }
+    }
+}
@@ -0,0 +1,579 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Writes content compressed to gzip in independent blocks deflated in parallel,
+ * in the same way as <a href="https://zlib.net/pigz/">pigz</a>.</p>
+ * <p>The content is copied into blocks, each deflated by a task submitted to an {@link Executor},
+ * with the dictionary primed with the last 32 KiB of the previous block, so that the compression
+ * ratio is close to the one of sequential compression. The blocks but the last end with a sync
+ * flush, so that the deflated blocks are a single deflate stream once concatenated; they are
+ * written in order, between the gzip header and trailer.</p>
+ * <p>A writer may continue a gzip stream whose header and beginning have already been written,
+ * ending with a sync flush. At most {@code maxBlocks} blocks are deflated or waiting to be written:
+ * a write that fills a block beyond this limit succeeds only once a block is written, which bounds
+ * the memory used by the compression of a response.</p>
+ */
+class ParallelGzipWriter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelGzipWriter.class);
+    // Per RFC-1952 this is the "unknown" OS value byte.
+    private static final byte OS_UNKNOWN = (byte)0xFF;
+    private static final byte[] GZIP_HEADER = new byte[]{
+        (byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, OS_UNKNOWN
+    };
+    // The size of the deflate window.
+    static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final AutoLock _lock = new AutoLock();
+    private final Deque<Block> _blocks = new ArrayDeque<>();
+    private final Flusher _flusher = new Flusher();
+    private final Content.Sink _sink;
+    private final ByteBufferPool _bufferPool;
+    private final DeflaterPool _deflaterPool;
+    private final Executor _executor;
+    private final int _blockSize;
+    private final int _maxBlocks;
+    private final CRC32 _crc;
+    private long _totalIn;
+    private int _sequence;
+    private Block _block;
+    private RetainableByteBuffer _dictionary;
+    private ByteBuffer _content;
+    private boolean _last;
+    private Callback _callback;
+    private Callback _pending;
+    private boolean _lastWritten;
+    private boolean _writing;
+    private boolean _waiting;
+    private Throwable _failure;
+
+    /**
+     * @param sink the sink to write the gzip content to
+     * @param bufferPool the pool of the buffers of the blocks
+     * @param deflaterPool the pool of {@code nowrap} deflaters
+     * @param executor the executor that deflates the blocks
+     * @param blockSize the size of the blocks of uncompressed content
+     * @param maxBlocks the max number of blocks being deflated or waiting to be written
+     */
+    ParallelGzipWriter(Content.Sink sink, ByteBufferPool bufferPool, DeflaterPool deflaterPool, Executor executor, int blockSize, int maxBlocks)
+    {
+        this(sink, bufferPool, deflaterPool, executor, blockSize, maxBlocks, new CRC32(), 0, null, 0);
+    }
+
+    /**
+     * @param sink the sink to write the gzip content to
+     * @param bufferPool the pool of the buffers of the blocks
+     * @param deflaterPool the pool of {@code nowrap} deflaters
+     * @param executor the executor that deflates the blocks
+     * @param blockSize the size of the blocks of uncompressed content
+     * @param maxBlocks the max number of blocks being deflated or waiting to be written
+     * @param crc the CRC of the content already written, updated with the content of this writer
+     * @param totalIn the length of the content already written, whose deflated bytes end with a sync flush
+     * @param dictionary the end of the content already written, released by this writer, or null
+     */
+    ParallelGzipWriter(Content.Sink sink, ByteBufferPool bufferPool, DeflaterPool deflaterPool, Executor executor, int blockSize, int maxBlocks, CRC32 crc, long totalIn, RetainableByteBuffer dictionary)
+    {
+        this(sink, bufferPool, deflaterPool, executor, blockSize, maxBlocks, crc, totalIn, dictionary, 1);
+    }
+
+    private ParallelGzipWriter(Content.Sink sink, ByteBufferPool bufferPool, DeflaterPool deflaterPool, Executor executor, int blockSize, int maxBlocks, CRC32 crc, long totalIn, RetainableByteBuffer dictionary, int sequence)
+    {
+        if (!deflaterPool.isNowrap())
+            throw new IllegalArgumentException("nowrap deflater pool required");
+        _sink = sink;
+        _bufferPool = bufferPool;
+        _deflaterPool = deflaterPool;
+        _executor = executor;
+        _blockSize = fitBlockSize(blockSize, bufferPool);
+        _maxBlocks = Math.max(1, maxBlocks);
+        _crc = crc;
+        _totalIn = totalIn;
+        _dictionary = dictionary;
+        _sequence = sequence;
+    }
+
+    /**
+     * @param blockSize the configured size of the blocks
+     * @param bufferPool the pool of the buffers of the blocks
+     * @return the given size, reduced so that the deflated output of a block fits the max capacity of the pool
+     */
+    static int fitBlockSize(int blockSize, ByteBufferPool bufferPool)
+    {
+        int maxCapacity = bufferPool.getMaxCapacity();
+        if (maxCapacity == Integer.MAX_VALUE || getOutputSize(blockSize) <= maxCapacity)
+            return blockSize;
+        return Math.max(1, (int)((maxCapacity - 64) * 1024L / 1025));
+    }
+
+    private static int getOutputSize(int blockSize)
+    {
+        // Room for the worst case expansion of stored blocks, the header, the flush and the trailer.
+        return blockSize + (blockSize >> 10) + 64;
+    }
+
+    /**
+     * <p>Copies the given content into blocks, deflating the full blocks.</p>
+     * <p>Writes must not be concurrent: the callback must be completed before the next write.</p>
+     *
+     * @param last whether the content is the last
+     * @param content the content to compress, or null
+     * @param callback the callback completed once the content is copied or, for the last content,
+     * once the gzip content is entirely written
+     */
+    void write(boolean last, ByteBuffer content, Callback callback)
+    {
+        Throwable failure;
+        try (AutoLock ignored = _lock.lock())
+        {
+            failure = _failure;
+            _writing = failure == null;
+        }
+        if (failure != null)
+        {
+            callback.failed(failure);
+            return;
+        }
+
+        _content = content;
+        _last = last;
+        _callback = callback;
+        proceed();
+    }
+
+    /**
+     * <p>Copies the content of the current write into blocks, until it is entirely copied
+     * or until the max number of blocks is reached, in which case this method is called
+     * again once a block is written.</p>
+     */
+    private void proceed()
+    {
+        try
+        {
+            ByteBuffer content = _content;
+            while (content != null && content.hasRemaining())
+            {
+                if (_block == null)
+                {
+                    try (AutoLock ignored = _lock.lock())
+                    {
+                        if (_failure != null)
+                            break;
+                        if (_blocks.size() >= _maxBlocks)
+                        {
+                            // Wait for a block to be written.
+                            _waiting = true;
+                            _writing = false;
+                            return;
+                        }
+                    }
+                    _block = new Block(_sequence++, _bufferPool.acquire(_blockSize, false));
+                }
+                ByteBuffer input = _block._input.getByteBuffer();
+                int length = Math.min(content.remaining(), _blockSize - input.remaining());
+                ByteBuffer slice = content.slice(content.position(), length);
+                _crc.update(slice.slice());
+                BufferUtil.append(input, slice);
+                content.position(content.position() + length);
+                _totalIn += length;
+                if (input.remaining() == _blockSize)
+                    submit(false);
+            }
+            if (_last)
+            {
+                if (_block == null)
+                    _block = new Block(_sequence++, _bufferPool.acquire(0, false));
+                submit(true);
+            }
+        }
+        catch (Throwable x)
+        {
+            fail(x);
+        }
+
+        Callback callback = _callback;
+        _callback = null;
+        _content = null;
+        Throwable failure;
+        try (AutoLock ignored = _lock.lock())
+        {
+            _writing = false;
+            failure = _failure;
+            if (failure == null && _last && !_lastWritten)
+            {
+                // Wait for the last block to be written.
+                _pending = callback;
+                callback = null;
+            }
+        }
+        if (failure != null)
+        {
+            discard();
+            callback.failed(failure);
+        }
+        else if (callback != null)
+        {
+            callback.succeeded();
+        }
+    }
+
+    private void submit(boolean last)
+    {
+        Block block = _block;
+        _block = null;
+        block._last = last;
+        block._dictionary = _dictionary;
+        _dictionary = null;
+        if (last)
+        {
+            block._crc = _crc.getValue();
+            block._totalIn = _totalIn;
+        }
+        else
+        {
+            // The input of this block is the dictionary of the next block.
+            block._input.retain();
+            _dictionary = block._input;
+        }
+
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_failure != null)
+            {
+                block.discard();
+                return;
+            }
+            _blocks.add(block);
+        }
+
+        try
+        {
+            _executor.execute(block);
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deflating inline rejected {}", block, x);
+            block.run();
+        }
+    }
+
+    /**
+     * <p>Fails this writer, releasing the blocks and failing the pending write.</p>
+     *
+     * @param failure the cause of the failure
+     */
+    void fail(Throwable failure)
+    {
+        Callback pending;
+        Block block = null;
+        RetainableByteBuffer dictionary = null;
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_failure != null)
+                return;
+            _failure = failure;
+            pending = _pending;
+            _pending = null;
+            if (_waiting)
+            {
+                _waiting = false;
+                pending = _callback;
+                _callback = null;
+                _content = null;
+            }
+            // The writing thread discards its own resources,
+            // otherwise further writes fail without using them.
+            if (!_writing)
+            {
+                block = _block;
+                _block = null;
+                dictionary = _dictionary;
+                _dictionary = null;
+            }
+            // The blocks being deflated are released once deflated,
+            // and the block being written once written.
+            _blocks.removeIf(queued ->
+            {
+                if (queued._output == null || queued == _flusher._block)
+                    return false;
+                queued.release();
+                return true;
+            });
+        }
+        if (block != null)
+            block.discard();
+        if (dictionary != null)
+            dictionary.release();
+        if (pending != null)
+            pending.failed(failure);
+    }
+
+    private void discard()
+    {
+        if (_block != null)
+        {
+            _block.discard();
+            _block = null;
+        }
+        if (_dictionary != null)
+        {
+            _dictionary.release();
+            _dictionary = null;
+        }
+    }
+
+    private void deflated(Block block, RetainableByteBuffer output)
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            if (_failure != null)
+            {
+                output.release();
+                return;
+            }
+            block._output = output;
+        }
+        _flusher.iterate();
+    }
+
+    @Override
+    public String toString()
+    {
+        try (AutoLock ignored = _lock.lock())
+        {
+            return String.format("%s@%x{in=%d,blocks=%d,pending=%s}", getClass().getSimpleName(), hashCode(), _totalIn, _blocks.size(), _pending);
+        }
+    }
+
+    private class Block implements Runnable
+    {
+        private final int _sequence;
+        private final RetainableByteBuffer _input;
+        private RetainableByteBuffer _dictionary;
+        private boolean _last;
+        private long _crc;
+        private long _totalIn;
+        private RetainableByteBuffer _output;
+
+        private Block(int sequence, RetainableByteBuffer input)
+        {
+            _sequence = sequence;
+            _input = input;
+        }
+
+        @Override
+        public void run()
+        {
+            CompressionPool<Deflater>.Entry entry = _deflaterPool.acquire();
+            RetainableByteBuffer output = null;
+            try
+            {
+                Deflater deflater = entry.get();
+                if (_dictionary != null)
+                {
+                    ByteBuffer dictionary = _dictionary.getByteBuffer().slice();
+                    if (dictionary.remaining() > DICTIONARY_SIZE)
+                        dictionary.position(dictionary.limit() - DICTIONARY_SIZE);
+                    deflater.setDictionary(dictionary);
+                    _dictionary.release();
+                    _dictionary = null;
+                }
+
+                ByteBuffer input = _input.getByteBuffer().slice();
+                deflater.setInput(input);
+                if (_last)
+                    deflater.finish();
+
+                output = _bufferPool.acquire(getOutputSize(input.remaining()), false);
+                ByteBuffer byteBuffer = output.getByteBuffer();
+                BufferUtil.flipToFill(byteBuffer);
+                if (_sequence == 0)
+                    byteBuffer.put(GZIP_HEADER, 0, GZIP_HEADER.length);
+                while (true)
+                {
+                    deflater.deflate(byteBuffer, _last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    if (_last ? deflater.finished() : deflater.needsInput() && byteBuffer.hasRemaining())
+                        break;
+                    if (!byteBuffer.hasRemaining())
+                    {
+                        RetainableByteBuffer larger = _bufferPool.acquire(byteBuffer.capacity() * 2, false);
+                        ByteBuffer largerBuffer = larger.getByteBuffer();
+                        BufferUtil.flipToFill(largerBuffer);
+                        largerBuffer.put(byteBuffer.flip());
+                        output.release();
+                        output = larger;
+                        byteBuffer = largerBuffer;
+                    }
+                }
+
+                if (_last)
+                {
+                    if (byteBuffer.remaining() < GzipResponseAndCallback.GZIP_TRAILER_SIZE)
+                    {
+                        RetainableByteBuffer larger = _bufferPool.acquire(byteBuffer.position() + GzipResponseAndCallback.GZIP_TRAILER_SIZE, false);
+                        ByteBuffer largerBuffer = larger.getByteBuffer();
+                        BufferUtil.flipToFill(largerBuffer);
+                        largerBuffer.put(byteBuffer.flip());
+                        output.release();
+                        output = larger;
+                        byteBuffer = largerBuffer;
+                    }
+                    // Per RFC-1952, GZIP is LITTLE_ENDIAN
+                    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                    byteBuffer.putInt((int)_crc);
+                    byteBuffer.putInt((int)_totalIn);
+                    byteBuffer.order(ByteOrder.BIG_ENDIAN);
+                }
+                BufferUtil.flipToFlush(byteBuffer, 0);
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Deflated {} to {} bytes", this, byteBuffer.remaining());
+                RetainableByteBuffer deflated = output;
+                output = null;
+                deflated(this, deflated);
+            }
+            catch (Throwable x)
+            {
+                if (output != null)
+                    output.release();
+                fail(x);
+            }
+            finally
+            {
+                entry.release();
+                _input.release();
+                if (_dictionary != null)
+                {
+                    _dictionary.release();
+                    _dictionary = null;
+                }
+            }
+        }
+
+        private void release()
+        {
+            if (_output != null)
+            {
+                _output.release();
+                _output = null;
+            }
+        }
+
+        private void discard()
+        {
+            _input.release();
+            if (_dictionary != null)
+            {
+                _dictionary.release();
+                _dictionary = null;
+            }
+            release();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{#%d,last=%b,in=%s}", getClass().getSimpleName(), hashCode(), _sequence, _last, _input);
+        }
+    }
+
+    private class Flusher extends IteratingCallback
+    {
+        // The block being written, guarded by the lock of the writer.
+        private Block _block;
+
+        @Override
+        protected Action process()
+        {
+            Callback pending = null;
+            boolean proceed = false;
+            Block block;
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_block != null)
+                {
+                    // The previous block has been written.
+                    _blocks.remove(_block);
+                    _block.release();
+                    _lastWritten = _block._last;
+                    _block = null;
+                    if (_lastWritten)
+                    {
+                        pending = _pending;
+                        _pending = null;
+                    }
+                    if (_waiting && _blocks.size() < _maxBlocks)
+                    {
+                        _waiting = false;
+                        _writing = true;
+                        proceed = true;
+                    }
+                }
+                block = _failure == null ? _blocks.peek() : null;
+                if (block != null && block._output != null)
+                    _block = block;
+                else
+                    block = null;
+            }
+
+            if (pending != null)
+                pending.succeeded();
+            if (proceed)
+                proceed();
+
+            if (block == null)
+                return Action.IDLE;
+
+            _sink.write(block._last, block._output.getByteBuffer(), this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            fail(cause);
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_block != null)
+                {
+                    _block.release();
+                    _block = null;
+                }
+            }
+        }
+    }
+}
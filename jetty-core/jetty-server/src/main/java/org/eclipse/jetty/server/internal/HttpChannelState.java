@@ -15,6 +15,9 @@ package org.eclipse.jetty.server.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Objects;
 import java.util.Set;
@@ -61,6 +64,7 @@ import org.eclipse.jetty.util.Attributes;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.ExceptionUtil;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.NanoTime;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -1278,6 +1282,73 @@ public class HttpChannelState implements HttpChannel, Components
             }
         }
 
+        @Override
+        public boolean writeFile(Path path, long position, long length, Callback callback)
+        {
+            HttpChannelState httpChannelState;
+            HttpStream stream;
+            FileChannel file;
+            Throwable failure;
+            MetaData.Response responseMetaData = null;
+            try (AutoLock ignored = _request._lock.lock())
+            {
+                httpChannelState = _request.lockedGetHttpChannelState();
+                stream = httpChannelState._stream;
+
+                // The file must be the whole content of a response that is not committed yet,
+                // with a known length that is sent without any transfer coding.
+                if (_writeCallback != null ||
+                    _contentBytesWritten != 0 ||
+                    _trailers != null ||
+                    _httpFields.isCommitted() ||
+                    getFailure(httpChannelState) != null ||
+                    getHeaders().getLongField(HttpHeader.CONTENT_LENGTH) != length ||
+                    getHeaders().contains(HttpHeader.TRANSFER_ENCODING) ||
+                    stream == null ||
+                    !stream.isSendFileSupported())
+                    return false;
+
+                try
+                {
+                    file = FileChannel.open(path, StandardOpenOption.READ);
+                }
+                catch (IOException x)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("cannot open {}", path, x);
+                    return false;
+                }
+
+                failure = httpChannelState.lockedStreamSend(true, length);
+                if (failure == DO_NOT_SEND)
+                {
+                    IO.close(file);
+                    httpChannelState._serializedInvoker.run(callback::succeeded);
+                }
+                else if (failure != null)
+                {
+                    IO.close(file);
+                    Throwable throwable = failure;
+                    httpChannelState._serializedInvoker.run(() -> callback.failed(throwable));
+                }
+                else
+                {
+                    _writeCallback = callback;
+                    _contentBytesWritten = length;
+                    if (_httpFields.commit())
+                        responseMetaData = lockedPrepareResponse(httpChannelState, true);
+                }
+            }
+
+            if (failure == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("sending file {} position={} length={} {}", path, position, length, this);
+                stream.sendFile(_request._metaData, responseMetaData, file, position, length, Callback.from(this, () -> IO.close(file)));
+            }
+            return true;
+        }
+
         protected Throwable getFailure(HttpChannelState httpChannelState)
         {
             Content.Chunk failure = httpChannelState._failure;
@@ -16,8 +16,11 @@ package org.eclipse.jetty.server.internal;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -29,6 +32,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.BadMessageException;
+import org.eclipse.jetty.http.CanonicalPathCache;
 import org.eclipse.jetty.http.ComplianceViolation;
 import org.eclipse.jetty.http.HostPortHttpField;
 import org.eclipse.jetty.http.HttpCompliance;
@@ -44,10 +48,12 @@ import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.LazyHttpField;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.Trailers;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.io.AbstractConnection;
+import org.eclipse.jetty.io.AdaptiveBufferSizer;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.Content;
@@ -55,6 +61,7 @@ import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.io.RuntimeIOException;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.server.ConnectionFactory;
@@ -72,6 +79,7 @@ import org.eclipse.jetty.util.HostPort;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -109,12 +117,19 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
     private final AtomicBoolean _handling = new AtomicBoolean(false);
     private final HttpFields.Mutable _headerBuilder = HttpFields.build();
     private volatile RetainableByteBuffer _retainableByteBuffer;
+    private AdaptiveBufferSizer _inputBufferSizer;
+    private List<LazyHttpField> _lazyFields;
+    private List<RetainableByteBuffer> _lazyFieldsBuffers;
     private HttpFields.Mutable _trailers;
+    private volatile Pipeline _pipeline;
+    private LookAheadHandler _lookAheadHandler;
+    private HttpParser _lookAheadParser;
     private Runnable _onRequest;
     private long _requests;
     // TODO why is this not on HttpConfiguration?
     private boolean _useInputDirectByteBuffers;
     private boolean _useOutputDirectByteBuffers;
+    private CanonicalPathCache _canonicalPathCache;
 
     /**
      * Get the current connection that this thread is dispatched to.
@@ -170,9 +185,15 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
     protected HttpParser newHttpParser(HttpCompliance compliance)
     {
-        HttpParser parser = new HttpParser(_requestHandler, getHttpConfiguration().getRequestHeaderSize(), compliance);
+        return newHttpParser(_requestHandler, compliance);
+    }
+
+    private HttpParser newHttpParser(HttpParser.RequestHandler handler, HttpCompliance compliance)
+    {
+        HttpParser parser = new HttpParser(handler, getHttpConfiguration().getRequestHeaderSize(), compliance);
         parser.setHeaderCacheSize(getHttpConfiguration().getHeaderCacheSize());
         parser.setHeaderCacheCaseSensitive(getHttpConfiguration().isHeaderCacheCaseSensitive());
+        parser.setLazyFieldValues(getHttpConfiguration().isLazyHeaderValues());
         return parser;
     }
 
@@ -352,6 +373,19 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         _useOutputDirectByteBuffers = useOutputDirectByteBuffers;
     }
 
+    public CanonicalPathCache getCanonicalPathCache()
+    {
+        return _canonicalPathCache;
+    }
+
+    /**
+     * @param canonicalPathCache the cache of parsed request paths shared with other connections, or null
+     */
+    public void setCanonicalPathCache(CanonicalPathCache canonicalPathCache)
+    {
+        _canonicalPathCache = canonicalPathCache;
+    }
+
     protected void onComplianceViolation(ComplianceViolation.Mode mode, ComplianceViolation violation, String details)
     {
         //TODO configure this somewhere else
@@ -362,17 +396,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         {
             HttpStreamOverHTTP1 stream = _stream.get();
             if (stream != null)
-            {
-                if (stream._complianceViolations == null)
-                {
-                    stream._complianceViolations = new ArrayList<>();
-                }
-                String record = String.format("%s (see %s) in mode %s for %s in %s",
-                    violation.getDescription(), violation.getURL(), mode, details, HttpConnection.this);
-                stream._complianceViolations.add(record);
-                if (LOG.isDebugEnabled())
-                    LOG.debug(record);
-            }
+                stream.addComplianceViolation(mode, violation, details);
         }
     }
 
@@ -403,6 +427,44 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         //      Either way, the dat rate calculations from HttpOutput.onFlushed should be moved to Channel.
     }
 
+    /**
+     * <p>Retains the request buffer referenced by the given field until the request completes.</p>
+     *
+     * @param field the field whose value references the request buffer
+     */
+    private void retainLazyField(LazyHttpField field)
+    {
+        if (_lazyFields == null)
+        {
+            _lazyFields = new ArrayList<>();
+            _lazyFieldsBuffers = new ArrayList<>(1);
+        }
+        _lazyFields.add(field);
+        // The fields of a request may be parsed from multiple buffers.
+        RetainableByteBuffer buffer = _retainableByteBuffer;
+        if (_lazyFieldsBuffers.isEmpty() || _lazyFieldsBuffers.get(_lazyFieldsBuffers.size() - 1) != buffer)
+        {
+            buffer.retain();
+            _lazyFieldsBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * <p>Decodes the values of the lazy fields of the completed request,
+     * so that the request buffers they reference can be released.</p>
+     */
+    private void releaseLazyFields()
+    {
+        List<LazyHttpField> fields = _lazyFields;
+        List<RetainableByteBuffer> buffers = _lazyFieldsBuffers;
+        if (fields == null)
+            return;
+        _lazyFields = null;
+        _lazyFieldsBuffers = null;
+        fields.forEach(LazyHttpField::detach);
+        buffers.forEach(RetainableByteBuffer::release);
+    }
+
     void releaseRequestBuffer()
     {
         if (_retainableByteBuffer != null && !_retainableByteBuffer.hasRemaining())
@@ -419,10 +481,21 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
     private ByteBuffer getRequestBuffer()
     {
         if (_retainableByteBuffer == null)
-            _retainableByteBuffer = _bufferPool.acquire(getInputBufferSize(), isUseInputDirectByteBuffers());
+            _retainableByteBuffer = _bufferPool.acquire(getRequestBufferSize(), isUseInputDirectByteBuffers());
         return _retainableByteBuffer.getByteBuffer();
     }
 
+    private int getRequestBufferSize()
+    {
+        if (_inputBufferSizer == null)
+        {
+            _inputBufferSizer = _configuration.newInputBufferSizer(getInputBufferSize());
+            if (_inputBufferSizer == null)
+                return getInputBufferSize();
+        }
+        return _inputBufferSizer.getSize();
+    }
+
     public boolean isRequestBufferEmpty()
     {
         return _retainableByteBuffer == null || !_retainableByteBuffer.hasRemaining();
@@ -468,8 +541,13 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                     _handling.set(true);
                     Runnable onRequest = _onRequest;
                     _onRequest = null;
+                    Pipeline pipeline = lookAhead();
                     onRequest.run();
 
+                    // The completion of the pipelined requests organizes further filling and parsing.
+                    if (pipeline != null)
+                        break;
+
                     // If the _handling boolean has already been CaS'd to false, then stream is completed and we are no longer
                     // handling, so the caller can continue to fill and parse more connections.  If it is still true, then some
                     // thread is still handling the request and they will need to organize more filling and parsing once complete.
@@ -511,6 +589,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("caught exception {} {}", this, _httpChannel, x);
+                releaseLazyFields();
                 if (_retainableByteBuffer != null)
                 {
                     _retainableByteBuffer.clear();
@@ -562,10 +641,11 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
     private int fillRequestBuffer()
     {
-        if (_retainableByteBuffer != null && _retainableByteBuffer.isRetained())
+        // A retained buffer that still has bytes to parse is not replaced, as its bytes would be lost.
+        if (_retainableByteBuffer != null && _retainableByteBuffer.isRetained() && !_retainableByteBuffer.hasRemaining())
         {
             // TODO this is almost certainly wrong
-            RetainableByteBuffer newBuffer = _bufferPool.acquire(getInputBufferSize(), isUseInputDirectByteBuffers());
+            RetainableByteBuffer newBuffer = _bufferPool.acquire(getRequestBufferSize(), isUseInputDirectByteBuffers());
             if (LOG.isDebugEnabled())
                 LOG.debug("replace buffer {} <- {} in {}", _retainableByteBuffer, newBuffer, this);
             _retainableByteBuffer.release();
@@ -582,12 +662,17 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             // fill
             try
             {
+                int space = BufferUtil.space(requestBuffer);
                 int filled = getEndPoint().fill(requestBuffer);
                 if (filled == 0) // Do a retry on fill 0 (optimization for SSL connections)
                     filled = getEndPoint().fill(requestBuffer);
 
                 if (filled > 0)
+                {
                     bytesIn.add(filled);
+                    if (_inputBufferSizer != null)
+                        _inputBufferSizer.onFilled(filled, space);
+                }
                 else if (filled < 0)
                     _parser.atEOF();
 
@@ -626,6 +711,87 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         return handle;
     }
 
+    /**
+     * <p>Dispatches the pipelined requests that follow the request being handled in the request buffer,
+     * so that they are handled concurrently with it.</p>
+     * <p>Only complete safe requests without content, that follow a safe request whose message is
+     * complete, are dispatched; parsing stops at the first request that does not qualify, which is
+     * left in the request buffer to be parsed once the previous requests complete.</p>
+     *
+     * @return the pipeline of the dispatched requests, or null if no request was dispatched
+     * @see HttpConfiguration#setMaxPipelinedRequests(int)
+     */
+    private Pipeline lookAhead()
+    {
+        int maxRequests = _configuration.getMaxPipelinedRequests();
+        HttpStreamOverHTTP1 stream = _stream.get();
+        if (maxRequests <= 0 || stream == null || isRequestBufferEmpty())
+            return null;
+        if (!isPipelinable(stream._method) || stream._version != HttpVersion.HTTP_1_1 || stream._upgrade != null || stream._expects100Continue)
+            return null;
+        // The request must not have content, so that the next request is already in the buffer.
+        boolean noContent = _parser.isState(HttpParser.State.END) ||
+            _parser.isState(HttpParser.State.CONTENT) && !_parser.isChunking() && stream._contentLength <= 0;
+        if (!noContent || !_generator.isPersistent())
+            return null;
+
+        // The look-ahead parser is configured like the connection parser, and reused across requests.
+        if (_lookAheadParser == null)
+        {
+            _lookAheadHandler = new LookAheadHandler();
+            _lookAheadParser = newHttpParser(_lookAheadHandler, _configuration.getHttpCompliance());
+        }
+        LookAheadHandler handler = _lookAheadHandler;
+        HttpParser parser = _lookAheadParser;
+        ByteBuffer buffer = _retainableByteBuffer.getByteBuffer();
+        List<PipelinedStream> streams = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        while (streams.size() < maxRequests && buffer.hasRemaining())
+        {
+            // Parse a view, so that a request that does not qualify is not consumed.
+            ByteBuffer view = buffer.slice();
+            parser.reset();
+            handler.reset();
+            parser.parseNext(view);
+            PipelinedStream pipelined = handler.toStream(parser);
+            if (pipelined == null)
+                break;
+            buffer.position(buffer.position() + view.position());
+            if (LOG.isDebugEnabled())
+                LOG.debug("pipelined {} {}", pipelined, this);
+            streams.add(pipelined);
+            tasks.add(pipelined.onRequest());
+            ++_requests;
+            // The requests that follow a request that closes the connection are not handled.
+            if (!pipelined._generator.isPersistent())
+                break;
+        }
+        if (streams.isEmpty())
+            return null;
+
+        Pipeline pipeline = new Pipeline(streams);
+        _pipeline = pipeline;
+        for (Runnable task : tasks)
+        {
+            try
+            {
+                getExecutor().execute(task);
+            }
+            catch (RejectedExecutionException x)
+            {
+                LOG.warn("Failed dispatch of {}", this, x);
+                getEndPoint().close(x);
+                break;
+            }
+        }
+        return pipeline;
+    }
+
+    private static boolean isPipelinable(String method)
+    {
+        return HttpMethod.GET.is(method) || HttpMethod.HEAD.is(method) || HttpMethod.OPTIONS.is(method);
+    }
+
     private boolean upgrade(HttpStreamOverHTTP1 stream)
     {
         if (stream.upgrade())
@@ -641,6 +807,44 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         }
     }
 
+    private void processNextRequest()
+    {
+        // If we are looking for the next request
+        if (_parser.isStart())
+        {
+            // if the buffer is empty
+            if (isRequestBufferEmpty())
+            {
+                // look for more data
+                fillInterested();
+            }
+            // else if we are still running
+            else if (getConnector().isRunning())
+            {
+                // Dispatched to handle a pipelined request
+                try
+                {
+                    getExecutor().execute(HttpConnection.this);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    if (getConnector().isRunning())
+                        LOG.warn("Failed dispatch of {}", this, e);
+                    else
+                        LOG.trace("IGNORED", e);
+                    getEndPoint().close();
+                }
+            }
+            else
+            {
+                getEndPoint().close();
+            }
+        }
+        // else the parser must be closed, so seek the EOF if we are still open
+        else if (getEndPoint().isOpen())
+            fillInterested();
+    }
+
     @Override
     protected void onFillInterestedFailed(Throwable cause)
     {
@@ -652,7 +856,13 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
     public boolean onIdleExpired(TimeoutException timeout)
     {
         if (_httpChannel.getRequest() == null)
-            return true;
+        {
+            Pipeline pipeline = _pipeline;
+            if (pipeline == null)
+                return true;
+            pipeline.onIdleTimeout(timeout);
+            return false;
+        }
         Runnable task = _httpChannel.onIdleTimeout(timeout);
         if (task != null)
             getExecutor().execute(task);
@@ -678,6 +888,10 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             _sendCallback.close();
         else
             _sendCallback.failed(cause);
+        releaseLazyFields();
+        Pipeline pipeline = _pipeline;
+        if (pipeline != null)
+            pipeline.fail(cause == null ? new EofException("Closed") : cause);
         super.onClose(cause);
     }
 
@@ -754,6 +968,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         private Callback _callback;
         private RetainableByteBuffer _header;
         private RetainableByteBuffer _chunk;
+        private FileChannel _file;
+        private long _filePosition;
+        private long _fileLength;
         private boolean _shutdownOut;
 
         private SendCallback()
@@ -777,6 +994,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                 _lastContent = last;
                 _callback = callback;
                 _header = null;
+                _file = null;
 
                 if (getConnector().isShutdown())
                     _generator.setPersistent(false);
@@ -799,6 +1017,16 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             return false;
         }
 
+        private boolean reset(MetaData.Request request, MetaData.Response response, FileChannel file, long position, long length, Callback callback)
+        {
+            if (!reset(request, response, null, true, callback))
+                return false;
+            _file = file;
+            _filePosition = position;
+            _fileLength = length;
+            return true;
+        }
+
         @Override
         public Action process() throws Exception
         {
@@ -859,6 +1087,24 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                             BufferUtil.clear(_content);
                         }
 
+                        if (_file != null)
+                        {
+                            FileChannel file = _file;
+                            _file = null;
+                            if (!_head && !_generator.isNoContent())
+                            {
+                                if (_generator.isChunking())
+                                    throw new IllegalStateException("Cannot send file with chunked encoding");
+                                HttpConnection.this.bytesOut.add(BufferUtil.length(headerByteBuffer) + _fileLength);
+                                SocketChannelEndPoint endPoint = (SocketChannelEndPoint)getEndPoint();
+                                if (BufferUtil.hasContent(headerByteBuffer))
+                                    endPoint.transferFrom(this, file, _filePosition, _fileLength, headerByteBuffer);
+                                else
+                                    endPoint.transferFrom(this, file, _filePosition, _fileLength);
+                                return Action.SCHEDULED;
+                            }
+                        }
+
                         int gatherWrite = 0;
                         long bytes = 0;
                         if (BufferUtil.hasContent(headerByteBuffer))
@@ -939,6 +1185,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             _callback = null;
             _info = null;
             _content = null;
+            _file = null;
             releaseHeader();
             releaseChunk();
             return complete;
@@ -1117,6 +1364,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         private final String _method;
         private final HttpURI.Mutable _uri;
         private final HttpVersion _version;
+        private final HttpFields.Mutable _fields;
         private long _contentLength = -1;
         private HostPortHttpField _hostField;
         private MetaData.Request _request;
@@ -1130,11 +1378,17 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         private List<String> _complianceViolations;
 
         protected HttpStreamOverHTTP1(String method, String uri, HttpVersion version)
+        {
+            this(method, uri, version, _headerBuilder);
+        }
+
+        private HttpStreamOverHTTP1(String method, String uri, HttpVersion version, HttpFields.Mutable fields)
         {
             _id = Objects.requireNonNull(version).toString() + '#' + _streamIdGenerator.getAndIncrement();
             _method = method;
-            _uri = uri == null ? null : HttpURI.build(method, uri);
+            _uri = uri == null ? null : HttpURI.build(method, uri, _canonicalPathCache);
             _version = version;
+            _fields = fields;
 
             if (_uri != null && _uri.getPath() == null && _uri.getScheme() != null && _uri.hasAuthority())
                 _uri.path("/");
@@ -1151,8 +1405,11 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
         public void parsedHeader(HttpField field)
         {
+            if (field instanceof LazyHttpField lazyField && !lazyField.isDetached())
+                retainLazyField(lazyField);
+
             HttpHeader header = field.getHeader();
-            String value = field.getValue();
+            // Only access the values of the fields interpreted here, other values may be lazily decoded.
             if (header != null)
             {
                 switch (header)
@@ -1165,17 +1422,15 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                         break;
 
                     case HOST:
-                        if (value == null)
-                            value = "";
                         if (field instanceof HostPortHttpField)
                             _hostField = (HostPortHttpField)field;
                         else
-                            field = _hostField = new HostPortHttpField(value);
+                            field = _hostField = new HostPortHttpField(Objects.requireNonNullElse(field.getValue(), ""));
                         break;
 
                     case EXPECT:
                     {
-                        if (!HttpHeaderValue.parseCsvIndex(value, t ->
+                        if (!HttpHeaderValue.parseCsvIndex(field.getValue(), t ->
                         {
                             if (t == HttpHeaderValue.CONTINUE)
                             {
@@ -1203,71 +1458,16 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                         break;
                 }
             }
-            _headerBuilder.add(field);
+            _fields.add(field);
         }
 
         public Runnable headerComplete()
         {
-            UriCompliance compliance;
-            if (_uri.hasViolations())
-            {
-                compliance = _configuration.getUriCompliance();
-                String badMessage = UriCompliance.checkUriCompliance(compliance, _uri);
-                if (badMessage != null)
-                    throw new BadMessageException(badMessage);
-            }
-
-            // Check host field matches the authority in the any absolute URI or is not blank
-            if (_hostField != null)
-            {
-                if (_uri.isAbsolute())
-                {
-                    if (!_hostField.getValue().equals(_uri.getAuthority()))
-                    {
-                        HttpCompliance httpCompliance = getHttpConfiguration().getHttpCompliance();
-                        if (httpCompliance.allows(MISMATCHED_AUTHORITY))
-                            onComplianceViolation(httpCompliance, MISMATCHED_AUTHORITY, _uri.asString());
-                        else
-                            throw new BadMessageException("Authority!=Host");
-                    }
-                }
-                else
-                {
-                    if (StringUtil.isBlank(_hostField.getHostPort().getHost()))
-                        throw new BadMessageException("Blank Host");
-                }
-            }
-
-            // Set the scheme in the URI
-            if (!_uri.isAbsolute())
-                _uri.scheme(getEndPoint() instanceof SslConnection.SslEndPoint ? HttpScheme.HTTPS : HttpScheme.HTTP);
-
-            // Set the authority (if not already set) in the URI
-            if (!HttpMethod.CONNECT.is(_method) && _uri.getAuthority() == null)
-            {
-                HostPort hostPort = _hostField == null ? getServerAuthority() : _hostField.getHostPort();
-                int port = hostPort.getPort();
-                if (port == HttpScheme.getDefaultPort(_uri.getScheme()))
-                    port = -1;
-                _uri.authority(hostPort.getHost(), port);
-            }
-
-            // Set path (if not already set)
-            if (_uri.getPath() == null)
-            {
-                _uri.path("/");
-            }
-
-            _request = new MetaData.Request(_parser.getBeginNanoTime(), _method, _uri.asImmutable(), _version, _headerBuilder, _contentLength);
+            _request = newRequest(_parser.getBeginNanoTime(), _requestHandler);
 
             Runnable handle = _httpChannel.onRequest(_request);
             ++_requests;
-
-            if (_complianceViolations != null && !_complianceViolations.isEmpty())
-            {
-                _httpChannel.getRequest().setAttribute(HttpCompliance.VIOLATIONS_ATTR, _complianceViolations);
-                _complianceViolations = null;
-            }
+            setComplianceViolations(_httpChannel.getRequest());
 
             boolean persistent;
 
@@ -1280,11 +1480,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                 }
                 case HTTP_1_0:
                 {
-                    persistent = getHttpConfiguration().isPersistentConnectionsEnabled() &&
-                        _connectionKeepAlive &&
-                        !_connectionClose ||
-                        HttpMethod.CONNECT.is(_method);
-
+                    persistent = isPersistent();
                     _generator.setPersistent(persistent);
                     if (!persistent)
                         _connectionKeepAlive = false;
@@ -1300,10 +1496,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                         return null;
                     }
 
-                    persistent = getHttpConfiguration().isPersistentConnectionsEnabled() &&
-                        !_connectionClose ||
-                        HttpMethod.CONNECT.is(_method);
-
+                    persistent = isPersistent();
                     _generator.setPersistent(persistent);
 
                     // Try to upgrade before calling the application.
@@ -1325,7 +1518,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
                     if (HttpMethod.PRI.is(_method) &&
                         "*".equals(_uri.getPath()) &&
-                        _headerBuilder.size() == 0 &&
+                        _fields.size() == 0 &&
                         HttpConnection.this.upgrade(_stream.get()))
                         return null;
 
@@ -1346,6 +1539,109 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             return handle;
         }
 
+        /**
+         * <p>Checks the request line and headers, and builds the request from them.</p>
+         *
+         * @param beginNanoTime the time the request began to be parsed
+         * @param listener the listener of the allowed compliance violations
+         * @return the request
+         * @throws BadMessageException if the request is not compliant
+         */
+        private MetaData.Request newRequest(long beginNanoTime, ComplianceViolation.Listener listener)
+        {
+            UriCompliance compliance;
+            if (_uri.hasViolations())
+            {
+                compliance = _configuration.getUriCompliance();
+                String badMessage = UriCompliance.checkUriCompliance(compliance, _uri);
+                if (badMessage != null)
+                    throw new BadMessageException(badMessage);
+            }
+
+            // Check host field matches the authority in the any absolute URI or is not blank
+            if (_hostField != null)
+            {
+                if (_uri.isAbsolute())
+                {
+                    if (!_hostField.getValue().equals(_uri.getAuthority()))
+                    {
+                        HttpCompliance httpCompliance = getHttpConfiguration().getHttpCompliance();
+                        if (httpCompliance.allows(MISMATCHED_AUTHORITY))
+                            listener.onComplianceViolation(httpCompliance, MISMATCHED_AUTHORITY, _uri.asString());
+                        else
+                            throw new BadMessageException("Authority!=Host");
+                    }
+                }
+                else
+                {
+                    if (StringUtil.isBlank(_hostField.getHostPort().getHost()))
+                        throw new BadMessageException("Blank Host");
+                }
+            }
+
+            // Set the scheme in the URI
+            if (!_uri.isAbsolute())
+                _uri.scheme(getEndPoint() instanceof SslConnection.SslEndPoint ? HttpScheme.HTTPS : HttpScheme.HTTP);
+
+            // Set the authority (if not already set) in the URI
+            if (!HttpMethod.CONNECT.is(_method) && _uri.getAuthority() == null)
+            {
+                HostPort hostPort = _hostField == null ? getServerAuthority() : _hostField.getHostPort();
+                int port = hostPort.getPort();
+                if (port == HttpScheme.getDefaultPort(_uri.getScheme()))
+                    port = -1;
+                _uri.authority(hostPort.getHost(), port);
+            }
+
+            // Set path (if not already set)
+            if (_uri.getPath() == null)
+            {
+                _uri.path("/");
+            }
+
+            return new MetaData.Request(beginNanoTime, _method, _uri.asImmutable(), _version, _fields, _contentLength);
+        }
+
+        /**
+         * @return whether the connection persists after this request, according to its version and headers
+         */
+        private boolean isPersistent()
+        {
+            return switch (_version)
+            {
+                case HTTP_1_0 -> getHttpConfiguration().isPersistentConnectionsEnabled() &&
+                    _connectionKeepAlive &&
+                    !_connectionClose ||
+                    HttpMethod.CONNECT.is(_method);
+                case HTTP_1_1 -> getHttpConfiguration().isPersistentConnectionsEnabled() &&
+                    !_connectionClose ||
+                    HttpMethod.CONNECT.is(_method);
+                default -> false;
+            };
+        }
+
+        private void addComplianceViolation(ComplianceViolation.Mode mode, ComplianceViolation violation, String details)
+        {
+            if (_complianceViolations == null)
+            {
+                _complianceViolations = new ArrayList<>();
+            }
+            String record = String.format("%s (see %s) in mode %s for %s in %s",
+                violation.getDescription(), violation.getURL(), mode, details, HttpConnection.this);
+            _complianceViolations.add(record);
+            if (LOG.isDebugEnabled())
+                LOG.debug(record);
+        }
+
+        private void setComplianceViolations(Request request)
+        {
+            if (_complianceViolations != null && !_complianceViolations.isEmpty())
+            {
+                request.setAttribute(HttpCompliance.VIOLATIONS_ATTR, _complianceViolations);
+                _complianceViolations = null;
+            }
+        }
+
         @Override
         public String getId()
         {
@@ -1443,6 +1739,34 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
                 _sendCallback.iterate();
         }
 
+        @Override
+        public boolean isSendFileSupported()
+        {
+            // Only cleartext connections, as the file bytes are written directly to the socket.
+            return _configuration.isSendFileEnabled() &&
+                getEndPoint() instanceof SocketChannelEndPoint &&
+                !_generator.isCommitted();
+        }
+
+        @Override
+        public void sendFile(MetaData.Request request, MetaData.Response response, FileChannel file, long position, long length, Callback callback)
+        {
+            if (response == null || _generator.isCommitted())
+            {
+                callback.failed(new IllegalStateException("Committed"));
+                return;
+            }
+
+            if (_expects100Continue)
+            {
+                // Cannot be persistent because likely the client did not send the content.
+                _generator.setPersistent(false);
+            }
+
+            if (_sendCallback.reset(_request, response, file, position, length, callback))
+                _sendCallback.iterate();
+        }
+
         @Override
         public long getIdleTimeout()
         {
@@ -1526,6 +1850,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
             if (LOG.isDebugEnabled())
                 LOG.debug("succeeded {}", HttpConnection.this);
+            releaseLazyFields();
             // If we are fill interested, then a read is pending and we must abort
             if (isFillInterested())
             {
@@ -1565,6 +1890,21 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
 
             _generator.reset();
 
+            Pipeline pipeline = _pipeline;
+            if (pipeline != null)
+            {
+                // The onFillable thread does not continue after dispatching pipelined requests.
+                _handling.set(false);
+                if (_parser.isStart() && !_sendCallback._shutdownOut)
+                {
+                    // Write the pipelined responses before parsing the next request.
+                    pipeline.iterate();
+                    return;
+                }
+                // This response closes the connection, the pipelined requests are not answered.
+                pipeline.fail(new EofException("Connection closing"));
+            }
+
             // Can the onFillable thread continue processing
             if (_handling.compareAndSet(true, false))
                 return;
@@ -1576,40 +1916,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             if (_sendCallback._shutdownOut)
                 getEndPoint().shutdownOutput();
 
-            // If we are looking for the next request
-            if (_parser.isStart())
-            {
-                // if the buffer is empty
-                if (isRequestBufferEmpty())
-                {
-                    // look for more data
-                    fillInterested();
-                }
-                // else if we are still running
-                else if (getConnector().isRunning())
-                {
-                    // Dispatched to handle a pipelined request
-                    try
-                    {
-                        getExecutor().execute(HttpConnection.this);
-                    }
-                    catch (RejectedExecutionException e)
-                    {
-                        if (getConnector().isRunning())
-                            LOG.warn("Failed dispatch of {}", this, e);
-                        else
-                            LOG.trace("IGNORED", e);
-                        getEndPoint().close();
-                    }
-                }
-                else
-                {
-                    getEndPoint().close();
-                }
-            }
-            // else the parser must be closed, so seek the EOF if we are still open
-            else if (getEndPoint().isOpen())
-                fillInterested();
+            processNextRequest();
         }
 
         @Override
@@ -1624,6 +1931,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
             }
             if (LOG.isDebugEnabled())
                 LOG.debug("aborting", x);
+            releaseLazyFields();
             abort(x);
         }
 
@@ -1639,6 +1947,635 @@ public class HttpConnection extends AbstractConnection implements Runnable, Writ
         }
     }
 
+    /**
+     * <p>Collects a pipelined request parsed ahead of its turn, and whether it can be handled
+     * concurrently with the requests that precede it.</p>
+     */
+    private class LookAheadHandler implements HttpParser.RequestHandler, ComplianceViolation.Listener
+    {
+        private PipelinedStream _pipelined;
+        private boolean _pipelinable;
+        private boolean _complete;
+
+        private void reset()
+        {
+            _pipelined = null;
+            _pipelinable = false;
+            _complete = false;
+        }
+
+        @Override
+        public void startRequest(String method, String uri, HttpVersion version)
+        {
+            _pipelinable = version == HttpVersion.HTTP_1_1 && isPipelinable(method);
+            if (_pipelinable)
+                _pipelined = new PipelinedStream(method, uri, version);
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            if (!_pipelinable)
+                return;
+            if (field.getHeader() == HttpHeader.TRANSFER_ENCODING)
+                _pipelinable = false;
+            else
+                _pipelined.parsedHeader(field);
+        }
+
+        @Override
+        public boolean headerComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean content(ByteBuffer item)
+        {
+            _pipelinable = false;
+            return true;
+        }
+
+        @Override
+        public boolean contentComplete()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean messageComplete()
+        {
+            _complete = true;
+            return true;
+        }
+
+        @Override
+        public void badMessage(HttpException failure)
+        {
+            // The request is left to the connection parser, that reports the failure in turn.
+            _pipelinable = false;
+        }
+
+        @Override
+        public void earlyEOF()
+        {
+            _pipelinable = false;
+        }
+
+        @Override
+        public void onComplianceViolation(ComplianceViolation.Mode mode, ComplianceViolation violation, String details)
+        {
+            HttpStreamOverHTTP1 stream = _pipelined;
+            if (stream != null && isRecordHttpComplianceViolations())
+                stream.addComplianceViolation(mode, violation, details);
+        }
+
+        /**
+         * @param parser the parser that parsed the request
+         * @return the stream of the request if it was completely parsed and can be pipelined, or null
+         */
+        private PipelinedStream toStream(HttpParser parser)
+        {
+            if (!_complete || !_pipelinable)
+                return null;
+            HttpStreamOverHTTP1 stream = _pipelined;
+            // Requests with content, Expect or Upgrade are handled in turn.
+            if (stream._contentLength > 0 || stream._upgrade != null || stream._connectionUpgrade ||
+                stream._expects100Continue || stream._unknownExpectation)
+                return null;
+            try
+            {
+                stream._request = stream.newRequest(parser.getBeginNanoTime(), this);
+            }
+            catch (RuntimeException x)
+            {
+                // Requests that are not compliant are handled, and rejected, in turn.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("not pipelinable {}", stream, x);
+                return null;
+            }
+            _pipelined._generator.setPersistent(stream.isPersistent());
+            return _pipelined;
+        }
+    }
+
+    /**
+     * <p>The stream of a pipelined request handled concurrently with the requests that precede it.</p>
+     * <p>The request is parsed and checked like the other requests of the connection, while
+     * the response is generated into buffers that the {@link Pipeline} writes in request order.</p>
+     */
+    private class PipelinedStream extends HttpStreamOverHTTP1
+    {
+        private final HttpGenerator _generator = newHttpGenerator();
+        private final boolean _head;
+        private HttpChannel _channel;
+        private Pipeline _pipeline;
+        // The fields below are guarded by the pipeline lock.
+        private List<RetainableByteBuffer> _buffers = new ArrayList<>();
+        private Callback _pending;
+        private boolean _active;
+        private boolean _complete;
+        private Throwable _failure;
+
+        private PipelinedStream(String method, String uri, HttpVersion version)
+        {
+            super(method, uri, version, HttpFields.build());
+            _head = HttpMethod.HEAD.is(method);
+        }
+
+        @Override
+        public void parsedHeader(HttpField field)
+        {
+            // The request buffer is not retained for the fields of pipelined requests.
+            if (field instanceof LazyHttpField lazyField)
+                lazyField.detach();
+            super.parsedHeader(field);
+        }
+
+        @Override
+        public Runnable headerComplete()
+        {
+            // The LookAheadHandler only forwards the fields of a pipelined request to this stream,
+            // whose request is then built by onRequest() once the request is known to be pipelinable.
+            throw new IllegalStateException("Pipelined stream headers are completed by onRequest(), not by the parser");
+        }
+
+        /**
+         * @return the task that handles the request on the channel of this stream
+         */
+        private Runnable onRequest()
+        {
+            HttpStreamOverHTTP1 stream = this;
+            _channel = newHttpChannel(getServer(), getHttpConfiguration());
+            _channel.setHttpStream(this);
+            Runnable task = _channel.onRequest(stream._request);
+            stream.setComplianceViolations(_channel.getRequest());
+            return task;
+        }
+
+        @Override
+        public Content.Chunk read()
+        {
+            return Content.Chunk.EOF;
+        }
+
+        @Override
+        public void demand()
+        {
+            Runnable onContentAvailable = _channel.onContentAvailable();
+            if (onContentAvailable != null)
+                onContentAvailable.run();
+        }
+
+        @Override
+        public void send(MetaData.Request request, MetaData.Response response, boolean last, ByteBuffer content, Callback callback)
+        {
+            if (response == null && !last && BufferUtil.isEmpty(content))
+            {
+                callback.succeeded();
+                return;
+            }
+            if (response != null && _generator.isCommitted())
+            {
+                callback.failed(new IllegalStateException("Committed"));
+                return;
+            }
+            if (getConnector().isShutdown())
+                _generator.setPersistent(false);
+
+            List<RetainableByteBuffer> buffers;
+            try
+            {
+                buffers = generate(response, content, last);
+            }
+            catch (Throwable x)
+            {
+                callback.failed(x);
+                return;
+            }
+            _pipeline.onSend(this, buffers, callback);
+        }
+
+        private List<RetainableByteBuffer> generate(MetaData.Response response, ByteBuffer content, boolean last) throws IOException
+        {
+            boolean useDirectByteBuffers = isUseOutputDirectByteBuffers();
+            List<RetainableByteBuffer> buffers = new ArrayList<>();
+            RetainableByteBuffer header = null;
+            RetainableByteBuffer chunk = null;
+            try
+            {
+                while (true)
+                {
+                    ByteBuffer headerByteBuffer = header == null ? null : header.getByteBuffer();
+                    ByteBuffer chunkByteBuffer = chunk == null ? null : chunk.getByteBuffer();
+                    HttpGenerator.Result result = _generator.generateResponse(response, _head, headerByteBuffer, chunkByteBuffer, content, last);
+                    switch (result)
+                    {
+                        case NEED_INFO:
+                            throw new EofException("request lifecycle violation");
+
+                        case NEED_HEADER:
+                        {
+                            header = _bufferPool.acquire(Math.min(_configuration.getResponseHeaderSize(), _configuration.getOutputBufferSize()), useDirectByteBuffers);
+                            break;
+                        }
+                        case HEADER_OVERFLOW:
+                        {
+                            if (header.capacity() >= _configuration.getResponseHeaderSize())
+                                throw new HttpException.RuntimeException(INTERNAL_SERVER_ERROR_500, "Response header too large");
+                            header.release();
+                            header = _bufferPool.acquire(_configuration.getResponseHeaderSize(), useDirectByteBuffers);
+                            break;
+                        }
+                        case NEED_CHUNK:
+                        {
+                            chunk = _bufferPool.acquire(HttpGenerator.CHUNK_SIZE, useDirectByteBuffers);
+                            break;
+                        }
+                        case NEED_CHUNK_TRAILER:
+                        {
+                            if (chunk != null)
+                                chunk.release();
+                            chunk = _bufferPool.acquire(_configuration.getResponseHeaderSize(), useDirectByteBuffers);
+                            break;
+                        }
+                        case FLUSH:
+                        {
+                            if (_head || _generator.isNoContent())
+                            {
+                                if (chunk != null)
+                                    chunk.clear();
+                                BufferUtil.clear(content);
+                            }
+                            if (header != null && header.hasRemaining())
+                            {
+                                buffers.add(header);
+                                header = null;
+                            }
+                            if (chunk != null && chunk.hasRemaining())
+                            {
+                                buffers.add(chunk);
+                                chunk = null;
+                            }
+                            // The content is copied, as its buffer is reused once the send completes.
+                            if (BufferUtil.hasContent(content))
+                            {
+                                RetainableByteBuffer copy = _bufferPool.acquire(content.remaining(), useDirectByteBuffers);
+                                buffers.add(copy);
+                                BufferUtil.append(copy.getByteBuffer(), content);
+                            }
+                            break;
+                        }
+                        case SHUTDOWN_OUT:
+                        case CONTINUE:
+                        {
+                            break;
+                        }
+                        case DONE:
+                        {
+                            if (getConnector().isShutdown() && _generator.isEnd())
+                                _generator.setPersistent(false);
+                            return buffers;
+                        }
+                        default:
+                        {
+                            throw new IllegalStateException("generateResponse=" + result);
+                        }
+                    }
+                }
+            }
+            catch (Throwable x)
+            {
+                buffers.forEach(RetainableByteBuffer::release);
+                throw x;
+            }
+            finally
+            {
+                if (header != null)
+                    header.release();
+                if (chunk != null)
+                    chunk.release();
+            }
+        }
+
+        @Override
+        public boolean isSendFileSupported()
+        {
+            // The file bytes cannot be buffered in request order.
+            return false;
+        }
+
+        @Override
+        public void sendFile(MetaData.Request request, MetaData.Response response, FileChannel file, long position, long length, Callback callback)
+        {
+            callback.failed(new UnsupportedOperationException());
+        }
+
+        @Override
+        public boolean isCommitted()
+        {
+            return _generator.isCommitted();
+        }
+
+        @Override
+        public TunnelSupport getTunnelSupport()
+        {
+            return null;
+        }
+
+        @Override
+        public Throwable consumeAvailable()
+        {
+            return null;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("succeeded {} {}", this, HttpConnection.this);
+            _pipeline.onComplete(this);
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("aborting {}", this, x);
+            _pipeline.onFailure(this, x);
+        }
+
+        @Override
+        public String toString()
+        {
+            HttpStreamOverHTTP1 stream = this;
+            return String.format("%s@%x[%s %s]", getClass().getSimpleName(), hashCode(), stream._method, stream._uri);
+        }
+    }
+
+    /**
+     * <p>The pipelined requests dispatched while the request that precedes them is handled.</p>
+     * <p>Their responses are buffered, up to {@link HttpConfiguration#getPipelinedResponseBufferSize()}
+     * bytes per connection, beyond which their writes wait for their turn.
+     * Once the preceding request completes, the responses are written in request order,
+     * and then the next request is parsed.</p>
+     */
+    private class Pipeline extends IteratingCallback
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final Deque<PipelinedStream> _streams;
+        private long _bufferedBytes;
+        private boolean _closing;
+        private Throwable _failure;
+        private List<RetainableByteBuffer> _writing;
+        private Callback _written;
+
+        private Pipeline(List<PipelinedStream> streams)
+        {
+            _streams = new ArrayDeque<>(streams);
+            streams.forEach(stream -> stream._pipeline = this);
+        }
+
+        private void onSend(PipelinedStream stream, List<RetainableByteBuffer> buffers, Callback callback)
+        {
+            Throwable failure;
+            boolean succeed = false;
+            boolean iterate = false;
+            try (AutoLock ignored = _lock.lock())
+            {
+                failure = _failure;
+                if (failure == null)
+                {
+                    stream._buffers.addAll(buffers);
+                    for (RetainableByteBuffer buffer : buffers)
+                    {
+                        _bufferedBytes += buffer.remaining();
+                    }
+                    if (stream._active)
+                    {
+                        stream._pending = callback;
+                        iterate = true;
+                    }
+                    else if (_bufferedBytes <= _configuration.getPipelinedResponseBufferSize())
+                    {
+                        succeed = true;
+                    }
+                    else
+                    {
+                        // Wait for the turn of this response to be written.
+                        stream._pending = callback;
+                    }
+                }
+            }
+
+            if (failure != null)
+            {
+                buffers.forEach(RetainableByteBuffer::release);
+                callback.failed(failure);
+            }
+            else if (succeed)
+            {
+                callback.succeeded();
+            }
+            else if (iterate)
+            {
+                iterate();
+            }
+        }
+
+        private void onComplete(PipelinedStream stream)
+        {
+            boolean iterate;
+            try (AutoLock ignored = _lock.lock())
+            {
+                stream._complete = true;
+                iterate = stream._active;
+            }
+            if (iterate)
+                iterate();
+        }
+
+        private void onFailure(PipelinedStream stream, Throwable failure)
+        {
+            boolean iterate;
+            try (AutoLock ignored = _lock.lock())
+            {
+                stream._failure = failure;
+                stream._complete = true;
+                iterate = stream._active;
+            }
+            if (iterate)
+                iterate();
+        }
+
+        private void onIdleTimeout(TimeoutException timeout)
+        {
+            List<PipelinedStream> streams;
+            try (AutoLock ignored = _lock.lock())
+            {
+                streams = new ArrayList<>(_streams);
+            }
+            for (PipelinedStream stream : streams)
+            {
+                Runnable task = stream._channel.onIdleTimeout(timeout);
+                if (task != null)
+                    getExecutor().execute(task);
+            }
+        }
+
+        private void fail(Throwable failure)
+        {
+            List<PipelinedStream> streams;
+            try (AutoLock ignored = _lock.lock())
+            {
+                if (_failure != null)
+                    return;
+                _failure = failure;
+                streams = new ArrayList<>(_streams);
+                _streams.clear();
+                _bufferedBytes = 0;
+            }
+            if (_pipeline == this)
+                _pipeline = null;
+            abort(streams, failure);
+        }
+
+        private void abort(List<PipelinedStream> streams, Throwable failure)
+        {
+            for (PipelinedStream stream : streams)
+            {
+                List<RetainableByteBuffer> buffers;
+                Callback pending;
+                try (AutoLock ignored = _lock.lock())
+                {
+                    buffers = stream._buffers;
+                    stream._buffers = new ArrayList<>();
+                    pending = stream._pending;
+                    stream._pending = null;
+                }
+                buffers.forEach(RetainableByteBuffer::release);
+                if (pending != null)
+                    pending.failed(failure);
+                Runnable task = stream._channel.onFailure(failure);
+                if (task != null)
+                    getExecutor().execute(task);
+            }
+        }
+
+        @Override
+        protected Action process() throws Throwable
+        {
+            // The previous write, if any, is complete.
+            Callback written = releaseWritten();
+            if (written != null)
+                written.succeeded();
+
+            while (true)
+            {
+                List<RetainableByteBuffer> buffers = null;
+                List<PipelinedStream> closed = null;
+                Callback callback;
+                try (AutoLock ignored = _lock.lock())
+                {
+                    if (_failure != null)
+                        throw _failure;
+                    PipelinedStream stream = _streams.peekFirst();
+                    if (stream == null)
+                        return Action.SUCCEEDED;
+
+                    // It is the turn of this response, its next writes are not buffered.
+                    stream._active = true;
+                    callback = stream._pending;
+                    stream._pending = null;
+                    if (!stream._buffers.isEmpty())
+                    {
+                        buffers = stream._buffers;
+                        stream._buffers = new ArrayList<>();
+                        for (RetainableByteBuffer buffer : buffers)
+                        {
+                            _bufferedBytes -= buffer.remaining();
+                        }
+                    }
+                    else if (callback == null)
+                    {
+                        if (!stream._complete)
+                            return Action.IDLE;
+                        _streams.pollFirst();
+                        // The responses that precede it are written, the connection is aborted.
+                        if (stream._failure != null)
+                            throw stream._failure;
+                        if (!stream._generator.isPersistent())
+                        {
+                            // This response closes the connection, the requests that follow are not answered.
+                            _closing = true;
+                            closed = new ArrayList<>(_streams);
+                            _streams.clear();
+                            _bufferedBytes = 0;
+                        }
+                    }
+                }
+
+                if (closed != null)
+                    abort(closed, new EofException("Connection closing"));
+
+                if (buffers != null)
+                {
+                    _writing = buffers;
+                    _written = callback;
+                    ByteBuffer[] byteBuffers = new ByteBuffer[buffers.size()];
+                    long bytes = 0;
+                    for (int i = 0; i < byteBuffers.length; ++i)
+                    {
+                        byteBuffers[i] = buffers.get(i).getByteBuffer();
+                        bytes += byteBuffers[i].remaining();
+                    }
+                    bytesOut.add(bytes);
+                    getEndPoint().write(this, byteBuffers);
+                    return Action.SCHEDULED;
+                }
+
+                if (callback != null)
+                    callback.succeeded();
+            }
+        }
+
+        private Callback releaseWritten()
+        {
+            List<RetainableByteBuffer> writing = _writing;
+            _writing = null;
+            if (writing != null)
+                writing.forEach(RetainableByteBuffer::release);
+            Callback written = _written;
+            _written = null;
+            return written;
+        }
+
+        @Override
+        protected void onCompleteSuccess()
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("pipeline complete {}", HttpConnection.this);
+            if (_pipeline == this)
+                _pipeline = null;
+            if (_closing)
+            {
+                _parser.close();
+                getEndPoint().shutdownOutput();
+            }
+            processNextRequest();
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            Callback written = releaseWritten();
+            if (written != null)
+                written.failed(cause);
+            fail(cause);
+            getEndPoint().close(cause);
+        }
+    }
+
     private class TunnelSupportOverHTTP1 implements TunnelSupport
     {
         @Override
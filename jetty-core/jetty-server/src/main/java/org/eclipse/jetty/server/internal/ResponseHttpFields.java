@@ -83,6 +83,15 @@ public class ResponseHttpFields implements HttpFields.Mutable
         return this;
     }
 
+    @Override
+    public Mutable add(HttpFields fields)
+    {
+        // Bulk copy, so that blocks such as PreEncodedHttpFields stay contiguous.
+        if (fields != null && !_committed.get())
+            _fields.add(fields);
+        return this;
+    }
+
     @Override
     public HttpFields asImmutable()
     {
@@ -16,6 +16,8 @@ package org.eclipse.jetty.server.jmx;
 import org.eclipse.jetty.jmx.ObjectMBean;
 import org.eclipse.jetty.server.AbstractConnector;
 import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 
 @ManagedObject("MBean Wrapper for Connectors")
@@ -46,4 +48,12 @@ public class AbstractConnectorMBean extends ObjectMBean
 
         return String.format("%s@%x", buffer.toString(), _connector.hashCode());
     }
+
+    @ManagedAttribute("The number of connections accepted by each listening socket")
+    public long[] getListenerAcceptedCounts()
+    {
+        if (_connector instanceof ServerConnector serverConnector)
+            return serverConnector.getListenerAcceptedCounts();
+        return new long[0];
+    }
 }
@@ -31,6 +31,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -48,6 +49,10 @@ public class FormFieldsTest
             Arguments.of(List.of("n", "ame", "=", "value"), UTF_8, -1, -1, Map.of("name", "value")),
             Arguments.of(List.of("n=v&X=Y"), UTF_8, 2, 4, Map.of("n", "v", "X", "Y")),
             Arguments.of(List.of("name=f¤¤&X=Y"), UTF_8, -1, -1, Map.of("name", "f¤¤", "X", "Y")),
+            Arguments.of(List.of("a=b+c&d=%41e&f%20g=h+", "&i&j=", "k"), UTF_8, -1, -1, Map.of("a", "b c", "d", "Ae", "f g", "h ", "i&j", "k")),
+            Arguments.of(List.of("one=first&tw", "o=sec", "ond&three=", "&four=fo%", "7", "2th"), UTF_8, -1, -1, Map.of("one", "first", "two", "second", "three", "", "four", "forth")),
+            Arguments.of(List.of("name=%C3%A9t%C3%A9&né=été"), UTF_8, -1, -1, Map.of("name", "été", "né", "été")),
+            Arguments.of(List.of("name=été&X=Y"), ISO_8859_1, -1, -1, Map.of("name", "été", "X", "Y")),
             Arguments.of(List.of("n=v&X=Y"), UTF_8, 1, -1, null),
             Arguments.of(List.of("n=v&X=Y"), UTF_8, -1, 3, null)
         );
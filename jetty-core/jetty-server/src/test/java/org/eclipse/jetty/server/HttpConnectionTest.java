@@ -21,27 +21,44 @@
 package org.eclipse.jetty.server;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.eclipse.jetty.http.HttpCompliance;
+import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.UriCompliance;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.logging.StacklessLogging;
 import org.eclipse.jetty.server.handler.DumpHandler;
 import org.eclipse.jetty.server.internal.HttpConnection;
@@ -62,11 +79,15 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpConnectionTest
@@ -518,6 +539,580 @@ public class HttpConnectionTest
         checkContains(response, offset, "pathInContext=/R1");
     }
 
+    @Test
+    public void testPipelinedWithWriteCoalescing() throws Exception
+    {
+        _connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration().setWriteCoalescingSize(4096);
+
+        LocalConnector.LocalEndPoint endp = _connector.executeRequest(
+            "GET /R1 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /R2 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /R3 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: close\r\n" +
+            "\r\n");
+        endp.waitUntilClosed();
+        assertThat(endp.getWriteCoalescingSize(), is(4096));
+        String response = BufferUtil.toString(endp.takeOutput());
+
+        int offset = 0;
+        for (String path : new String[]{"/R1", "/R2", "/R3"})
+        {
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "pathInContext=" + path);
+        }
+    }
+
+    @Test
+    public void testPipelinedResponsesCoalescedWithoutDelay() throws Exception
+    {
+        Server server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setWriteCoalescingSize(4096);
+        // The responses would time out if they waited for the delay.
+        config.setWriteCoalescingDelay(TimeUnit.SECONDS.toMillis(60));
+        AtomicInteger flushes = new AtomicInteger();
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(config))
+        {
+            @Override
+            protected SocketChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key)
+            {
+                SocketChannelEndPoint endPoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler())
+                {
+                    @Override
+                    public boolean flush(ByteBuffer... buffers) throws IOException
+                    {
+                        if (BufferUtil.remaining(buffers) > 0)
+                            flushes.incrementAndGet();
+                        return super.flush(buffers);
+                    }
+                };
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                Content.Sink.write(response, true, Request.getPathInContext(request), callback);
+                return true;
+            }
+        });
+        server.start();
+
+        try (Socket client = new Socket("localhost", connector.getLocalPort()))
+        {
+            client.setSoTimeout(5000);
+            String requests = IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> "GET /R" + i + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                .collect(Collectors.joining());
+            OutputStream output = client.getOutputStream();
+            output.write(requests.getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+
+            HttpTester.Input input = HttpTester.from(client.getInputStream());
+            for (int i = 1; i <= 3; ++i)
+            {
+                HttpTester.Response response = HttpTester.parseResponse(input);
+                assertNotNull(response);
+                assertEquals(HttpStatus.OK_200, response.getStatus());
+                assertEquals("/R" + i, response.getContent());
+            }
+            // The pipelined responses are written together, rather than one write each.
+            assertThat(flushes.get(), lessThan(3));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrentPipelinedRequests() throws Exception
+    {
+        ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+        Server server = new Server(null, null, bufferPool);
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMaxPipelinedRequests(4);
+        config.setPipelinedResponseBufferSize(1024);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        CountDownLatch handled = new CountDownLatch(1);
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                String path = Request.getPathInContext(request);
+                String content = switch (path)
+                {
+                    // Only completes if the requests pipelined behind it are handled concurrently.
+                    case "/slow" -> handled.await(5, TimeUnit.SECONDS) ? "slow" : "timeout";
+                    case "/fast" ->
+                    {
+                        handled.countDown();
+                        yield "fast";
+                    }
+                    case "/large" -> "x".repeat(4096);
+                    default -> path;
+                };
+                Content.Sink.write(response, true, content, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.executeRequest(
+                "GET /slow HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /large HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "HEAD /head HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /fast HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "POST /post HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Length: 5\r\n" +
+                "\r\n" +
+                "hello" +
+                "GET /last HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: close\r\n" +
+                "\r\n");
+            endPoint.waitUntilClosed();
+            String response = BufferUtil.toString(endPoint.takeOutput());
+
+            int offset = 0;
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\nslow");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\n" + "x".repeat(4096));
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\nfast");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\n/post");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            checkContains(response, offset, "\r\n\r\n/last");
+            assertThat(response, not(containsString("/head")));
+        }
+        finally
+        {
+            server.stop();
+        }
+        assertThat(bufferPool.dumpLeaks(), bufferPool.getLeaks().size(), is(0));
+    }
+
+    @Test
+    public void testPipelinedConnectionClose() throws Exception
+    {
+        Server server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMaxPipelinedRequests(4);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        CountDownLatch handled = new CountDownLatch(1);
+        AtomicBoolean handledAfter = new AtomicBoolean();
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                String path = Request.getPathInContext(request);
+                String content = switch (path)
+                {
+                    // Only completes if the request closing the connection is handled concurrently.
+                    case "/slow" -> handled.await(5, TimeUnit.SECONDS) ? "slow" : "timeout";
+                    case "/close" ->
+                    {
+                        handled.countDown();
+                        yield "close";
+                    }
+                    default ->
+                    {
+                        handledAfter.set(true);
+                        yield path;
+                    }
+                };
+                Content.Sink.write(response, true, content, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.executeRequest(
+                "GET /slow HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /close HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: close\r\n" +
+                "\r\n" +
+                "GET /after HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n");
+            endPoint.waitUntilClosed();
+            String response = BufferUtil.toString(endPoint.takeOutput());
+
+            int offset = 0;
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\nslow");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "Connection: close");
+            offset = checkContains(response, offset, "\r\n\r\nclose");
+            checkNotContained(response, offset, "HTTP/1.1");
+            assertFalse(handledAfter.get());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testMaxPipelinedRequests() throws Exception
+    {
+        Server server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMaxPipelinedRequests(2);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        CountDownLatch handled = new CountDownLatch(2);
+        AtomicBoolean handledLast = new AtomicBoolean();
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                String path = Request.getPathInContext(request);
+                String content = switch (path)
+                {
+                    // Only completes if the 2 requests pipelined behind it are handled concurrently.
+                    case "/slow" -> handled.await(5, TimeUnit.SECONDS) ? "slow " + handledLast.get() : "timeout";
+                    case "/last" ->
+                    {
+                        handledLast.set(true);
+                        yield path;
+                    }
+                    default ->
+                    {
+                        handled.countDown();
+                        yield path;
+                    }
+                };
+                Content.Sink.write(response, true, content, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.executeRequest(
+                "GET /slow HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /one HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /two HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /last HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: close\r\n" +
+                "\r\n");
+            endPoint.waitUntilClosed();
+            String response = BufferUtil.toString(endPoint.takeOutput());
+
+            int offset = 0;
+            // The request beyond the max number of pipelined requests is handled in turn.
+            offset = checkContains(response, offset, "\r\n\r\nslow false");
+            offset = checkContains(response, offset, "\r\n\r\n/one");
+            offset = checkContains(response, offset, "\r\n\r\n/two");
+            checkContains(response, offset, "\r\n\r\n/last");
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPipelinedBadRequest() throws Exception
+    {
+        Server server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMaxPipelinedRequests(4);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        CountDownLatch handled = new CountDownLatch(1);
+        AtomicBoolean handledAfter = new AtomicBoolean();
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                String path = Request.getPathInContext(request);
+                String content = switch (path)
+                {
+                    case "/slow" -> handled.await(5, TimeUnit.SECONDS) ? "slow" : "timeout";
+                    case "/fast" ->
+                    {
+                        handled.countDown();
+                        yield "fast";
+                    }
+                    default ->
+                    {
+                        handledAfter.set(true);
+                        yield path;
+                    }
+                };
+                Content.Sink.write(response, true, content, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.executeRequest(
+                "GET /slow HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /fast HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n" +
+                "GET /bad HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Length: bad\r\n" +
+                "\r\n" +
+                "GET /after HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "\r\n");
+            endPoint.waitUntilClosed();
+            String response = BufferUtil.toString(endPoint.takeOutput());
+
+            int offset = 0;
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\nslow");
+            offset = checkContains(response, offset, "HTTP/1.1 200");
+            offset = checkContains(response, offset, "\r\n\r\nfast");
+            // The bad request is not pipelined, it is rejected in turn and closes the connection.
+            offset = checkContains(response, offset, "HTTP/1.1 400");
+            checkNotContained(response, offset + 1, "HTTP/1.1");
+            assertFalse(handledAfter.get());
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPipelinedHandlerFailure() throws Exception
+    {
+        ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+        Server server = new Server(null, null, bufferPool);
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMaxPipelinedRequests(4);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        AtomicReference<CountDownLatch> handled = new AtomicReference<>();
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                String path = Request.getPathInContext(request);
+                switch (path)
+                {
+                    // Only completes if the requests pipelined behind it are handled concurrently.
+                    case "/slow" -> Content.Sink.write(response, true, handled.get().await(5, TimeUnit.SECONDS) ? "slow" : "timeout", callback);
+                    case "/throw" ->
+                    {
+                        handled.get().countDown();
+                        throw new IllegalStateException("explicitly_thrown_by_test");
+                    }
+                    case "/fail" ->
+                    {
+                        handled.get().countDown();
+                        response.write(false, BufferUtil.toBuffer("partial"), Callback.from(() ->
+                            callback.failed(new IllegalStateException("explicitly_thrown_by_test"))));
+                    }
+                    default -> Content.Sink.write(response, true, path, callback);
+                }
+                return true;
+            }
+        });
+        server.start();
+        try (StacklessLogging ignored = new StacklessLogging(Response.class))
+        {
+            for (String path : List.of("/throw", "/fail"))
+            {
+                handled.set(new CountDownLatch(1));
+                LocalConnector.LocalEndPoint endPoint = connector.executeRequest(
+                    "GET /slow HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "\r\n" +
+                    "GET " + path + " HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "\r\n" +
+                    "GET /after HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "\r\n");
+                endPoint.waitUntilClosed();
+                String response = BufferUtil.toString(endPoint.takeOutput());
+
+                // The responses that precede the failure are written, then the connection is aborted.
+                int offset = 0;
+                offset = checkContains(response, offset, "HTTP/1.1 200");
+                offset = checkContains(response, offset, "\r\n\r\nslow");
+                if (path.equals("/throw"))
+                {
+                    offset = checkContains(response, offset, "HTTP/1.1 500");
+                }
+                else
+                {
+                    offset = checkContains(response, offset, "HTTP/1.1 200");
+                    offset = checkContains(response, offset, "partial");
+                }
+                checkNotContained(response, offset + 1, "HTTP/1.1");
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+        assertThat(bufferPool.dumpLeaks(), bufferPool.getLeaks().size(), is(0));
+    }
+
+    @Test
+    public void testAdaptiveInputBufferSize() throws Exception
+    {
+        Queue<Integer> sizes = new ConcurrentLinkedQueue<>();
+        ByteBufferPool bufferPool = new ByteBufferPool.Wrapper(new ArrayByteBufferPool())
+        {
+            @Override
+            public RetainableByteBuffer acquire(int size, boolean direct)
+            {
+                sizes.offer(size);
+                return super.acquire(size, direct);
+            }
+        };
+        Server server = new Server(null, null, bufferPool);
+        HttpConfiguration config = new HttpConfiguration();
+        config.setMinInputBufferSize(1024);
+        config.setMaxInputBufferSize(65536);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                Content.Source.consumeAll(request, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.connect();
+
+            // A large upload grows the read buffers.
+            int length = 512 * 1024;
+            endPoint.addInput("POST / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Length: " + length + "\r\n" +
+                "\r\n" +
+                "x".repeat(length));
+            assertThat(endPoint.getResponse(), startsWith("HTTP/1.1 200 "));
+            assertThat(sizes, hasItem(65536));
+
+            // Small requests shrink the read buffers.
+            sizes.clear();
+            for (int i = 0; i < 32; ++i)
+            {
+                endPoint.addInput("GET / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "\r\n");
+                assertThat(endPoint.getResponse(), startsWith("HTTP/1.1 200 "));
+            }
+            assertThat(sizes, hasItem(1024));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testLazyHeaderValues() throws Exception
+    {
+        ArrayByteBufferPool.Tracking bufferPool = new ArrayByteBufferPool.Tracking();
+        Server server = new Server(null, null, bufferPool);
+        HttpConfiguration config = new HttpConfiguration();
+        config.setLazyHeaderValues(true);
+        LocalConnector connector = new LocalConnector(server, new HttpConnectionFactory(config));
+        server.addConnector(connector);
+        Queue<HttpFields> completed = new ConcurrentLinkedQueue<>();
+        server.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                // The fields of the completed requests must not reference the reused buffers.
+                String previous = completed.stream()
+                    .map(fields -> fields.get("X-Later"))
+                    .collect(Collectors.joining(","));
+                completed.offer(request.getHeaders());
+                response.getHeaders().put("X-Value", request.getHeaders().get("X-Value"));
+                response.getHeaders().put("X-Previous", previous);
+                Content.Source.consumeAll(request, callback);
+                return true;
+            }
+        });
+        server.start();
+        try
+        {
+            LocalConnector.LocalEndPoint endPoint = connector.connect();
+            for (int i = 0; i < 3; ++i)
+            {
+                endPoint.addInput("POST / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "X-Value: value" + i + "\r\n" +
+                    "X-Later: later" + i + "\r\n" +
+                    "X-Unused: " + "x".repeat(64) + "\r\n" +
+                    "Content-Length: 5\r\n" +
+                    "\r\n" +
+                    "hello");
+                HttpTester.Response response = HttpTester.parseResponse(endPoint.getResponse());
+                assertEquals(HttpStatus.OK_200, response.getStatus());
+                assertEquals("value" + i, response.get("X-Value"));
+                assertEquals(IntStream.range(0, i).mapToObj(n -> "later" + n).collect(Collectors.joining(",")), response.get("X-Previous"));
+            }
+            endPoint.close();
+        }
+        finally
+        {
+            server.stop();
+        }
+        assertThat(bufferPool.dumpLeaks(), bufferPool.getLeaks().size(), is(0));
+    }
+
     @Test
     public void testSimple() throws Exception
     {
@@ -29,6 +29,7 @@ import java.net.URISyntaxException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -268,6 +269,54 @@ public class ServerConnectorTest
         }
     }
 
+    @Test
+    @DisabledOnOs(value = OS.WINDOWS, disabledReason = "SO_REUSEPORT not available on windows")
+    public void testReusePortListeners() throws Exception
+    {
+        Server server = new Server();
+        try
+        {
+            ServerConnector connector = new ServerConnector(server, 4, 2);
+            connector.setReusePortListeners(true);
+            server.addConnector(connector);
+
+            server.setHandler(new Handler.Abstract.NonBlocking()
+            {
+                @Override
+                public boolean handle(Request request, Response response, Callback callback)
+                {
+                    callback.succeeded();
+                    return true;
+                }
+            });
+
+            server.start();
+            assertThat(connector.getListenerCount(), is(4));
+
+            int connections = 32;
+            for (int i = 0; i < connections; ++i)
+            {
+                try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+                {
+                    HttpTester.Request request = HttpTester.newRequest();
+                    request.put(HttpHeader.HOST, "localhost");
+                    client.write(request.generate());
+                    HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client));
+                    assertNotNull(response);
+                    assertEquals(HttpStatus.OK_200, response.getStatus());
+                }
+            }
+
+            long[] accepted = connector.getListenerAcceptedCounts();
+            assertThat(accepted.length, is(4));
+            assertThat(Arrays.stream(accepted).sum(), is((long)connections));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
     @Test
     public void testAddFirstConnectionFactory()
     {
@@ -237,6 +237,8 @@ public class ResourceHandlerByteRangesTest
             HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
             assertNotNull(response);
             assertEquals(HttpStatus.PARTIAL_CONTENT_206, response.getStatus());
+            // The parts are sliced from the buffer, so the length is known.
+            assertEquals(String.valueOf(response.getContentBytes().length), response.get(HttpHeader.CONTENT_LENGTH));
             assertThat(response.getContent(), Matchers.stringContainsInOrder(
                 "Content-Type: text/plain", "Content-Range: bytes 234-258/10400", "    10\tThis is a big file",
                 "Content-Type: text/plain", "Content-Range: bytes 494-519/10400", "    20\tThis is a big file")
@@ -348,6 +350,51 @@ public class ResourceHandlerByteRangesTest
         }
     }
 
+    @Test
+    public void testAdjacentRangesCoalesced() throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod(HttpMethod.GET.asString());
+        request.setURI("/range.txt");
+        request.put(HttpHeader.HOST, "localhost");
+        request.put(HttpHeader.RANGE, "bytes=2-4,5-7,6-9");
+
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            socket.write(request.generate());
+
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
+            assertNotNull(response);
+            assertEquals(HttpStatus.PARTIAL_CONTENT_206, response.getStatus());
+            assertEquals("bytes 2-9/" + rangeChars.length(), response.get(HttpHeader.CONTENT_RANGE));
+            assertEquals("23456789", response.getContent());
+        }
+    }
+
+    @Test
+    public void testTooManyRanges() throws Exception
+    {
+        ResourceHandler handler = (ResourceHandler)server.getHandler();
+        handler.setMaxRanges(2);
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod(HttpMethod.GET.asString());
+        request.setURI("/range.txt");
+        request.put(HttpHeader.HOST, "localhost");
+        request.put(HttpHeader.RANGE, "bytes=0-0,2-2,4-4");
+
+        try (SocketChannel socket = SocketChannel.open(new InetSocketAddress("localhost", connector.getLocalPort())))
+        {
+            socket.write(request.generate());
+
+            // The Range header is ignored.
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(socket));
+            assertNotNull(response);
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals(rangeChars, response.getContent());
+        }
+    }
+
     @Test
     public void testTwoRanges() throws Exception
     {
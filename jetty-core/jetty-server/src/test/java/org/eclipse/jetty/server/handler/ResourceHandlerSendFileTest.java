@@ -0,0 +1,271 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.content.CompressingHttpContentFactory;
+import org.eclipse.jetty.http.content.HttpContent;
+import org.eclipse.jetty.http.content.ResourceHttpContentFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@ExtendWith(WorkDirExtension.class)
+public class ResourceHandlerSendFileTest
+{
+    public WorkDir workDir;
+    private final Queue<Boolean> _writeFiles = new ConcurrentLinkedQueue<>();
+    private Server _server;
+    private ServerConnector _connector;
+    private byte[] _bytes;
+
+    private void start(HttpConfiguration httpConfig, boolean gzip) throws Exception
+    {
+        start(httpConfig, gzip, false);
+    }
+
+    private void start(HttpConfiguration httpConfig, boolean gzip, boolean cached) throws Exception
+    {
+        start(httpConfig, gzip, cached, List.of());
+    }
+
+    private void start(HttpConfiguration httpConfig, boolean gzip, boolean cached, List<CompressedContentFormat> compressedFormats) throws Exception
+    {
+        Path docRoot = workDir.getEmptyPathDir();
+        _bytes = new byte[1024 * 1024 + 13];
+        for (int i = 0; i < _bytes.length; ++i)
+        {
+            _bytes[i] = (byte)('a' + i % 26);
+        }
+        Files.write(docRoot.resolve("big.txt"), _bytes);
+
+        _server = new Server();
+        _connector = new ServerConnector(_server, 1, 1, new HttpConnectionFactory(httpConfig));
+        _server.addConnector(_connector);
+
+        ResourceHandler resourceHandler = cached ? new ResourceHandler() : new ResourceHandler()
+        {
+            @Override
+            protected HttpContent.Factory newHttpContentFactory()
+            {
+                // Neither cached nor mapped, so the content has no buffer and may be sent from the file.
+                HttpContent.Factory contentFactory = new ResourceHttpContentFactory(ResourceFactory.of(getBaseResource()), getMimeTypes());
+                if (!getCompressedFormats().isEmpty())
+                    contentFactory = new CompressingHttpContentFactory(contentFactory, getCompressedFormats(), getServer().getThreadPool());
+                return contentFactory;
+            }
+        };
+        resourceHandler.setCompressedFormats(compressedFormats);
+        resourceHandler.setBaseResource(ResourceFactory.of(_server).newResource(docRoot));
+        ContextHandler context = new ContextHandler("/");
+        context.setHandler(resourceHandler);
+        // Records whether the file write reached the connection.
+        Handler handler = new Handler.Wrapper(context)
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                return super.handle(request, new Response.Wrapper(request, response)
+                {
+                    @Override
+                    public boolean writeFile(Path path, long position, long length, Callback callback)
+                    {
+                        boolean result = getWrapped().writeFile(path, position, length, callback);
+                        _writeFiles.offer(result);
+                        return result;
+                    }
+                }, callback);
+            }
+        };
+        if (gzip)
+        {
+            GzipHandler gzipHandler = new GzipHandler(handler);
+            gzipHandler.setMinGzipSize(16);
+            handler = gzipHandler;
+        }
+        _server.setHandler(handler);
+        _server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (_server != null)
+            _server.stop();
+    }
+
+    private HttpTester.Response get(SocketChannel client, String path, String acceptEncoding) throws Exception
+    {
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setURI(path);
+        request.put(HttpHeader.HOST, "localhost");
+        if (acceptEncoding != null)
+            request.put(HttpHeader.ACCEPT_ENCODING, acceptEncoding);
+        client.write(request.generate());
+        HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client));
+        assertNotNull(response);
+        return response;
+    }
+
+    @Test
+    public void testSendFile() throws Exception
+    {
+        start(new HttpConfiguration(), false);
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            // Two requests on the same connection, to verify that it remains usable.
+            for (int i = 0; i < 2; ++i)
+            {
+                HttpTester.Response response = get(client, "/big.txt", null);
+                assertThat(response.getStatus(), is(HttpStatus.OK_200));
+                assertThat(response.getLongField(HttpHeader.CONTENT_LENGTH), is((long)_bytes.length));
+                assertArrayEquals(_bytes, response.getContentBytes());
+            }
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> _writeFiles, contains(true, true));
+    }
+
+    @Test
+    public void testNoSendFileForBufferedContent() throws Exception
+    {
+        start(new HttpConfiguration(), false, true);
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                HttpTester.Response response = get(client, "/big.txt", null);
+                assertThat(response.getStatus(), is(HttpStatus.OK_200));
+                assertArrayEquals(_bytes, response.getContentBytes());
+            }
+        }
+
+        // The cached or mapped buffer is written, rather than the file.
+        assertThat(_writeFiles, empty());
+    }
+
+    @Test
+    public void testNoSendFileForCompressedContent() throws Exception
+    {
+        start(new HttpConfiguration(), false, false, List.of(CompressedContentFormat.GZIP));
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            // The content is compressed asynchronously, so the first responses may not be compressed.
+            await().atMost(5, TimeUnit.SECONDS).until(() -> get(client, "/big.txt", "gzip").get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+
+            _writeFiles.clear();
+            HttpTester.Response response = get(client, "/big.txt", "gzip");
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response.get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+            byte[] compressed = response.getContentBytes();
+            assertThat(response.getLongField(HttpHeader.CONTENT_LENGTH), is((long)compressed.length));
+            try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed)))
+            {
+                assertArrayEquals(_bytes, input.readAllBytes());
+            }
+        }
+
+        // The compressed bytes are written, rather than the uncompressed file.
+        assertThat(_writeFiles, empty());
+    }
+
+    @Test
+    public void testSendFileWithWriteCoalescing() throws Exception
+    {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setWriteCoalescingSize(4096);
+        start(httpConfig, false);
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            HttpTester.Response response = get(client, "/big.txt", null);
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            assertArrayEquals(_bytes, response.getContentBytes());
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> _writeFiles, contains(true));
+    }
+
+    @Test
+    public void testSendFileDisabled() throws Exception
+    {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setSendFileEnabled(false);
+        start(httpConfig, false);
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            HttpTester.Response response = get(client, "/big.txt", null);
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            assertArrayEquals(_bytes, response.getContentBytes());
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> _writeFiles, contains(false));
+    }
+
+    @Test
+    public void testNoSendFileWithGzip() throws Exception
+    {
+        start(new HttpConfiguration(), true);
+
+        try (SocketChannel client = SocketChannel.open(new InetSocketAddress("localhost", _connector.getLocalPort())))
+        {
+            HttpTester.Response response = get(client, "/big.txt", "gzip");
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response.get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+            assertThat(response.getContentBytes().length, lessThan(_bytes.length));
+        }
+
+        // The gzip response wrapper does not forward the file write.
+        assertThat(_writeFiles, contains(false));
+    }
+}
@@ -13,11 +13,13 @@
 
 package org.eclipse.jetty.server.handler;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
@@ -26,10 +28,12 @@ import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -41,8 +45,10 @@ import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.http.UriCompliance;
 import org.eclipse.jetty.http.content.CachingHttpContentFactory;
+import org.eclipse.jetty.http.content.CompressingHttpContentFactory;
 import org.eclipse.jetty.http.content.FileMappingHttpContentFactory;
 import org.eclipse.jetty.http.content.HttpContent;
 import org.eclipse.jetty.http.content.PreCompressedHttpContentFactory;
@@ -60,10 +66,13 @@ import org.eclipse.jetty.toolchain.test.MavenPaths;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.resource.FileSystemPool;
+import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -77,6 +86,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.awaitility.Awaitility.await;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_ENCODING;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_LENGTH;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_TYPE;
@@ -88,11 +98,14 @@ import static org.eclipse.jetty.http.tools.matchers.HttpFieldsMatchers.containsH
 import static org.eclipse.jetty.http.tools.matchers.HttpFieldsMatchers.headerValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -100,6 +113,8 @@ import static org.hamcrest.Matchers.oneOf;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
@@ -668,6 +683,8 @@ public class ResourceHandlerTest
                 contentFactory = new FileMappingHttpContentFactory(contentFactory);
                 contentFactory = new VirtualHttpContentFactory(contentFactory, getStyleSheet(), "text/css");
                 contentFactory = new PreCompressedHttpContentFactory(contentFactory, getPrecompressedFormats());
+                if (!getCompressedFormats().isEmpty())
+                    contentFactory = new CompressingHttpContentFactory(contentFactory, getCompressedFormats(), getServer().getThreadPool());
                 contentFactory = new ValidatingCachingHttpContentFactory(contentFactory, 0, getByteBufferPool());
                 return contentFactory;
             }
@@ -1343,6 +1360,227 @@ public class ResourceHandlerTest
         assertThat(contentFactory.getCachedSize(), is(oneOf(expectedSizeBig, expectedSizeSimple)));
     }
 
+    @Test
+    public void testCachingEvictsLeastRecentlyUsed() throws Exception
+    {
+        for (String name : List.of("a.txt", "b.txt", "c.txt"))
+        {
+            Files.writeString(docRoot.resolve(name), name);
+        }
+        HttpContent.Factory authority = new ResourceHttpContentFactory(ResourceFactory.of(ResourceFactory.root().newResource(docRoot)), new MimeTypes());
+        CachingHttpContentFactory contentFactory = new CachingHttpContentFactory(authority, null);
+        contentFactory.setMaxCachedFiles(2);
+
+        contentFactory.getContent("/a.txt").release();
+        contentFactory.getContent("/b.txt").release();
+        // Access a.txt again, so that b.txt is the least recently used.
+        contentFactory.getContent("/a.txt").release();
+        contentFactory.getContent("/c.txt").release();
+
+        assertThat(contentFactory.getCachedFiles(), is(2));
+        assertThat(contentFactory.getCacheHits(), is(1L));
+        assertThat(contentFactory.getCacheMisses(), is(3L));
+        assertThat(contentFactory.getCacheEvictions(), is(1L));
+
+        // a.txt is still cached, b.txt was evicted.
+        contentFactory.getContent("/a.txt").release();
+        assertThat(contentFactory.getCacheHits(), is(2L));
+        contentFactory.getContent("/b.txt").release();
+        assertThat(contentFactory.getCacheMisses(), is(4L));
+        assertThat(contentFactory.getCacheEvictions(), is(2L));
+
+        // c.txt was not accessed since it was cached, so it was evicted.
+        contentFactory.getContent("/a.txt").release();
+        assertThat(contentFactory.getCacheHits(), is(3L));
+        contentFactory.getContent("/c.txt").release();
+        assertThat(contentFactory.getCacheMisses(), is(5L));
+
+        contentFactory.flushCache();
+        assertThat(contentFactory.getCachedFiles(), is(0));
+        assertThat(contentFactory.getCachedSize(), is(0L));
+    }
+
+    @Test
+    public void testCachingWatchedContentEvicted() throws Exception
+    {
+        Path file = docRoot.resolve("a.txt");
+        Files.writeString(file, "A");
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        Resource baseResource = ResourceFactory.root().newResource(docRoot);
+        HttpContent.Factory authority = new ResourceHttpContentFactory(ResourceFactory.of(baseResource), new MimeTypes());
+        ScheduledExecutorScheduler scheduler = new ScheduledExecutorScheduler();
+        scheduler.start();
+        // Entries that are not watched are never validated, so only the filesystem events evict them.
+        ValidatingCachingHttpContentFactory contentFactory = new ValidatingCachingHttpContentFactory(authority, -1, null, scheduler, 0, 0, baseResource);
+        contentFactory.setWatchPollPeriod(10);
+        try
+        {
+            assertTrue(contentFactory.isWatching());
+
+            HttpContent content = contentFactory.getContent("/a.txt");
+            assertThat(BufferUtil.toString(content.getByteBuffer()), is("A"));
+            content.release();
+            contentFactory.getContent("/a.txt").release();
+            assertThat(contentFactory.getCacheHits(), is(1L));
+
+            // Modify the file without changing its last modified time, so that only the event detects it.
+            Files.writeString(file, "B");
+            Files.setLastModifiedTime(file, lastModified);
+            await().atMost(5, TimeUnit.SECONDS).until(contentFactory::getCachedFiles, is(0));
+            content = contentFactory.getContent("/a.txt");
+            assertThat(BufferUtil.toString(content.getByteBuffer()), is("B"));
+            content.release();
+
+            // Not found entries are evicted when the file is created, even in a new directory.
+            assertNull(contentFactory.getContent("/dir/b.txt"));
+            assertNull(contentFactory.getContent("/dir/b.txt"));
+            assertThat(contentFactory.getCachedFiles(), is(2));
+            Path dir = docRoot.resolve("dir");
+            Files.createDirectory(dir);
+            Files.writeString(dir.resolve("b.txt"), "C");
+            await().atMost(5, TimeUnit.SECONDS).until(contentFactory::getCachedFiles, is(1));
+            content = contentFactory.getContent("/dir/b.txt");
+            assertNotNull(content);
+            assertThat(BufferUtil.toString(content.getByteBuffer()), is("C"));
+            content.release();
+
+            // Deleting the directory evicts the entries within it.
+            Files.delete(dir.resolve("b.txt"));
+            await().atMost(5, TimeUnit.SECONDS).until(contentFactory::getCachedFiles, is(1));
+            assertNull(contentFactory.getContent("/dir/b.txt"));
+        }
+        finally
+        {
+            contentFactory.close();
+            scheduler.stop();
+        }
+    }
+
+    @Test
+    public void testCachingWatchedCompressedContentEvicted() throws Exception
+    {
+        String text = "This is a compressible text file\n".repeat(100);
+        Path file = docRoot.resolve("text.txt");
+        Files.writeString(file, text);
+        Resource baseResource = ResourceFactory.root().newResource(docRoot);
+        HttpContent.Factory authority = new ResourceHttpContentFactory(ResourceFactory.of(baseResource), new MimeTypes());
+        // Compress in the calling thread.
+        authority = new CompressingHttpContentFactory(authority, List.of(CompressedContentFormat.GZIP), null);
+        ValidatingCachingHttpContentFactory contentFactory = new ValidatingCachingHttpContentFactory(authority, 0, null, null, 0, 0, baseResource);
+        try
+        {
+            assertTrue(contentFactory.isWatching());
+            contentFactory.getContent("/text.txt").release();
+            HttpContent compressed = contentFactory.getContent("/text.txt.gz");
+            assertNotNull(compressed);
+            compressed.release();
+            contentFactory.getContent("/text.txt.gz").release();
+
+            // The compressed variant has no file to watch, so it is validated against the identity file.
+            Files.writeString(file, text + text);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+            compressed = contentFactory.getContent("/text.txt.gz");
+            if (compressed != null)
+            {
+                try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(BufferUtil.toArray(compressed.getByteBuffer()))))
+                {
+                    assertThat(IO.toString(input, UTF_8), is(text + text));
+                }
+                compressed.release();
+            }
+        }
+        finally
+        {
+            contentFactory.close();
+        }
+    }
+
+    @Test
+    public void testCompressingHttpContentFactory() throws Exception
+    {
+        String text = "This is a compressible text file\n".repeat(100);
+        Path file = docRoot.resolve("text.txt");
+        Files.writeString(file, text);
+        Files.write(docRoot.resolve("image.png"), new byte[1024]);
+        HttpContent.Factory authority = new ResourceHttpContentFactory(ResourceFactory.of(ResourceFactory.root().newResource(docRoot)), new MimeTypes());
+        // Compress in the calling thread.
+        CompressingHttpContentFactory contentFactory = new CompressingHttpContentFactory(authority, List.of(CompressedContentFormat.GZIP, CompressedContentFormat.BR), null);
+
+        HttpContent content = contentFactory.getContent("/text.txt");
+        assertThat(content.getPreCompressedContentFormats(), contains(CompressedContentFormat.GZIP));
+
+        HttpContent compressed = contentFactory.getContent("/text.txt.gz");
+        assertNotNull(compressed);
+        assertThat(compressed.getContentEncodingValue(), is("gzip"));
+        assertThat(compressed.getETagValue(), is(EtagUtils.rewriteWithSuffix(content.getETagValue(), CompressedContentFormat.GZIP.getEtagSuffix())));
+        ByteBuffer buffer = compressed.getByteBuffer();
+        assertThat(compressed.getContentLengthValue(), is((long)buffer.remaining()));
+        assertThat(buffer.remaining(), lessThan(text.length()));
+        assertThat(contentFactory.getCompressedSize(), is((long)buffer.remaining()));
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(BufferUtil.toArray(buffer))))
+        {
+            assertThat(IO.toString(input, UTF_8), is(text));
+        }
+        // The compressed variant cannot be sent from the uncompressed file.
+        assertNull(compressed.getResource().getPath());
+        assertThat(compressed.getResource().length(), is((long)buffer.remaining()));
+
+        // Brotli is not supported by default.
+        assertNull(contentFactory.getContent("/text.txt.br"));
+        // Images are not compressed.
+        assertThat(contentFactory.getContent("/image.png").getPreCompressedContentFormats(), anyOf(nullValue(), empty()));
+        assertNull(contentFactory.getContent("/image.png.gz"));
+
+        // Modifying the file discards the compressed variant.
+        Files.writeString(file, text + text);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        assertNull(contentFactory.getContent("/text.txt.gz"));
+        assertThat(contentFactory.getCompressedSize(), is(0L));
+        assertThat(contentFactory.getContent("/text.txt").getPreCompressedContentFormats(), contains(CompressedContentFormat.GZIP));
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(BufferUtil.toArray(contentFactory.getContent("/text.txt.gz").getByteBuffer()))))
+        {
+            assertThat(IO.toString(input, UTF_8), is(text + text));
+        }
+    }
+
+    @Test
+    public void testCompressingHttpContentFactoryEvictsIdleVariants() throws Exception
+    {
+        String text = "This is a compressible text file\n".repeat(100);
+        Files.writeString(docRoot.resolve("idle.txt"), text);
+        Files.writeString(docRoot.resolve("hot.txt"), text);
+        HttpContent.Factory authority = new ResourceHttpContentFactory(ResourceFactory.of(ResourceFactory.root().newResource(docRoot)), new MimeTypes());
+        CompressingHttpContentFactory contentFactory = new CompressingHttpContentFactory(authority, List.of(CompressedContentFormat.GZIP), null);
+        // Only room for one compressed variant.
+        contentFactory.setMaxCompressedSize(1);
+        contentFactory.setMaxIdleTime(100);
+
+        HttpContent idle = contentFactory.getContent("/idle.txt");
+        assertThat(idle.getPreCompressedContentFormats(), contains(CompressedContentFormat.GZIP));
+        long compressedSize = contentFactory.getCompressedSize();
+        assertThat(compressedSize, greaterThan(0L));
+
+        // The budget is full, and the compressed variant is not idle yet.
+        assertThat(contentFactory.getContent("/hot.txt").getPreCompressedContentFormats(), anyOf(nullValue(), empty()));
+
+        // Once idle, the compressed variant is evicted to compress the requested content.
+        Thread.sleep(2 * contentFactory.getMaxIdleTime());
+        assertThat(contentFactory.getContent("/hot.txt").getPreCompressedContentFormats(), contains(CompressedContentFormat.GZIP));
+        assertNotNull(contentFactory.getContent("/hot.txt.gz"));
+        assertThat(contentFactory.getCompressedSize(), is(compressedSize));
+
+        // The evicted variant is still advertised, for the caches that hold it,
+        // but is no longer available from the factory.
+        assertThat(idle.getPreCompressedContentFormats(), contains(CompressedContentFormat.GZIP));
+        assertNull(contentFactory.getContent("/idle.txt.gz"));
+
+        // Requesting the evicted variant compresses the content again, once there is room.
+        Thread.sleep(2 * contentFactory.getMaxIdleTime());
+        assertNull(contentFactory.getContent("/idle.txt.gz"));
+        assertNotNull(contentFactory.getContent("/idle.txt.gz"));
+        assertNull(contentFactory.getContent("/hot.txt.gz"));
+    }
+
     @Test
     public void testCachingNotFoundNotCached() throws Exception
     {
@@ -1417,6 +1655,69 @@ public class ResourceHandlerTest
         assertThat(contentFactory.getCachedSize(), is(0L));
     }
 
+    @Test
+    public void testCachingCompressedFilesCached() throws Exception
+    {
+        setupBigFiles(docRoot);
+        Files.delete(docRoot.resolve("big.txt.gz"));
+        String expected = Files.readString(docRoot.resolve("big.txt"));
+
+        _server.stop();
+        _rootResourceHandler.setCompressedFormats(CompressedContentFormat.GZIP);
+        _server.start();
+        CachingHttpContentFactory contentFactory = (CachingHttpContentFactory)_rootResourceHandler.getHttpContentFactory();
+
+        // The first requests are served uncompressed, until the content is compressed.
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+        {
+            HttpTester.Response response = HttpTester.parseResponse(
+                    _local.getResponse("""
+                    GET /context/big.txt HTTP/1.1\r
+                    Host: local\r
+                    Connection: close\r
+                    Accept-Encoding: gzip\r
+                    \r
+                    """));
+            assertThat(response.getStatus(), is(HttpStatus.OK_200));
+            return response.get(CONTENT_ENCODING) != null;
+        });
+
+        for (int i = 0; i < 10; i++)
+        {
+            HttpTester.Response response1 = HttpTester.parseResponse(
+                    _local.getResponse("""
+                    GET /context/big.txt HTTP/1.1\r
+                    Host: local\r
+                    Connection: close\r
+                    Accept-Encoding: gzip\r
+                    \r
+                    """));
+            assertThat(response1.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response1.get(CONTENT_ENCODING), is("gzip"));
+            assertThat(response1.get(HttpHeader.VARY), is(HttpHeader.ACCEPT_ENCODING.asString()));
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(response1.getContentBytes())))
+            {
+                assertThat(IO.toString(input, UTF_8), is(expected));
+            }
+
+            HttpTester.Response response2 = HttpTester.parseResponse(
+                    _local.getResponse("""
+                    GET /context/big.txt HTTP/1.1\r
+                    Host: local\r
+                    Connection: close\r
+                    Accept-Encoding: deflate\r
+                    \r
+                    """));
+            assertThat(response2.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response2.get(CONTENT_ENCODING), is(nullValue()));
+            assertThat(response2.get(HttpHeader.VARY), is(HttpHeader.ACCEPT_ENCODING.asString()));
+            assertThat(response2.getContent(), is(expected));
+        }
+
+        // Both the identity and the compressed bytes are cached.
+        assertThat(contentFactory.getCachedFiles(), is(2));
+    }
+
     @Test
     public void testCachingPrecompressedFilesCachedEtagged() throws Exception
     {
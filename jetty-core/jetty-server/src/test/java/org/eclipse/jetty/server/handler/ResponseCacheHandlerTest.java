@@ -0,0 +1,399 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.logging.StacklessLogging;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class ResponseCacheHandlerTest
+{
+    public WorkDir workDir;
+    private Server _server;
+    private LocalConnector _connector;
+    private ResponseCacheHandler _cacheHandler;
+    private final AtomicInteger _handled = new AtomicInteger();
+
+    private void start(Consumer<HttpFields.Mutable> headers, String content) throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                _handled.incrementAndGet();
+                headers.accept(response.getHeaders());
+                response.write(true, ByteBuffer.wrap((content + request.getHeaders().get("Accept-Language")).getBytes(StandardCharsets.UTF_8)), callback);
+                return true;
+            }
+        });
+    }
+
+    private void start(Handler handler) throws Exception
+    {
+        _server = new Server();
+        _connector = new LocalConnector(_server);
+        _server.addConnector(_connector);
+        _cacheHandler = new ResponseCacheHandler(handler);
+        _server.setHandler(_cacheHandler);
+        _server.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        _server.stop();
+    }
+
+    private HttpTester.Response get(String extraHeaders) throws Exception
+    {
+        return request("GET", extraHeaders);
+    }
+
+    private HttpTester.Response request(String method, String extraHeaders) throws Exception
+    {
+        return request(method, "/path", extraHeaders);
+    }
+
+    private HttpTester.Response request(String method, String path, String extraHeaders) throws Exception
+    {
+        String request = method + " " + path + " HTTP/1.1\r\nHost: localhost\r\n" + extraHeaders + "Connection: close\r\n\r\n";
+        LocalConnector.LocalEndPoint endPoint = _connector.executeRequest(request);
+        String response = endPoint.getResponse("HEAD".equals(method), 30, TimeUnit.SECONDS);
+        // The response is stored once its last write succeeded, before the connection is closed.
+        endPoint.waitUntilClosed();
+        return HttpTester.parseResponse(response);
+    }
+
+    @Test
+    public void testFreshResponseServedFromCache() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), "hello");
+
+        HttpTester.Response response = get("");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("hellonull", response.getContent());
+
+        response = get("");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("hellonull", response.getContent());
+        assertEquals("max-age=60", response.get(HttpHeader.CACHE_CONTROL));
+        assertNotNull(response.get(HttpHeader.AGE));
+        assertEquals(9, response.getLongField(HttpHeader.CONTENT_LENGTH));
+
+        assertEquals(1, _handled.get());
+        assertEquals(1, _cacheHandler.getHits());
+        assertEquals(1, _cacheHandler.getMisses());
+        assertEquals(1, _cacheHandler.getEntries());
+        assertEquals(9, _cacheHandler.getMemorySize());
+
+        // A request that does not accept a cached response goes to the handler.
+        response = get("Cache-Control: no-cache\r\n");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(2, _handled.get());
+    }
+
+    @Test
+    public void testNotStorable() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "private, max-age=60"), "private");
+
+        assertEquals("privatenull", get("").getContent());
+        assertEquals("privatenull", get("").getContent());
+        assertEquals(2, _handled.get());
+        assertEquals(0, _cacheHandler.getEntries());
+
+        // Responses without explicit freshness nor Last-Modified are not stored.
+        _server.stop();
+        start(h -> {}, "nothing");
+        get("");
+        get("");
+        assertEquals(4, _handled.get());
+        assertEquals(0, _cacheHandler.getEntries());
+    }
+
+    @Test
+    public void testNoStoreRequestBypassesCache() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), "hello");
+
+        get("Cache-Control: no-store\r\n");
+        get("Cache-Control: no-store\r\n");
+        assertEquals(2, _handled.get());
+        assertEquals(0, _cacheHandler.getEntries());
+
+        HttpTester.Response response = get("Cache-Control: only-if-cached\r\n");
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT_504, response.getStatus());
+        assertEquals(2, _handled.get());
+    }
+
+    @Test
+    public void testVary() throws Exception
+    {
+        start(h ->
+        {
+            h.put(HttpHeader.CACHE_CONTROL, "max-age=60");
+            h.put(HttpHeader.VARY, "Accept-Language");
+        }, "hello-");
+
+        assertEquals("hello-en", get("Accept-Language: en\r\n").getContent());
+        assertEquals("hello-fr", get("Accept-Language: fr\r\n").getContent());
+        assertEquals("hello-en", get("Accept-Language: en\r\n").getContent());
+        assertEquals("hello-fr", get("Accept-Language: fr\r\n").getContent());
+        assertEquals(2, _handled.get());
+        assertEquals(2, _cacheHandler.getEntries());
+    }
+
+    @Test
+    public void testConditionalRequestsAnsweredByCache() throws Exception
+    {
+        start(h ->
+        {
+            h.put(HttpHeader.CACHE_CONTROL, "max-age=60");
+            h.put(HttpHeader.ETAG, "\"abc\"");
+            h.put(HttpHeader.LAST_MODIFIED, "Sun, 01 Jan 2023 00:00:00 GMT");
+        }, "hello");
+
+        get("");
+
+        HttpTester.Response response = get("If-None-Match: W/\"xyz\", \"abc\"\r\n");
+        assertEquals(HttpStatus.NOT_MODIFIED_304, response.getStatus());
+        assertEquals("\"abc\"", response.get(HttpHeader.ETAG));
+        assertEquals("max-age=60", response.get(HttpHeader.CACHE_CONTROL));
+        assertNull(response.get(HttpHeader.LAST_MODIFIED));
+
+        response = get("If-None-Match: \"xyz\"\r\n");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        response = get("If-Modified-Since: Mon, 02 Jan 2023 00:00:00 GMT\r\n");
+        assertEquals(HttpStatus.NOT_MODIFIED_304, response.getStatus());
+
+        response = get("If-Modified-Since: Sat, 31 Dec 2022 00:00:00 GMT\r\n");
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+
+        assertEquals(1, _handled.get());
+    }
+
+    @Test
+    public void testStaleResponseNotServed() throws Exception
+    {
+        start(h ->
+        {
+            h.put(HttpHeader.CACHE_CONTROL, "max-age=100");
+            h.put(HttpHeader.AGE, "100");
+        }, "stale");
+
+        get("");
+        get("");
+        assertEquals(2, _handled.get());
+        assertEquals(0, _cacheHandler.getEntries());
+    }
+
+    @Test
+    public void testHeadServedFromGetEntry() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), "hello");
+
+        get("");
+        HttpTester.Response response = HttpTester.parseHeadResponse(_connector.getResponse("""
+            HEAD /path HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals(9, response.getLongField(HttpHeader.CONTENT_LENGTH));
+        assertEquals(1, _handled.get());
+    }
+
+    @Test
+    public void testUnsafeRequestInvalidates() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), "hello");
+
+        get("");
+        assertEquals(1, _cacheHandler.getEntries());
+
+        request("POST", "Content-Length: 0\r\n");
+        assertEquals(0, _cacheHandler.getEntries());
+
+        get("");
+        assertEquals(3, _handled.get());
+    }
+
+    @Test
+    public void testFailedWriteNotStored() throws Exception
+    {
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), "hello");
+        AtomicBoolean failWrite = new AtomicBoolean(true);
+        _server.stop();
+        _server.setHandler(new Handler.Wrapper(_cacheHandler)
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                return super.handle(request, new Response.Wrapper(request, response)
+                {
+                    @Override
+                    public void write(boolean last, ByteBuffer byteBuffer, Callback callback)
+                    {
+                        if (last && failWrite.getAndSet(false))
+                            callback.failed(new IOException("explicitly_thrown_by_test"));
+                        else
+                            super.write(last, byteBuffer, callback);
+                    }
+                }, callback);
+            }
+        });
+        _server.start();
+
+        try (StacklessLogging ignored = new StacklessLogging(Response.class))
+        {
+            assertEquals(HttpStatus.INTERNAL_SERVER_ERROR_500, get("").getStatus());
+        }
+        assertEquals(0, _cacheHandler.getEntries());
+
+        assertEquals("hellonull", get("").getContent());
+        assertEquals(1, _cacheHandler.getEntries());
+        assertEquals("hellonull", get("").getContent());
+        assertEquals(2, _handled.get());
+    }
+
+    @Test
+    public void testConcurrentMissesCoalesced() throws Exception
+    {
+        CountDownLatch handling = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback) throws Exception
+            {
+                _handled.incrementAndGet();
+                handling.countDown();
+                assertTrue(proceed.await(5, TimeUnit.SECONDS));
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                response.write(true, ByteBuffer.wrap("slow".getBytes(StandardCharsets.UTF_8)), callback);
+                return true;
+            }
+        });
+
+        String request = """
+            GET /path HTTP/1.1\r
+            Host: localhost\r
+            Connection: close\r
+            \r
+            """;
+        LocalConnector.LocalEndPoint first = _connector.executeRequest(request);
+        assertTrue(handling.await(5, TimeUnit.SECONDS));
+        LocalConnector.LocalEndPoint second = _connector.executeRequest(request);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> _cacheHandler.getMisses(), is(2L));
+        proceed.countDown();
+
+        assertEquals("slow", HttpTester.parseResponse(first.getResponse()).getContent());
+        assertEquals("slow", HttpTester.parseResponse(second.getResponse()).getContent());
+        assertEquals(1, _handled.get());
+        assertEquals(1, _cacheHandler.getCoalesced());
+        assertEquals(1, _cacheHandler.getHits());
+    }
+
+    @Test
+    public void testLargeContentStoredOnDisk() throws Exception
+    {
+        String content = "x".repeat(4096);
+        start(h -> h.put(HttpHeader.CACHE_CONTROL, "max-age=60"), content);
+        Path directory = workDir.getEmptyPathDir();
+        _cacheHandler.setDiskDirectory(directory);
+        _cacheHandler.setMaxMemoryEntrySize(1024);
+
+        get("");
+        assertEquals(content + "null", get("").getContent());
+        assertEquals(1, _handled.get());
+        assertEquals(0, _cacheHandler.getMemorySize());
+        assertEquals(content.length() + 4, _cacheHandler.getDiskSize());
+        try (var files = Files.list(directory))
+        {
+            assertEquals(1, files.count());
+        }
+
+        _cacheHandler.clear();
+        assertEquals(0, _cacheHandler.getDiskSize());
+        // The file is deleted when the entry is no longer served,
+        // which may happen just after the response is received.
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+        {
+            try (var files = Files.list(directory))
+            {
+                return files.count();
+            }
+        }, is(0L));
+    }
+
+    @Test
+    public void testEvictionBoundsMemorySize() throws Exception
+    {
+        start(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                response.getHeaders().put(HttpHeader.CACHE_CONTROL, "max-age=60");
+                response.write(true, ByteBuffer.wrap(new byte[100]), callback);
+                return true;
+            }
+        });
+        _cacheHandler.setMaxMemorySize(250);
+
+        for (int i = 0; i < 5; ++i)
+        {
+            request("GET", "/" + i, "");
+        }
+        assertEquals(2, _cacheHandler.getEntries());
+        assertEquals(200, _cacheHandler.getMemorySize());
+        assertEquals(3, _cacheHandler.getEvictions());
+    }
+}
@@ -31,10 +31,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.Inflater;
@@ -48,7 +51,10 @@ import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.server.Context;
 import org.eclipse.jetty.server.FormFields;
 import org.eclipse.jetty.server.Handler;
@@ -71,6 +77,7 @@ import org.eclipse.jetty.util.Fields;
 import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
@@ -92,6 +99,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.startsWith;
@@ -1806,6 +1814,491 @@ public class GzipHandlerTest
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("acceptEncodingSource")
+    public void testAcceptEncodingNegotiation(String acceptEncoding, String expectedEncoding) throws Exception
+    {
+        _gzipHandler.setCompressions(new GzipCompression(), new DeflateCompression());
+        _contextHandler.setHandler(new SingleWriteHandler(CONTENT));
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", acceptEncoding);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is(expectedEncoding));
+        if (expectedEncoding == null)
+            assertThat(response.getContent(), is(CONTENT));
+        else
+            assertThat(response.get("Vary"), is("Accept-Encoding"));
+    }
+
+    public static Stream<Arguments> acceptEncodingSource()
+    {
+        return Stream.of(
+            Arguments.of("gzip", "gzip"),
+            Arguments.of("x-gzip", "gzip"),
+            Arguments.of("deflate", "deflate"),
+            Arguments.of("deflate, gzip", "gzip"),
+            Arguments.of("deflate, gzip;q=0.5", "deflate"),
+            Arguments.of("gzip;q=0, deflate", "deflate"),
+            Arguments.of("*", "gzip"),
+            Arguments.of("gzip;q=0, *", "deflate"),
+            Arguments.of("identity", null),
+            Arguments.of("br", null),
+            Arguments.of("compress", null)
+        );
+    }
+
+    @Test
+    public void testDeflateNotEnabledByDefault() throws Exception
+    {
+        assertThat(_gzipHandler.getCompressions().size(), is(1));
+        assertThat(_gzipHandler.getCompression("deflate"), nullValue());
+        _contextHandler.setHandler(new SingleWriteHandler(CONTENT));
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "deflate");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertThat(response.getContent(), is(CONTENT));
+    }
+
+    @Test
+    public void testOverriddenDeflaterEntry() throws Exception
+    {
+        AtomicInteger entries = new AtomicInteger();
+        GzipHandler gzipHandler = new GzipHandler()
+        {
+            @Override
+            public DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength)
+            {
+                entries.incrementAndGet();
+                return super.getDeflaterEntry(request, contentLength);
+            }
+        };
+        gzipHandler.setMinGzipSize(16);
+        gzipHandler.setHandler(new SingleWriteHandler(CONTENT));
+        _server.setHandler(gzipHandler);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        assertThat(IO.toString(input, UTF_8), is(CONTENT));
+        // The gzip encoder uses the deflater of the overridden method.
+        assertThat(entries.get(), is(1));
+    }
+
+    @Test
+    public void testOverriddenDeflaterEntryDisablesCompression() throws Exception
+    {
+        GzipHandler gzipHandler = new GzipHandler()
+        {
+            @Override
+            public DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength)
+            {
+                return null;
+            }
+        };
+        gzipHandler.setMinGzipSize(16);
+        gzipHandler.setHandler(new SingleWriteHandler(CONTENT));
+        _server.setHandler(gzipHandler);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertThat(response.getContent(), is(CONTENT));
+    }
+
+    @Test
+    public void testCompressionNegotiatedOnce() throws Exception
+    {
+        AtomicInteger negotiations = new AtomicInteger();
+        GzipHandler gzipHandler = new GzipHandler()
+        {
+            @Override
+            protected Compression negotiateCompression(Request request)
+            {
+                negotiations.incrementAndGet();
+                return super.negotiateCompression(request);
+            }
+        };
+        gzipHandler.setMinGzipSize(16);
+        gzipHandler.setHandler(new SingleWriteHandler(CONTENT));
+        _server.setHandler(gzipHandler);
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        assertThat(IO.toString(input, UTF_8), is(CONTENT));
+        // The encoder uses the compression negotiated when the response was wrapped.
+        assertThat(negotiations.get(), is(1));
+    }
+
+    @Test
+    public void testDeflateResponse() throws Exception
+    {
+        _gzipHandler.addCompression(new DeflateCompression());
+        _contextHandler.setHandler(new ChunkedWriteHandler(CONTENT).setEtag(CONTENT_ETAG));
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "deflate");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("deflate"));
+        assertThat(response.get("ETag"), is(DeflateCompression.DEFLATE.etag(CONTENT_ETAG)));
+
+        InputStream input = new InflaterInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        assertThat(IO.toString(input, UTF_8), is(CONTENT));
+
+        // The deflate etag matches the uncompressed etag.
+        request.setHeader("If-None-Match", DeflateCompression.DEFLATE.etag(CONTENT_ETAG));
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.getStatus(), is(304));
+        assertThat(response.get("ETag"), is(DeflateCompression.DEFLATE.etag(CONTENT_ETAG)));
+    }
+
+    @Test
+    public void testDeflateRequest() throws Exception
+    {
+        _gzipHandler.addCompression(new DeflateCompression());
+        _contextHandler.setHandler(new EchoHandler());
+        _server.start();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DeflaterOutputStream output = new DeflaterOutputStream(baos))
+        {
+            output.write(CONTENT_BYTES);
+        }
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("POST");
+        request.setURI("/ctx/echo");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Content-Type", "text/plain");
+        request.setHeader("Content-Encoding", "deflate");
+        request.setContent(baos.toByteArray());
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), nullValue());
+        assertThat(response.getContent(), is(CONTENT));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {9, 12, 16})
+    public void testLzwCompression(int maxBits) throws Exception
+    {
+        LzwCompression lzw = new LzwCompression();
+        lzw.setMaxBits(maxBits);
+        _gzipHandler.setCompressions(lzw);
+        _contextHandler.setHandler(new EchoHandler());
+        _server.start();
+
+        // Enough varied content to fill the dictionary, even with 16 bits codes.
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 512 * 1024; ++i)
+        {
+            builder.append(i).append(' ').append(CONTENT, i % CONTENT.length(), CONTENT.length()).append('\n');
+        }
+        byte[] data = builder.toString().getBytes(UTF_8);
+        byte[] compressed = lzw(lzw.newEncoder(-1), data);
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("POST");
+        request.setURI("/ctx/echo");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Content-Type", "text/plain");
+        request.setHeader("Content-Encoding", "compress");
+        request.setHeader("Accept-Encoding", "gzip;q=0.5, x-compress");
+        request.setContent(compressed);
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("compress"));
+        assertArrayEquals(compressed, response.getContentBytes());
+
+        Compression.Decoder decoder = lzw.newDecoder(_server.getByteBufferPool(), 4096);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.wrap(compressed);
+        while (buffer.hasRemaining())
+        {
+            RetainableByteBuffer chunk = decoder.decode(buffer);
+            if (chunk != null)
+            {
+                decoded.write(BufferUtil.toArray(chunk.getByteBuffer()));
+                chunk.release();
+            }
+        }
+        decoder.destroy();
+        assertArrayEquals(data, decoded.toByteArray());
+    }
+
+    private static byte[] lzw(Compression.Encoder encoder, byte[] data)
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteBuffer buffer = BufferUtil.allocate(1024);
+        BufferUtil.flipToFill(buffer);
+        encoder.begin(buffer);
+        encoder.setInput(ByteBuffer.wrap(data));
+        encoder.finish();
+        while (!encoder.finished())
+        {
+            encoder.encode(buffer, false);
+            buffer.flip();
+            output.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+            buffer.clear();
+        }
+        encoder.release();
+        return output.toByteArray();
+    }
+
+    @ParameterizedTest
+    @MethodSource("asyncResponseSource")
+    public void testParallelAsyncScenarios(int writes, int bufferSize, boolean readOnly, boolean contentLength, boolean knownLast) throws Exception
+    {
+        _gzipHandler.setParallelCompressionThreshold(1024);
+        _gzipHandler.setParallelCompressionBlockSize(4096);
+        _gzipHandler.setMaxParallelCompressionBlocks(2);
+        testAsyncScenarios(writes, bufferSize, readOnly, contentLength, knownLast);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testParallelCompression(boolean contentLength) throws Exception
+    {
+        int maxBlocks = 3;
+        AtomicInteger tasks = new AtomicInteger();
+        AtomicInteger maxTasks = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        _gzipHandler.setParallelCompressionThreshold(64 * 1024);
+        _gzipHandler.setParallelCompressionBlockSize(16 * 1024);
+        _gzipHandler.setMaxParallelCompressionBlocks(maxBlocks);
+        _gzipHandler.setParallelCompressionExecutor(task ->
+        {
+            maxTasks.accumulateAndGet(tasks.incrementAndGet(), Math::max);
+            executed.incrementAndGet();
+            ForkJoinPool.commonPool().execute(() ->
+            {
+                tasks.decrementAndGet();
+                task.run();
+            });
+        });
+
+        // Varied content, so that blocks do not compress to the same bytes.
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (int i = 0; content.size() < 2 * 1024 * 1024; ++i)
+        {
+            content.write((i + " " + CONTENT.substring(i % CONTENT.length()) + "\n").getBytes(UTF_8));
+        }
+        byte[] bytes = content.toByteArray();
+        // Large writes, that span several blocks.
+        int writeSize = 300 * 1024;
+
+        _contextHandler.setHandler(new Handler.Abstract()
+        {
+            @Override
+            public boolean handle(Request request, Response response, Callback callback)
+            {
+                response.getHeaders().put(HttpHeader.CONTENT_TYPE, "text/plain");
+                if (contentLength)
+                    response.getHeaders().put(HttpHeader.CONTENT_LENGTH, bytes.length);
+                new Runnable()
+                {
+                    private int _offset;
+
+                    @Override
+                    public void run()
+                    {
+                        int length = Math.min(writeSize, bytes.length - _offset);
+                        ByteBuffer buffer = ByteBuffer.wrap(bytes, _offset, length);
+                        _offset += length;
+                        boolean last = _offset == bytes.length;
+                        response.write(last, buffer, last ? callback : Callback.from(this));
+                    }
+                }.run();
+                return true;
+            }
+        });
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate(), 30, TimeUnit.SECONDS));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        byte[] compressed = response.getContentBytes();
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        assertArrayEquals(bytes, IO.readBytes(input));
+
+        // If the length is unknown, the content is compressed sequentially
+        // up to the write that reaches the threshold, and then in parallel.
+        // The last block is either partial or empty.
+        int parallelLength = contentLength ? bytes.length : bytes.length - writeSize;
+        assertThat(executed.get(), is(parallelLength / (16 * 1024) + 1));
+        assertThat(maxTasks.get(), lessThanOrEqualTo(maxBlocks));
+
+        // The dictionary priming keeps the ratio close to sequential compression.
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(sequential))
+        {
+            output.write(bytes);
+        }
+        assertThat((double)compressed.length, lessThan(sequential.size() * 1.02D));
+    }
+
+    @Test
+    public void testParallelCompressionBlockSizeFitsPool()
+    {
+        int maxCapacity = 64 * 1024;
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(0, 1024, maxCapacity);
+
+        // The deflated output of a block, with the header and the trailer, must be pooled.
+        int blockSize = ParallelGzipWriter.fitBlockSize(_gzipHandler.getParallelCompressionBlockSize(), bufferPool);
+        assertThat(blockSize + (blockSize >> 10) + 64, lessThanOrEqualTo(maxCapacity));
+        assertThat(blockSize, greaterThan(maxCapacity - 1024));
+        assertThat(ParallelGzipWriter.fitBlockSize(256 * 1024, new ByteBufferPool.Wrapper(bufferPool)), is(blockSize));
+
+        assertThat(ParallelGzipWriter.fitBlockSize(16 * 1024, bufferPool), is(16 * 1024));
+        assertThat(ParallelGzipWriter.fitBlockSize(256 * 1024, new ByteBufferPool.NonPooling()), is(256 * 1024));
+    }
+
+    @Test
+    public void testCompressionLevel() throws Exception
+    {
+        _gzipHandler.setCompressionLevel(1);
+        _contextHandler.setHandler(new SingleWriteHandler(CONTENT_BYTES));
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("gzip"));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (GZIPOutputStream output = new GZIPOutputStream(expected)
+        {
+            {
+                def.setLevel(1);
+            }
+        })
+        {
+            output.write(CONTENT_BYTES);
+        }
+        // Same deflate stream as the JDK at level 1, the header may differ.
+        byte[] expectedBytes = expected.toByteArray();
+        byte[] actualBytes = response.getContentBytes();
+        assertArrayEquals(Arrays.copyOfRange(expectedBytes, 10, expectedBytes.length), Arrays.copyOfRange(actualBytes, 10, actualBytes.length));
+        InputStream input = new GZIPInputStream(new ByteArrayInputStream(actualBytes));
+        assertThat(IO.toString(input, UTF_8), is(CONTENT));
+    }
+
+    @Test
+    public void testAdaptiveCompressionLevel()
+    {
+        AtomicReference<Double> load = new AtomicReference<>(0D);
+        GzipHandler gzipHandler = new GzipHandler()
+        {
+            @Override
+            protected double getLoad(Request request)
+            {
+                return load.get();
+            }
+        };
+        Compression gzip = gzipHandler.getCompression("gzip");
+        Compression lzw = new LzwCompression();
+
+        // Not adaptive.
+        load.set(1D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(-1));
+
+        gzipHandler.setAdaptiveCompression(true);
+        gzipHandler.setAdaptiveLoadThreshold(0.5D);
+        load.set(0.25D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(-1));
+        load.set(0.5D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(-1));
+        load.set(0.75D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(3));
+        load.set(1D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(1));
+        load.set(2D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(1));
+
+        gzipHandler.setCompressionLevel(9);
+        load.set(0.75D);
+        assertThat(gzipHandler.getCompressionLevel(gzip, null), is(5));
+
+        // No levels to adapt.
+        assertThat(gzipHandler.getCompressionLevel(lzw, null), is(0));
+    }
+
     public static class TestHandler extends Handler.Abstract
     {
         @Override
@@ -613,7 +613,7 @@ public class BufferUtil
         {
             while (true)
             {
-                if (BufferUtil.space(byteBuffer) == 0)
+                if (!byteBuffer.hasRemaining())
                     break;
 
                 int read = readableByteChannel.read(byteBuffer);
@@ -123,6 +123,13 @@ public class SearchPattern
      */
     public int match(ByteBuffer buffer)
     {
+        if (buffer.hasArray())
+        {
+            // Avoid the bounds checks of ByteBuffer.get(int) for each byte.
+            int offset = buffer.arrayOffset() + buffer.position();
+            int index = match(buffer.array(), offset, buffer.remaining());
+            return index < 0 ? -1 : index - offset;
+        }
         int remaining = buffer.remaining();
         int cursor = 0;
         while (remaining - cursor >= getLength())
@@ -41,6 +41,22 @@ public class DeflaterPool extends CompressionPool<Deflater>
         this.nowrap = nowrap;
     }
 
+    /**
+     * @return the compression level of the pooled {@link Deflater} objects
+     */
+    public int getCompressionLevel()
+    {
+        return compressionLevel;
+    }
+
+    /**
+     * @return whether the pooled {@link Deflater} objects use GZIP compatible compression
+     */
+    public boolean isNowrap()
+    {
+        return nowrap;
+    }
+
     @Override
     protected Deflater newPooled()
     {
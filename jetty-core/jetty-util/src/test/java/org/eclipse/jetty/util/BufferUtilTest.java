@@ -13,10 +13,13 @@
 
 package org.eclipse.jetty.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
@@ -371,4 +374,34 @@ public class BufferUtilTest
             assertThat(BufferUtil.toMappedBuffer(jarResource), nullValue());
         }
     }
+
+    @Test
+    public void testReadFromChannelUntilFull() throws Exception
+    {
+        byte[] bytes = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = BufferUtil.allocate(12);
+        BufferUtil.append(buffer, "XY");
+
+        // Reading stops when the buffer is full, before the end of the channel.
+        int read = BufferUtil.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), buffer);
+        assertEquals(10, read);
+        assertEquals("XY0123456789", BufferUtil.toString(buffer));
+    }
+
+    @Test
+    public void testReadFromChannelUntilEndOfStream() throws Exception
+    {
+        byte[] bytes = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = BufferUtil.allocate(64);
+
+        // Reading stops at the end of the channel, before the buffer is full.
+        int read = BufferUtil.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes)), buffer);
+        assertEquals(10, read);
+        assertEquals("0123456789", BufferUtil.toString(buffer));
+
+        // Nothing is read at the end of the channel.
+        read = BufferUtil.readFrom(Channels.newChannel(new ByteArrayInputStream(new byte[0])), buffer);
+        assertEquals(0, read);
+        assertEquals("0123456789", BufferUtil.toString(buffer));
+    }
 }
@@ -0,0 +1,103 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.CanonicalPathCache;
+import org.eclipse.jetty.http.HttpURI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpURIBenchmark
+{
+    private static final String[] HOT_PATHS =
+    {
+        "/",
+        "/index.html",
+        "/css/site.css",
+        "/js/app.min.js",
+        "/images/logo%20small.png",
+        "/api/v1/users/12345/orders",
+        "/context/servlet/path;jsessionid=0123456789",
+        "/static/../static/fonts/font.woff2"
+    };
+
+    @Param({"0", "1024"})
+    public int cacheSize;
+
+    @Param({"HOT", "COLD"})
+    public String paths;
+
+    private CanonicalPathCache cache;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        cache = cacheSize > 0 ? new CanonicalPathCache(cacheSize) : null;
+    }
+
+    private String nextURI()
+    {
+        int i = index++;
+        String path = HOT_PATHS[i & (HOT_PATHS.length - 1)];
+        // Cold paths are unique, so they always miss the cache.
+        if ("COLD".equals(paths))
+            path = path + "/" + i;
+        return path + "?q=" + (i & 0xF);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void testBuild(Blackhole blackhole)
+    {
+        HttpURI uri = HttpURI.build("GET", nextURI(), cache).asImmutable();
+        blackhole.consume(uri.getCanonicalPath());
+        blackhole.consume(uri.getDecodedPath());
+        blackhole.consume(uri.getQuery());
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpURIBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,174 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpTokenScanner;
+import org.eclipse.jetty.http.MultiPart;
+import org.eclipse.jetty.http.MultiPartFormData;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.io.content.ChunksContentSource;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class MultiPartBenchmark
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    public long size;
+
+    @Param({"AaB03x", "----WebKitFormBoundary7MA4YWxkTrZu0gW"})
+    public String boundary;
+
+    @Param({"SCALAR", "DEFAULT"})
+    public String scanner;
+
+    private ByteBuffer head;
+    private ByteBuffer content;
+    private ByteBuffer tail;
+    private Path directory;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        head = toDirect(BufferUtil.toBuffer("""
+            --$B\r
+            Content-Disposition: form-data; name="file"; filename="upload.bin"\r
+            Content-Type: application/octet-stream\r
+            \r
+            """.replace("$B", boundary)));
+        // Binary content, with the occasional LF that starts a boundary candidate.
+        byte[] bytes = new byte[CHUNK_SIZE];
+        new Random(0x5EED).nextBytes(bytes);
+        content = toDirect(ByteBuffer.wrap(bytes));
+        tail = toDirect(BufferUtil.toBuffer("\r\n--" + boundary + "--\r\n"));
+        directory = Files.createTempDirectory(MultiPartBenchmark.class.getSimpleName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        IO.delete(directory.toFile());
+    }
+
+    private static ByteBuffer toDirect(ByteBuffer bytes)
+    {
+        // Request buffers are direct by default.
+        ByteBuffer buffer = BufferUtil.allocateDirect(bytes.remaining());
+        BufferUtil.append(buffer, bytes);
+        return buffer;
+    }
+
+    private HttpTokenScanner newScanner()
+    {
+        return "SCALAR".equals(scanner) ? new HttpTokenScanner.Scalar() : HttpTokenScanner.getDefault();
+    }
+
+    private List<Content.Chunk> newChunks()
+    {
+        List<Content.Chunk> chunks = new ArrayList<>();
+        chunks.add(Content.Chunk.from(head.slice(), false));
+        for (long remaining = size; remaining > 0; remaining -= CHUNK_SIZE)
+        {
+            int length = (int)Math.min(remaining, CHUNK_SIZE);
+            chunks.add(Content.Chunk.from(content.slice(0, length), false));
+        }
+        chunks.add(Content.Chunk.from(tail.slice(), true));
+        return chunks;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long testParse()
+    {
+        long[] length = new long[1];
+        MultiPart.Parser parser = new MultiPart.Parser(boundary, new MultiPart.Parser.Listener()
+        {
+            @Override
+            public void onPartContent(Content.Chunk chunk)
+            {
+                length[0] += chunk.remaining();
+            }
+        });
+        parser.setBoundaryScanner(newScanner());
+        for (Content.Chunk chunk : newChunks())
+        {
+            parser.parse(chunk);
+        }
+        if (length[0] != size)
+            throw new IllegalStateException("parsed " + length[0] + " bytes, expected " + size);
+        return length[0];
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long testParseToFile() throws Exception
+    {
+        MultiPartFormData.Parser parser = new MultiPartFormData.Parser(boundary);
+        parser.setBoundaryScanner(newScanner());
+        parser.setFilesDirectory(directory);
+        parser.setMaxMemoryFileSize(0);
+        try (MultiPartFormData.Parts parts = parser.parse(new ChunksContentSource(newChunks())).get())
+        {
+            MultiPart.Part part = parts.get(0);
+            long length = part.getLength();
+            part.delete();
+            return length;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(MultiPartBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,102 @@
+//
+// ========================================================================
+// Copyright (c) 1995 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.RetainableByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(16)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class ArrayByteBufferPoolBenchmark
+{
+    @Param({"0", "8", "32"})
+    public int threadCacheSize;
+
+    @Param({"true", "false"})
+    public boolean direct;
+
+    private ArrayByteBufferPool pool;
+
+    @Setup
+    public void setUp()
+    {
+        pool = new ArrayByteBufferPool(0, -1, -1, -1, 0, 0, threadCacheSize);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        System.err.printf("%n%s%n", pool.dump());
+        pool.clear();
+        pool = null;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testAcquireRelease(Blackhole blackhole)
+    {
+        RetainableByteBuffer buffer = pool.acquire(ThreadLocalRandom.current().nextInt(1, 16384), direct);
+        blackhole.consume(buffer.getByteBuffer());
+        buffer.release();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testAcquireReleaseBatch(Blackhole blackhole)
+    {
+        // Mimics a connection that holds a few buffers at once,
+        // e.g. one for reading and some for writing.
+        RetainableByteBuffer input = pool.acquire(4096, direct);
+        RetainableByteBuffer output1 = pool.acquire(8192, direct);
+        RetainableByteBuffer output2 = pool.acquire(8192, direct);
+        blackhole.consume(input.getByteBuffer());
+        blackhole.consume(output1.getByteBuffer());
+        blackhole.consume(output2.getByteBuffer());
+        output2.release();
+        output1.release();
+        input.release();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(ArrayByteBufferPoolBenchmark.class.getSimpleName())
+            .forks(1)
+            // .addProfiler(GCProfiler.class)
+            .build();
+
+        new Runner(opt).run();
+    }
+}